@@ -43,6 +43,9 @@ dependencies {
 	val incap = "1.0.0"
 	compileOnly("net.ltgt.gradle.incap:incap:$incap")
 	annotationProcessor("net.ltgt.gradle.incap:incap-processor:$incap")
+
+	testImplementation(libs.tests.junit)
+	testImplementation(libs.tests.google.truth)
 }
 
 tasks.withType<KotlinCompile> {
@@ -21,13 +21,14 @@ import javax.annotation.processing.Processor;
 import net.ltgt.gradle.incap.IncrementalAnnotationProcessor;
 
 import org.greenrobot.eventbus.Subscribe;
-import org.greenrobot.eventbus.ThreadMode;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -284,38 +285,34 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
     return (PackageElement) candidate;
   }
 
+  private String getEventClassString(ExecutableElement method, String myPackage) {
+    TypeMirror paramType = getParamTypeMirror(method.getParameters().get(0), null);
+    TypeElement paramElement = (TypeElement) processingEnv.getTypeUtils().asElement(paramType);
+    return getClassString(paramElement, myPackage);
+  }
+
   private void writeCreateSubscriberMethods(BufferedWriter writer, List<ExecutableElement> methods,
-                                            String callPrefix, String myPackage) throws IOException {
-    for (ExecutableElement method : methods) {
-      List<? extends VariableElement> parameters = method.getParameters();
-      TypeMirror paramType = getParamTypeMirror(parameters.get(0), null);
-      TypeElement paramElement = (TypeElement) processingEnv.getTypeUtils().asElement(paramType);
+                                            String callPrefix, String myPackage, String invokerClass)
+    throws IOException {
+    for (int i = 0; i < methods.size(); i++) {
+      ExecutableElement method = methods.get(i);
       String methodName = method.getSimpleName().toString();
-      String eventClass = getClassString(paramElement, myPackage) + ".class";
+      String eventClass = getEventClassString(method, myPackage) + ".class";
 
       Subscribe subscribe = method.getAnnotation(Subscribe.class);
       List<String> parts = new ArrayList<>();
       parts.add(callPrefix + "(\"" + methodName + "\",");
-      String lineEnd = "),";
-      if (subscribe.priority() == 0 && !subscribe.sticky()) {
-        if (subscribe.threadMode() == ThreadMode.POSTING) {
-          parts.add(eventClass + lineEnd);
-        } else {
-          parts.add(eventClass + ",");
-          parts.add("ThreadMode." + subscribe.threadMode().name() + lineEnd);
-        }
-      } else {
-        parts.add(eventClass + ",");
-        parts.add("ThreadMode." + subscribe.threadMode().name() + ",");
-        parts.add(subscribe.priority() + ",");
-        parts.add(subscribe.sticky() + lineEnd);
-      }
+      parts.add(eventClass + ",");
+      parts.add("ThreadMode." + subscribe.threadMode().name() + ",");
+      parts.add(subscribe.priority() + ",");
+      parts.add(subscribe.sticky() + ",");
+      parts.add("new " + invokerClass + "(" + i + ")),");
       writeLine(writer, 3, parts.toArray(new String[parts.size()]));
 
       if (verbose) {
         processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Indexed @Subscribe at " +
           method.getEnclosingElement().getSimpleName() + "." + methodName +
-          "(" + paramElement.getSimpleName() + ")");
+          "(" + getEventClassString(method, myPackage) + ")");
       }
 
     }
@@ -335,7 +332,8 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
       writer.write("import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;\n");
       writer.write("import org.greenrobot.eventbus.meta.SubscriberMethodInfo;\n");
       writer.write("import org.greenrobot.eventbus.meta.SubscriberInfo;\n");
-      writer.write("import org.greenrobot.eventbus.meta.SubscriberInfoIndex;\n\n");
+      writer.write("import org.greenrobot.eventbus.meta.SubscriberInfoIndex;\n");
+      writer.write("import org.greenrobot.eventbus.meta.SubscriberMethodInvoker;\n\n");
       writer.write("import org.greenrobot.eventbus.ThreadMode;\n\n");
       writer.write("import java.util.HashMap;\n");
       writer.write("import java.util.Map;\n\n");
@@ -344,7 +342,7 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
       writer.write("    private static final Map<Class<?>, SubscriberInfo> SUBSCRIBER_INDEX;\n\n");
       writer.write("    static {\n");
       writer.write("        SUBSCRIBER_INDEX = new HashMap<Class<?>, SubscriberInfo>();\n\n");
-      writeIndexLines(writer, myPackage);
+      Map<String, TypeElement> invokerClasses = writeIndexLines(writer, myPackage);
       writer.write("    }\n\n");
       writer.write("    private static void putIndex(SubscriberInfo info) {\n");
       writer.write("        SUBSCRIBER_INDEX.put(info.getSubscriberClass(), info);\n");
@@ -358,6 +356,9 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
       writer.write("            return null;\n");
       writer.write("        }\n");
       writer.write("    }\n");
+      for (Map.Entry<String, TypeElement> invokerClass : invokerClasses.entrySet()) {
+        writeInvokerClass(writer, invokerClass.getKey(), invokerClass.getValue(), myPackage);
+      }
       writer.write("}\n");
     } catch (IOException e) {
       throw new RuntimeException("Could not write source for " + index, e);
@@ -372,7 +373,14 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
     }
   }
 
-  private void writeIndexLines(BufferedWriter writer, String myPackage) throws IOException {
+  /**
+   * Writes the index entries of the subscriber classes.
+   *
+   * @return The names of the invoker classes to generate, with the subscriber classes they invoke.
+   */
+  private Map<String, TypeElement> writeIndexLines(BufferedWriter writer, String myPackage)
+    throws IOException {
+    Map<String, TypeElement> invokerClasses = new LinkedHashMap<>();
     for (TypeElement subscriberTypeElement : methodsByClass.keySet()) {
       if (classesToSkip.contains(subscriberTypeElement)) {
         continue;
@@ -383,13 +391,49 @@ public class EventBusAnnotationProcessor extends AbstractProcessor {
         writeLine(writer, 2,
           "putIndex(new SimpleSubscriberInfo(" + subscriberClass + ".class,",
           "true,", "new SubscriberMethodInfo[] {");
+        String invokerClass = "SubscriberInvoker" + invokerClasses.size();
+        invokerClasses.put(invokerClass, subscriberTypeElement);
         List<ExecutableElement> methods = methodsByClass.get(subscriberTypeElement);
-        writeCreateSubscriberMethods(writer, methods, "new SubscriberMethodInfo", myPackage);
+        writeCreateSubscriberMethods(writer, methods, "new SubscriberMethodInfo", myPackage, invokerClass);
         writer.write("        }));\n\n");
       } else {
         writer.write("        // Subscriber not visible to index: " + subscriberClass + "\n");
       }
     }
+    return invokerClasses;
+  }
+
+  /**
+   * Writes a class calling the subscriber methods of a subscriber class directly, selected by their
+   * position in the index entry, so that events are delivered without reflection.
+   */
+  private void writeInvokerClass(BufferedWriter writer, String invokerClass, TypeElement subscriberTypeElement,
+                                 String myPackage) throws IOException {
+    String subscriberClass = getClassString(subscriberTypeElement, myPackage);
+    writer.write("\n");
+    // Generic subscriber and event types are called through their erasure
+    writer.write("    @SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+    writer.write("    private static final class " + invokerClass + " implements SubscriberMethodInvoker {\n");
+    writer.write("        private final int methodIndex;\n\n");
+    writer.write("        " + invokerClass + "(int methodIndex) {\n");
+    writer.write("            this.methodIndex = methodIndex;\n");
+    writer.write("        }\n\n");
+    writer.write("        @Override\n");
+    writer.write("        public void invoke(Object subscriber, Object event) throws Throwable {\n");
+    writer.write("            switch (methodIndex) {\n");
+    List<ExecutableElement> methods = methodsByClass.get(subscriberTypeElement);
+    for (int i = 0; i < methods.size(); i++) {
+      ExecutableElement method = methods.get(i);
+      writer.write("                case " + i + ":\n");
+      writer.write("                    ((" + subscriberClass + ") subscriber)." + method.getSimpleName() +
+        "((" + getEventClassString(method, myPackage) + ") event);\n");
+      writer.write("                    break;\n");
+    }
+    writer.write("                default:\n");
+    writer.write("                    throw new IllegalArgumentException(\"Unknown subscriber method: \" + methodIndex);\n");
+    writer.write("            }\n");
+    writer.write("        }\n");
+    writer.write("    }\n");
   }
 
   private boolean isVisible(String myPackage, TypeElement typeElement) {
@@ -0,0 +1,190 @@
+package com.itsaky.androidide.annotations;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EventBusAnnotationProcessorTest {
+
+  private static final String INDEX = "test.TestIndex";
+
+  // Several methods per class, some sharing an event type, so that an invoker calling the method
+  // at the wrong index position either fails on the event cast or records the wrong name
+  private static final String FIRST_SUBSCRIBER =
+      """
+      package test;
+
+      import java.util.ArrayList;
+      import java.util.List;
+      import org.greenrobot.eventbus.Subscribe;
+
+      public class FirstSubscriber {
+        public final List<String> calls = new ArrayList<>();
+
+        @Subscribe
+        public void onString(String event) {
+          calls.add("onString(" + event + ") " + Callers.caller());
+        }
+
+        @Subscribe
+        public void onInteger(Integer event) {
+          calls.add("onInteger(" + event + ") " + Callers.caller());
+        }
+
+        @Subscribe(priority = 1)
+        public void onOtherString(String event) {
+          calls.add("onOtherString(" + event + ") " + Callers.caller());
+        }
+      }
+      """;
+
+  private static final String SECOND_SUBSCRIBER =
+      """
+      package test;
+
+      import java.util.ArrayList;
+      import java.util.List;
+      import org.greenrobot.eventbus.Subscribe;
+
+      public class SecondSubscriber {
+        public final List<String> calls = new ArrayList<>();
+
+        @Subscribe
+        public void onCharSequence(CharSequence event) {
+          calls.add("onCharSequence(" + event + ") " + Callers.caller());
+        }
+
+        @Subscribe
+        public <T extends Number> void onNumber(T event) {
+          calls.add("onNumber(" + event + ") " + Callers.caller());
+        }
+      }
+      """;
+
+  private static final String CALLERS =
+      """
+      package test;
+
+      public class Callers {
+        /** The class which called the subscriber method calling this method. */
+        static String caller() {
+          return Thread.currentThread().getStackTrace()[3].getClassName();
+        }
+      }
+      """;
+
+  @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void generatedInvokersCallTheMethodAtTheirIndexPosition() throws Exception {
+    try (URLClassLoader loader = compile()) {
+      SubscriberInfoIndex index =
+          (SubscriberInfoIndex) loader.loadClass(INDEX).getDeclaredConstructor().newInstance();
+      Class<?> firstClass = loader.loadClass("test.FirstSubscriber");
+      Class<?> secondClass = loader.loadClass("test.SecondSubscriber");
+      assertThat(index.getSubscriberInfo(firstClass)).isNotNull();
+      assertThat(index.getSubscriberInfo(secondClass)).isNotNull();
+
+      EventBus bus = EventBus.builder().addIndex(index).build();
+      Object first = firstClass.getDeclaredConstructor().newInstance();
+      Object second = secondClass.getDeclaredConstructor().newInstance();
+      bus.register(first);
+      bus.register(second);
+
+      bus.post("a");
+      bus.post(1);
+
+      String invoker = INDEX + "$SubscriberInvoker";
+      List<String> firstCalls = callsOf(first);
+      assertThat(firstCalls).hasSize(3);
+      assertThat(stripCallers(firstCalls))
+          .containsExactly("onOtherString(a)", "onString(a)", "onInteger(1)")
+          .inOrder();
+      for (String call : firstCalls) {
+        assertWithMessage(call).that(call).contains(invoker);
+      }
+
+      List<String> secondCalls = callsOf(second);
+      assertThat(secondCalls).hasSize(2);
+      assertThat(stripCallers(secondCalls))
+          .containsExactly("onCharSequence(a)", "onNumber(1)")
+          .inOrder();
+      for (String call : secondCalls) {
+        assertWithMessage(call).that(call).contains(invoker);
+      }
+    }
+  }
+
+  private URLClassLoader compile() throws IOException {
+    File sources = tmp.newFolder("sources");
+    File classes = tmp.newFolder("classes");
+    List<File> files = new ArrayList<>();
+    files.add(write(sources, "FirstSubscriber", FIRST_SUBSCRIBER));
+    files.add(write(sources, "SecondSubscriber", SECOND_SUBSCRIBER));
+    files.add(write(sources, "Callers", CALLERS));
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, null)) {
+      List<String> options =
+          List.of(
+              "-classpath",
+              System.getProperty("java.class.path"),
+              "-d",
+              classes.getPath(),
+              "-s",
+              sources.getPath(),
+              "-A" + EventBusAnnotationProcessor.OPTION_EVENT_BUS_INDEX + "=" + INDEX);
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null, fileManager, diagnostics, options, null,
+              fileManager.getJavaFileObjectsFromFiles(files));
+      task.setProcessors(List.of(new EventBusAnnotationProcessor()));
+      assertWithMessage(diagnostics.getDiagnostics().toString()).that(task.call()).isTrue();
+    }
+
+    return new URLClassLoader(
+        new URL[] {classes.toURI().toURL()}, getClass().getClassLoader());
+  }
+
+  private static File write(File dir, String className, String source) throws IOException {
+    File file = new File(dir, "test/" + className + ".java");
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.writeString(file.toPath(), source);
+    return file;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> callsOf(Object subscriber) throws ReflectiveOperationException {
+    return (List<String>) subscriber.getClass().getField("calls").get(subscriber);
+  }
+
+  private static List<String> stripCallers(List<String> calls) {
+    List<String> stripped = new ArrayList<>();
+    for (String call : calls) {
+      stripped.add(call.substring(0, call.indexOf(' ')));
+    }
+    return stripped;
+  }
+}
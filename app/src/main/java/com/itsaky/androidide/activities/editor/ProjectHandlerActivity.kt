@@ -19,6 +19,7 @@ package com.itsaky.androidide.activities.editor
 
 import android.content.Intent
 import android.os.Bundle
+import android.os.SystemClock
 import android.system.ErrnoException
 import android.system.OsConstants
 import android.view.Gravity
@@ -91,9 +92,12 @@ import com.itsaky.androidide.tooling.api.sync.ProjectSyncHelper
 import com.itsaky.androidide.utils.DURATION_INDEFINITE
 import com.itsaky.androidide.utils.DialogUtils.newMaterialDialogBuilder
 import com.itsaky.androidide.utils.DialogUtils.showRestartPrompt
-import com.itsaky.androidide.utils.RecursiveFileSearcher
+import com.itsaky.androidide.utils.FileMatches
+import com.itsaky.androidide.utils.ProjectSearchQuery
+import com.itsaky.androidide.utils.ProjectSearcher
 import com.itsaky.androidide.utils.dpToPx
 import com.itsaky.androidide.utils.flashError
+import com.itsaky.androidide.utils.flashInfo
 import com.itsaky.androidide.utils.flashSuccess
 import com.itsaky.androidide.utils.flashbarBuilder
 import com.itsaky.androidide.utils.onLongPress
@@ -110,6 +114,9 @@ import io.github.rosemoe.sora.util.IntPair
 import io.sentry.Sentry
 import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.catch
 import kotlinx.coroutines.future.await
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
@@ -122,8 +129,11 @@ import java.io.FileNotFoundException
 import java.net.SocketException
 import java.nio.file.NoSuchFileException
 import java.util.concurrent.CompletableFuture
+import java.util.TreeMap
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.regex.Pattern
+import java.util.regex.PatternSyntaxException
 import java.util.stream.Collectors
 
 /** @author Akash Yadav */
@@ -134,6 +144,7 @@ abstract class ProjectHandlerActivity : BaseEditorActivity() {
 
 	protected var mSearchingProgress: ProgressSheet? = null
 	protected var mFindInProjectDialog: AlertDialog? = null
+	private var projectSearchJob: Job? = null
 	protected var syncNotificationFlashbar: Flashbar? = null
 
 	private val buildViewModel by viewModels<BuildViewModel>()
@@ -195,6 +206,9 @@ abstract class ProjectHandlerActivity : BaseEditorActivity() {
 		const val STATE_KEY_SHOULD_INITIALIZE = "ide.editor.isInitializing"
 
 		private const val PLUGIN_SEARCH_TIMEOUT_SECONDS = 10L
+
+		/** The minimum interval between publishing the results of a search still in progress. */
+		private const val SEARCH_RESULTS_PUBLISH_INTERVAL_MS = 250L
 	}
 
 	abstract fun doCloseAll()
@@ -903,25 +917,30 @@ abstract class ProjectHandlerActivity : BaseEditorActivity() {
 			if (searchDirs.isEmpty()) {
 				flashError(string.msg_select_search_modules)
 			} else {
+				val query =
+					ProjectSearchQuery(
+						text = text,
+						extensions = extensionList,
+						isRegex = binding.useRegex.isChecked,
+						ignoreCase = binding.ignoreCase.isChecked,
+						wholeWords = binding.wholeWords.isChecked,
+					)
+				val tooLargeFiles = AtomicInteger()
+				val matches =
+					try {
+						ProjectSearcher.search(query, searchDirs) { tooLargeFiles.incrementAndGet() }
+					} catch (_: PatternSyntaxException) {
+						flashError(string.msg_invalid_search_regex)
+						return@setPositiveButton
+					}
+
 				dialog.dismiss()
 
 				getProgressSheet(string.msg_searching_project)?.apply {
 					show(supportFragmentManager, "search_in_project_progress")
 				}
 
-				RecursiveFileSearcher.searchRecursiveAsync(
-					text,
-					extensionList,
-					searchDirs,
-				) { results ->
-					val plugins = projectSearchPlugins()
-					// When the built-in search finds nothing but a plugin may still match, keep
-					// the progress indicator up until the plugin phase resolves.
-					handleSearchResults(results, dismissProgress = plugins.isEmpty() || results.isNotEmpty())
-					if (plugins.isNotEmpty()) {
-						requestPluginSearchSections(plugins, text, extensionList, searchDirs, results)
-					}
-				}
+				collectSearchResults(query, searchDirs, matches, tooLargeFiles)
 			}
 		}
 
@@ -955,6 +974,73 @@ abstract class ProjectHandlerActivity : BaseEditorActivity() {
 		return mFindInProjectDialog
 	}
 
+	/**
+	 * Shows the results of a project search while it runs. The first matching file opens the search
+	 * results, which are then refreshed at most every [SEARCH_RESULTS_PUBLISH_INTERVAL_MS]. Starting
+	 * another search cancels this one. Once it completes, the user is told about the
+	 * [tooLargeFiles] which were not searched.
+	 */
+	private fun collectSearchResults(
+		query: ProjectSearchQuery,
+		searchDirs: List<File>,
+		matches: Flow<FileMatches>,
+		tooLargeFiles: AtomicInteger,
+	) {
+		projectSearchJob?.cancel()
+		projectSearchJob =
+			lifecycleScope.launch {
+				// Files are searched in parallel; keep them in a stable order
+				val results = TreeMap<File, List<SearchResult>>()
+				var generation = -1
+				var lastPublished = 0L
+
+				matches
+					.catch { error -> logger.error("Failed to search the project", error) }
+					.collect { fileMatches ->
+						results[fileMatches.file] = fileMatches.results
+
+						val now = SystemClock.uptimeMillis()
+						if (generation == -1) {
+							handleSearchResults(TreeMap(results))
+							generation = editorViewModel.currentSearchGeneration
+							lastPublished = now
+						} else if (now - lastPublished >= SEARCH_RESULTS_PUBLISH_INTERVAL_MS) {
+							editorViewModel.onSearchResultSectionsReady(
+								generation,
+								listOf(SearchResultSection(title = null, results = TreeMap(results))),
+							)
+							lastPublished = now
+						}
+					}
+
+				if (tooLargeFiles.get() > 0) {
+					flashInfo(
+						getString(
+							string.msg_search_skipped_large_files,
+							tooLargeFiles.get(),
+							ProjectSearcher.MAX_FILE_SIZE / (1024 * 1024),
+						),
+					)
+				}
+
+				val plugins = projectSearchPlugins()
+				if (generation == -1) {
+					// When the built-in search finds nothing but a plugin may still match, keep
+					// the progress indicator up until the plugin phase resolves.
+					handleSearchResults(results, dismissProgress = plugins.isEmpty())
+				} else {
+					editorViewModel.onSearchResultSectionsReady(
+						generation,
+						listOf(SearchResultSection(title = null, results = results)),
+					)
+				}
+
+				if (plugins.isNotEmpty()) {
+					requestPluginSearchSections(plugins, query.text, query.extensions, searchDirs, results)
+				}
+			}
+	}
+
 	private fun projectSearchPlugins(): List<ProjectSearchExtension> =
 		IDEApplication
 			.getPluginManager()
@@ -8,6 +8,7 @@ import androidx.fragment.app.DialogFragment
 import androidx.lifecycle.lifecycleScope
 import androidx.recyclerview.widget.DividerItemDecoration
 import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.itsaky.androidide.R
 import com.itsaky.androidide.databinding.DialogGitCommitHistoryBinding
@@ -74,6 +75,15 @@ class GitCommitHistoryDialog : DialogFragment() {
             layoutManager = linearLayoutManager
             addItemDecoration(dividerItemDecoration)
             adapter = commitHistoryAdapter
+            addOnScrollListener(object : RecyclerView.OnScrollListener() {
+                override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+                    // Load the next page before the end of the list is reached
+                    val lastVisible = linearLayoutManager.findLastVisibleItemPosition()
+                    if (dy > 0 && lastVisible >= commitHistoryAdapter.itemCount - LOAD_MORE_THRESHOLD) {
+                        viewModel.loadMoreCommitHistory()
+                    }
+                }
+            })
             onLongPress {
                 TooltipManager.showIdeCategoryTooltip(
                     context = binding.root.context,
@@ -215,4 +225,8 @@ class GitCommitHistoryDialog : DialogFragment() {
         _binding = null
     }
 
+    private companion object {
+        /** The number of commits left below the visible ones when the next page is loaded. */
+        const val LOAD_MORE_THRESHOLD = 10
+    }
 }
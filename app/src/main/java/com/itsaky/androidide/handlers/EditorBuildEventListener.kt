@@ -147,6 +147,15 @@ class EditorBuildEventListener : GradleBuildService.EventListener {
 		}
 	}
 
+	override fun onProgressEvents(events: List<ProgressEvent>) {
+		checkActivity("onProgressEvents") ?: return
+
+		// only the operation started last would remain visible in the status
+		events
+			.lastOrNull { it is ProjectConfigurationStartEvent || it is TaskStartEvent }
+			?.let { activity.setStatus(it.descriptor.displayName) }
+	}
+
 	override fun onBuildFailed(tasks: List<String?>) {
 		val act = checkActivity("onBuildFailed") ?: return
 
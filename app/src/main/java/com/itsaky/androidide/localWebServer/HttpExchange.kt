@@ -0,0 +1,199 @@
+package com.itsaky.androidide.localWebServer
+
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+
+/**
+ * One HTTP/1.1 request/response exchange on a client connection. A kept-alive connection creates
+ * a new exchange for every request, all sharing the same buffered streams.
+ *
+ * Headers are read from the same buffered stream as the request body, so POST body bytes are not
+ * lost to a separate reader.
+ */
+internal class HttpExchange(
+    val input: BufferedInputStream,
+    val output: OutputStream,
+) {
+    var method: String = ""
+        private set
+    var path: String = ""
+        private set
+    var version: String = ""
+        private set
+
+    /** Request headers, keyed by lower-case name. */
+    val headers = mutableMapOf<String, String>()
+
+    /** Whether the connection stays open after this exchange. Decided by [readRequest]. */
+    var keepAlive: Boolean = false
+
+    /** Whether the status line of the response has been written. */
+    var responseStarted: Boolean = false
+        private set
+
+    companion object {
+        private const val MAX_LINE_LENGTH = 8 * 1024
+        private const val MAX_HEADER_COUNT = 100
+
+        private val CRLF = "\r\n".toByteArray(Charsets.ISO_8859_1)
+    }
+
+    /**
+     * Thrown when the request is malformed. The connection is closed after answering it.
+     */
+    class BadRequestException(message: String) : Exception(message)
+
+    /**
+     * Reads the request line and the headers.
+     *
+     * @return `false` if the client closed the connection before sending a request.
+     * @throws BadRequestException If the request line or the headers are malformed.
+     */
+    fun readRequest(): Boolean {
+        var requestLine = readLine() ?: return false
+
+        // Tolerate stray blank lines between pipelined requests.
+        while (requestLine.isEmpty()) {
+            requestLine = readLine() ?: return false
+        }
+
+        // Request line should look like "GET /a/b/c.html HTTP/1.1"
+        val parts = requestLine.split(" ")
+        if (parts.size != 3 || !parts[1].startsWith("/")) {
+            throw BadRequestException("Malformed request line")
+        }
+
+        method = parts[0]
+        path = parts[1].split("?")[0].substring(1) // Discard any HTTP query parameters.
+        version = parts[2]
+
+        while (true) {
+            val line = readLine() ?: throw BadRequestException("Unexpected end of headers")
+            if (line.isEmpty()) break
+            if (headers.size >= MAX_HEADER_COUNT) throw BadRequestException("Too many headers")
+
+            val colon = line.indexOf(':')
+            if (colon > 0) {
+                headers[line.substring(0, colon).trim().lowercase()] = line.substring(colon + 1).trim()
+            }
+        }
+
+        val connection = headers["connection"]?.lowercase()
+        keepAlive = when (version) {
+            "HTTP/1.1" -> connection?.contains("close") != true
+            "HTTP/1.0" -> connection?.contains("keep-alive") == true
+            else -> false
+        }
+
+        return true
+    }
+
+    /**
+     * Reads a single line (bytes until newline) from the buffered input. HTTP header lines are
+     * ASCII.
+     */
+    private fun readLine(): String? {
+        val line = ByteArrayOutputStream(128)
+        while (true) {
+            val b = input.read()
+            if (b == -1) return if (line.size() == 0) null else line.toString(Charsets.ISO_8859_1.name()).trimEnd('\r')
+            if (b == '\n'.code) break
+            if (line.size() >= MAX_LINE_LENGTH) throw BadRequestException("Header line too long")
+            line.write(b)
+        }
+        return line.toString(Charsets.ISO_8859_1.name()).trimEnd('\r')
+    }
+
+    /**
+     * Writes the status line and headers of the response, followed by the `Connection` header and
+     * the blank line terminating the header block.
+     */
+    fun sendHead(code: Int, reason: String, headers: List<Pair<String, Any>>) {
+        responseStarted = true
+
+        val head = StringBuilder(256)
+        head.append("HTTP/1.1 ").append(code).append(' ').append(reason).append("\r\n")
+        for ((name, value) in headers) {
+            head.append(name).append(": ").append(value).append("\r\n")
+        }
+        head.append("Connection: ").append(if (keepAlive) "keep-alive" else "close").append("\r\n")
+
+        output.write(head.toString().toByteArray(Charsets.ISO_8859_1))
+        output.write(CRLF)
+    }
+
+    /**
+     * Writes a complete response with the given body and flushes it to the client.
+     */
+    fun sendResponse(
+        code: Int,
+        reason: String,
+        contentType: String,
+        body: ByteArray,
+        headers: List<Pair<String, Any>> = emptyList(),
+    ) {
+        sendHead(code, reason, listOf("Content-Type" to contentType, "Content-Length" to body.size) + headers)
+        output.write(body)
+        output.flush()
+    }
+
+    /**
+     * Writes a response whose length is not known up front. HTTP/1.1 clients receive the body
+     * with chunked transfer encoding; older clients receive it unframed and the connection is
+     * closed afterwards to delimit it.
+     *
+     * @param write Writes the body to the given stream. The stream must not be closed.
+     */
+    fun sendStreamedResponse(
+        code: Int,
+        reason: String,
+        contentType: String,
+        headers: List<Pair<String, Any>> = emptyList(),
+        write: (OutputStream) -> Unit,
+    ) {
+        val chunked = version == "HTTP/1.1"
+        if (!chunked) keepAlive = false
+
+        val framing = if (chunked) listOf("Transfer-Encoding" to "chunked") else emptyList()
+        sendHead(code, reason, listOf("Content-Type" to contentType) + framing + headers)
+
+        if (chunked) {
+            val body = ChunkedOutputStream(output)
+            write(body)
+            body.finish()
+        } else {
+            write(output)
+        }
+        output.flush()
+    }
+
+    /**
+     * Writes every block of data as one chunk of a chunked response body.
+     */
+    private class ChunkedOutputStream(private val out: OutputStream) : OutputStream() {
+
+        override fun write(b: Int) {
+            write(byteArrayOf(b.toByte()), 0, 1)
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            if (len == 0) return // a zero-length chunk would end the body
+            out.write(Integer.toHexString(len).toByteArray(Charsets.ISO_8859_1))
+            out.write(CRLF)
+            out.write(b, off, len)
+            out.write(CRLF)
+        }
+
+        override fun flush() {
+            out.flush()
+        }
+
+        /** Writes the last chunk, ending the body. */
+        fun finish() {
+            out.write('0'.code)
+            out.write(CRLF)
+            out.write(CRLF)
+        }
+    }
+}
@@ -5,26 +5,36 @@ import android.database.sqlite.SQLiteDatabase
 import com.aayushatharva.brotli4j.decoder.BrotliInputStream
 import com.itsaky.androidide.utils.DatabaseVersionResolver
 import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.InputStream
-import java.io.PrintWriter
 import java.io.StringWriter
 import android.net.TrafficStats
 import java.net.InetSocketAddress
 import java.net.ServerSocket
 import java.net.Socket
+import java.net.SocketTimeoutException
 import java.net.URLDecoder
 import java.sql.Date
 import java.text.SimpleDateFormat
 import java.util.Locale
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
 import io.pebbletemplates.pebble.PebbleEngine
 import io.pebbletemplates.pebble.loader.StringLoader
-import java.util.concurrent.ConcurrentHashMap
 import io.pebbletemplates.pebble.template.PebbleTemplate
+import android.util.LruCache
+import java.io.SequenceInputStream
+import java.util.Enumeration
 import android.os.Environment.getExternalStorageDirectory
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
@@ -59,9 +69,21 @@ data class JavaExecutionResult(
     val timeoutLimit: Long
 )
 
+/**
+ * Content ready to be sent: decompressed or rendered from a template if necessary.
+ *
+ * @property compression The content encoding of [body], or "none".
+ */
+private class CachedContent(
+    val mimeType: String,
+    val compression: String,
+    val body: ByteArray
+)
+
 class WebServer(private val config: ServerConfig) {
     private lateinit var serverSocket       : ServerSocket
     private lateinit var database           : SQLiteDatabase
+    @Volatile
     private          var databaseTimestamp  : Long    = -1
     private          val log                          = LoggerFactory.getLogger(WebServer::class.java)
     private          val debugEnabled       : Boolean = File(config.debugEnablePath).exists()
@@ -71,17 +93,52 @@ class WebServer(private val config: ServerConfig) {
     private          val encodingHeader     : String  = "Accept-Encoding"
     private          val brotliCompression  : String  = "br"
     private          val pebbleEngine = PebbleEngine.Builder().loader(StringLoader()).build()
-    private          val templateCache = ConcurrentHashMap<Int, PebbleTemplate>()
+    private          val templateCache = LruCache<Int, PebbleTemplate>(64)
     private val gson: Gson = GsonBuilder()
         .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
         .create()
     private          val dbContextType = object : TypeToken<Map<String, Any>>() {}.type
+    @Volatile
     private          var bookshelfTemplateId : Int = -1;
     private          val HTTP_INTERNAL_SERVER_ERROR = 500
     private          val HTTP_NOT_FOUND = 404
 
     private val contentChunkSize = 1024 * 1024
 
+    // Android keeps compiled statements per connection, keyed by the SQL text, so these queries
+    // are compiled once and only rebound for every request.
+    private val contentQuery = """
+            SELECT C.content, CT.value, CT.compression, C.templateId
+            FROM   Content C, ContentTypes CT
+            WHERE  C.contentTypeID = CT.id
+              AND  C.path = ?
+        """
+    private val fragmentQuery = "SELECT content FROM Content WHERE path = ? AND languageId = 1"
+    private val fragmentLengthQuery = "SELECT length(content) FROM Content WHERE path = ? AND languageId = 1"
+
+    /**
+     * Decoded and rendered content, keyed by path and the encoding it is sent in. Cleared whenever
+     * the database is replaced, as its entries are only valid for the database they came from.
+     */
+    private val contentCache = object : LruCache<String, CachedContent>(16 * 1024 * 1024) {
+        override fun sizeOf(key: String, value: CachedContent): Int = value.body.size
+    }
+    private val maxCachedContentSize = 2 * 1024 * 1024
+
+    // How often to look for a newer debug database on the sdcard.
+    private val debugDatabaseCheckIntervalNs = TimeUnit.SECONDS.toNanos(2)
+    @Volatile
+    private var lastDebugDatabaseCheckNs = System.nanoTime()
+
+    private          val workerCount = 8
+    private          val keepAliveTimeoutMs = 5_000
+    private          val maxRequestsPerConnection = 100
+
+    // Requests hold the read lock while they use the database; switching to the debug database
+    // holds the write lock.
+    private          val databaseLock = ReentrantReadWriteLock()
+    private lateinit var workers: ExecutorService
+
 
     //function to obtain the last modified date of a documentation.db database
     // this is used to see if there is a newer version of the database on the sdcard
@@ -155,54 +212,39 @@ class WebServer(private val config: ServerConfig) {
             serverSocket.bind(InetSocketAddress(config.bindName, config.port))
             log.info("WebServer started successfully on '{}', port {}.", config.bindName, config.port)
 
+            // Each connection is served by a pooled worker so that a page and its CSS/JS/image
+            // subresources load in parallel instead of strictly one after the other.
+            workers = Executors.newFixedThreadPool(workerCount) { runnable ->
+                Thread({
+                    TrafficStats.setThreadStatsTag(0xC0DE)
+                    runnable.run()
+                }, "WebServerWorker").apply { isDaemon = true }
+            }
+
             while (true) {
-                var clientSocket: Socket? = null
+                val clientSocket: Socket
                 try {
-                    try {
-                        if (debugEnabled) log.debug("About to call accept() on the server socket, {}.", serverSocket)
-                        clientSocket = serverSocket.accept()
+                    if (debugEnabled) log.debug("About to call accept() on the server socket, {}.", serverSocket)
+                    clientSocket = serverSocket.accept()
 
-                        if (debugEnabled) log.debug("Returned from socket accept(), clientSocket is {}.", clientSocket)
+                    if (debugEnabled) log.debug("Returned from socket accept(), clientSocket is {}.", clientSocket)
 
-                    } catch (e: java.net.SocketException) {
-                        if (debugEnabled) log.debug("Caught java.net.SocketException '$e'.") // SLF4J placeholders produce wrong formatting here. --DS, 23-Feb-2026
+                } catch (e: java.net.SocketException) {
+                    if (debugEnabled) log.debug("Caught java.net.SocketException '$e'.") // SLF4J placeholders produce wrong formatting here. --DS, 23-Feb-2026
 
-                        if (e.message?.contains("Closed", ignoreCase = true) == true) {
-                            if (debugEnabled) log.debug("WebServer socket closed, shutting down.")
-                            break
-                        }
-                        log.error("Accept() failed: {}", e.message)
-                        continue
+                    if (serverSocket.isClosed || e.message?.contains("Closed", ignoreCase = true) == true) {
+                        if (debugEnabled) log.debug("WebServer socket closed, shutting down.")
+                        break
                     }
-                    try {
-                        clientSocket?.let { handleClient(it) }
-
-                    } catch (e: Exception) {
-                        if (debugEnabled) log.debug("Caught exception '$e'.")  // SLF4J placeholders produce wrong formatting here. --DS, 23-Feb-2026
-
-                        if (e is java.net.SocketException && e.message?.contains("Closed", ignoreCase = true) == true) {
-                            if (debugEnabled) log.debug("Client disconnected: {}", e.message)
-
-                        } else {
-                            log.error("Error handling client: {}", e.message)
-                            clientSocket?.let { socket ->
-                                try {
-                                    val output = socket.outputStream
-
-                                    sendError(PrintWriter(output, true), output, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 1")
-
-                                } catch (e2: Exception) {
-                                    log.error("Error sending error response: {}", e2.message)
-                                }
-                            }
-                        }
-                    }
-
-                } finally {
-                    clientSocket?.close()
+                    log.error("Accept() failed: {}", e.message)
+                    continue
+                }
 
-                    // CodeRabbit objects to the following line because clientSocket may print out as "null." This is intentional. --DS
-                    if (debugEnabled) log.debug("clientSocket was {}.", clientSocket)
+                try {
+                    workers.execute { serveConnection(clientSocket) }
+                } catch (e: RejectedExecutionException) {
+                    log.error("Cannot serve client: {}", e.message)
+                    clientSocket.close()
                 }
             }
 
@@ -213,121 +255,165 @@ class WebServer(private val config: ServerConfig) {
             if (::serverSocket.isInitialized) {
                 serverSocket.close()
             }
+            if (::workers.isInitialized) {
+                workers.shutdownNow()
+            }
             TrafficStats.clearThreadStatsTag()
         }
     }
 
     /**
-     * Reads a single line from the stream (bytes until newline). Same stream is used for headers
-     * and body so POST body bytes are not lost to a separate buffered reader. HTTP header lines are ASCII.
+     * Serves requests on a client connection until the client asks to close it, stays idle for
+     * [keepAliveTimeoutMs], or sends [maxRequestsPerConnection] requests.
      */
-    private fun readLineFromStream(input: InputStream): String? {
-        val baos = ByteArrayOutputStream()
-        while (true) {
-            val b = input.read()
-            if (b == -1) return if (baos.size() == 0) null else baos.toString(Charsets.ISO_8859_1).trimEnd('\r')
-            if (b == '\n'.code) break
-            baos.write(b)
-        }
-        val bytes = baos.toByteArray()
-        val len = if (bytes.isNotEmpty() && bytes[bytes.size - 1] == '\r'.code.toByte()) bytes.size - 1 else bytes.size
-        return String(bytes, 0, len, Charsets.ISO_8859_1)
-    }
+    private fun serveConnection(clientSocket: Socket) {
+        if (debugEnabled) log.debug("In serveConnection(), socket is {}.", clientSocket)
 
-    private fun handleClient(clientSocket: Socket) {
-        if (debugEnabled) log.debug("In handleClient(), socket is {}.", clientSocket)
+        try {
+            clientSocket.soTimeout = keepAliveTimeoutMs
+            clientSocket.tcpNoDelay = true
 
-        val input = clientSocket.getInputStream()
-        if (debugEnabled) log.debug("  input is {}.", input)
+            val input = BufferedInputStream(clientSocket.getInputStream(), 8 * 1024)
+            val output = BufferedOutputStream(clientSocket.getOutputStream(), 16 * 1024)
 
-        val output = clientSocket.getOutputStream()
-        if (debugEnabled) log.debug("  output is {}.", output)
+            var requestCount = 0
+            while (true) {
+                val exchange = HttpExchange(input, output)
+                try {
+                    if (!exchange.readRequest()) break
+                    requestCount++
+                    if (requestCount >= maxRequestsPerConnection) exchange.keepAlive = false
 
-        val writer = PrintWriter(output, true)
-        if (debugEnabled) log.debug("  writer is {}.", writer)
+                    refreshDatabase()
+                    databaseLock.read { handleClient(exchange) }
 
-        var brotliSupported = false //assume nothing
+                } catch (e: HttpExchange.BadRequestException) {
+                    if (debugEnabled) log.debug("Bad request: {}", e.message)
+                    exchange.keepAlive = false
+                    sendError(exchange, 400, "Bad Request")
 
-        // Read the request method line, it is always the first line of the request
-        var requestLine = readLineFromStream(input)
-        if (requestLine == null) {
-            if (debugEnabled) log.debug("requestLine is null. Returning from handleClient() early.")
-            return
-        }
-        if (debugEnabled) log.debug("Request is {}", requestLine)
+                } catch (e: SocketTimeoutException) {
+                    if (debugEnabled) log.debug("Closing idle connection {}.", clientSocket)
+                    break
 
-        // Parse the request
-        // Request line should look like "GET /a/b/c.html HTTP/1.1"
-        val parts = requestLine.split(" ")
-        if (parts.size != 3) {
-            return sendError(writer, output, 400, "Bad Request")
-        }
+                } catch (e: Exception) {
+                    if (debugEnabled) log.debug("Caught exception '$e'.")  // SLF4J placeholders produce wrong formatting here. --DS, 23-Feb-2026
+
+                    if (e is java.net.SocketException) {
+                        if (debugEnabled) log.debug("Client disconnected: {}", e.message)
+                        break
+                    }
 
-        //extract the request method (e.g. GET, POST, PUT)
-        val method = parts[0]
-        var path   = parts[1].split("?")[0] // Discard any HTTP query parameters.
-        path = path.substring(1)
-
-        // Read all headers until blank line (needed for Content-Length on POST and Accept-Encoding on GET)
-        val headers = mutableMapOf<String, String>()
-        while (true) {
-            requestLine = readLineFromStream(input) ?: break
-            if (requestLine.isEmpty()) break
-            if (debugEnabled) log.debug("Header: {}", requestLine)
-            val colon = requestLine.indexOf(':')
-            if (colon > 0) {
-                headers[requestLine.substring(0, colon).trim().lowercase()] = requestLine.substring(colon + 1).trim()
+                    log.error("Error handling client: {}", e.message)
+                    exchange.keepAlive = false
+                    try {
+                        sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 1")
+                    } catch (e2: Exception) {
+                        log.error("Error sending error response: {}", e2.message)
+                    }
+                }
+
+                output.flush()
+                if (!exchange.keepAlive) break
             }
-        }
-        brotliSupported = headers["accept-encoding"]?.contains(brotliCompression) == true
 
-        // Playground endpoint: POST only, handled before GET-only check
-        if (false && path == "playground/execute") {
-            return handlePlaygroundExecute(input, writer, output, method, headers)
-        }
+        } catch (e: Exception) {
+            if (debugEnabled) log.debug("Connection {} failed: {}", clientSocket, e.message)
 
-        // we only support teh GET method, return an error page for anything else
-        if (method != "GET") {
-            return sendError(writer, output, 501, "Not Implemented")
+        } finally {
+            clientSocket.close()
+
+            // CodeRabbit objects to the following line because clientSocket may print out as "null." This is intentional. --DS
+            if (debugEnabled) log.debug("clientSocket was {}.", clientSocket)
         }
+    }
+
+    /**
+     * Switches to the debug database on the sdcard if it is newer than the one in use. The sdcard
+     * is checked at most every couple of seconds rather than on every request.
+     * Waits for in-flight requests, which hold the read lock, before closing the old database.
+     */
+    private fun refreshDatabase() {
+        val now = System.nanoTime()
+        if (now - lastDebugDatabaseCheckNs < debugDatabaseCheckIntervalNs) return
+        lastDebugDatabaseCheckNs = now
 
-        //check to see if there is a newer version of the documentation.db database on the sdcard
-        // if there is use that for our responses
         val debugDatabaseTimestamp = getDatabaseTimestamp(config.debugDatabasePath, true)
-        if (debugDatabaseTimestamp > databaseTimestamp) {
+        if (debugDatabaseTimestamp <= databaseTimestamp) return
+
+        databaseLock.write {
+            if (debugDatabaseTimestamp <= databaseTimestamp) return
             bookshelfTemplateId = -1
+            templateCache.evictAll()
+            contentCache.evictAll()
             database.close()
             database = SQLiteDatabase.openDatabase(config.debugDatabasePath, null, SQLiteDatabase.OPEN_READONLY)
             databaseTimestamp = debugDatabaseTimestamp
         }
+    }
+
+    private fun handleClient(exchange: HttpExchange) {
+        val method = exchange.method
+        val path = exchange.path
+        val headers = exchange.headers
+        if (debugEnabled) log.debug("Request is {} {} {}, headers {}", method, path, exchange.version, headers)
+
+        val brotliSupported = headers["accept-encoding"]?.contains(brotliCompression) == true
+
+        // Playground endpoint: POST only, handled before GET-only check
+        if (false && path == "playground/execute") {
+            return handlePlaygroundExecute(exchange)
+        }
+
+        // we only support teh GET method, return an error page for anything else
+        if (method != "GET") {
+            // The request body, if any, is not read, so the connection cannot be reused.
+            exchange.keepAlive = false
+            return sendError(exchange, 501, "Not Implemented")
+        }
 
         // Handle the special "pr" endpoint with highest priority
         if (path.startsWith("pr/", false)) {
             if (debugEnabled) log.debug("Found a pr/ path, '{}'.", path)
 
             return when (path) {
-                "pr/bs" -> handleBsEndpoint(writer, output)
-                "pr/db" -> handleDbEndpoint(writer, output)
-                "pr/pr" -> handlePrEndpoint(writer, output)
-                "pr/ex" -> handleExEndpoint(writer, output)
-                else    -> sendError(writer, output, HTTP_NOT_FOUND, "Not Found", "Path requested: '$path'.")
+                "pr/bs" -> handleBsEndpoint(exchange)
+                "pr/db" -> handleDbEndpoint(exchange)
+                "pr/pr" -> handlePrEndpoint(exchange)
+                "pr/ex" -> handleExEndpoint(exchange)
+                else    -> sendError(exchange, HTTP_NOT_FOUND, "Not Found", "Path requested: '$path'.")
             }
         }
 
+        // Content is immutable for a given database, so the database timestamp and the encoding
+        // the client accepts identify the representation. Revalidation needs no database query.
+        val etag = "\"${databaseTimestamp.toString(16)}-${if (brotliSupported) "br" else "id"}\""
+        val cacheHeaders = listOf(
+            "ETag" to etag,
+            "Cache-Control" to "no-cache",
+            "Vary" to "Accept-Encoding",
+        )
+
+        if (matchesEtag(headers["if-none-match"], etag)) {
+            if (debugEnabled) log.debug("Not modified: '{}'.", path)
+            exchange.sendHead(304, "Not Modified", cacheHeaders)
+            return
+        }
+
+        val cacheKey = "$path|${if (brotliSupported) "br" else "id"}"
+        contentCache.get(cacheKey)?.let { cached ->
+            if (debugEnabled) log.debug("Content cache hit for '{}'.", cacheKey)
+            return sendContent(exchange, cached.mimeType, cached.compression, cached.body, etag, cacheHeaders)
+        }
+
         // Database fetch
-        val query = """
-            SELECT C.content, CT.value, CT.compression, C.templateId
-            FROM   Content C, ContentTypes CT
-            WHERE  C.contentTypeID = CT.id
-              AND  C.path = ?
-        """
-        val cursor = database.rawQuery(query, arrayOf(path))
+        val cursor = database.rawQuery(contentQuery, arrayOf(path))
 
         // Process database fetch
         try {
             if (cursor.count != 1) {
-                return if (cursor.count == 0) sendError(writer, output, HTTP_NOT_FOUND, "Not Found")
-                else sendError(writer, output, HTTP_INTERNAL_SERVER_ERROR, "Corrupt database - multiple records found when unique record expected, Path requested: '$path'.")
+                return if (cursor.count == 0) sendError(exchange, HTTP_NOT_FOUND, "Not Found")
+                else sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Corrupt database - multiple records found when unique record expected, Path requested: '$path'.")
             }
 
             cursor.moveToFirst()
@@ -336,24 +422,13 @@ class WebServer(private val config: ServerConfig) {
             var compression = cursor.getString(2)
             val templateId = cursor.getInt(3)
 
-            // Fragment handling for large content (> 1MB)
+            // Fragment handling for large content (> 1MB). Only template data has to be assembled
+            // in memory, everything else is streamed to the client fragment by fragment.
             if (dbContent.size == contentChunkSize) {
-                val query2 = "SELECT content FROM Content WHERE path = ? AND languageId = 1"
-                var fragmentNumber = 1
-                val combined = ByteArrayOutputStream().apply {write(dbContent)}
-                var dbContent2 = dbContent
-                while (dbContent2.size == contentChunkSize) {
-                    val path2 = "$path-$fragmentNumber"
-                    val cursor2 = database.rawQuery(query2, arrayOf(path2))
-                    try {
-                        if (cursor2.moveToFirst()) {
-                            dbContent2 = cursor2.getBlob(0)
-                            combined.write(dbContent2)
-                            fragmentNumber++
-                        } else break
-                    } finally { cursor2.close() }
+                if (templateId <= 0) {
+                    return streamFragments(exchange, path, dbContent, dbMimeType, compression, brotliSupported, etag, cacheHeaders)
                 }
-                dbContent = combined.toByteArray()
+                dbContent = readFragments(path, dbContent)
             }
 
             // If a document is stored in brotli form and the client doesn't support that encoding
@@ -372,23 +447,225 @@ class WebServer(private val config: ServerConfig) {
                 dbContent = instantiatePebbleTemplate(templateId, dbContent, path, dbMimeType, compression)
             }
 
-            writer.println("HTTP/1.1 200 OK")
-            writer.println("Content-Type: $dbMimeType")
-            writer.println("Content-Length: ${dbContent.size}")
-            if (compression != "none") writer.println("Content-Encoding: $compression")
-            writer.println("Connection: close")
-            writer.println()
-            writer.flush()
-            output.write(dbContent)
-            output.flush()
+            if (dbContent.size <= maxCachedContentSize) {
+                contentCache.put(cacheKey, CachedContent(dbMimeType, compression, dbContent))
+            }
+
+            sendContent(exchange, dbMimeType, compression, dbContent, etag, cacheHeaders)
         } catch (e: Exception) {
             log.error("Error processing request: {}", e.message)
-            sendError(writer, output, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error", e.message ?: "")
+            sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error", e.message ?: "")
         } finally {
             cursor.close()
         }
     }
 
+    /**
+     * Sends [content], or the part of it asked for by a `Range` header.
+     *
+     * @param compression The content encoding of [content], or "none".
+     */
+    private fun sendContent(
+        exchange: HttpExchange,
+        mimeType: String,
+        compression: String,
+        content: ByteArray,
+        etag: String,
+        cacheHeaders: List<Pair<String, Any>>,
+    ) {
+        val contentHeaders = mutableListOf<Pair<String, Any>>("Accept-Ranges" to "bytes")
+        if (compression != "none") contentHeaders += "Content-Encoding" to compression
+        contentHeaders += cacheHeaders
+
+        // Range requests apply to the encoded representation. If-Range falls back to the
+        // full content when the client's copy is stale.
+        val range = requestedRange(exchange, etag, content.size.toLong())
+        if (range == null) {
+            sendRangeNotSatisfiable(exchange, content.size.toLong(), cacheHeaders)
+            return
+        }
+
+        if (range != LongRange(0, content.size - 1L)) {
+            val start = range.first.toInt()
+            val length = (range.last - range.first + 1).toInt()
+            exchange.sendHead(206, "Partial Content", listOf(
+                "Content-Type" to mimeType,
+                "Content-Length" to length,
+                "Content-Range" to "bytes ${range.first}-${range.last}/${content.size}",
+            ) + contentHeaders)
+            exchange.output.write(content, start, length)
+            exchange.output.flush()
+            return
+        }
+
+        exchange.sendResponse(200, "OK", mimeType, content, contentHeaders)
+    }
+
+    /**
+     * The byte range asked for by the request: the whole content if there is no usable `Range`
+     * header, or `null` if the range is not satisfiable.
+     */
+    private fun requestedRange(exchange: HttpExchange, etag: String, size: Long): LongRange? {
+        val rangeHeader = exchange.headers["range"]
+        val ifRange = exchange.headers["if-range"]
+        return if (rangeHeader != null && (ifRange == null || ifRange == etag)) {
+            parseByteRange(rangeHeader, size)
+        } else {
+            LongRange(0, size - 1)
+        }
+    }
+
+    private fun sendRangeNotSatisfiable(exchange: HttpExchange, size: Long, cacheHeaders: List<Pair<String, Any>>) {
+        exchange.sendHead(416, "Range Not Satisfiable", listOf(
+            "Content-Range" to "bytes */$size",
+            "Content-Length" to 0,
+        ) + cacheHeaders)
+        exchange.output.flush()
+    }
+
+    /**
+     * Reads the fragments following [first], the content of [path] itself, and returns the
+     * reassembled content.
+     */
+    private fun readFragments(path: String, first: ByteArray): ByteArray {
+        val combined = ByteArrayOutputStream().apply { write(first) }
+        var fragmentNumber = 1
+        var fragment = first
+        while (fragment.size == contentChunkSize) {
+            fragment = readFragment(path, fragmentNumber++) ?: break
+            combined.write(fragment)
+        }
+        return combined.toByteArray()
+    }
+
+    private fun readFragment(path: String, fragmentNumber: Int): ByteArray? =
+        database.rawQuery(fragmentQuery, arrayOf("$path-$fragmentNumber")).use { cursor ->
+            if (cursor.moveToFirst()) cursor.getBlob(0) else null
+        }
+
+    /**
+     * Sends content stored in fragments of [contentChunkSize] bytes (`path`, `path-1`, `path-2`,
+     * ...) while holding at most one fragment in memory. Brotli content the client cannot accept
+     * is decompressed on the fly and sent with chunked encoding, as its length is unknown.
+     *
+     * @param first The content of [path] itself, which is the first fragment.
+     */
+    private fun streamFragments(
+        exchange: HttpExchange,
+        path: String,
+        first: ByteArray,
+        mimeType: String,
+        compression: String,
+        brotliSupported: Boolean,
+        etag: String,
+        cacheHeaders: List<Pair<String, Any>>,
+    ) {
+        // Sizes of all the fragments, which SQLite knows without reading them.
+        val sizes = mutableListOf(first.size.toLong())
+        while (sizes.last() == contentChunkSize.toLong()) {
+            sizes += database.rawQuery(fragmentLengthQuery, arrayOf("$path-${sizes.size}")).use { cursor ->
+                if (cursor.moveToFirst()) cursor.getLong(0) else null
+            } ?: break
+        }
+
+        val fragment = { index: Int ->
+            if (index == 0) first else readFragment(path, index) ?: throw IllegalStateException("Fragment $index of '$path' disappeared")
+        }
+
+        if (debugEnabled) log.debug("Streaming {} fragments of '{}'.", sizes.size, path)
+
+        if (compression == "brotli" && !brotliSupported) {
+            val fragments = object : Enumeration<InputStream> {
+                private var next = 0
+                override fun hasMoreElements() = next < sizes.size
+                override fun nextElement(): InputStream = ByteArrayInputStream(fragment(next++))
+            }
+            exchange.sendStreamedResponse(200, "OK", mimeType, cacheHeaders) { body ->
+                BrotliInputStream(SequenceInputStream(fragments)).use { it.copyTo(body) }
+            }
+            return
+        }
+
+        val total = sizes.sum()
+        val range = requestedRange(exchange, etag, total)
+        if (range == null) {
+            sendRangeNotSatisfiable(exchange, total, cacheHeaders)
+            return
+        }
+
+        val contentHeaders = mutableListOf<Pair<String, Any>>("Accept-Ranges" to "bytes")
+        if (compression == "brotli") contentHeaders += "Content-Encoding" to "br"
+        contentHeaders += cacheHeaders
+
+        if (range != LongRange(0, total - 1)) {
+            exchange.sendHead(206, "Partial Content", listOf(
+                "Content-Type" to mimeType,
+                "Content-Length" to range.last - range.first + 1,
+                "Content-Range" to "bytes ${range.first}-${range.last}/$total",
+            ) + contentHeaders)
+        } else {
+            exchange.sendHead(200, "OK", listOf(
+                "Content-Type" to mimeType,
+                "Content-Length" to total,
+            ) + contentHeaders)
+        }
+
+        // Write the part of each fragment which overlaps the range, skipping the others unread.
+        var fragmentStart = 0L
+        for ((index, size) in sizes.withIndex()) {
+            val fragmentEnd = fragmentStart + size - 1
+            if (fragmentEnd >= range.first && fragmentStart <= range.last) {
+                val from = maxOf(range.first, fragmentStart) - fragmentStart
+                val to = minOf(range.last, fragmentEnd) - fragmentStart
+                exchange.output.write(fragment(index), from.toInt(), (to - from + 1).toInt())
+            }
+            fragmentStart += size
+        }
+        exchange.output.flush()
+    }
+
+    /**
+     * Whether an `If-None-Match` header value matches [etag]. Weak comparison, as required for
+     * `If-None-Match`.
+     */
+    private fun matchesEtag(ifNoneMatch: String?, etag: String): Boolean {
+        if (ifNoneMatch == null) return false
+        return ifNoneMatch.split(',').any {
+            val tag = it.trim().removePrefix("W/")
+            tag == "*" || tag == etag
+        }
+    }
+
+    /**
+     * Parses a single `bytes=` range against a representation of [size] bytes. Multiple ranges are
+     * not supported and are answered with the full content.
+     *
+     * @return The inclusive byte range, or `null` if the range is not satisfiable.
+     */
+    private fun parseByteRange(header: String, size: Long): LongRange? {
+        val full = LongRange(0, size - 1)
+        if (!header.startsWith("bytes=") || header.contains(',')) return full
+
+        val spec = header.substring("bytes=".length).trim()
+        val dash = spec.indexOf('-')
+        if (dash < 0) return full
+
+        val first = spec.substring(0, dash).trim()
+        val last = spec.substring(dash + 1).trim()
+        return when {
+            first.isEmpty() -> {
+                // suffix range: the last N bytes
+                val suffix = last.toLongOrNull() ?: return full
+                if (suffix <= 0 || size == 0L) null else LongRange(maxOf(0, size - suffix), size - 1)
+            }
+            else -> {
+                val start = first.toLongOrNull() ?: return full
+                val end = if (last.isEmpty()) size - 1 else (last.toLongOrNull() ?: return full)
+                if (start >= size || end < start) null else LongRange(start, minOf(end, size - 1))
+            }
+        }
+    }
+
     /**
      * Renders a Pebble template identified by `templateId` using the provided JSON data and returns the rendered output as bytes.
      *
@@ -404,7 +681,7 @@ class WebServer(private val config: ServerConfig) {
         if (debugEnabled) log.debug("Processing template for templateId={}", templateId)
 
         // 1. Get or Compile Template from Cache
-        val compiledTemplate = templateCache.getOrPut(templateId) {
+        val compiledTemplate = templateCache.get(templateId) ?: run {
             if (debugEnabled) log.debug(
                 "Template cache miss for ID {}, path {}, MIME type {}, compression {}}",
                 templateId,
@@ -453,7 +730,7 @@ class WebServer(private val config: ServerConfig) {
                         pebbleEngine.getTemplate(templateBlob.toString(Charsets.UTF_8))
                     }
                 }
-            }
+            }.also { templateCache.put(templateId, it) }
         }
 
         // Load JSON data into a template context Map<> for instantiation
@@ -477,7 +754,7 @@ class WebServer(private val config: ServerConfig) {
      * and writes a normal 200 HTML response to the client. On database or rendering
      * errors a 500 error response is sent. All database cursors are closed before returning.
      */
-    private fun handleDbEndpoint(writer: PrintWriter, output: java.io.OutputStream) {
+    private fun handleDbEndpoint(exchange: HttpExchange) {
         if (debugEnabled) log.debug("Entering handleDbEndpoint().")
 
         var html : String
@@ -550,8 +827,7 @@ class WebServer(private val config: ServerConfig) {
         } catch (e: Exception) {
             log.error("Error creating output for /pr/db endpoint: {}", e.message)
             sendError(
-                writer,
-                output,
+                exchange,
                 HTTP_INTERNAL_SERVER_ERROR,
                 "Internal Server Error 4.1",
                 "Error creating output."
@@ -560,13 +836,13 @@ class WebServer(private val config: ServerConfig) {
         }
 
         try {
-            writeNormalToClient(writer, output, html)
+            writeNormalToClient(exchange, html)
 
             if (debugEnabled) log.debug("Leaving handleDbEndpoint().")
 
         } catch (e: Exception) {
             log.error("Error handling /pr/db endpoint: {}", e.message)
-            sendError(writer, output, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 4", "Error generating database table.", true)
+            sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 4", "Error generating database table.")
         }
     }
 
@@ -574,24 +850,21 @@ class WebServer(private val config: ServerConfig) {
      * Handles the /pr/bs endpoint by invoking the bookshelf generator and sending a 500 error if generation fails.
      *
      * Calls realHandleBsEndpoint to produce and write the response body; if an exception occurs, sends an HTTP 500
-     * error using the reported output-start state so no additional headers/body are written after output has begun.
+     * error unless the response has already started, in which case the connection is closed instead.
      *
-     * @param writer PrintWriter used for writing textual HTTP response headers.
-     * @param output Raw OutputStream used for writing the response body bytes.
+     * @param exchange The exchange to write the response to.
      */
-    private fun handleBsEndpoint(writer: PrintWriter, output: java.io.OutputStream) {
+    private fun handleBsEndpoint(exchange: HttpExchange) {
         if (debugEnabled) log.debug("Entering handleBsEndpoint().")
-        if(clearCacheEnabled) templateCache.clear()
-
-        var outputStarted = false
+        if(clearCacheEnabled) templateCache.evictAll()
 
         try {
 
-            outputStarted = realHandleBsEndpoint(writer, output)
+            realHandleBsEndpoint(exchange)
 
         } catch (e: Exception) {
             log.error("Error handling /pr/bs endpoint: {}", e.message)
-            sendError(writer, output, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 6", "Error generating bookshelf HTML.", outputStarted)
+            sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 6", "Error generating bookshelf HTML.")
         }
 
         if (debugEnabled) log.debug("Leaving handleBsEndpoint().")
@@ -603,67 +876,34 @@ class WebServer(private val config: ServerConfig) {
      * `.code_on_the_go_experiment` class depending on the server's
      * `experimentsEnabled` flag.
      */
-    private fun handleExEndpoint(writer: PrintWriter, output: java.io.OutputStream) {
+    private fun handleExEndpoint(exchange: HttpExchange) {
         val flag = if (experimentsEnabled)  "{}" else "{display: none;}"
 
         if (debugEnabled) log.debug("Experiment flag='{}'.", flag)
 
-        sendCSS(writer, output, ".code_on_the_go_experiment $flag")
+        sendCSS(exchange, ".code_on_the_go_experiment $flag")
     }
 
     /**
      * Handle the /pr/pr endpoint by opening the project database, delegating page generation to realHandlePrEndpoint, and sending an HTTP 500 error if generation fails.
      *
-     * @param writer PrintWriter used to write response headers.
-     * @param output OutputStream used to write response body bytes.
+     * @param exchange The exchange to write the response to.
      */
-    private fun handlePrEndpoint(writer: PrintWriter, output: java.io.OutputStream) {
+    private fun handlePrEndpoint(exchange: HttpExchange) {
         if (debugEnabled) log.debug("Entering handlePrEndpoint().")
 
         var projectDatabase : SQLiteDatabase? = null
-        var outputStarted = false
 
         try {
             projectDatabase = SQLiteDatabase.openDatabase(config.projectDatabasePath,
                                                           null,
                                                           SQLiteDatabase.OPEN_READONLY)
 
- /* I disagree with CodeRabbit's message, reproduced below. However, the
-    IDE's "Problems" window says that outputStarted is "always false."
-
-     While writeNormalToClient() can fail in the middle of execution,
-     making the error reporting code more complicated is likely to
-     introduce more bugs, rather than helping fix existing ones. --DS, 23-Feb-2026
-
-            482-494: ⚠️ Potential issue | 🟡 Minor
-
-outputStarted is set too late to protect error handling.
-
-If writeNormalToClient throws after headers are written, outputStarted remains false and the catch path will send a second response. Set/propagate this flag before the first write (e.g., via a mutable flag passed into realHandlePrEndpoint or by setting it just before writeNormalToClient and preserving it on exceptions).
-
-Also applies to: 502-557
-
-🤖 Prompt for AI Agents
-
-Verify each finding against the current code and only fix it if needed.
-
-In `@app/src/main/java/com/itsaky/androidide/localWebServer/WebServer.kt` around
-lines 482 - 494, The catch block can send a second response because
-outputStarted is only set after realHandlePrEndpoint returns; ensure the
-"response started" flag is set before any write occurs by changing
-realHandlePrEndpoint to accept and update a mutable flag (e.g., pass a
-BooleanWrapper/MutableBoolean or an AtomicBoolean named outputStarted into
-realHandlePrEndpoint) or by setting outputStarted immediately before the first
-call to writeNormalToClient inside realHandlePrEndpoint; then have
-realHandlePrEndpoint update that flag as soon as headers/body begin to be
-written so sendError(writer, ...) checks the accurate flag and avoids sending a
-second response.
-             */
-            outputStarted = realHandlePrEndpoint(writer, output, projectDatabase)
+            realHandlePrEndpoint(exchange, projectDatabase)
 
         } catch (e: Exception) {
             log.error("Error handling /pr/pr endpoint: {}", e.message)
-            sendError(writer, output, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 6", "Error generating database table.", outputStarted)
+            sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error 6", "Error generating database table.")
             
         } finally {
             projectDatabase?.close()
@@ -675,11 +915,10 @@ second response.
     /**
      * Builds the Bookshelf content, renders it with the `bookshelf` template, and sends the resulting response to the client.
      *
-     * @param writer PrintWriter for sending HTTP headers and control output.
-     * @param output OutputStream for writing the response body bytes.
+     * @param exchange The exchange to write the response to.
      * @return `true` if the templated response was written to the client, `false` if an error response was sent or no output was produced.
      */
-    private fun realHandleBsEndpoint(writer: PrintWriter, output: java.io.OutputStream) : Boolean {
+    private fun realHandleBsEndpoint(exchange: HttpExchange) : Boolean {
         if (debugEnabled) log.debug("Entering realHandleBsEndpoint().")
 
         // Database fetch
@@ -713,7 +952,7 @@ SELECT '{"result" : [' || group_concat(Item) || ']}' FROM (
 
         // Process database fetch
         try {
-            if(!isCursorOneRow(cursor, writer, output)) {
+            if(!isCursorOneRow(cursor, exchange)) {
                 return false
             }
 
@@ -729,7 +968,7 @@ SELECT '{"result" : [' || group_concat(Item) || ']}' FROM (
                 cursor.close()
                 cursor = database.rawQuery("SELECT id FROM Templates WHERE name = 'bookshelf'", arrayOf())
 
-                if (!isCursorOneRow(cursor, writer, output)) {
+                if (!isCursorOneRow(cursor, exchange)) {
                     return false
                 }
 
@@ -741,7 +980,7 @@ SELECT '{"result" : [' || group_concat(Item) || ']}' FROM (
 
         } catch (e: Exception) {
             log.error("Error processing request: {}", e.message)
-            sendError(writer, output, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error", e.message ?: "")
+            sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Internal Server Error", e.message ?: "")
             return false
         } finally {
             cursor.close()
@@ -751,7 +990,7 @@ SELECT '{"result" : [' || group_concat(Item) || ']}' FROM (
 
         if (debugEnabled) log.debug("Bookshelf result is '{}'.", String(result))
 
-        writeNormalToClient(writer, output, String(result))
+        writeNormalToClient(exchange, String(result))
 
         if (debugEnabled) log.debug("Leaving realHandleBsEndpoint().")
 
@@ -759,14 +998,14 @@ SELECT '{"result" : [' || group_concat(Item) || ']}' FROM (
     }
 
 
-    private fun isCursorOneRow(cursor: Cursor, writer: PrintWriter, output: java.io.OutputStream) : Boolean {
+    private fun isCursorOneRow(cursor: Cursor, exchange: HttpExchange) : Boolean {
         if (cursor.count == 1) {
             return true
         }
         if (cursor.count == 0)
-            sendError(writer, output, HTTP_NOT_FOUND, "Corrupt database, no rows found, expected one.")
+            sendError(exchange, HTTP_NOT_FOUND, "Corrupt database, no rows found, expected one.")
         else
-            sendError(writer, output, HTTP_INTERNAL_SERVER_ERROR, "Corrupt database - found ${cursor.count} rows when 1 was expected.")
+            sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Corrupt database - found ${cursor.count} rows when 1 was expected.")
         return false
     }
 
@@ -774,12 +1013,11 @@ SELECT '{"result" : [' || group_concat(Item) || ']}' FROM (
     /**
      * Builds an HTML table of recent projects from the provided project database and writes it to the client.
      *
-     * @param writer PrintWriter used for writing HTTP response headers.
-     * @param output OutputStream used for writing the HTTP response body.
+     * @param exchange The exchange to write the response to.
      * @param projectDatabase Read-only SQLiteDatabase containing the `recent_project_table`.
      * @return `true` if an HTML response was written to the client.
      */
-    private fun realHandlePrEndpoint(writer: PrintWriter, output: java.io.OutputStream, projectDatabase: SQLiteDatabase) : Boolean {
+    private fun realHandlePrEndpoint(exchange: HttpExchange, projectDatabase: SQLiteDatabase) : Boolean {
         if (debugEnabled) log.debug("Entering realHandlePrEndpoint().")
 
         val query = """
@@ -829,7 +1067,7 @@ ORDER BY last_modified DESC"""
 
         if (debugEnabled) log.debug("html is '{}'.", html) // May output a lot of stuff but better too much than too little. --DS, 23-Feb-2026
 
-        writeNormalToClient(writer, output, html)
+        writeNormalToClient(exchange, html)
 
         if (debugEnabled) log.debug("Leaving realHandlePrEndpoint().")
 
@@ -860,23 +1098,12 @@ th { background-color: #f2f2f2; }
     /**
      * Tail of writing table data back to client.
      */
-    private fun writeNormalToClient(writer: PrintWriter, output: java.io.OutputStream, html: String) {
+    private fun writeNormalToClient(exchange: HttpExchange, html: String) {
         if (debugEnabled) log.debug("Entering writeNormalToClient(), html='{}'.", html.take(200))
 
         val htmlBytes = html.toByteArray(Charsets.UTF_8)
 
-        /*
-        println() is intentional: the triple-quoted string ends with a single '\n' (after "Connection: close"),
-        and println() appends the second '\n' to form the required blank-line HTTP header terminator ("\n\n"). --DS, 22-Feb-2026
-        */
-        writer.println("""HTTP/1.1 200 OK
-Content-Type: text/html; charset=utf-8
-Content-Length: ${htmlBytes.size}
-Connection: close
-""")
-
-        output.write(htmlBytes)
-        output.flush()
+        exchange.sendResponse(200, "OK", "text/html; charset=utf-8", htmlBytes)
     }
 
     /**
@@ -894,80 +1121,67 @@ Connection: close
             .replace("'", "&#x27;")
     }
 
-    private fun sendError(writer: PrintWriter, output: java.io.OutputStream, code: Int, message: String, details: String = "", outputStarted: Boolean = false) {
-        if (debugEnabled) log.debug("Entering sendError(), code={}, message='{}', details='{}', outputStarted={}.", code, message, details, outputStarted)
+    /**
+     * Sends an error response. If the response has already started, nothing more can be sent, so the
+     * connection is closed after the exchange instead.
+     */
+    private fun sendError(exchange: HttpExchange, code: Int, message: String, details: String = "") {
+        if (debugEnabled) log.debug("Entering sendError(), code={}, message='{}', details='{}', responseStarted={}.", code, message, details, exchange.responseStarted)
 
         val messageString = "$code $message" + if (details.isEmpty()) "" else "\n$details"
         val bodyBytes = messageString.toByteArray(Charsets.UTF_8)
 
-        if (!outputStarted) {
-            writer.println(
-                """HTTP/1.1 $code $message
-Content-Type: text/plain; charset=utf-8
-Content-Length: ${bodyBytes.size}
-Connection: close
-"""
-            )
-            output.write(bodyBytes)
-            output.flush()
+        if (exchange.responseStarted) {
+            exchange.keepAlive = false
+        } else {
+            exchange.sendResponse(code, message, "text/plain; charset=utf-8", bodyBytes)
         }
         if (debugEnabled) log.debug("Leaving sendError().")
     }
 
-    private fun sendCSS(writer: PrintWriter, output: java.io.OutputStream, message: String) {
+    private fun sendCSS(exchange: HttpExchange, message: String) {
         if (debugEnabled) log.debug("Entering sendCSS(), message='{}'.", message)
 
         val bodyBytes = message.toByteArray(Charsets.UTF_8)
 
-        writer.println("""HTTP/1.1 200 OK
-Content-Type: text/css; charset=utf-8
-Content-Length: ${bodyBytes.size}
-Cache-Control: no-store
-Connection: close
-""")
-
-        output.write(bodyBytes)
-        output.flush()
+        exchange.sendResponse(200, "OK", "text/css; charset=utf-8", bodyBytes, listOf("Cache-Control" to "no-store"))
 
         if (debugEnabled) log.debug("Leaving sendCSS().")
     }
 
-    private fun handlePlaygroundExecute(
-        input: java.io.InputStream,
-        writer: PrintWriter,
-        output: java.io.OutputStream,
-        method: String,
-        headers: Map<String, String>
-    ) {
+    private fun handlePlaygroundExecute(exchange: HttpExchange) {
+        val input = exchange.input
+        val method = exchange.method
+        val headers = exchange.headers
         if (method != "POST") {
-            return sendError(writer, output, 405, "Method Not Allowed")
+            return sendError(exchange, 405, "Method Not Allowed")
         }
         val contentLengthStr = headers["content-length"] ?: run {
-            return sendError(writer, output, 400, "Bad Request", "Missing Content-Length")
+            return sendError(exchange, 400, "Bad Request", "Missing Content-Length")
         }
         val contentLength = contentLengthStr.toIntOrNull() ?: run {
-            return sendError(writer, output, 400, "Bad Request", "Invalid Content-Length")
+            return sendError(exchange, 400, "Bad Request", "Invalid Content-Length")
         }
         if (contentLength <= 0) {
-            return sendError(writer, output, 400, "Bad Request", "Content-Length must be positive")
+            return sendError(exchange, 400, "Bad Request", "Content-Length must be positive")
         }
         if (contentLength > 10_000) {
-            return sendError(writer, output, 413, "Payload Too Large")
+            return sendError(exchange, 413, "Payload Too Large")
         }
         val body = ByteArray(contentLength)
         var offset = 0
         while (offset < contentLength) {
             val read = input.read(body, offset, contentLength - offset)
             if (read <= 0) {
-                return sendError(writer, output, 400, "Bad Request", "Input stream interrupted prematurely")
+                return sendError(exchange, 400, "Bad Request", "Input stream interrupted prematurely")
             }
             offset += read
         }
         val data = parseFormDataField(body, "data") ?: run {
-            return sendError(writer, output, 400, "Bad Request", "Missing or empty form field 'data'")
+            return sendError(exchange, 400, "Bad Request", "Missing or empty form field 'data'")
         }
         if (data.size > 10_000) {
-            return sendError(writer, output, 413, "Payload Too Large")
+            return sendError(exchange, 413, "Payload Too Large")
         }
         val workDir =
             File(config.fileDirPath, "playground_${System.nanoTime()}_${java.util.UUID.randomUUID()}")
@@ -978,13 +1192,7 @@ Connection: close
             val sourceString = data.toString(Charsets.UTF_8)
             val responseBody = sourceString + result
             val responseBytes = responseBody.toByteArray(Charsets.UTF_8)
-            writer.println("HTTP/1.1 200 OK")
-            writer.println("Content-Type: text/plain; charset=utf-8")
-            writer.println("Content-Length: ${responseBytes.size}")
-            writer.println()
-            writer.flush()
-            output.write(responseBytes)
-            output.flush()
+            exchange.sendResponse(200, "OK", "text/plain; charset=utf-8", responseBytes)
         } finally {
             workDir.deleteRecursively()
         }
@@ -0,0 +1,92 @@
+package com.itsaky.androidide.services.builder
+
+/**
+ * Telemetry recorded for a Gradle build, used to tune the next build of the same project.
+ *
+ * @property timestamp The time at which the build started.
+ * @property strategyName The name of the strategy the build was tuned with.
+ * @property gradleXmxMb The maximum heap size of the Gradle daemon.
+ * @property maxWorkers The maximum number of Gradle workers.
+ * @property parallel Whether parallel execution was enabled.
+ * @property caching Whether the build cache was enabled.
+ * @property wallTimeMs The duration of the build.
+ * @property peakDaemonRssMb The highest resident memory of the Gradle daemon and its child
+ *                           processes during the build, or `null` if it could not be measured.
+ * @property outcome How the build ended.
+ * @property thermalAtStart The thermal state of the device when the build started.
+ * @property thermalAtEnd The thermal state of the device when the build ended.
+ */
+data class BuildTelemetry(
+	val timestamp: Long,
+	val strategyName: String,
+	val gradleXmxMb: Int,
+	val maxWorkers: Int,
+	val parallel: Boolean,
+	val caching: Boolean,
+	val wallTimeMs: Long,
+	val peakDaemonRssMb: Long?,
+	val outcome: BuildOutcome,
+	val thermalAtStart: ThermalState,
+	val thermalAtEnd: ThermalState,
+) {
+	/**
+	 * Whether the build ran with the Gradle daemon settings of the given configuration.
+	 */
+	fun usedSettingsOf(config: GradleTuningConfig): Boolean =
+		strategyName == config.strategyName &&
+			gradleXmxMb == config.gradle.jvm.xmxMb &&
+			maxWorkers == config.gradle.maxWorkers &&
+			parallel == config.gradle.parallel &&
+			caching == config.gradle.caching
+}
+
+/**
+ * How a Gradle build ended.
+ */
+enum class BuildOutcome {
+	/**
+	 * The build was successful.
+	 */
+	Success,
+
+	/**
+	 * The build failed for a reason unrelated to its resources, e.g. a compilation error.
+	 */
+	Failure,
+
+	/**
+	 * The build failed because a JVM ran out of memory.
+	 */
+	OutOfMemory,
+
+	/**
+	 * The build failed because the Gradle daemon died, most likely killed by the system to
+	 * reclaim memory.
+	 */
+	DaemonDied,
+	;
+
+	companion object {
+		private val OUT_OF_MEMORY_MARKERS =
+			listOf(
+				"java.lang.OutOfMemoryError",
+				"GC overhead limit exceeded",
+			)
+
+		private val DAEMON_DIED_MARKERS =
+			listOf(
+				"Gradle build daemon disappeared unexpectedly",
+				"daemon has terminated unexpectedly",
+			)
+
+		/**
+		 * Get the outcome reported by a line of the build output, if any.
+		 */
+		fun fromOutput(line: String): BuildOutcome? =
+			when {
+				OUT_OF_MEMORY_MARKERS.any { line.contains(it) } -> OutOfMemory
+				DAEMON_DIED_MARKERS.any { line.contains(it, ignoreCase = true) } -> DaemonDied
+				else -> null
+			}
+	}
+}
@@ -0,0 +1,82 @@
+package com.itsaky.androidide.services.builder
+
+import androidx.annotation.WorkerThread
+import com.google.gson.Gson
+import com.google.gson.reflect.TypeToken
+import com.itsaky.androidide.utils.Environment
+import org.slf4j.LoggerFactory
+import java.io.File
+
+/**
+ * The telemetry of the most recent builds of each project, stored in the project cache
+ * directory.
+ */
+object BuildTelemetryHistory {
+	private val logger = LoggerFactory.getLogger(BuildTelemetryHistory::class.java)
+
+	private const val HISTORY_FILE_NAME = "build/telemetry.json"
+
+	/**
+	 * The number of builds kept per project.
+	 */
+	const val MAX_ENTRIES = 20
+
+	private val historyType = object : TypeToken<List<BuildTelemetry>>() {}.type
+	private val gson = Gson()
+	private val lock = Any()
+
+	private fun getHistoryFile(projectDir: File): File = Environment.getProjectCacheDir(projectDir).resolve(HISTORY_FILE_NAME)
+
+	/**
+	 * Get the telemetry of the recent builds of the given project, oldest first.
+	 *
+	 * @param projectDir The project directory.
+	 */
+	@WorkerThread
+	fun read(projectDir: File): List<BuildTelemetry> =
+		synchronized(lock) {
+			readLocked(getHistoryFile(projectDir))
+		}
+
+	/**
+	 * Record the telemetry of a build of the given project, dropping the oldest entries beyond
+	 * [MAX_ENTRIES].
+	 *
+	 * @param projectDir The project directory.
+	 * @param telemetry The telemetry of the build.
+	 */
+	@WorkerThread
+	fun record(
+		projectDir: File,
+		telemetry: BuildTelemetry,
+	) = synchronized(lock) {
+		val file = getHistoryFile(projectDir)
+		val history = (readLocked(file) + telemetry).takeLast(MAX_ENTRIES)
+
+		runCatching {
+			file.parentFile?.mkdirs()
+			file.writeText(gson.toJson(history, historyType))
+		}.onFailure { err ->
+			logger.warn("Unable to write build telemetry to {}", file, err)
+		}
+	}
+
+	private fun readLocked(file: File): List<BuildTelemetry> {
+		if (!file.isFile) {
+			return emptyList()
+		}
+
+		return runCatching {
+			gson
+				.fromJson<List<BuildTelemetry>?>(file.readText(), historyType)
+				.orEmpty()
+				// Gson leaves fields missing from the file null, so such entries are left out
+				.filter {
+					@Suppress("SENSELESS_COMPARISON")
+					it.strategyName != null && it.outcome != null && it.thermalAtStart != null && it.thermalAtEnd != null
+				}
+		}.onFailure { err ->
+			logger.warn("Unable to read build telemetry from {}", file, err)
+		}.getOrDefault(emptyList())
+	}
+}
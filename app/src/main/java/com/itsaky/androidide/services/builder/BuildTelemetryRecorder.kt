@@ -0,0 +1,112 @@
+package com.itsaky.androidide.services.builder
+
+import kotlinx.coroutines.CoroutineName
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import java.io.File
+
+/**
+ * Records the [BuildTelemetry] of a running build.
+ *
+ * The memory of the Gradle daemon is sampled periodically from the processes started by the
+ * tooling API server, and the build output is checked for memory related failures.
+ *
+ * @property projectDir The directory of the project being built.
+ * @param config The tuning configuration of the build.
+ * @param thermalAtStart The thermal state of the device when the build started.
+ * @param toolingServerPid The ID of the tooling API server process, or `null` if unknown.
+ */
+class BuildTelemetryRecorder(
+	val projectDir: File,
+	private val config: GradleTuningConfig,
+	private val thermalAtStart: ThermalState,
+	toolingServerPid: Long?,
+	scope: CoroutineScope,
+) {
+	companion object {
+		const val MEMORY_SAMPLE_INTERVAL_MS = 1000L
+	}
+
+	private val startTime = System.currentTimeMillis()
+
+	@Volatile
+	private var peakRssMb: Long? = null
+
+	@Volatile
+	private var failureOutcome: BuildOutcome? = null
+
+	private val sampler =
+		toolingServerPid?.let { pid ->
+			scope.launch(Dispatchers.IO + CoroutineName("BuildMemorySampler")) {
+				while (isActive) {
+					sampleMemory(pid)
+					delay(MEMORY_SAMPLE_INTERVAL_MS)
+				}
+			}
+		}
+
+	private fun sampleMemory(toolingServerPid: Long) {
+		val rssMb =
+			ProcessMemoryInfo
+				.getDescendants(toolingServerPid)
+				.mapNotNull(ProcessMemoryInfo::getRssMb)
+				.takeIf { it.isNotEmpty() }
+				?.sum() ?: return
+
+		val peak = peakRssMb
+		if (peak == null || rssMb > peak) {
+			peakRssMb = rssMb
+		}
+	}
+
+	/**
+	 * Check a line of the build output for failures.
+	 */
+	fun onOutput(line: String) {
+		val outcome = BuildOutcome.fromOutput(line) ?: return
+
+		// running out of memory is reported before the daemon dies of it
+		if (failureOutcome == null) {
+			failureOutcome = outcome
+		}
+	}
+
+	/**
+	 * Stop recording without a result, e.g. when the build never completed.
+	 */
+	fun cancel() {
+		sampler?.cancel()
+	}
+
+	/**
+	 * Stop recording and get the telemetry of the build.
+	 *
+	 * @param isSuccess Whether the build was successful.
+	 * @param durationMs The duration of the build as reported by the tooling API server.
+	 * @param thermalAtEnd The thermal state of the device when the build ended.
+	 */
+	fun finish(
+		isSuccess: Boolean,
+		durationMs: Long,
+		thermalAtEnd: ThermalState,
+	): BuildTelemetry {
+		sampler?.cancel()
+
+		return BuildTelemetry(
+			timestamp = startTime,
+			strategyName = config.strategyName,
+			gradleXmxMb = config.gradle.jvm.xmxMb,
+			maxWorkers = config.gradle.maxWorkers,
+			parallel = config.gradle.parallel,
+			caching = config.gradle.caching,
+			wallTimeMs = durationMs,
+			peakDaemonRssMb = peakRssMb,
+			outcome = if (isSuccess) BuildOutcome.Success else failureOutcome ?: BuildOutcome.Failure,
+			thermalAtStart = thermalAtStart,
+			thermalAtEnd = thermalAtEnd,
+		)
+	}
+}
@@ -57,6 +57,7 @@ import com.itsaky.androidide.tooling.api.messages.ClientGradleBuildConfig
 import com.itsaky.androidide.tooling.api.messages.GradleBuildParams
 import com.itsaky.androidide.tooling.api.messages.InitializeProjectParams
 import com.itsaky.androidide.tooling.api.messages.LogMessageParams
+import com.itsaky.androidide.tooling.api.messages.ProgressEventBatch
 import com.itsaky.androidide.tooling.api.messages.TaskExecutionMessage
 import com.itsaky.androidide.tooling.api.messages.result.BuildCancellationRequestResult
 import com.itsaky.androidide.tooling.api.messages.result.BuildInfo
@@ -131,6 +132,9 @@ class GradleBuildService :
 	@Volatile
 	private var tuningConfig: GradleTuningConfig? = null
 
+	@Volatile
+	private var telemetryRecorder: BuildTelemetryRecorder? = null
+
 	private val buildServiceScope =
 		CoroutineScope(
 			Dispatchers.Default + CoroutineName("GradleBuildService"),
@@ -349,6 +353,7 @@ class GradleBuildService :
 	}
 
 	override fun logOutput(line: String) {
+		telemetryRecorder?.onOutput(line)
 		eventListener?.onOutput(line)
 	}
 
@@ -357,12 +362,17 @@ class GradleBuildService :
 			updateNotification(getString(R.string.build_status_in_progress), true)
 
 			val projectPath = ProjectManagerImpl.getInstance().projectDirPath ?: "unknown"
+			val projectDir = ProjectManagerImpl.getInstance().projectDirPath.takeIf { it.isNotEmpty() }?.let(::File)
 			val buildType = getBuildType(buildInfo.tasks)
 			val isDebugBuild = buildType == "debug"
 
 			val currentTuningConfig = tuningConfig
 			var newTuningConfig: GradleTuningConfig? = null
 
+			// a build which never completed leaves its recorder behind
+			telemetryRecorder?.cancel()
+			telemetryRecorder = null
+
 			@Suppress("SimplifyBooleanWithConstants")
 			val extraArgs =
 				getGradleExtraArgs(enableJdwp = JdwpOptions.JDWP_ENABLED && isDebugBuild)
@@ -370,18 +380,32 @@ class GradleBuildService :
 			var buildParams =
 				if (FeatureFlags.isExperimentsEnabled) {
 					runCatching {
-						newTuningConfig =
+						val device = DeviceInfo.buildDeviceProfile(applicationContext)
+						val config =
 							GradleBuildTuner.autoTune(
-								device = DeviceInfo.buildDeviceProfile(applicationContext),
+								device = device,
 								build = BuildProfile(isDebugBuild),
 								previousConfig = currentTuningConfig,
 								analyticsManager = analyticsManager,
 								buildId = buildInfo.buildId,
+								history = projectDir?.let(BuildTelemetryHistory::read).orEmpty(),
 							)
 
-						tuningConfig = newTuningConfig
+						newTuningConfig = config
+						tuningConfig = config
+						if (projectDir != null) {
+							telemetryRecorder =
+								BuildTelemetryRecorder(
+									projectDir = projectDir,
+									config = config,
+									thermalAtStart = device.thermal,
+									toolingServerPid = toolingServerRunner?.pid?.toLong(),
+									scope = buildServiceScope,
+								)
+						}
+
 						GradleBuildTuner
-							.toGradleBuildParams(tuningConfig = newTuningConfig)
+							.toGradleBuildParams(tuningConfig = config)
 							.run {
 								copy(gradleArgs = gradleArgs + extraArgs)
 							}
@@ -438,6 +462,8 @@ class GradleBuildService :
 		result: BuildResult,
 		isSuccess: Boolean,
 	) {
+		recordBuildTelemetry(result, isSuccess)
+
 		val buildType = getBuildType(result.tasks)
 		analyticsManager.trackBuildCompleted(
 			metric =
@@ -465,10 +491,32 @@ class GradleBuildService :
 			)
 	}
 
+	private fun recordBuildTelemetry(
+		result: BuildResult,
+		isSuccess: Boolean,
+	) {
+		val recorder = telemetryRecorder ?: return
+		telemetryRecorder = null
+
+		buildServiceScope.launch(Dispatchers.IO) {
+			val telemetry =
+				recorder.finish(
+					isSuccess = isSuccess,
+					durationMs = result.durationMs,
+					thermalAtEnd = ThermalInfo.getThermalState(applicationContext),
+				)
+			BuildTelemetryHistory.record(recorder.projectDir, telemetry)
+		}
+	}
+
 	override fun onProgressEvent(event: ProgressEvent) {
 		eventListener?.onProgressEvent(event)
 	}
 
+	override fun onProgressEventBatch(batch: ProgressEventBatch) {
+		eventListener?.onProgressEvents(batch.events)
+	}
+
 	private fun getGradleExtraArgs(
 		enableJdwp: Boolean = JdwpOptions.JDWP_ENABLED,
 		enableLogSender: Boolean = DevOpsPreferences.logsenderEnabled,
@@ -754,6 +802,10 @@ class GradleBuildService :
 					runOnUiThread { listener.onProgressEvent(event) }
 				}
 
+				override fun onProgressEvents(events: List<ProgressEvent>) {
+					runOnUiThread { listener.onProgressEvents(events) }
+				}
+
 				override fun onBuildFailed(tasks: List<String?>) {
 					runOnUiThread { listener.onBuildFailed(tasks) }
 				}
@@ -820,6 +872,16 @@ class GradleBuildService :
 		 */
 		fun onProgressEvent(event: ProgressEvent)
 
+		/**
+		 * Called when a batch of progress events is received from the Tooling API server.
+		 * Calls [onProgressEvent] for each event by default.
+		 *
+		 * @param events The events, in the order in which they occurred.
+		 */
+		fun onProgressEvents(events: List<ProgressEvent>) {
+			events.forEach(::onProgressEvent)
+		}
+
 		/**
 		 * Called when a build fails.
 		 *
@@ -9,6 +9,8 @@ import com.itsaky.androidide.services.builder.GradleBuildTuner.LOW_MEM_THRESHOLD
 import com.itsaky.androidide.tooling.api.messages.BuildId
 import com.itsaky.androidide.tooling.api.messages.GradleBuildParams
 import org.slf4j.LoggerFactory
+import kotlin.math.max
+import kotlin.math.min
 
 /** @author Akash Yadav */
 object GradleBuildTuner {
@@ -18,6 +20,17 @@ object GradleBuildTuner {
 	const val HIGH_PERF_MIN_MEM_MB = 6 * 1024 // 6GB
 	const val HIGH_PERF_MIN_CORE = 4
 
+	const val ADAPTIVE_MIN_XMX_MB = 512
+	const val ADAPTIVE_MAX_XMX_TO_MEM_FACTOR = 0.5
+	const val ADAPTIVE_XMX_GROWTH_FACTOR = 1.25
+	const val ADAPTIVE_XMX_SHRINK_FACTOR = 0.75
+	const val ADAPTIVE_XMX_ALIGNMENT_MB = 64
+	const val ADAPTIVE_RSS_HIGH_WATERMARK = 0.9
+	const val ADAPTIVE_RSS_LOW_WATERMARK = 0.5
+	const val ADAPTIVE_RECENT_BUILDS = 5
+	const val ADAPTIVE_MIN_BUILDS_TO_SHRINK = 3
+	const val ADAPTIVE_MIN_STORAGE_FOR_CACHE_MB = 1024
+
 	enum class SelectionReason(
 		val label: String,
 	) {
@@ -56,6 +69,63 @@ object GradleBuildTuner {
 		BalancedFallback("balanced_fallback"),
 	}
 
+	enum class AdaptationReason(
+		val label: String,
+	) {
+		/** There is no telemetry of a previous build of the project. */
+		NoHistory("no_history"),
+
+		/**
+		 * The previous build was tuned with another strategy, so its telemetry
+		 * does not apply.
+		 */
+		StrategyChanged("strategy_changed"),
+
+		/**
+		 * The previous build ran with adapted settings and failed for a reason
+		 * other than memory, so the unadapted configuration is used.
+		 */
+		FallbackAfterFailure("fallback_after_failure"),
+
+		/** The previous build ran out of memory. */
+		MoreHeapAfterOom("more_heap_after_oom"),
+
+		/** The Gradle daemon died during the previous build. */
+		LessMemoryAfterDaemonDeath("less_memory_after_daemon_death"),
+
+		/** The device became thermal throttled during the previous build. */
+		ThermalBackoff("thermal_backoff"),
+
+		/**
+		 * Workers removed by an earlier [ThermalBackoff] are added back as the
+		 * previous build ended without throttling.
+		 */
+		RestoreWorkers("restore_workers"),
+
+		/**
+		 * The memory used by recent builds came close to the configured
+		 * limits.
+		 */
+		GrowHeap("grow_heap"),
+
+		/** Recent builds used much less memory than configured. */
+		ShrinkHeap("shrink_heap"),
+
+		/** There is too little free storage for the build cache. */
+		LowStorage("low_storage"),
+	}
+
+	/**
+	 * A tuning configuration adapted to the telemetry of previous builds.
+	 *
+	 * @property config The adapted configuration.
+	 * @property reasons Why the configuration was, or was not, adapted.
+	 */
+	data class Adaptation(
+		val config: GradleTuningConfig,
+		val reasons: List<AdaptationReason>,
+	)
+
 	/**
 	 * Automatically tune the Gradle build for the given device and build
 	 * profile.
@@ -64,6 +134,7 @@ object GradleBuildTuner {
 	 * @param build The build profile to tune for.
 	 * @param previousConfig The previous tuning configuration.
 	 * @param thermalSafe Whether to use the thermal safe strategy.
+	 * @param history The telemetry of the previous builds of the project, oldest first.
 	 */
 	fun autoTune(
 		device: DeviceProfile,
@@ -72,6 +143,7 @@ object GradleBuildTuner {
 		thermalSafe: Boolean = false,
 		analyticsManager: IAnalyticsManager? = null,
 		buildId: BuildId? = null,
+		history: List<BuildTelemetry> = emptyList(),
 	): GradleTuningConfig {
 		val strategy =
 			pickStrategy(
@@ -81,7 +153,7 @@ object GradleBuildTuner {
 				analyticsManager,
 				buildId,
 			)
-		return strategy.tune(device, build)
+		return adapt(strategy.tune(device, build), device, history).config
 	}
 
 	@VisibleForTesting
@@ -147,6 +219,188 @@ object GradleBuildTuner {
 		return strategy
 	}
 
+	/**
+	 * Adapt the configuration picked by a strategy to the telemetry of the
+	 * previous builds of the project.
+	 *
+	 * The Gradle daemon settings of the previous build are kept when it was
+	 * successful, and adjusted one step at a time: fewer workers when the
+	 * device became throttled, more heap when the builds came close to their
+	 * memory limits, and less heap when they used far less. Workers removed
+	 * because of throttling are added back one at a time once it is over.
+	 * After a build which ran out of memory, or whose daemon died, the
+	 * workers are reduced for good and the heap is grown or shrunk
+	 * respectively. Parallel execution is kept unless a single worker
+	 * is left. After any other failure
+	 * of a build with adapted settings, [base] is used as-is, while a failure
+	 * with the settings of [base] is handled like a successful build, except
+	 * that its memory usage is ignored. Adjustments never exceed the workers
+	 * of [base] and the heap limits of the device.
+	 *
+	 * Changing the JVM arguments starts a new Gradle daemon, so the heap is
+	 * only changed past the [ADAPTIVE_RSS_HIGH_WATERMARK] and
+	 * [ADAPTIVE_RSS_LOW_WATERMARK] thresholds.
+	 *
+	 * @param base The configuration picked by the strategy.
+	 * @param device The device profile to tune for.
+	 * @param history The telemetry of the previous builds of the project, oldest first.
+	 */
+	fun adapt(
+		base: GradleTuningConfig,
+		device: DeviceProfile,
+		history: List<BuildTelemetry>,
+	): Adaptation {
+		val reasons = mutableListOf<AdaptationReason>()
+		val baseXmx = base.gradle.jvm.xmxMb
+		val minXmx = min(baseXmx, ADAPTIVE_MIN_XMX_MB)
+		val maxXmx = max(baseXmx, (device.mem.totalMemMb * ADAPTIVE_MAX_XMX_TO_MEM_FACTOR).toInt())
+
+		var xmx = baseXmx
+		var workers = base.gradle.maxWorkers
+		var vfsWatch = base.gradle.vfsWatch
+
+		val last = history.lastOrNull()
+		when {
+			last == null -> reasons += AdaptationReason.NoHistory
+			last.strategyName != base.strategyName -> reasons += AdaptationReason.StrategyChanged
+			last.outcome == BuildOutcome.Failure && !last.usedSettingsOf(base) ->
+				reasons += AdaptationReason.FallbackAfterFailure
+
+			last.outcome == BuildOutcome.OutOfMemory -> {
+				xmx = (last.gradleXmxMb * ADAPTIVE_XMX_GROWTH_FACTOR).toInt()
+				workers = last.maxWorkers - 1
+				reasons += AdaptationReason.MoreHeapAfterOom
+			}
+
+			last.outcome == BuildOutcome.DaemonDied -> {
+				xmx = (min(last.gradleXmxMb, baseXmx) * ADAPTIVE_XMX_SHRINK_FACTOR).toInt()
+				workers = last.maxWorkers - 1
+				vfsWatch = false
+				reasons += AdaptationReason.LessMemoryAfterDaemonDeath
+			}
+
+			else -> {
+				xmx = last.gradleXmxMb
+				workers = last.maxWorkers
+
+				if (last.thermalAtStart != ThermalState.Throttled && last.thermalAtEnd == ThermalState.Throttled) {
+					workers -= 1
+					reasons += AdaptationReason.ThermalBackoff
+				} else if (last.thermalAtEnd != ThermalState.Throttled && thermallyRemovedWorkers(history) > 0) {
+					workers += 1
+					reasons += AdaptationReason.RestoreWorkers
+				}
+
+				// only the recent successful builds with the same settings tell
+				// how much memory these settings need
+				val recent =
+					history
+						.takeLast(ADAPTIVE_RECENT_BUILDS)
+						.takeLastWhile { it.outcome == BuildOutcome.Success && it.gradleXmxMb == last.gradleXmxMb }
+						.mapNotNull { it.peakDaemonRssMb }
+
+				val budgetMb = memoryBudgetMb(base, xmx)
+				val peakRssMb = recent.maxOrNull()
+				if (peakRssMb != null && peakRssMb >= budgetMb * ADAPTIVE_RSS_HIGH_WATERMARK) {
+					xmx = (xmx * ADAPTIVE_XMX_GROWTH_FACTOR).toInt()
+					reasons += AdaptationReason.GrowHeap
+				} else if (
+					peakRssMb != null &&
+					recent.size >= ADAPTIVE_MIN_BUILDS_TO_SHRINK &&
+					peakRssMb < budgetMb * ADAPTIVE_RSS_LOW_WATERMARK
+				) {
+					xmx = (xmx * ADAPTIVE_XMX_SHRINK_FACTOR).toInt()
+					reasons += AdaptationReason.ShrinkHeap
+				}
+			}
+		}
+
+		val caching = base.gradle.caching && device.storageFreeMb >= ADAPTIVE_MIN_STORAGE_FOR_CACHE_MB
+		if (caching != base.gradle.caching) {
+			reasons += AdaptationReason.LowStorage
+		}
+
+		if (xmx != baseXmx) {
+			xmx = (xmx / ADAPTIVE_XMX_ALIGNMENT_MB * ADAPTIVE_XMX_ALIGNMENT_MB).coerceIn(minXmx, maxXmx)
+		}
+		workers = workers.coerceIn(1, base.gradle.maxWorkers)
+
+		val config =
+			base.copy(
+				gradle =
+					base.gradle.copy(
+						jvm =
+							base.gradle.jvm.copy(
+								xmxMb = xmx,
+								xmsMb = (base.gradle.jvm.xmsMb.toLong() * xmx / baseXmx).toInt(),
+							),
+						maxWorkers = workers,
+						parallel = base.gradle.parallel && workers > 1,
+						caching = caching,
+						vfsWatch = vfsWatch,
+					),
+			)
+
+		logger.info(
+			"Adapted {} build configuration: xmxMb={}, maxWorkers={}, caching={}, reasons={}",
+			base.strategyName,
+			xmx,
+			workers,
+			caching,
+			reasons.map { it.label },
+		)
+
+		return Adaptation(config, reasons)
+	}
+
+	/**
+	 * The number of workers removed by [AdaptationReason.ThermalBackoff] in the
+	 * [history] and not added back since. Workers removed after a build ran out
+	 * of memory or its daemon died are not counted, so they are never restored.
+	 */
+	private fun thermallyRemovedWorkers(history: List<BuildTelemetry>): Int {
+		var removed = 0
+		for ((previous, next) in history.zipWithNext()) {
+			if (next.strategyName != previous.strategyName) {
+				removed = 0
+				continue
+			}
+
+			val change = next.maxWorkers - previous.maxWorkers
+			if (change < 0 && previous.causedThermalBackoff()) {
+				removed -= change
+			} else if (change > 0) {
+				removed = max(0, removed - change)
+			}
+		}
+		return removed
+	}
+
+	private fun BuildTelemetry.causedThermalBackoff(): Boolean =
+		outcome != BuildOutcome.OutOfMemory &&
+			outcome != BuildOutcome.DaemonDied &&
+			thermalAtStart != ThermalState.Throttled &&
+			thermalAtEnd == ThermalState.Throttled
+
+	/**
+	 * The memory the build processes may use with the given Gradle daemon heap,
+	 * including the non-heap memory of the daemon and the Kotlin daemon.
+	 */
+	private fun memoryBudgetMb(
+		config: GradleTuningConfig,
+		gradleXmxMb: Int,
+	): Int {
+		val gradleJvm = config.gradle.jvm
+		var budget = gradleXmxMb + gradleJvm.maxMetaspaceSizeMb + gradleJvm.reservedCodeCacheSizeMb
+
+		val kotlin = config.kotlin
+		if (kotlin is KotlinCompilerExecution.Daemon) {
+			budget += kotlin.jvm.xmxMb + kotlin.jvm.maxMetaspaceSizeMb + kotlin.jvm.reservedCodeCacheSizeMb
+		}
+
+		return budget
+	}
+
 	private fun getMemBucket(memMb: Long): String =
 		when {
 			memMb < 2 * 1024 -> "<2GB"
@@ -0,0 +1,68 @@
+package com.itsaky.androidide.services.builder
+
+import androidx.annotation.WorkerThread
+import java.io.File
+
+/**
+ * Reads the memory usage of processes from `/proc`. Only the processes of the app's own user are
+ * readable, which includes the tooling API server and the Gradle daemons it starts.
+ */
+object ProcessMemoryInfo {
+	private val procDir = File("/proc")
+
+	/**
+	 * Get the processes started by the given process, directly or indirectly.
+	 *
+	 * @param pid The ID of the parent process.
+	 * @return The IDs of the descendant processes.
+	 */
+	@WorkerThread
+	fun getDescendants(pid: Long): List<Long> {
+		val parents = HashMap<Long, MutableList<Long>>()
+		procDir.listFiles()?.forEach { dir ->
+			val child = dir.name.toLongOrNull() ?: return@forEach
+			val parent = readParentPid(dir) ?: return@forEach
+			parents.getOrPut(parent) { mutableListOf() }.add(child)
+		}
+
+		val descendants = mutableListOf<Long>()
+		val pending = ArrayDeque(listOf(pid))
+		while (pending.isNotEmpty()) {
+			val children = parents[pending.removeFirst()] ?: continue
+			descendants.addAll(children)
+			pending.addAll(children)
+		}
+		return descendants
+	}
+
+	/**
+	 * Get the resident memory of the given process.
+	 *
+	 * @param pid The ID of the process.
+	 * @return The resident memory in MB, or `null` if the process does not exist or is not
+	 *         readable.
+	 */
+	@WorkerThread
+	fun getRssMb(pid: Long): Long? =
+		runCatching {
+			File(procDir, "$pid/status")
+				.useLines { lines -> lines.firstOrNull { it.startsWith("VmRSS:") } }
+				?.removePrefix("VmRSS:")
+				?.trim()
+				?.removeSuffix("kB")
+				?.trim()
+				?.toLongOrNull()
+				?.let { it / 1024 }
+		}.getOrNull()
+
+	private fun readParentPid(dir: File): Long? =
+		runCatching {
+			// the process name may contain spaces and parentheses, the fields after it do not
+			val stat = File(dir, "stat").readText()
+			stat
+				.substring(stat.lastIndexOf(')') + 2)
+				.split(' ')
+				.getOrNull(1)
+				?.toLongOrNull()
+		}.getOrNull()
+}
@@ -0,0 +1,63 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.utils
+
+import com.itsaky.androidide.interfaces.IEditorHandler
+import com.itsaky.androidide.lsp.models.TextEdit
+import com.itsaky.androidide.projects.FileManager
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * Applies the replacements of a project search in the editors of [editors], as a single undoable
+ * edit per file.
+ */
+class EditorHandlerFileEditor(
+	private val editors: IEditorHandler,
+) : OpenFileEditor {
+
+	override suspend fun applyEdits(
+		file: File,
+		version: Int,
+		edits: List<TextEdit>,
+	): Boolean =
+		withContext(Dispatchers.Main) {
+			val editor = editors.getEditorForFile(file)?.editor ?: return@withContext false
+
+			// The editor updates the document on this thread, so the version cannot change until the
+			// edits are applied
+			if (FileManager.getActiveDocument(file.toPath())?.version != version) {
+				return@withContext false
+			}
+
+			val text = editor.text
+			text.beginBatchEdit()
+			try {
+				// Later edits first, so that the positions of the earlier ones stay valid
+				for (edit in edits.asReversed()) {
+					val start = edit.range.start
+					val end = edit.range.end
+					text.replace(start.line, start.column, end.line, end.column, edit.newText)
+				}
+			} finally {
+				text.endBatchEdit()
+			}
+			true
+		}
+}
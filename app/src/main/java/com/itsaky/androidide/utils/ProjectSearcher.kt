@@ -0,0 +1,513 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.utils
+
+import com.itsaky.androidide.lsp.models.TextEdit
+import com.itsaky.androidide.models.Position
+import com.itsaky.androidide.models.Range
+import com.itsaky.androidide.models.SearchResult
+import com.itsaky.androidide.projects.FileManager
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.SendChannel
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.CharacterCodingException
+import java.nio.charset.CodingErrorAction
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+import java.util.regex.PatternSyntaxException
+
+/**
+ * What to find in the project.
+ *
+ * @property text The text to find, or a regular expression if [isRegex] is set.
+ * @property extensions Only files whose name ends with one of these are searched. All files are
+ *   searched if empty.
+ * @property wholeWords Whether matches must not be preceded or followed by a letter, digit or
+ *   underscore.
+ */
+data class ProjectSearchQuery(
+	val text: String,
+	val extensions: List<String> = emptyList(),
+	val isRegex: Boolean = false,
+	val ignoreCase: Boolean = true,
+	val wholeWords: Boolean = false,
+) {
+
+	/**
+	 * Compiles the query into the pattern used for every file of a search.
+	 *
+	 * @throws PatternSyntaxException If [isRegex] is set and [text] is not a valid regular expression.
+	 */
+	fun compile(): Pattern {
+		var regex = if (isRegex) text else Pattern.quote(text)
+		if (wholeWords) {
+			regex = "(?<![\\p{L}\\p{N}_])(?:$regex)(?![\\p{L}\\p{N}_])"
+		}
+
+		var flags = Pattern.MULTILINE
+		if (ignoreCase) {
+			flags = flags or Pattern.CASE_INSENSITIVE or Pattern.UNICODE_CASE
+		}
+		return Pattern.compile(regex, flags)
+	}
+
+	internal fun accepts(file: File): Boolean = extensions.isEmpty() || extensions.any { file.name.endsWith(it) }
+}
+
+/**
+ * The matches of a search in one file.
+ *
+ * @property results The matches, at most [ProjectSearcher.MAX_RESULTS_PER_FILE] of them.
+ * @property replacements When searching for a replacement, the text each of the [results] is
+ *   replaced with. Empty otherwise.
+ */
+class FileMatches internal constructor(
+	val file: File,
+	val results: List<SearchResult>,
+	val replacements: List<String>,
+	internal val source: Source,
+) {
+
+	/** What the matches were found in, to tell whether it changed before they are replaced. */
+	internal sealed interface Source {
+		data class Disk(val length: Long, val lastModified: Long) : Source
+
+		data class Document(val version: Int) : Source
+	}
+}
+
+/**
+ * The outcome of [ProjectSearcher.replace].
+ *
+ * @property replacedFiles The files whose matches were replaced.
+ * @property skippedFiles The files left untouched because they changed after the search, were
+ *   closed or could not be written.
+ */
+class ReplaceResult(
+	val replacedFiles: List<File>,
+	val skippedFiles: List<File>,
+)
+
+/**
+ * Applies replacements to the files open in editors, whose text may not be saved yet.
+ */
+fun interface OpenFileEditor {
+	/**
+	 * Applies [edits], which are sorted and do not overlap, in the editor of [file] if its document
+	 * is still at [version].
+	 *
+	 * @return Whether the edits were applied.
+	 */
+	suspend fun applyEdits(
+		file: File,
+		version: Int,
+		edits: List<TextEdit>,
+	): Boolean
+}
+
+/**
+ * Finds, and optionally replaces, text in the files of a project.
+ *
+ * Files are searched by a bounded number of workers, each file being read once and matched with a
+ * pattern compiled once per search. The matches of a file are emitted as soon as that file has been
+ * searched, so results can be shown while the search goes on. Binary files, files which are not
+ * UTF-8 and the build output and VCS directories of modules are skipped. Files larger than
+ * [MAX_FILE_SIZE] are skipped too, and reported separately.
+ *
+ * Files open in an editor are searched and replaced in their document, as managed by
+ * [FileManager], rather than on disk.
+ */
+object ProjectSearcher {
+
+	private val log = LoggerFactory.getLogger(ProjectSearcher::class.java)
+
+	/** Files larger than this are not searched. */
+	const val MAX_FILE_SIZE = 8L * 1024 * 1024
+
+	/** Files at least this large are memory-mapped instead of read into the heap. */
+	private const val MAP_THRESHOLD = 256 * 1024
+
+	/** The number of leading bytes checked for a NUL byte to detect binary files. */
+	private const val BINARY_PROBE_LENGTH = 8 * 1024
+
+	/** The number of characters around a match shown in its preview. */
+	private const val PREVIEW_CONTEXT = 30
+
+	/** The number of files queued for the workers while walking the project. */
+	private const val FILE_QUEUE_CAPACITY = 256
+
+	/**
+	 * The maximum number of matches reported for one file. Replacing still replaces every match in
+	 * the file.
+	 */
+	const val MAX_RESULTS_PER_FILE = 1000
+
+	/** The default number of files searched concurrently. */
+	@JvmField
+	val DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors().coerceIn(2, 4)
+
+	/**
+	 * Directories which only contain generated or VCS files when they are in a module or project
+	 * root, or in a searched directory. Elsewhere, e.g. `com/example/build/`, they are searched.
+	 */
+	private val IGNORED_DIRECTORIES =
+		setOf("build", ".git", ".gradle", ".idea", ".cxx", ".externalNativeBuild", "node_modules")
+
+	/** The files which make a directory a module or project root. */
+	private val GRADLE_SCRIPTS =
+		setOf("build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts")
+
+	private val WHITESPACE = Regex("\\s+")
+
+	/**
+	 * Searches the files in [roots] and their subdirectories. The search runs while the returned
+	 * flow is collected, and stops when the collector is cancelled.
+	 *
+	 * @param onFileTooLarge Called, on a background thread, with each file that is not searched
+	 *   because it is larger than [MAX_FILE_SIZE].
+	 * @param replacement If not `null`, the replacement of each match is computed as well, to
+	 *   preview a [replace]. It may refer to groups of a regex query.
+	 * @throws PatternSyntaxException If the query is an invalid regular expression.
+	 */
+	@JvmOverloads
+	fun search(
+		query: ProjectSearchQuery,
+		roots: List<File>,
+		parallelism: Int = DEFAULT_PARALLELISM,
+		onFileTooLarge: (File) -> Unit = {},
+		replacement: String? = null,
+	): Flow<FileMatches> {
+		require(parallelism > 0) { "parallelism must be positive" }
+
+		// Compile eagerly so that an invalid pattern is reported to the caller right away
+		val pattern = query.compile()
+
+		return channelFlow {
+			val files = Channel<File>(FILE_QUEUE_CAPACITY)
+			launch {
+				try {
+					for (root in roots) {
+						walk(root, true, query, files)
+					}
+				} finally {
+					files.close()
+				}
+			}
+
+			repeat(parallelism) {
+				launch {
+					for (file in files) {
+						val matches =
+							when (val document = FileManager.getActiveDocument(file.toPath())) {
+								null -> {
+									if (file.length() > MAX_FILE_SIZE) {
+										onFileTooLarge(file)
+										continue
+									}
+									searchFile(file, pattern, replacement)
+								}
+
+								else -> searchDocument(file, document.version, document.snapshot(), pattern, replacement)
+							}
+						send(matches ?: continue)
+					}
+				}
+			}
+		}.flowOn(Dispatchers.IO)
+	}
+
+	/**
+	 * Replaces the matches previewed by a [search] with the same [query] and [replacement]. Files
+	 * open in an editor are edited through [openFiles], so that their unsaved text is kept. Other
+	 * files are written to disk. A file which changed since it was searched is skipped rather than
+	 * replaced blindly.
+	 */
+	suspend fun replace(
+		query: ProjectSearchQuery,
+		replacement: String,
+		preview: List<FileMatches>,
+		openFiles: OpenFileEditor,
+	): ReplaceResult =
+		withContext(Dispatchers.IO) {
+			val pattern = query.compile()
+			val replaced = mutableListOf<File>()
+			val skipped = mutableListOf<File>()
+
+			for (matches in preview) {
+				ensureActive()
+
+				val file = matches.file
+				val applied =
+					when (val source = matches.source) {
+						is FileMatches.Source.Document -> replaceInDocument(file, source, pattern, replacement, openFiles)
+						is FileMatches.Source.Disk -> replaceOnDisk(file, source, pattern, replacement)
+					}
+				if (applied) replaced.add(file) else skipped.add(file)
+			}
+
+			ReplaceResult(replaced, skipped)
+		}
+
+	private suspend fun replaceInDocument(
+		file: File,
+		source: FileMatches.Source.Document,
+		pattern: Pattern,
+		replacement: String,
+		openFiles: OpenFileEditor,
+	): Boolean {
+		// A document closed since the search may have been closed without saving
+		val document = FileManager.getActiveDocument(file.toPath())
+		if (document == null || document.version != source.version) {
+			return false
+		}
+
+		val text = document.snapshot()
+		val matcher = pattern.matcher(text)
+		val lines = LineIndex(text)
+		val replacements = Replacements(matcher, replacement)
+		val edits = mutableListOf<TextEdit>()
+		while (matcher.find()) {
+			val range = Range(lines.positionOf(matcher.start()), lines.positionOf(matcher.end()))
+			edits.add(TextEdit(range, replacements.next()))
+		}
+
+		return edits.isNotEmpty() && openFiles.applyEdits(file, source.version, edits)
+	}
+
+	private fun replaceOnDisk(
+		file: File,
+		source: FileMatches.Source.Disk,
+		pattern: Pattern,
+		replacement: String,
+	): Boolean {
+		if (file.length() != source.length || file.lastModified() != source.lastModified) {
+			return false
+		}
+
+		return try {
+			val text = readText(file) ?: return false
+			writeAtomically(file, pattern.matcher(text).replaceAll(replacement))
+			true
+		} catch (e: IOException) {
+			log.error("Failed to replace matches in {}", file, e)
+			false
+		}
+	}
+
+	private suspend fun walk(
+		file: File,
+		isRoot: Boolean,
+		query: ProjectSearchQuery,
+		files: SendChannel<File>,
+	) {
+		if (!file.isDirectory) {
+			if (query.accepts(file)) {
+				files.send(file)
+			}
+			return
+		}
+
+		val children = file.listFiles() ?: return
+		val ignoresDirectories = isRoot || children.any { it.name in GRADLE_SCRIPTS }
+		for (child in children) {
+			if (ignoresDirectories && child.isDirectory && child.name in IGNORED_DIRECTORIES) {
+				continue
+			}
+			walk(child, false, query, files)
+		}
+	}
+
+	private fun searchFile(
+		file: File,
+		pattern: Pattern,
+		replacement: String?,
+	): FileMatches? {
+		val length = file.length()
+		val lastModified = file.lastModified()
+		if (length == 0L) {
+			return null
+		}
+
+		val text =
+			try {
+				readText(file)
+			} catch (e: IOException) {
+				log.warn("Failed to read {}", file, e)
+				null
+			} ?: return null
+
+		return searchText(file, text, pattern, replacement, FileMatches.Source.Disk(length, lastModified))
+	}
+
+	private fun searchDocument(
+		file: File,
+		version: Int,
+		text: CharSequence,
+		pattern: Pattern,
+		replacement: String?,
+	): FileMatches? = searchText(file, text, pattern, replacement, FileMatches.Source.Document(version))
+
+	private fun searchText(
+		file: File,
+		text: CharSequence,
+		pattern: Pattern,
+		replacement: String?,
+		source: FileMatches.Source,
+	): FileMatches? {
+		val matcher = pattern.matcher(text)
+		var lines: LineIndex? = null
+		val results = mutableListOf<SearchResult>()
+		val replacements = mutableListOf<String>()
+		val replacer = replacement?.let { Replacements(matcher, it) }
+		while (results.size < MAX_RESULTS_PER_FILE && matcher.find()) {
+			val start = matcher.start()
+			val end = matcher.end()
+			val index = lines ?: LineIndex(text).also { lines = it }
+
+			val range = Range(index.positionOf(start), index.positionOf(end))
+			val preview =
+				"..."
+					.plus(text.subSequence(maxOf(0, start - PREVIEW_CONTEXT), minOf(end + PREVIEW_CONTEXT + 1, text.length)))
+					.trim()
+					.plus("...")
+					.replace(WHITESPACE, " ")
+			results.add(SearchResult(range, file, preview, text.subSequence(start, end).toString()))
+			replacer?.let { replacements.add(it.next()) }
+		}
+
+		if (results.isEmpty()) {
+			return null
+		}
+
+		return FileMatches(file, results, replacements, source)
+	}
+
+	private fun writeAtomically(
+		file: File,
+		text: String,
+	) {
+		val temp = File(file.parentFile, ".${file.name}.replace")
+		temp.writeText(text)
+		if (!temp.renameTo(file)) {
+			temp.delete()
+			throw IOException("Failed to replace $file")
+		}
+	}
+
+	/**
+	 * Reads the file as UTF-8, mapping large files into memory.
+	 *
+	 * @return The text, or `null` if the file is binary or not valid UTF-8.
+	 */
+	private fun readText(file: File): CharBuffer? =
+		FileInputStream(file).channel.use { channel ->
+			val size = channel.size()
+			val bytes =
+				if (size >= MAP_THRESHOLD) {
+					channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+				} else {
+					ByteBuffer.allocate(size.toInt()).also { buffer ->
+						while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+							// read until full or at the end of the file
+						}
+						buffer.flip()
+					}
+				}
+
+			for (i in 0 until minOf(bytes.limit(), BINARY_PROBE_LENGTH)) {
+				if (bytes.get(i) == 0.toByte()) {
+					return null
+				}
+			}
+
+			try {
+				Charsets.UTF_8
+					.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT)
+					.decode(bytes)
+			} catch (e: CharacterCodingException) {
+				null
+			}
+		}
+
+	/**
+	 * Computes the replacement of each match found by [matcher], expanding the group references of
+	 * [replacement].
+	 */
+	private class Replacements(
+		private val matcher: Matcher,
+		private val replacement: String,
+	) {
+		// Matcher.appendReplacement() also appends the text before the match; it is dropped again
+		private val replaced = StringBuffer()
+		private var lastEnd = 0
+
+		/** The replacement of the last match found. */
+		fun next(): String {
+			replaced.setLength(0)
+			matcher.appendReplacement(replaced, replacement)
+			val result = replaced.substring(matcher.start() - lastEnd)
+			lastEnd = matcher.end()
+			return result
+		}
+	}
+
+	/**
+	 * The offsets at which the lines of a text start, to turn match offsets into positions.
+	 */
+	private class LineIndex(
+		text: CharSequence,
+	) {
+		private val lineStarts: IntArray
+
+		init {
+			var lineCount = 1
+			for (i in text.indices) {
+				if (text[i] == '\n') lineCount++
+			}
+
+			lineStarts = IntArray(lineCount)
+			var line = 1
+			for (i in text.indices) {
+				if (text[i] == '\n') lineStarts[line++] = i + 1
+			}
+		}
+
+		fun positionOf(offset: Int): Position {
+			var line = lineStarts.binarySearch(offset)
+			if (line < 0) {
+				line = -line - 2
+			}
+			return Position(line, offset - lineStarts[line], offset)
+		}
+	}
+}
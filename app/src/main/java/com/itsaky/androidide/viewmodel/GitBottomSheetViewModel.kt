@@ -64,6 +64,7 @@ class GitBottomSheetViewModel(
 
 	private var pullResetJob: Job? = null
 	private var pushResetJob: Job? = null
+	private var historyJob: Job? = null
 
 	var currentRepository: GitRepository? = null
 		private set
@@ -73,6 +74,11 @@ class GitBottomSheetViewModel(
 		initializeRepository()
 	}
 
+	companion object {
+		/** The number of commits loaded at a time in the commit history. */
+		const val HISTORY_PAGE_SIZE = 50
+	}
+
 	override fun onCleared() {
 		super.onCleared()
 		EventBus.getDefault().unregister(this)
@@ -157,21 +163,46 @@ class GitBottomSheetViewModel(
 	}
 
 	fun getCommitHistoryList() {
-		viewModelScope.launch {
-			_commitHistory.value = CommitHistoryUiState.Loading
-			try {
-				val history = currentRepository?.getHistory()
-				if (history.isNullOrEmpty()) {
-					_commitHistory.value = CommitHistoryUiState.Empty
-				} else {
-					_commitHistory.value = CommitHistoryUiState.Success(history)
+		historyJob?.cancel()
+		historyJob =
+			viewModelScope.launch {
+				_commitHistory.value = CommitHistoryUiState.Loading
+				try {
+					val history = currentRepository?.getHistory(HISTORY_PAGE_SIZE)
+					if (history.isNullOrEmpty()) {
+						_commitHistory.value = CommitHistoryUiState.Empty
+					} else {
+						_commitHistory.value =
+							CommitHistoryUiState.Success(history, hasMore = history.size == HISTORY_PAGE_SIZE)
+					}
+					getLocalCommitsCount()
+				} catch (e: Exception) {
+					log.error("Failed to fetch commit history", e)
+					_commitHistory.value = CommitHistoryUiState.Error(e.message)
+				}
+			}
+	}
+
+	/**
+	 * Appends the next page of commits to the commit history, if there is one and it is not already
+	 * being loaded.
+	 */
+	fun loadMoreCommitHistory() {
+		val current = _commitHistory.value as? CommitHistoryUiState.Success ?: return
+		if (!current.hasMore || historyJob?.isActive == true) return
+
+		historyJob =
+			viewModelScope.launch {
+				try {
+					val page =
+						currentRepository?.getHistory(HISTORY_PAGE_SIZE, offset = current.commits.size)
+							?: return@launch
+					_commitHistory.value =
+						CommitHistoryUiState.Success(current.commits + page, hasMore = page.size == HISTORY_PAGE_SIZE)
+				} catch (e: Exception) {
+					log.error("Failed to fetch more commit history", e)
 				}
-				getLocalCommitsCount()
-			} catch (e: Exception) {
-				log.error("Failed to fetch commit history", e)
-				_commitHistory.value = CommitHistoryUiState.Error(e.message)
 			}
-		}
 	}
 
 	fun push(
@@ -367,26 +398,31 @@ class GitBottomSheetViewModel(
 
 	@Subscribe(threadMode = ThreadMode.MAIN)
 	fun onDocumentSaved(event: DocumentSaveEvent) {
+		currentRepository?.invalidateStatus(listOf(event.savedFile.toFile()))
 		refreshStatus()
 	}
 
 	@Subscribe(threadMode = ThreadMode.MAIN)
 	fun onProjectFilesChanged(event: ListProjectFilesRequestEvent) {
+		currentRepository?.invalidateStatus()
 		refreshStatus()
 	}
 
 	@Subscribe(threadMode = ThreadMode.MAIN)
 	fun onFileCreated(event: FileCreationEvent) {
+		currentRepository?.invalidateStatus(listOf(event.file))
 		refreshStatus()
 	}
 
 	@Subscribe(threadMode = ThreadMode.MAIN)
 	fun onFileDeleted(event: FileDeletionEvent) {
+		currentRepository?.invalidateStatus(listOf(event.file))
 		refreshStatus()
 	}
 
 	@Subscribe(threadMode = ThreadMode.MAIN)
 	fun onFileRenamed(event: FileRenameEvent) {
+		currentRepository?.invalidateStatus(listOf(event.file, event.newFile))
 		refreshStatus()
 	}
 
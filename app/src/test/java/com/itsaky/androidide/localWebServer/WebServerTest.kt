@@ -0,0 +1,316 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.localWebServer
+
+import android.database.sqlite.SQLiteDatabase
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.net.ServerSocket
+import java.net.Socket
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Tests for the HTTP/1.1 handling of [WebServer]: persistent connections, revalidation and range
+ * requests.
+ *
+ * Set `WEBSERVER_LOAD_TEST=1` to also run [load test][loadTest], which prints the throughput of
+ * concurrent keep-alive clients.
+ */
+@RunWith(RobolectricTestRunner::class)
+class WebServerTest {
+
+	@get:Rule
+	val tmp = TemporaryFolder()
+
+	private lateinit var server: WebServer
+	private lateinit var serverThread: Thread
+	private var port = -1
+
+	private val page = "<html><body>" + "x".repeat(1000) + "</body></html>"
+
+	private val fragments =
+		listOf(
+			ByteArray(1024 * 1024) { 'a'.code.toByte() },
+			ByteArray(1024 * 1024) { 'b'.code.toByte() },
+			ByteArray(10) { 'c'.code.toByte() },
+		)
+
+	@Before
+	fun setUp() {
+		val dbFile = tmp.newFile("documentation.db").also { it.delete() }
+		SQLiteDatabase.openOrCreateDatabase(dbFile, null).use { db ->
+			db.execSQL("CREATE TABLE ContentTypes (id INTEGER PRIMARY KEY, value TEXT, compression TEXT)")
+			db.execSQL(
+				"CREATE TABLE Content (path TEXT, content BLOB, contentTypeID INTEGER, templateId INTEGER, languageId INTEGER)",
+			)
+			db.execSQL("INSERT INTO ContentTypes VALUES (1, 'text/html', 'none')")
+			db.execSQL(
+				"INSERT INTO Content VALUES (?, ?, 1, 0, 1)",
+				arrayOf<Any>("index.html", page.toByteArray()),
+			)
+
+			// content over 1 MB is stored as "path", "path-1", "path-2", ...
+			db.execSQL("INSERT INTO ContentTypes VALUES (2, 'application/octet-stream', 'none')")
+			fragments.forEachIndexed { index, fragment ->
+				val path = if (index == 0) "large.bin" else "large.bin-$index"
+				db.execSQL("INSERT INTO Content VALUES (?, ?, 2, 0, 1)", arrayOf<Any>(path, fragment))
+			}
+		}
+
+		port = ServerSocket(0).use { it.localPort }
+		server =
+			WebServer(
+				ServerConfig(
+					port = port,
+					databasePath = dbFile.absolutePath,
+					fileDirPath = tmp.root.absolutePath,
+					debugDatabasePath = File(tmp.root, "missing.db").absolutePath,
+					debugEnablePath = File(tmp.root, "debug").absolutePath,
+					experimentsEnablePath = File(tmp.root, "experiments").absolutePath,
+					clearCacheEnablePath = File(tmp.root, "clear-cache").absolutePath,
+				),
+			)
+		serverThread = Thread(server::start).apply {
+			isDaemon = true
+			start()
+		}
+
+		awaitServer()
+	}
+
+	@After
+	fun tearDown() {
+		server.stop()
+		serverThread.join(5_000)
+	}
+
+	@Test
+	fun `serves several requests on one connection`() {
+		Socket("localhost", port).use { socket ->
+			val input = BufferedInputStream(socket.getInputStream())
+			repeat(3) {
+				socket.getOutputStream().write(request("index.html").toByteArray())
+				val response = readResponse(input)
+				assertThat(response.status).isEqualTo(200)
+				assertThat(response.headers["connection"]).isEqualTo("keep-alive")
+				assertThat(String(response.body)).isEqualTo(page)
+			}
+		}
+	}
+
+	@Test
+	fun `closes the connection when asked to`() {
+		Socket("localhost", port).use { socket ->
+			val input = BufferedInputStream(socket.getInputStream())
+			socket.getOutputStream().write(request("index.html", "Connection: close").toByteArray())
+
+			val response = readResponse(input)
+			assertThat(response.status).isEqualTo(200)
+			assertThat(response.headers["connection"]).isEqualTo("close")
+			assertThat(input.read()).isEqualTo(-1)
+		}
+	}
+
+	@Test
+	fun `answers a matching etag with not modified`() {
+		Socket("localhost", port).use { socket ->
+			val input = BufferedInputStream(socket.getInputStream())
+			socket.getOutputStream().write(request("index.html").toByteArray())
+			val etag = readResponse(input).headers["etag"]
+			assertThat(etag).isNotNull()
+
+			socket.getOutputStream().write(request("index.html", "If-None-Match: $etag").toByteArray())
+			val response = readResponse(input)
+			assertThat(response.status).isEqualTo(304)
+			assertThat(response.body).isEmpty()
+
+			// the connection is still usable after a response without a body
+			socket.getOutputStream().write(request("index.html").toByteArray())
+			assertThat(readResponse(input).status).isEqualTo(200)
+		}
+	}
+
+	@Test
+	fun `serves byte ranges`() {
+		Socket("localhost", port).use { socket ->
+			val input = BufferedInputStream(socket.getInputStream())
+			socket.getOutputStream().write(request("index.html", "Range: bytes=0-11").toByteArray())
+			var response = readResponse(input)
+			assertThat(response.status).isEqualTo(206)
+			assertThat(response.headers["content-range"]).isEqualTo("bytes 0-11/${page.length}")
+			assertThat(String(response.body)).isEqualTo("<html><body>")
+
+			socket.getOutputStream().write(request("index.html", "Range: bytes=-7").toByteArray())
+			response = readResponse(input)
+			assertThat(response.status).isEqualTo(206)
+			assertThat(String(response.body)).isEqualTo("</html>")
+
+			socket.getOutputStream().write(request("index.html", "Range: bytes=${page.length}-").toByteArray())
+			response = readResponse(input)
+			assertThat(response.status).isEqualTo(416)
+			assertThat(response.headers["content-range"]).isEqualTo("bytes */${page.length}")
+		}
+	}
+
+	@Test
+	fun `streams fragmented content`() {
+		Socket("localhost", port).use { socket ->
+			val input = BufferedInputStream(socket.getInputStream())
+			socket.getOutputStream().write(request("large.bin").toByteArray())
+			var response = readResponse(input)
+			assertThat(response.status).isEqualTo(200)
+			assertThat(response.body).isEqualTo(fragments.reduce(ByteArray::plus))
+
+			// a range spanning all three fragments
+			val start = 1024 * 1024 - 2
+			val end = 2 * 1024 * 1024 + 1
+			socket.getOutputStream().write(request("large.bin", "Range: bytes=$start-$end").toByteArray())
+			response = readResponse(input)
+			assertThat(response.status).isEqualTo(206)
+			assertThat(String(response.body)).isEqualTo("aa" + "b".repeat(1024 * 1024) + "cc")
+		}
+	}
+
+	@Test
+	fun `answers a missing page with not found`() {
+		Socket("localhost", port).use { socket ->
+			val input = BufferedInputStream(socket.getInputStream())
+			socket.getOutputStream().write(request("missing.html").toByteArray())
+			assertThat(readResponse(input).status).isEqualTo(404)
+		}
+	}
+
+	@Test
+	fun loadTest() {
+		assumeTrue(System.getenv("WEBSERVER_LOAD_TEST") != null)
+
+		val clients = 16
+		val requestsPerClient = 500
+		val completed = AtomicLong()
+		val pool = Executors.newFixedThreadPool(clients)
+
+		val start = System.nanoTime()
+		repeat(clients) {
+			pool.execute {
+				Socket("localhost", port).use { socket ->
+					val input = BufferedInputStream(socket.getInputStream())
+					// the server closes a connection after 100 requests, so reconnect as needed
+					var sent = 0
+					var current = socket
+					var currentInput = input
+					while (sent < requestsPerClient) {
+						current.getOutputStream().write(request("index.html").toByteArray())
+						val response = readResponse(currentInput)
+						check(response.status == 200)
+						completed.incrementAndGet()
+						sent++
+						if (response.headers["connection"] == "close") {
+							if (current !== socket) current.close()
+							current = Socket("localhost", port)
+							currentInput = BufferedInputStream(current.getInputStream())
+						}
+					}
+					if (current !== socket) current.close()
+				}
+			}
+		}
+		pool.shutdown()
+		assertThat(pool.awaitTermination(5, TimeUnit.MINUTES)).isTrue()
+
+		val seconds = (System.nanoTime() - start) / 1e9
+		println(
+			"WebServer load test: ${completed.get()} requests from $clients clients in " +
+				"%.2fs (%.0f requests/s)".format(seconds, completed.get() / seconds),
+		)
+		assertThat(completed.get()).isEqualTo((clients * requestsPerClient).toLong())
+	}
+
+	private class Response(
+		val status: Int,
+		val headers: Map<String, String>,
+		val body: ByteArray,
+	)
+
+	private fun request(path: String, vararg headers: String): String =
+		buildString {
+			append("GET /").append(path).append(" HTTP/1.1\r\n")
+			append("Host: localhost\r\n")
+			headers.forEach { append(it).append("\r\n") }
+			append("\r\n")
+		}
+
+	private fun readResponse(input: BufferedInputStream): Response {
+		val statusLine = readLine(input)
+		val status = statusLine.split(" ")[1].toInt()
+
+		val headers = mutableMapOf<String, String>()
+		while (true) {
+			val line = readLine(input)
+			if (line.isEmpty()) break
+			val colon = line.indexOf(':')
+			headers[line.substring(0, colon).trim().lowercase()] = line.substring(colon + 1).trim()
+		}
+
+		val length = if (status == 304) 0 else headers["content-length"]?.toInt() ?: 0
+		val body = ByteArray(length)
+		var read = 0
+		while (read < length) {
+			val count = input.read(body, read, length - read)
+			check(count != -1) { "Unexpected end of response body" }
+			read += count
+		}
+
+		return Response(status, headers, body)
+	}
+
+	private fun readLine(input: BufferedInputStream): String {
+		val line = ByteArrayOutputStream()
+		while (true) {
+			val b = input.read()
+			check(b != -1) { "Unexpected end of response" }
+			if (b == '\n'.code) break
+			line.write(b)
+		}
+		return line.toString(Charsets.ISO_8859_1.name()).trimEnd('\r')
+	}
+
+	private fun awaitServer() {
+		val deadline = System.currentTimeMillis() + 10_000
+		while (System.currentTimeMillis() < deadline) {
+			try {
+				Socket("localhost", port).close()
+				return
+			} catch (_: Exception) {
+				Thread.sleep(20)
+			}
+		}
+		error("WebServer did not start on port $port")
+	}
+}
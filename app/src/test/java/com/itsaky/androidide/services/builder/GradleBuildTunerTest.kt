@@ -175,4 +175,214 @@ class GradleBuildTunerTest {
 
 		assertThat(strategy).isInstanceOf(ThermalSafeStrategy::class.java)
 	}
+
+	private fun balancedConfig() = BalancedStrategy.tune(MID_PERF_DEVICE, BuildProfile(isDebugBuild = false))
+
+	private fun telemetryOf(
+		config: GradleTuningConfig,
+		outcome: BuildOutcome = BuildOutcome.Success,
+		peakDaemonRssMb: Long? = null,
+		thermalAtStart: ThermalState = ThermalState.NotThrottled,
+		thermalAtEnd: ThermalState = ThermalState.NotThrottled,
+	) = BuildTelemetry(
+		timestamp = 0,
+		strategyName = config.strategyName,
+		gradleXmxMb = config.gradle.jvm.xmxMb,
+		maxWorkers = config.gradle.maxWorkers,
+		parallel = config.gradle.parallel,
+		caching = config.gradle.caching,
+		wallTimeMs = 60_000,
+		peakDaemonRssMb = peakDaemonRssMb,
+		outcome = outcome,
+		thermalAtStart = thermalAtStart,
+		thermalAtEnd = thermalAtEnd,
+	)
+
+	private fun GradleTuningConfig.withGradle(
+		xmxMb: Int = gradle.jvm.xmxMb,
+		maxWorkers: Int = gradle.maxWorkers,
+	) = copy(gradle = gradle.copy(jvm = gradle.jvm.copy(xmxMb = xmxMb), maxWorkers = maxWorkers))
+
+	@Test
+	fun `configuration is not adapted without history`() {
+		val base = balancedConfig()
+		val adaptation = GradleBuildTuner.adapt(base, MID_PERF_DEVICE, emptyList())
+
+		assertThat(adaptation.config).isEqualTo(base)
+		assertThat(adaptation.reasons).containsExactly(GradleBuildTuner.AdaptationReason.NoHistory)
+	}
+
+	@Test
+	fun `configuration falls back to the strategy after a failed build with adapted settings`() {
+		val base = balancedConfig()
+		val previous = base.withGradle(xmxMb = 1024, maxWorkers = 1)
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(previous, outcome = BuildOutcome.Failure)),
+			)
+
+		assertThat(adaptation.config).isEqualTo(base)
+		assertThat(adaptation.reasons).containsExactly(GradleBuildTuner.AdaptationReason.FallbackAfterFailure)
+	}
+
+	@Test
+	fun `failed builds with the settings of the strategy are not a reason to fall back`() {
+		val base = balancedConfig()
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(
+					telemetryOf(base, outcome = BuildOutcome.Failure, thermalAtEnd = ThermalState.Throttled),
+				),
+			)
+
+		assertThat(adaptation.config.gradle.maxWorkers).isEqualTo(base.gradle.maxWorkers - 1)
+		assertThat(adaptation.reasons).containsExactly(GradleBuildTuner.AdaptationReason.ThermalBackoff)
+	}
+
+	@Test
+	fun `heap grows and workers drop after running out of memory`() {
+		val base = balancedConfig()
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(base, outcome = BuildOutcome.OutOfMemory)),
+			)
+
+		val gradle = adaptation.config.gradle
+		assertThat(gradle.jvm.xmxMb).isGreaterThan(base.gradle.jvm.xmxMb)
+		assertThat(gradle.jvm.xmxMb % GradleBuildTuner.ADAPTIVE_XMX_ALIGNMENT_MB).isEqualTo(0)
+		assertThat(gradle.jvm.xmxMb).isAtMost((MID_MEM_INFO.totalMemMb * GradleBuildTuner.ADAPTIVE_MAX_XMX_TO_MEM_FACTOR).toInt())
+		assertThat(gradle.maxWorkers).isEqualTo(base.gradle.maxWorkers - 1)
+		assertThat(gradle.parallel).isEqualTo(base.gradle.parallel)
+	}
+
+	@Test
+	fun `workers removed after running out of memory are not restored`() {
+		val base = balancedConfig()
+		val afterOom = base.withGradle(maxWorkers = base.gradle.maxWorkers - 1)
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(base, outcome = BuildOutcome.OutOfMemory), telemetryOf(afterOom)),
+			)
+
+		assertThat(adaptation.config.gradle.maxWorkers).isEqualTo(base.gradle.maxWorkers - 1)
+		assertThat(adaptation.reasons).doesNotContain(GradleBuildTuner.AdaptationReason.RestoreWorkers)
+	}
+
+	@Test
+	fun `parallel execution is disabled only with a single worker`() {
+		val base = balancedConfig()
+		val previous = base.withGradle(maxWorkers = 2)
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(previous, outcome = BuildOutcome.OutOfMemory)),
+			)
+
+		assertThat(adaptation.config.gradle.maxWorkers).isEqualTo(1)
+		assertThat(adaptation.config.gradle.parallel).isFalse()
+	}
+
+	@Test
+	fun `memory is reduced after the daemon died`() {
+		val base = balancedConfig()
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(base, outcome = BuildOutcome.DaemonDied)),
+			)
+
+		val gradle = adaptation.config.gradle
+		assertThat(gradle.jvm.xmxMb).isLessThan(base.gradle.jvm.xmxMb)
+		assertThat(gradle.jvm.xmsMb).isLessThan(base.gradle.jvm.xmsMb)
+		assertThat(gradle.maxWorkers).isEqualTo(base.gradle.maxWorkers - 1)
+		assertThat(gradle.vfsWatch).isFalse()
+	}
+
+	@Test
+	fun `workers drop when the device became throttled during the build`() {
+		val base = balancedConfig()
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(base, thermalAtEnd = ThermalState.Throttled)),
+			)
+
+		assertThat(adaptation.config.gradle.maxWorkers).isEqualTo(base.gradle.maxWorkers - 1)
+		assertThat(adaptation.config.gradle.jvm.xmxMb).isEqualTo(base.gradle.jvm.xmxMb)
+		assertThat(adaptation.reasons).containsExactly(GradleBuildTuner.AdaptationReason.ThermalBackoff)
+	}
+
+	@Test
+	fun `workers are restored once the device is no longer throttled`() {
+		val base = balancedConfig()
+		val previous = base.withGradle(maxWorkers = base.gradle.maxWorkers - 1)
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(base, thermalAtEnd = ThermalState.Throttled), telemetryOf(previous)),
+			)
+
+		assertThat(adaptation.config.gradle.maxWorkers).isEqualTo(base.gradle.maxWorkers)
+		assertThat(adaptation.config.gradle.parallel).isEqualTo(base.gradle.parallel)
+		assertThat(adaptation.reasons).containsExactly(GradleBuildTuner.AdaptationReason.RestoreWorkers)
+	}
+
+	@Test
+	fun `heap grows when builds come close to the memory limits`() {
+		val base = balancedConfig()
+		val adaptation =
+			GradleBuildTuner.adapt(
+				base,
+				MID_PERF_DEVICE,
+				listOf(telemetryOf(base, peakDaemonRssMb = 3000)),
+			)
+
+		assertThat(adaptation.config.gradle.jvm.xmxMb).isGreaterThan(base.gradle.jvm.xmxMb)
+		assertThat(adaptation.reasons).containsExactly(GradleBuildTuner.AdaptationReason.GrowHeap)
+	}
+
+	@Test
+	fun `heap shrinks only after several builds used much less memory`() {
+		val base = balancedConfig()
+		val build = telemetryOf(base, peakDaemonRssMb = 800)
+
+		val afterTwo = GradleBuildTuner.adapt(base, MID_PERF_DEVICE, listOf(build, build))
+		assertThat(afterTwo.config).isEqualTo(base)
+
+		val afterThree = GradleBuildTuner.adapt(base, MID_PERF_DEVICE, listOf(build, build, build))
+		assertThat(afterThree.config.gradle.jvm.xmxMb).isLessThan(base.gradle.jvm.xmxMb)
+		assertThat(afterThree.config.gradle.jvm.xmxMb).isAtLeast(GradleBuildTuner.ADAPTIVE_MIN_XMX_MB)
+		assertThat(afterThree.reasons).containsExactly(GradleBuildTuner.AdaptationReason.ShrinkHeap)
+	}
+
+	@Test
+	fun `build cache is disabled on low storage`() {
+		val base = balancedConfig()
+		val device = MID_PERF_DEVICE.copy(storageFreeMb = 512)
+		val adaptation = GradleBuildTuner.adapt(base, device, emptyList())
+
+		assertThat(adaptation.config.gradle.caching).isFalse()
+		assertThat(adaptation.reasons).contains(GradleBuildTuner.AdaptationReason.LowStorage)
+	}
+
+	@Test
+	fun `build outcome is detected from the build output`() {
+		assertThat(BuildOutcome.fromOutput("Caused by: java.lang.OutOfMemoryError: Java heap space"))
+			.isEqualTo(BuildOutcome.OutOfMemory)
+		assertThat(BuildOutcome.fromOutput("Gradle build daemon disappeared unexpectedly (it may have been killed or may have crashed)"))
+			.isEqualTo(BuildOutcome.DaemonDied)
+		assertThat(BuildOutcome.fromOutput("> Task :app:compileDebugKotlin")).isNull()
+	}
 }
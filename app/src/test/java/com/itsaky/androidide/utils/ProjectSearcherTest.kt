@@ -0,0 +1,210 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.utils
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.eventbus.events.editor.DocumentCloseEvent
+import com.itsaky.androidide.eventbus.events.editor.DocumentOpenEvent
+import com.itsaky.androidide.lsp.models.TextEdit
+import com.itsaky.androidide.models.Position
+import com.itsaky.androidide.projects.FileManager
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertThrows
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Collections
+import java.util.regex.PatternSyntaxException
+
+class ProjectSearcherTest {
+
+	@get:Rule
+	val tmp = TemporaryFolder()
+
+	private fun file(
+		path: String,
+		text: String,
+	): File =
+		File(tmp.root, path).apply {
+			parentFile!!.mkdirs()
+			writeText(text)
+		}
+
+	private fun search(
+		query: ProjectSearchQuery,
+		onFileTooLarge: (File) -> Unit = {},
+		replacement: String? = null,
+	): Map<String, FileMatches> =
+		runBlocking {
+			ProjectSearcher
+				.search(query, listOf(tmp.root), onFileTooLarge = onFileTooLarge, replacement = replacement)
+				.toList()
+				.associateBy { it.file.relativeTo(tmp.root).path }
+		}
+
+	@Test
+	fun `finds matches in every file with their positions`() {
+		for (i in 0 until 50) {
+			file("src/main/java/Source$i.java", "class Source$i {\n  // TODO fix\n}\n")
+		}
+		file("src/main/java/Other.java", "class Other {}\n")
+
+		val results = search(ProjectSearchQuery("todo"))
+		assertThat(results).hasSize(50)
+
+		val result = results.getValue("src/main/java/Source7.java").results.single()
+		assertThat(result.start).isEqualTo(Position(1, 5))
+		assertThat(result.end).isEqualTo(Position(1, 9))
+		assertThat(result.match).isEqualTo("TODO")
+		assertThat(result.line).isEqualTo("...class Source7 { // TODO fix }...")
+	}
+
+	@Test
+	fun `skips build output, binary files and filtered extensions`() {
+		file("src/Main.kt", "val needle = 1")
+		file("src/notes.txt", "needle")
+		file("build/generated/Main.kt", "val needle = 1")
+		file(".gradle/cache.kt", "needle")
+		File(tmp.root, "src/blob.kt").writeBytes(byteArrayOf(0, 1, 2) + "needle".toByteArray())
+		File(tmp.root, "src/latin1.kt").writeBytes(byteArrayOf(0xE9.toByte()) + "needle".toByteArray())
+
+		assertThat(search(ProjectSearchQuery("needle", extensions = listOf(".kt"))).keys)
+			.containsExactly("src/Main.kt")
+		assertThat(search(ProjectSearchQuery("needle")).keys)
+			.containsExactly("src/Main.kt", "src/notes.txt")
+	}
+
+	@Test
+	fun `skips build output only in module roots`() {
+		file("app/build.gradle.kts", "plugins {}")
+		file("app/build/generated/Main.kt", "val needle = 1")
+		file("app/src/main/java/com/example/build/Config.kt", "val needle = 1")
+
+		assertThat(search(ProjectSearchQuery("needle")).keys)
+			.containsExactly("app/src/main/java/com/example/build/Config.kt")
+	}
+
+	@Test
+	fun `reports files too large to search`() {
+		file("Main.kt", "val needle = 1")
+		val large =
+			File(tmp.root, "large.txt").apply {
+				outputStream().buffered().use { out ->
+					out.write("needle\n".toByteArray())
+					repeat((ProjectSearcher.MAX_FILE_SIZE / 1024).toInt()) { out.write(ByteArray(1024) { 'x'.code.toByte() }) }
+				}
+			}
+
+		val tooLarge = Collections.synchronizedList(mutableListOf<File>())
+		assertThat(search(ProjectSearchQuery("needle"), tooLarge::add).keys).containsExactly("Main.kt")
+		assertThat(tooLarge).containsExactly(large)
+	}
+
+	@Test
+	fun `honours case, whole word and regex options`() {
+		file("Main.kt", "val count = 1\nval Count = 2\nval counter = 3\n")
+
+		fun matches(query: ProjectSearchQuery) = search(query)["Main.kt"]?.results?.map { it.start.line } ?: emptyList()
+
+		assertThat(matches(ProjectSearchQuery("count"))).containsExactly(0, 1, 2).inOrder()
+		assertThat(matches(ProjectSearchQuery("count", ignoreCase = false))).containsExactly(0, 2).inOrder()
+		assertThat(matches(ProjectSearchQuery("count", wholeWords = true))).containsExactly(0, 1).inOrder()
+		assertThat(matches(ProjectSearchQuery("^val [Cc]ount =", isRegex = true, ignoreCase = false)))
+			.containsExactly(0, 1)
+			.inOrder()
+		assertThat(matches(ProjectSearchQuery("count.", ignoreCase = false))).isEmpty()
+
+		assertThrows(PatternSyntaxException::class.java) {
+			ProjectSearcher.search(ProjectSearchQuery("count(", isRegex = true), listOf(tmp.root))
+		}
+	}
+
+	@Test
+	fun `previews and applies a replacement on disk`() {
+		val main = file("Main.kt", "fun a() = log(1)\nfun b() = log(22)\n")
+		val other = file("Other.kt", "fun c() = log(3)\n")
+		val query = ProjectSearchQuery("log\\((\\d+)\\)", isRegex = true)
+
+		val preview = search(query, replacement = "print($1)")
+		assertThat(preview.getValue("Main.kt").replacements).containsExactly("print(1)", "print(22)").inOrder()
+
+		// a file changed after the preview is left alone
+		other.writeText("fun c() = log(4)\n")
+		other.setLastModified(other.lastModified() + 10_000)
+
+		val noOpenFiles = OpenFileEditor { file, _, _ -> throw AssertionError("$file is not open") }
+		val result = runBlocking { ProjectSearcher.replace(query, "print($1)", preview.values.toList(), noOpenFiles) }
+		assertThat(result.replacedFiles).containsExactly(main)
+		assertThat(result.skippedFiles).containsExactly(other)
+		assertThat(main.readText()).isEqualTo("fun a() = print(1)\nfun b() = print(22)\n")
+		assertThat(other.readText()).isEqualTo("fun c() = log(4)\n")
+	}
+
+	@Test
+	fun `previews and applies a replacement in open files through their editor`() {
+		val main = file("Main.kt", "fun a() = log(1)\n")
+		val closed = file("Closed.kt", "fun c() = log(3)\n")
+		val unsaved = "fun a() = log(1)\nfun b() = log(22)\n"
+		val query = ProjectSearchQuery("log\\((\\d+)\\)", isRegex = true)
+
+		FileManager.onDocumentOpen(DocumentOpenEvent(main.toPath(), unsaved, 1))
+		FileManager.onDocumentOpen(DocumentOpenEvent(closed.toPath(), closed.readText(), 1))
+		try {
+			// the unsaved text of the editor is searched, not the file
+			val preview = search(query, replacement = "print($1)")
+			assertThat(preview.getValue("Main.kt").replacements).containsExactly("print(1)", "print(22)").inOrder()
+			assertThat(preview.getValue("Main.kt").results.map { it.start.line }).containsExactly(0, 1).inOrder()
+
+			// a file closed after the preview may have been closed without saving
+			FileManager.onDocumentClose(DocumentCloseEvent(closed.toPath()))
+
+			val edited = mutableMapOf<File, List<TextEdit>>()
+			val openFiles =
+				OpenFileEditor { file, version, edits ->
+					assertThat(version).isEqualTo(1)
+					edited[file] = edits
+					true
+				}
+			val result = runBlocking { ProjectSearcher.replace(query, "print($1)", preview.values.toList(), openFiles) }
+
+			assertThat(result.replacedFiles).containsExactly(main)
+			assertThat(result.skippedFiles).containsExactly(closed)
+			assertThat(edited.getValue(main).map { it.newText }).containsExactly("print(1)", "print(22)").inOrder()
+			assertThat(edited.getValue(main).map { it.range.start }).containsExactly(Position(0, 10, 10), Position(1, 10, 27)).inOrder()
+			assertThat(edited.getValue(main).map { it.range.end }).containsExactly(Position(0, 16, 16), Position(1, 17, 34)).inOrder()
+			assertThat(main.readText()).isEqualTo("fun a() = log(1)\n")
+			assertThat(closed.readText()).isEqualTo("fun c() = log(3)\n")
+		} finally {
+			FileManager.onDocumentClose(DocumentCloseEvent(main.toPath()))
+			FileManager.onDocumentClose(DocumentCloseEvent(closed.toPath()))
+		}
+	}
+
+	@Test
+	fun `stops searching when the collector is done`() {
+		for (i in 0 until 2000) {
+			file("src/dir${i % 20}/File$i.kt", "val match = $i")
+		}
+
+		val first = runBlocking { ProjectSearcher.search(ProjectSearchQuery("match"), listOf(tmp.root)).first() }
+		assertThat(first.results).hasSize(1)
+	}
+}
@@ -71,7 +71,8 @@ class EditorEventDispatcher(
   fun dispatch(event: DocumentEvent) {
     when (event) {
       is DocumentOpenEvent -> onDocumentOpen(event)
-      is DocumentChangeEvent -> onDocumentContentChange(event)
+      // Changes are dispatched as they happen, so the editor's text is the text after the change
+      is DocumentChangeEvent -> onDocumentContentChange(event) { editor?.text?.toString() }
       is DocumentCloseEvent -> onDocumentClose(event)
     }
 
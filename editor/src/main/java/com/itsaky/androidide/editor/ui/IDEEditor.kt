@@ -951,8 +951,10 @@ open class IDEEditor
 				dismissInlineSuggestion()
 				file ?: return@subscribeEvent
 
+				// Dispatched here, in the order of the edits, as only the changes are sent
+				dispatchDocumentChangeEvent(event)
+
 				editorScope.launch {
-					dispatchDocumentChangeEvent(event)
 					checkForSignatureHelp(event)
 					handleCustomTextReplacement(event)
 				}
@@ -1265,11 +1267,13 @@ open class IDEEditor
 					Position(end.line, end.column, end.index),
 				)
 			val changedText = event.changedText.toString()
+			// Only a replacement of the whole text copies the document
+			val newText = if (type == ChangeType.NEW_TEXT) text.toString() else null
 			val changeEvent =
 				DocumentChangeEvent(
 					file,
 					changedText,
-					text.toString(),
+					newText,
 					++fileVersion,
 					type,
 					changeDelta,
@@ -41,6 +41,11 @@ constructor(var closedFile: Path, val selectionRange: Range = Range.NONE) :
 /**
  * Dispatched when the content of the given opened document changes. The change can be either
  * performed by the user or the IDE itself.
+ *
+ * The change is described by [changeType], [changeRange] and [changedText]: the inserted text
+ * and the range it now occupies, the deleted text and the range it occupied, or the new text of
+ * the whole document. [newText], the full text after the change, is only set when the whole
+ * document was replaced; otherwise the current text is available from the project file manager.
  */
 data class DocumentChangeEvent(
   var changedFile: Path,
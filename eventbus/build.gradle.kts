@@ -23,4 +23,7 @@ plugins {
 
 dependencies {
     implementation(libs.common.jkotlin)
+
+    testImplementation(libs.tests.junit)
+    testImplementation(libs.tests.google.truth)
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package org.greenrobot.eventbus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The time spent in subscriber methods for an event type, recorded when enabled with {@link
+ * EventBusBuilder#recordDispatchTimes(boolean)}. The time of a subscriber method includes the
+ * delivery of events it posts on the posting thread.
+ */
+public final class DispatchStats {
+  private final LongAdder dispatchCount = new LongAdder();
+  private final LongAdder totalTimeNanos = new LongAdder();
+  private final AtomicLong maxTimeNanos = new AtomicLong();
+
+  DispatchStats() {}
+
+  void record(long timeNanos) {
+    dispatchCount.increment();
+    totalTimeNanos.add(timeNanos);
+
+    long max = maxTimeNanos.get();
+    while (timeNanos > max && !maxTimeNanos.compareAndSet(max, timeNanos)) {
+      max = maxTimeNanos.get();
+    }
+  }
+
+  /** The number of subscriber method invocations. */
+  public long getDispatchCount() {
+    return dispatchCount.sum();
+  }
+
+  /** The total time spent in subscriber methods. */
+  public long getTotalTimeNanos() {
+    return totalTimeNanos.sum();
+  }
+
+  /** The longest time spent in a single subscriber method invocation. */
+  public long getMaxTimeNanos() {
+    return maxTimeNanos.get();
+  }
+
+  @Override
+  public String toString() {
+    return "DispatchStats[count="
+        + getDispatchCount()
+        + ", totalTimeNanos="
+        + getTotalTimeNanos()
+        + ", maxTimeNanos="
+        + getMaxTimeNanos()
+        + "]";
+  }
+}
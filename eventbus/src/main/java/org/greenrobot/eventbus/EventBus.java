@@ -16,14 +16,16 @@
 package org.greenrobot.eventbus;
 
 import org.greenrobot.eventbus.android.AndroidDependenciesDetector;
+import org.greenrobot.eventbus.meta.SubscriberMethodInvoker;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 
@@ -45,9 +47,17 @@ public class EventBus {
   static volatile EventBus defaultInstance;
 
   private static final EventBusBuilder DEFAULT_BUILDER = new EventBusBuilder();
-  private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new HashMap<>();
+  private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new ConcurrentHashMap<>();
+  private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
 
-  private final Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
+  /**
+   * The subscriptions of each event type, ordered by priority. Neither the map nor the arrays are
+   * modified once published: (un)registering copies them and publishes the copy, so posting reads
+   * a consistent snapshot without locking.
+   */
+  private volatile Map<Class<?>, Subscription[]> subscriptionsByEventType;
+
+  // Guarded by this
   private final Map<Object, List<Class<?>>> typesBySubscriber;
   private final Map<Class<?>, Object> stickyEvents;
 
@@ -78,6 +88,9 @@ public class EventBus {
   private final int indexCount;
   private final Logger logger;
 
+  // @Nullable
+  private final Map<Class<?>, DispatchStats> dispatchStats;
+
   /** Convenience singleton for apps using a process-wide EventBus instance. */
   public static EventBus getDefault() {
     EventBus instance = defaultInstance;
@@ -112,7 +125,7 @@ public class EventBus {
 
   EventBus(EventBusBuilder builder) {
     logger = builder.getLogger();
-    subscriptionsByEventType = new HashMap<>();
+    subscriptionsByEventType = Collections.emptyMap();
     typesBySubscriber = new HashMap<>();
     stickyEvents = new ConcurrentHashMap<>();
     mainThreadSupport = builder.getMainThreadSupport();
@@ -132,6 +145,7 @@ public class EventBus {
     throwSubscriberException = builder.throwSubscriberException;
     eventInheritance = builder.eventInheritance;
     executorService = builder.executorService;
+    dispatchStats = builder.recordDispatchTimes ? new ConcurrentHashMap<>() : null;
   }
 
   /**
@@ -154,60 +168,89 @@ public class EventBus {
     List<SubscriberMethod> subscriberMethods =
         subscriberMethodFinder.findSubscriberMethods(subscriberClass);
     synchronized (this) {
-      for (SubscriberMethod subscriberMethod : subscriberMethods) {
-        subscribe(subscriber, subscriberMethod);
+      Map<Class<?>, Subscription[]> subscriptions = new HashMap<>(subscriptionsByEventType);
+      List<Subscription> stickySubscriptions = null;
+      try {
+        for (SubscriberMethod subscriberMethod : subscriberMethods) {
+          Subscription subscription = subscribe(subscriber, subscriberMethod, subscriptions);
+          if (subscriberMethod.sticky) {
+            if (stickySubscriptions == null) {
+              stickySubscriptions = new ArrayList<>();
+            }
+            stickySubscriptions.add(subscription);
+          }
+        }
+      } finally {
+        subscriptionsByEventType = subscriptions;
+      }
+
+      // Only after publishing, handlers of sticky events may (un)register subscribers themselves
+      if (stickySubscriptions != null) {
+        for (Subscription subscription : stickySubscriptions) {
+          postStickyEvents(subscription);
+        }
       }
     }
   }
 
-  // Must be called in synchronized block
-  private void subscribe(Object subscriber, SubscriberMethod subscriberMethod) {
+  // Must be called in synchronized block, with a copy of subscriptionsByEventType
+  private Subscription subscribe(
+      Object subscriber,
+      SubscriberMethod subscriberMethod,
+      Map<Class<?>, Subscription[]> subscriptionsByEventType) {
     Class<?> eventType = subscriberMethod.eventType;
     Subscription newSubscription = new Subscription(subscriber, subscriberMethod);
-    CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
+    Subscription[] subscriptions = subscriptionsByEventType.get(eventType);
     if (subscriptions == null) {
-      subscriptions = new CopyOnWriteArrayList<>();
-      subscriptionsByEventType.put(eventType, subscriptions);
-    } else {
-      if (subscriptions.contains(newSubscription)) {
+      subscriptions = NO_SUBSCRIPTIONS;
+    }
+
+    int size = subscriptions.length;
+    int index = size;
+    for (int i = 0; i < size; i++) {
+      if (subscriptions[i].equals(newSubscription)) {
         throw new EventBusException(
             "Subscriber " + subscriber.getClass() + " already registered to event " + eventType);
       }
-    }
-
-    int size = subscriptions.size();
-    for (int i = 0; i <= size; i++) {
-      if (i == size || subscriberMethod.priority > subscriptions.get(i).subscriberMethod.priority) {
-        subscriptions.add(i, newSubscription);
-        break;
+      if (index == size && subscriberMethod.priority > subscriptions[i].subscriberMethod.priority) {
+        index = i;
       }
     }
 
+    Subscription[] newSubscriptions = new Subscription[size + 1];
+    System.arraycopy(subscriptions, 0, newSubscriptions, 0, index);
+    newSubscriptions[index] = newSubscription;
+    System.arraycopy(subscriptions, index, newSubscriptions, index + 1, size - index);
+    subscriptionsByEventType.put(eventType, newSubscriptions);
+
     List<Class<?>> subscribedEvents = typesBySubscriber.get(subscriber);
     if (subscribedEvents == null) {
       subscribedEvents = new ArrayList<>();
       typesBySubscriber.put(subscriber, subscribedEvents);
     }
     subscribedEvents.add(eventType);
+    return newSubscription;
+  }
 
-    if (subscriberMethod.sticky) {
-      if (eventInheritance) {
-        // Existing sticky events of all subclasses of eventType have to be considered.
-        // Note: Iterating over all events may be inefficient with lots of sticky events,
-        // thus data structure should be changed to allow a more efficient lookup
-        // (e.g. an additional map storing sub classes of super classes: Class -> List<Class>).
-        Set<Map.Entry<Class<?>, Object>> entries = stickyEvents.entrySet();
-        for (Map.Entry<Class<?>, Object> entry : entries) {
-          Class<?> candidateEventType = entry.getKey();
-          if (eventType.isAssignableFrom(candidateEventType)) {
-            Object stickyEvent = entry.getValue();
-            checkPostStickyEventToSubscription(newSubscription, stickyEvent);
-          }
+  // Must be called in synchronized block
+  private void postStickyEvents(Subscription newSubscription) {
+    Class<?> eventType = newSubscription.subscriberMethod.eventType;
+    if (eventInheritance) {
+      // Existing sticky events of all subclasses of eventType have to be considered.
+      // Note: Iterating over all events may be inefficient with lots of sticky events,
+      // thus data structure should be changed to allow a more efficient lookup
+      // (e.g. an additional map storing sub classes of super classes: Class -> List<Class>).
+      Set<Map.Entry<Class<?>, Object>> entries = stickyEvents.entrySet();
+      for (Map.Entry<Class<?>, Object> entry : entries) {
+        Class<?> candidateEventType = entry.getKey();
+        if (eventType.isAssignableFrom(candidateEventType)) {
+          Object stickyEvent = entry.getValue();
+          checkPostStickyEventToSubscription(newSubscription, stickyEvent);
         }
-      } else {
-        Object stickyEvent = stickyEvents.get(eventType);
-        checkPostStickyEventToSubscription(newSubscription, stickyEvent);
       }
+    } else {
+      Object stickyEvent = stickyEvents.get(eventType);
+      checkPostStickyEventToSubscription(newSubscription, stickyEvent);
     }
   }
 
@@ -236,22 +279,29 @@ public class EventBus {
   }
 
   /**
-   * Only updates subscriptionsByEventType, not typesBySubscriber! Caller must update
-   * typesBySubscriber.
+   * Only updates the given copy of subscriptionsByEventType, not typesBySubscriber! Caller must
+   * publish the copy and update typesBySubscriber.
    */
-  private void unsubscribeByEventType(Object subscriber, Class<?> eventType) {
-    List<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
+  private static void unsubscribeByEventType(
+      Object subscriber,
+      Class<?> eventType,
+      Map<Class<?>, Subscription[]> subscriptionsByEventType) {
+    Subscription[] subscriptions = subscriptionsByEventType.get(eventType);
     if (subscriptions != null) {
-      int size = subscriptions.size();
-      for (int i = 0; i < size; i++) {
-        Subscription subscription = subscriptions.get(i);
+      Subscription[] remaining = new Subscription[subscriptions.length];
+      int size = 0;
+      for (Subscription subscription : subscriptions) {
         if (subscription.subscriber == subscriber) {
           subscription.active = false;
-          subscriptions.remove(i);
-          i--;
-          size--;
+        } else {
+          remaining[size++] = subscription;
         }
       }
+      if (size == 0) {
+        subscriptionsByEventType.remove(eventType);
+      } else if (size < subscriptions.length) {
+        subscriptionsByEventType.put(eventType, Arrays.copyOf(remaining, size));
+      }
     }
   }
 
@@ -259,9 +309,11 @@ public class EventBus {
   public synchronized void unregister(Object subscriber) {
     List<Class<?>> subscribedTypes = typesBySubscriber.get(subscriber);
     if (subscribedTypes != null) {
+      Map<Class<?>, Subscription[]> subscriptions = new HashMap<>(subscriptionsByEventType);
       for (Class<?> eventType : subscribedTypes) {
-        unsubscribeByEventType(subscriber, eventType);
+        unsubscribeByEventType(subscriber, eventType, subscriptions);
       }
+      subscriptionsByEventType = subscriptions;
       typesBySubscriber.remove(subscriber);
     } else {
       logger.log(
@@ -378,14 +430,12 @@ public class EventBus {
   public boolean hasSubscriberForEvent(Class<?> eventClass) {
     List<Class<?>> eventTypes = lookupAllEventTypes(eventClass);
     if (eventTypes != null) {
+      Map<Class<?>, Subscription[]> subscriptionsByEventType = this.subscriptionsByEventType;
       int countTypes = eventTypes.size();
       for (int h = 0; h < countTypes; h++) {
         Class<?> clazz = eventTypes.get(h);
-        CopyOnWriteArrayList<Subscription> subscriptions;
-        synchronized (this) {
-          subscriptions = subscriptionsByEventType.get(clazz);
-        }
-        if (subscriptions != null && !subscriptions.isEmpty()) {
+        Subscription[] subscriptions = subscriptionsByEventType.get(clazz);
+        if (subscriptions != null && subscriptions.length > 0) {
           return true;
         }
       }
@@ -420,11 +470,8 @@ public class EventBus {
 
   private boolean postSingleEventForEventType(
       Object event, PostingThreadState postingState, Class<?> eventClass) {
-    CopyOnWriteArrayList<Subscription> subscriptions;
-    synchronized (this) {
-      subscriptions = subscriptionsByEventType.get(eventClass);
-    }
-    if (subscriptions != null && !subscriptions.isEmpty()) {
+    Subscription[] subscriptions = subscriptionsByEventType.get(eventClass);
+    if (subscriptions != null && subscriptions.length > 0) {
       for (Subscription subscription : subscriptions) {
         postingState.event = event;
         postingState.subscription = subscription;
@@ -487,20 +534,22 @@ public class EventBus {
    * interfaces.
    */
   private static List<Class<?>> lookupAllEventTypes(Class<?> eventClass) {
-    synchronized (eventTypesCache) {
-      List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
-      if (eventTypes == null) {
-        eventTypes = new ArrayList<>();
-        Class<?> clazz = eventClass;
-        while (clazz != null) {
-          eventTypes.add(clazz);
-          addInterfaces(eventTypes, clazz.getInterfaces());
-          clazz = clazz.getSuperclass();
-        }
-        eventTypesCache.put(eventClass, eventTypes);
+    List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
+    if (eventTypes == null) {
+      eventTypes = new ArrayList<>();
+      Class<?> clazz = eventClass;
+      while (clazz != null) {
+        eventTypes.add(clazz);
+        addInterfaces(eventTypes, clazz.getInterfaces());
+        clazz = clazz.getSuperclass();
+      }
+      // Threads racing for the same class compute equal lists, the first one wins
+      List<Class<?>> existing = eventTypesCache.putIfAbsent(eventClass, eventTypes);
+      if (existing != null) {
+        eventTypes = existing;
       }
-      return eventTypes;
     }
+    return eventTypes;
   }
 
   /** Recurses through super interfaces. */
@@ -529,6 +578,30 @@ public class EventBus {
   }
 
   void invokeSubscriber(Subscription subscription, Object event) {
+    if (dispatchStats == null) {
+      dispatch(subscription, event);
+      return;
+    }
+
+    long start = System.nanoTime();
+    try {
+      dispatch(subscription, event);
+    } finally {
+      recordDispatchTime(event.getClass(), System.nanoTime() - start);
+    }
+  }
+
+  private void dispatch(Subscription subscription, Object event) {
+    SubscriberMethodInvoker invoker = subscription.subscriberMethod.invoker;
+    if (invoker != null) {
+      try {
+        invoker.invoke(subscription.subscriber, event);
+      } catch (Throwable e) {
+        handleSubscriberException(subscription, event, e);
+      }
+      return;
+    }
+
     try {
       subscription.subscriberMethod.method.invoke(subscription.subscriber, event);
     } catch (InvocationTargetException e) {
@@ -538,6 +611,38 @@ public class EventBus {
     }
   }
 
+  private void recordDispatchTime(Class<?> eventType, long timeNanos) {
+    DispatchStats stats = dispatchStats.get(eventType);
+    if (stats == null) {
+      DispatchStats newStats = new DispatchStats();
+      stats = dispatchStats.putIfAbsent(eventType, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    stats.record(timeNanos);
+  }
+
+  /**
+   * Gets the time spent in subscriber methods for each posted event type, if enabled with {@link
+   * EventBusBuilder#recordDispatchTimes(boolean)}. The returned map is a live view.
+   *
+   * @return The dispatch stats by event type, empty if not enabled.
+   */
+  public Map<Class<?>, DispatchStats> getDispatchStats() {
+    if (dispatchStats == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(dispatchStats);
+  }
+
+  /** Resets the recorded dispatch stats of all event types. */
+  public void clearDispatchStats() {
+    if (dispatchStats != null) {
+      dispatchStats.clear();
+    }
+  }
+
   private void handleSubscriberException(Subscription subscription, Object event, Throwable cause) {
     if (event instanceof SubscriberExceptionEvent) {
       if (logSubscriberExceptions) {
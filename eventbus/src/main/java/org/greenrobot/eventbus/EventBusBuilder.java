@@ -38,6 +38,7 @@ public class EventBusBuilder {
   boolean eventInheritance = true;
   boolean ignoreGeneratedIndex;
   boolean strictMethodVerification;
+  boolean recordDispatchTimes;
   ExecutorService executorService = DEFAULT_EXECUTOR_SERVICE;
   List<Class<?>> skipMethodVerificationForClasses;
   List<SubscriberInfoIndex> subscriberInfoIndexes;
@@ -131,6 +132,15 @@ public class EventBusBuilder {
     return this;
   }
 
+  /**
+   * Records the time spent in subscriber methods per event type, see {@link
+   * EventBus#getDispatchStats()} (default: false).
+   */
+  public EventBusBuilder recordDispatchTimes(boolean recordDispatchTimes) {
+    this.recordDispatchTimes = recordDispatchTimes;
+    return this;
+  }
+
   /** Adds an index generated by EventBus' annotation preprocessor. */
   public EventBusBuilder addIndex(SubscriberInfoIndex index) {
     if (subscriberInfoIndexes == null) {
@@ -16,6 +16,7 @@
 package org.greenrobot.eventbus;
 
 import java.lang.reflect.Method;
+import org.greenrobot.eventbus.meta.SubscriberMethodInvoker;
 
 /** Used internally by EventBus and generated subscriber indexes. */
 public class SubscriberMethod {
@@ -24,16 +25,29 @@ public class SubscriberMethod {
   final Class<?> eventType;
   final int priority;
   final boolean sticky;
+  /** Calls the method directly when generated by the index, {@code null} to use reflection. */
+  final SubscriberMethodInvoker invoker;
   /** Used for efficient comparison */
   String methodString;
 
   public SubscriberMethod(
       Method method, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
+    this(method, eventType, threadMode, priority, sticky, null);
+  }
+
+  public SubscriberMethod(
+      Method method,
+      Class<?> eventType,
+      ThreadMode threadMode,
+      int priority,
+      boolean sticky,
+      SubscriberMethodInvoker invoker) {
     this.method = method;
     this.threadMode = threadMode;
     this.eventType = eventType;
     this.priority = priority;
     this.sticky = sticky;
+    this.invoker = invoker;
   }
 
   @Override
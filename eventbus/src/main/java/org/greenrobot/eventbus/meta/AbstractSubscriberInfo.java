@@ -71,9 +71,19 @@ public abstract class AbstractSubscriberInfo implements SubscriberInfo {
 
   protected SubscriberMethod createSubscriberMethod(
       String methodName, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
+    return createSubscriberMethod(methodName, eventType, threadMode, priority, sticky, null);
+  }
+
+  protected SubscriberMethod createSubscriberMethod(
+      String methodName,
+      Class<?> eventType,
+      ThreadMode threadMode,
+      int priority,
+      boolean sticky,
+      SubscriberMethodInvoker invoker) {
     try {
       Method method = subscriberClass.getDeclaredMethod(methodName, eventType);
-      return new SubscriberMethod(method, eventType, threadMode, priority, sticky);
+      return new SubscriberMethod(method, eventType, threadMode, priority, sticky, invoker);
     } catch (NoSuchMethodException e) {
       throw new EventBusException(
           "Could not find subscriber method in "
@@ -39,7 +39,12 @@ public class SimpleSubscriberInfo extends AbstractSubscriberInfo {
       SubscriberMethodInfo info = methodInfos[i];
       methods[i] =
           createSubscriberMethod(
-              info.methodName, info.eventType, info.threadMode, info.priority, info.sticky);
+              info.methodName,
+              info.eventType,
+              info.threadMode,
+              info.priority,
+              info.sticky,
+              info.invoker);
     }
     return methods;
   }
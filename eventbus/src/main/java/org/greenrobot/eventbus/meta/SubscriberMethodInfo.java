@@ -23,14 +23,26 @@ public class SubscriberMethodInfo {
   final Class<?> eventType;
   final int priority;
   final boolean sticky;
+  final SubscriberMethodInvoker invoker;
 
   public SubscriberMethodInfo(
-      String methodName, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
+      String methodName,
+      Class<?> eventType,
+      ThreadMode threadMode,
+      int priority,
+      boolean sticky,
+      SubscriberMethodInvoker invoker) {
     this.methodName = methodName;
     this.threadMode = threadMode;
     this.eventType = eventType;
     this.priority = priority;
     this.sticky = sticky;
+    this.invoker = invoker;
+  }
+
+  public SubscriberMethodInfo(
+      String methodName, Class<?> eventType, ThreadMode threadMode, int priority, boolean sticky) {
+    this(methodName, eventType, threadMode, priority, sticky, null);
   }
 
   public SubscriberMethodInfo(String methodName, Class<?> eventType) {
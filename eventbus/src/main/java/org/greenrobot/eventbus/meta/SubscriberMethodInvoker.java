@@ -0,0 +1,17 @@
+package org.greenrobot.eventbus.meta;
+
+/**
+ * Calls a subscriber method directly, without reflection. Implementations are generated along with
+ * the subscriber index by EventBus' annotation processor.
+ */
+public interface SubscriberMethodInvoker {
+
+  /**
+   * Invokes the subscriber method with the given event.
+   *
+   * @param subscriber The subscriber declaring the method.
+   * @param event The event to deliver, an instance of the method's event type.
+   * @throws Throwable Anything thrown by the subscriber method, as is.
+   */
+  void invoke(Object subscriber, Object event) throws Throwable;
+}
@@ -0,0 +1,234 @@
+package org.greenrobot.eventbus;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SubscriberMethodInfo;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Compares the posting throughput of {@link EventBus} under contention with the locked, reflective
+ * posting path it used before, in the manner of a JMH throughput benchmark: each configuration is
+ * run for warmup iterations before the measured ones, and the mean throughput is reported.
+ *
+ * <p>Skipped unless the {@code EVENTBUS_BENCHMARKS} environment variable is set:
+ *
+ * <pre>
+ * EVENTBUS_BENCHMARKS=1 ./gradlew :eventbus:test --tests '*EventBusPostBenchmark'
+ * </pre>
+ *
+ * Results are printed to stdout.
+ */
+@RunWith(JUnit4.class)
+public class EventBusPostBenchmark {
+
+  private static final int SUBSCRIBERS = 4;
+  private static final int POSTS_PER_THREAD = 200_000;
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int MEASUREMENT_ITERATIONS = 5;
+  private static final int[] THREADS = {1, 2, 4, 8};
+
+  public static class BenchEvent {}
+
+  public static class BenchSubscriber {
+    final LongAdder received = new LongAdder();
+
+    @Subscribe
+    public void onEvent(BenchEvent event) {
+      received.increment();
+    }
+  }
+
+  /** What the annotation processor generates for {@link BenchSubscriber}. */
+  private static class BenchIndex implements SubscriberInfoIndex {
+    @Override
+    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+      if (subscriberClass != BenchSubscriber.class) {
+        return null;
+      }
+      return new SimpleSubscriberInfo(
+          BenchSubscriber.class,
+          true,
+          new SubscriberMethodInfo[] {
+            new SubscriberMethodInfo(
+                "onEvent",
+                BenchEvent.class,
+                ThreadMode.POSTING,
+                0,
+                false,
+                (subscriber, event) -> ((BenchSubscriber) subscriber).onEvent((BenchEvent) event)),
+          });
+    }
+  }
+
+  /**
+   * The former posting path: subscriptions looked up under the bus lock, event types looked up
+   * under the cache lock, and subscribers called through reflection.
+   */
+  private static class LockingBus {
+    private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new HashMap<>();
+
+    private final Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType =
+        new HashMap<>();
+    private final ThreadLocal<EventBus.PostingThreadState> currentPostingThreadState =
+        ThreadLocal.withInitial(EventBus.PostingThreadState::new);
+
+    synchronized void register(Object subscriber, Method method, Class<?> eventType) {
+      subscriptionsByEventType
+          .computeIfAbsent(eventType, type -> new CopyOnWriteArrayList<>())
+          .add(
+              new Subscription(
+                  subscriber, new SubscriberMethod(method, eventType, ThreadMode.POSTING, 0, false)));
+    }
+
+    void post(Object event) throws Exception {
+      EventBus.PostingThreadState postingState = currentPostingThreadState.get();
+      List<Object> eventQueue = postingState.eventQueue;
+      eventQueue.add(event);
+
+      if (!postingState.isPosting) {
+        postingState.isPosting = true;
+        try {
+          while (!eventQueue.isEmpty()) {
+            postSingleEvent(eventQueue.remove(0), postingState);
+          }
+        } finally {
+          postingState.isPosting = false;
+        }
+      }
+    }
+
+    private void postSingleEvent(Object event, EventBus.PostingThreadState postingState)
+        throws Exception {
+      List<Class<?>> eventTypes = lookupAllEventTypes(event.getClass());
+      int countTypes = eventTypes.size();
+      for (int h = 0; h < countTypes; h++) {
+        CopyOnWriteArrayList<Subscription> subscriptions;
+        synchronized (this) {
+          subscriptions = subscriptionsByEventType.get(eventTypes.get(h));
+        }
+        if (subscriptions != null && !subscriptions.isEmpty()) {
+          for (Subscription subscription : subscriptions) {
+            postingState.event = event;
+            postingState.subscription = subscription;
+            try {
+              subscription.subscriberMethod.method.invoke(subscription.subscriber, event);
+            } finally {
+              postingState.event = null;
+              postingState.subscription = null;
+              postingState.canceled = false;
+            }
+          }
+        }
+      }
+    }
+
+    private static List<Class<?>> lookupAllEventTypes(Class<?> eventClass) {
+      synchronized (eventTypesCache) {
+        List<Class<?>> eventTypes = eventTypesCache.get(eventClass);
+        if (eventTypes == null) {
+          eventTypes = new ArrayList<>();
+          Class<?> clazz = eventClass;
+          while (clazz != null) {
+            eventTypes.add(clazz);
+            EventBus.addInterfaces(eventTypes, clazz.getInterfaces());
+            clazz = clazz.getSuperclass();
+          }
+          eventTypesCache.put(eventClass, eventTypes);
+        }
+        return eventTypes;
+      }
+    }
+  }
+
+  private interface Poster {
+    void post(Object event) throws Exception;
+  }
+
+  @Test
+  public void compare() throws Exception {
+    assumeTrue("Set EVENTBUS_BENCHMARKS to run", System.getenv("EVENTBUS_BENCHMARKS") != null);
+
+    Method onEvent = BenchSubscriber.class.getMethod("onEvent", BenchEvent.class);
+    LockingBus lockingBus = new LockingBus();
+    EventBus reflectiveBus = EventBus.builder().ignoreGeneratedIndex(true).build();
+    EventBus indexedBus = EventBus.builder().addIndex(new BenchIndex()).build();
+    for (int i = 0; i < SUBSCRIBERS; i++) {
+      lockingBus.register(new BenchSubscriber(), onEvent, BenchEvent.class);
+      reflectiveBus.register(new BenchSubscriber());
+      indexedBus.register(new BenchSubscriber());
+    }
+
+    System.out.println(
+        "EventBusPostBenchmark: "
+            + SUBSCRIBERS
+            + " subscribers, "
+            + POSTS_PER_THREAD
+            + " posts per thread, throughput in posts/ms");
+    System.out.println("  threads   locked+reflection   lock-free+reflection   lock-free+invokers");
+    for (int threads : THREADS) {
+      double locked = measure(threads, lockingBus::post);
+      double reflective = measure(threads, reflectiveBus::post);
+      double indexed = measure(threads, indexedBus::post);
+      System.out.println(
+          String.format("  %7d   %17.0f   %20.0f   %18.0f", threads, locked, reflective, indexed));
+    }
+  }
+
+  /** Runs the warmup and measurement iterations and returns the mean throughput in posts/ms. */
+  private static double measure(int threads, Poster poster) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      runIteration(threads, poster);
+    }
+    long totalNanos = 0;
+    for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+      totalNanos += runIteration(threads, poster);
+    }
+    double posts = (double) threads * POSTS_PER_THREAD * MEASUREMENT_ITERATIONS;
+    return posts / (totalNanos / 1_000_000.0);
+  }
+
+  private static long runIteration(int threads, Poster poster) throws Exception {
+    BenchEvent event = new BenchEvent();
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threads);
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      new Thread(
+              () -> {
+                try {
+                  start.await();
+                  for (int i = 0; i < POSTS_PER_THREAD; i++) {
+                    poster.post(event);
+                  }
+                } catch (Throwable e) {
+                  errors.add(e);
+                } finally {
+                  done.countDown();
+                }
+              })
+          .start();
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsed = System.nanoTime() - begin;
+    if (!errors.isEmpty()) {
+      throw new AssertionError("Posting failed", errors.get(0));
+    }
+    return elapsed;
+  }
+}
@@ -0,0 +1,201 @@
+package org.greenrobot.eventbus;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.greenrobot.eventbus.meta.SimpleSubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfo;
+import org.greenrobot.eventbus.meta.SubscriberInfoIndex;
+import org.greenrobot.eventbus.meta.SubscriberMethodInfo;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EventBusTest {
+
+  public static class Event {}
+
+  public static class OrderedSubscriber {
+    final List<String> received = new ArrayList<>();
+
+    @Subscribe(priority = 1)
+    public void onFirst(Event event) {
+      received.add("first");
+    }
+
+    @Subscribe
+    public void onSecond(Event event) {
+      received.add("second");
+    }
+  }
+
+  public static class FailingSubscriber {
+    @Subscribe
+    public void onEvent(Event event) throws IOException {
+      throw new IOException("failed");
+    }
+  }
+
+  public static class CountingSubscriber {
+    final AtomicInteger count = new AtomicInteger();
+
+    @Subscribe
+    public void onEvent(Event event) {
+      count.incrementAndGet();
+    }
+  }
+
+  public static class StickySubscriber {
+    final CountingSubscriber registeredOnSticky = new CountingSubscriber();
+    EventBus bus;
+
+    @Subscribe(sticky = true)
+    public void onSticky(String event) {
+      bus.register(registeredOnSticky);
+    }
+  }
+
+  /** What the annotation processor generates for {@link OrderedSubscriber}. */
+  private static class OrderedSubscriberIndex implements SubscriberInfoIndex {
+    final AtomicInteger invocations = new AtomicInteger();
+
+    @Override
+    public SubscriberInfo getSubscriberInfo(Class<?> subscriberClass) {
+      if (subscriberClass != OrderedSubscriber.class) {
+        return null;
+      }
+      return new SimpleSubscriberInfo(
+          OrderedSubscriber.class,
+          true,
+          new SubscriberMethodInfo[] {
+            new SubscriberMethodInfo(
+                "onFirst",
+                Event.class,
+                ThreadMode.POSTING,
+                1,
+                false,
+                (subscriber, event) -> {
+                  invocations.incrementAndGet();
+                  ((OrderedSubscriber) subscriber).onFirst((Event) event);
+                }),
+            new SubscriberMethodInfo(
+                "onSecond",
+                Event.class,
+                ThreadMode.POSTING,
+                0,
+                false,
+                (subscriber, event) -> {
+                  invocations.incrementAndGet();
+                  ((OrderedSubscriber) subscriber).onSecond((Event) event);
+                }),
+          });
+    }
+  }
+
+  @Test
+  public void indexedSubscribersAreInvokedDirectlyInPriorityOrder() {
+    OrderedSubscriberIndex index = new OrderedSubscriberIndex();
+    EventBus bus = EventBus.builder().addIndex(index).build();
+    OrderedSubscriber subscriber = new OrderedSubscriber();
+
+    bus.register(subscriber);
+    bus.post(new Event());
+
+    assertThat(subscriber.received).containsExactly("first", "second").inOrder();
+    assertThat(index.invocations.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void exceptionsOfSubscribersAreNotWrapped() {
+    EventBus bus = EventBus.builder().throwSubscriberException(true).build();
+    bus.register(new FailingSubscriber());
+
+    EventBusException error = assertThrows(EventBusException.class, () -> bus.post(new Event()));
+    assertThat(error).hasCauseThat().isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void dispatchTimesAreRecordedPerEventTypeWhenEnabled() {
+    EventBus bus = EventBus.builder().recordDispatchTimes(true).build();
+    bus.register(new CountingSubscriber());
+    bus.post(new Event());
+    bus.post(new Event());
+
+    DispatchStats stats = bus.getDispatchStats().get(Event.class);
+    assertThat(stats).isNotNull();
+    assertThat(stats.getDispatchCount()).isEqualTo(2);
+    assertThat(stats.getMaxTimeNanos()).isAtMost(stats.getTotalTimeNanos());
+
+    EventBus untimed = EventBus.builder().build();
+    untimed.register(new CountingSubscriber());
+    untimed.post(new Event());
+    assertThat(untimed.getDispatchStats()).isEmpty();
+  }
+
+  @Test
+  public void subscribersRegisteredWhileHandlingStickyEventsAreKept() {
+    EventBus bus = EventBus.builder().build();
+    StickySubscriber subscriber = new StickySubscriber();
+    subscriber.bus = bus;
+
+    bus.postSticky("sticky");
+    bus.register(subscriber);
+    bus.post(new Event());
+
+    assertThat(bus.isRegistered(subscriber.registeredOnSticky)).isTrue();
+    assertThat(subscriber.registeredOnSticky.count.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void postingWhileRegisteringConcurrently() throws Exception {
+    EventBus bus = EventBus.builder().logNoSubscriberMessages(false).build();
+    CountingSubscriber stable = new CountingSubscriber();
+    bus.register(stable);
+
+    int posters = 4;
+    int postsPerPoster = 20_000;
+    AtomicBoolean posting = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newFixedThreadPool(posters + 1);
+    try {
+      Future<?> registrations =
+          executor.submit(
+              () -> {
+                while (posting.get()) {
+                  CountingSubscriber temporary = new CountingSubscriber();
+                  bus.register(temporary);
+                  bus.unregister(temporary);
+                }
+              });
+
+      List<Future<?>> posts = new ArrayList<>();
+      for (int i = 0; i < posters; i++) {
+        posts.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < postsPerPoster; j++) {
+                    bus.post(new Event());
+                  }
+                }));
+      }
+      for (Future<?> post : posts) {
+        post.get(1, TimeUnit.MINUTES);
+      }
+      posting.set(false);
+      registrations.get(1, TimeUnit.MINUTES);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(stable.count.get()).isEqualTo(posters * postsPerPoster);
+  }
+}
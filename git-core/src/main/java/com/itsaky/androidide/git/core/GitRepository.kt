@@ -19,9 +19,28 @@ interface GitRepository : Closeable {
     val rootDir: File
     
     suspend fun getStatus(): GitStatus
+
+    /**
+     * Marks the status of the given files, or of everything in the given directories, as stale,
+     * e.g. after they are saved, created or deleted. Safe to call from any thread.
+     */
+    fun invalidateStatus(files: Collection<File>)
+
+    /**
+     * Makes the next [getStatus] rescan the whole work tree. Safe to call from any thread.
+     */
+    fun invalidateStatus()
+
     suspend fun getCurrentBranch(): GitBranch?
     suspend fun getBranches(): List<GitBranch>
-    suspend fun getHistory(limit: Int = 50): List<GitCommit>
+
+    /**
+     * Returns a page of the history of HEAD, newest first.
+     *
+     * @param limit The maximum number of commits to return.
+     * @param offset The number of newer commits to skip.
+     */
+    suspend fun getHistory(limit: Int = 50, offset: Int = 0): List<GitCommit>
     suspend fun getDiff(file: File): String
     
     // Commit Operations
@@ -6,14 +6,18 @@ import com.itsaky.androidide.git.core.models.GitBranch
 import com.itsaky.androidide.git.core.models.GitCommit
 import com.itsaky.androidide.git.core.models.GitStatus
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import org.eclipse.jgit.api.Git
 import org.eclipse.jgit.api.ListBranchCommand.ListMode
 import org.eclipse.jgit.api.MergeResult
+import org.eclipse.jgit.api.Status
 import org.eclipse.jgit.diff.DiffFormatter
 import org.eclipse.jgit.dircache.DirCacheIterator
 import org.eclipse.jgit.lib.BranchConfig
 import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectId
 import org.eclipse.jgit.lib.PersonIdent
 import org.eclipse.jgit.lib.ProgressMonitor
 import org.eclipse.jgit.lib.Repository
@@ -33,14 +37,23 @@ import org.eclipse.jgit.treewalk.filter.PathFilter
 import org.slf4j.LoggerFactory
 import java.io.ByteArrayOutputStream
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * JGit-based implementation of the [GitRepository] interface.
+ *
+ * The result of [getStatus] is cached. A cached status is refreshed for the paths passed to
+ * [invalidateStatus], and rescanned in full when the index or HEAD changes.
  */
 class JGitRepository(override val rootDir: File) : GitRepository {
 
     private val log = LoggerFactory.getLogger(JGitRepository::class.java)
 
+    private companion object {
+        /** Above this number of stale paths, a full status scan is cheaper than a filtered one. */
+        const val MAX_INCREMENTAL_STATUS_PATHS = 64
+    }
+
     private val repository: Repository = FileRepositoryBuilder()
         .setWorkTree(rootDir)
         .findGitDir(rootDir)
@@ -48,6 +61,30 @@ class JGitRepository(override val rootDir: File) : GitRepository {
 
     private val git: Git = Git(repository)
 
+    /** Which part of the status a path is reported in, in order of priority. */
+    private enum class StatusGroup { CONFLICTED, STAGED, UNSTAGED, UNTRACKED }
+
+    private class StatusEntry(val group: StatusGroup, val change: FileChange)
+
+    /**
+     * What the cached status was computed against. The whole status is stale when the index or
+     * HEAD changes, e.g. when files are staged or committed from a terminal.
+     */
+    private data class StatusStamp(
+        val indexLastModified: Long,
+        val indexLength: Long,
+        val head: ObjectId?,
+    )
+
+    private class StatusCache(val stamp: StatusStamp, val entries: Map<String, StatusEntry>)
+
+    private val statusLock = Mutex()
+    private var statusCache: StatusCache? = null
+    private val staleStatusPaths: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    @Volatile
+    private var fullStatusScanRequested = false
+
     private fun getHeadTree(repository: Repository): AbstractTreeIterator {
         val head = repository.resolve(Constants.HEAD) ?: return EmptyTreeIterator()
         val treeParser = CanonicalTreeParser()
@@ -61,41 +98,27 @@ class JGitRepository(override val rootDir: File) : GitRepository {
     }
 
     override suspend fun getStatus(): GitStatus = withContext(Dispatchers.IO) {
-        val jgitStatus = git.status().call()
-        
+        val entries = statusLock.withLock { refreshStatusCache() }
+
         val staged = mutableListOf<FileChange>()
         val unstaged = mutableListOf<FileChange>()
         val untracked = mutableListOf<FileChange>()
         val conflicted = mutableListOf<FileChange>()
- 
-        // Track unique paths to avoid duplicates across categories
-        // Priority: Conflicted > Staged > Unstaged > Untracked
-        val processedPaths = mutableSetOf<String>()
-
-        // 1. Conflicted (Highest Priority)
-        jgitStatus.conflicting.forEach {
-            if (processedPaths.add(it)) {
-                conflicted.add(FileChange(it, ChangeType.CONFLICTED))
+
+        entries.keys.sorted().forEach { path ->
+            val entry = entries.getValue(path)
+            when (entry.group) {
+                StatusGroup.CONFLICTED -> conflicted.add(entry.change)
+                StatusGroup.STAGED -> staged.add(entry.change)
+                StatusGroup.UNSTAGED -> unstaged.add(entry.change)
+                StatusGroup.UNTRACKED -> untracked.add(entry.change)
             }
         }
 
-        // 2. Staged files (Added, Changed, Removed)
-        jgitStatus.added.forEach { if (processedPaths.add(it)) staged.add(FileChange(it, ChangeType.ADDED)) }
-        jgitStatus.changed.forEach { if (processedPaths.add(it)) staged.add(FileChange(it, ChangeType.MODIFIED)) }
-        jgitStatus.removed.forEach { if (processedPaths.add(it)) staged.add(FileChange(it, ChangeType.DELETED)) }
-
-        // 3. Unstaged files (Modified, Missing)
-        jgitStatus.modified.forEach { if (processedPaths.add(it)) unstaged.add(FileChange(it, ChangeType.MODIFIED)) }
-        jgitStatus.missing.forEach { if (processedPaths.add(it)) unstaged.add(FileChange(it, ChangeType.DELETED)) }
-        
-        // 4. Untracked files
-        jgitStatus.untracked.forEach { if (processedPaths.add(it)) untracked.add(FileChange(it, ChangeType.UNTRACKED)) }
-        
-
         val isMerging = repository.repositoryState == RepositoryState.MERGING
 
         GitStatus(
-            isClean = jgitStatus.isClean,
+            isClean = entries.isEmpty(),
             hasConflicts = conflicted.isNotEmpty(),
             isMerging = isMerging,
             staged = staged,
@@ -105,6 +128,90 @@ class JGitRepository(override val rootDir: File) : GitRepository {
         )
     }
 
+    override fun invalidateStatus(files: Collection<File>) {
+        files.forEach { file ->
+            val relativePath = file.absoluteFile.toRelativeString(rootDir.absoluteFile).replace('\\', '/')
+            // Files outside of the work tree do not affect the status
+            if (!relativePath.startsWith("..")) {
+                staleStatusPaths.add(relativePath)
+            }
+        }
+    }
+
+    override fun invalidateStatus() {
+        fullStatusScanRequested = true
+    }
+
+    /**
+     * Brings the status cache up to date: by a full scan if the index or HEAD changed since it was
+     * computed, else by rescanning only the stale paths. Must be called with [statusLock] held.
+     */
+    private fun refreshStatusCache(): Map<String, StatusEntry> {
+        // Take the stamp and the stale paths before scanning, so that changes made during the scan
+        // are picked up by the next call
+        val indexFile = repository.indexFile
+        val stamp = StatusStamp(indexFile.lastModified(), indexFile.length(), repository.resolve(Constants.HEAD))
+        val stalePaths = staleStatusPaths.toList()
+        staleStatusPaths.removeAll(stalePaths.toSet())
+        val fullScanRequested = fullStatusScanRequested
+        fullStatusScanRequested = false
+
+        val cache = statusCache
+        val needsFullScan = cache == null ||
+            cache.stamp != stamp ||
+            fullScanRequested ||
+            stalePaths.size > MAX_INCREMENTAL_STATUS_PATHS ||
+            // the root, or an ignore file which may change the status of any path below it
+            stalePaths.any { it.isEmpty() || it.substringAfterLast('/') == Constants.DOT_GIT_IGNORE }
+
+        val entries = try {
+            when {
+                needsFullScan -> classify(git.status().call())
+                stalePaths.isEmpty() -> cache!!.entries
+                else -> {
+                    val status = git.status().apply { stalePaths.forEach { addPath(it) } }.call()
+                    val unaffected = cache!!.entries.filterKeys { path ->
+                        stalePaths.none { stale -> path == stale || path.startsWith("$stale/") }
+                    }
+                    unaffected + classify(status)
+                }
+            }
+        } catch (e: Exception) {
+            // Keep the pending work for the next call
+            staleStatusPaths.addAll(stalePaths)
+            if (fullScanRequested) fullStatusScanRequested = true
+            throw e
+        }
+
+        statusCache = StatusCache(stamp, entries)
+        return entries
+    }
+
+    /**
+     * Groups the paths of a status. A path is reported only once, in the group of the highest
+     * priority: conflicted, then staged, unstaged and untracked.
+     */
+    private fun classify(status: Status): Map<String, StatusEntry> {
+        val entries = HashMap<String, StatusEntry>()
+        fun add(paths: Set<String>, group: StatusGroup, type: ChangeType) {
+            paths.forEach { path ->
+                if (path !in entries) entries[path] = StatusEntry(group, FileChange(path, type))
+            }
+        }
+
+        add(status.conflicting, StatusGroup.CONFLICTED, ChangeType.CONFLICTED)
+
+        add(status.added, StatusGroup.STAGED, ChangeType.ADDED)
+        add(status.changed, StatusGroup.STAGED, ChangeType.MODIFIED)
+        add(status.removed, StatusGroup.STAGED, ChangeType.DELETED)
+
+        add(status.modified, StatusGroup.UNSTAGED, ChangeType.MODIFIED)
+        add(status.missing, StatusGroup.UNSTAGED, ChangeType.DELETED)
+
+        add(status.untracked, StatusGroup.UNTRACKED, ChangeType.UNTRACKED)
+        return entries
+    }
+
     override suspend fun getCurrentBranch(): GitBranch? = withContext(Dispatchers.IO) {
         val head = repository.fullBranch ?: return@withContext null
         val shortName = repository.branch ?: head
@@ -128,21 +235,44 @@ class JGitRepository(override val rootDir: File) : GitRepository {
         }
     }
 
-    override suspend fun getHistory(limit: Int): List<GitCommit> = withContext(Dispatchers.IO) {
+    override suspend fun getHistory(limit: Int, offset: Int): List<GitCommit> = withContext(Dispatchers.IO) {
         try {
-            val branchName = repository.branch ?: return@withContext emptyList()
-            val trackingBranch = BranchConfig(repository.config, branchName).trackingBranch
+            val head = repository.resolve(Constants.HEAD) ?: return@withContext emptyList()
 
             RevWalk(repository).use { walk ->
-                val remoteCommit = trackingBranch?.let { repository.resolve(it) }?.let {
-                    walk.parseCommit(it)
+                // The commits which cannot be reached from a remote-tracking branch have not been
+                // pushed. There are usually few of them, so this pass stops early. Without any
+                // remote-tracking branch nothing has been pushed, and the pass is skipped, as it
+                // would walk the entire history.
+                val remoteCommits = repository.refDatabase.getRefsByPrefix(Constants.R_REMOTES).mapNotNull { ref ->
+                    val target = ref.objectId ?: return@mapNotNull null
+                    try {
+                        walk.peel(walk.parseAny(target)) as? RevCommit
+                    } catch (e: Exception) {
+                        log.warn("Ignoring unreadable remote-tracking ref {}", ref.name, e)
+                        null
+                    }
                 }
 
-                git.log().setMaxCount(limit).call().map { revCommit ->
-                    val commit = walk.parseCommit(revCommit.id)
-                    val isPushed = remoteCommit?.let { walk.isMergedInto(commit, it) } ?: false
-                    commit.toGitCommit(isPushed)
+                val unpushed = HashSet<RevCommit>()
+                if (remoteCommits.isNotEmpty()) {
+                    walk.markStart(walk.parseCommit(head))
+                    remoteCommits.forEach(walk::markUninteresting)
+                    walk.forEach { unpushed.add(it) }
                 }
+
+                // Then page through the history, in the same order as 'git log'
+                walk.reset()
+                walk.markStart(walk.parseCommit(head))
+                walk.asSequence()
+                    .drop(offset)
+                    .take(limit)
+                    .map { commit ->
+                        // The first pass disposed of the bodies of the pushed commits
+                        walk.parseBody(commit)
+                        commit.toGitCommit(hasBeenPushed = remoteCommits.isNotEmpty() && commit !in unpushed)
+                    }
+                    .toList()
             }
         } catch (e: Exception) {
             log.error("Error fetching commit history", e)
@@ -188,7 +318,7 @@ class JGitRepository(override val rootDir: File) : GitRepository {
         }
         if (hasAdds) addCommand.call()
         if (hasRms) rmCommand.call()
-        Unit
+        invalidateStatus()
     }
 
     override suspend fun commit(
@@ -207,6 +337,7 @@ class JGitRepository(override val rootDir: File) : GitRepository {
         }
 
         val revCommit = commitCommand.call()
+        invalidateStatus()
         revCommit?.toGitCommit(false)
     }
 
@@ -286,12 +417,20 @@ class JGitRepository(override val rootDir: File) : GitRepository {
             pullCommand.setProgressMonitor(progressMonitor)
         }
 
-        pullCommand.call()
+        try {
+            pullCommand.call()
+        } finally {
+            invalidateStatus()
+        }
     }
     
     override suspend fun merge(branchName: String): MergeResult = withContext(Dispatchers.IO) {
         val branchRef = repository.findRef(branchName) ?: throw IllegalArgumentException("Branch $branchName not found")
-        git.merge().include(branchRef).call()
+        try {
+            git.merge().include(branchRef).call()
+        } finally {
+            invalidateStatus()
+        }
     }
 
     override suspend fun abortMerge(): Unit = withContext(Dispatchers.IO) {
@@ -306,6 +445,7 @@ class JGitRepository(override val rootDir: File) : GitRepository {
             writeRevertHead(null)
             writeSquashCommitMsg(null)
         }
+        invalidateStatus()
     }
 
     override fun close() {
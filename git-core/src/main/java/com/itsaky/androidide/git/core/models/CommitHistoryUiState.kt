@@ -13,8 +13,10 @@ sealed interface CommitHistoryUiState {
 
     /**
      * History was fetched successfully with a list of commits.
+     *
+     * @property hasMore Whether older commits can be loaded after [commits].
      */
-    data class Success(val commits: List<GitCommit>) : CommitHistoryUiState
+    data class Success(val commits: List<GitCommit>, val hasMore: Boolean = false) : CommitHistoryUiState
 
     /**
      * An error occurred while fetching the history.
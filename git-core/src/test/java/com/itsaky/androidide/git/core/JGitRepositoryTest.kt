@@ -0,0 +1,132 @@
+package com.itsaky.androidide.git.core
+
+import com.itsaky.androidide.git.core.models.ChangeType
+import com.itsaky.androidide.git.core.models.FileChange
+import kotlinx.coroutines.runBlocking
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.revwalk.RevCommit
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+/**
+ * Unit tests for the status cache and the history paging of [JGitRepository].
+ */
+class JGitRepositoryTest {
+
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private lateinit var git: Git
+    private lateinit var repository: JGitRepository
+
+    @Before
+    fun setUp() {
+        git = Git.init().setDirectory(tmp.root).setInitialBranch("main").call()
+        repository = JGitRepository(tmp.root)
+    }
+
+    @After
+    fun tearDown() {
+        repository.close()
+        git.close()
+    }
+
+    private fun write(path: String, text: String): File =
+        File(tmp.root, path).apply {
+            parentFile!!.mkdirs()
+            writeText(text)
+        }
+
+    private fun commit(message: String): RevCommit {
+        git.add().addFilepattern(".").call()
+        return git.commit().setMessage(message).setAuthor("Test", "test@example.com").call()
+    }
+
+    @Test
+    fun testStatusRescansInvalidatedPaths() = runBlocking {
+        val a = write("src/a.txt", "a")
+        write("src/b.txt", "b")
+        commit("initial")
+        assertTrue(repository.getStatus().isClean)
+
+        // The cached status is only refreshed for the paths reported as changed
+        a.writeText("changed")
+        val c = write("src/c.txt", "c")
+        repository.invalidateStatus(listOf(a))
+        var status = repository.getStatus()
+        assertEquals(listOf(FileChange("src/a.txt", ChangeType.MODIFIED)), status.unstaged)
+        assertTrue(status.untracked.isEmpty())
+
+        repository.invalidateStatus(listOf(c.parentFile!!))
+        status = repository.getStatus()
+        assertEquals(listOf(FileChange("src/a.txt", ChangeType.MODIFIED)), status.unstaged)
+        assertEquals(listOf(FileChange("src/c.txt", ChangeType.UNTRACKED)), status.untracked)
+
+        a.writeText("a")
+        repository.invalidateStatus(listOf(a))
+        status = repository.getStatus()
+        assertTrue(status.unstaged.isEmpty())
+        assertFalse(status.isClean)
+    }
+
+    @Test
+    fun testStatusRescansAfterIndexChange() = runBlocking {
+        write("a.txt", "a")
+        commit("initial")
+        assertTrue(repository.getStatus().isClean)
+
+        // Staged outside of the repository, e.g. from a terminal, without any invalidation
+        write("a.txt", "changed")
+        write("b.txt", "b")
+        git.add().addFilepattern(".").call()
+
+        val status = repository.getStatus()
+        assertEquals(
+            listOf(FileChange("a.txt", ChangeType.MODIFIED), FileChange("b.txt", ChangeType.ADDED)),
+            status.staged
+        )
+        assertTrue(status.unstaged.isEmpty())
+    }
+
+    @Test
+    fun testHistoryPages() = runBlocking {
+        val commits = (1..7).map { i ->
+            write("file.txt", "version $i")
+            commit("commit $i")
+        }
+
+        // The first four commits are on the remote
+        git.repository.updateRef(Constants.R_REMOTES + "origin/main").apply {
+            setNewObjectId(commits[3])
+            forceUpdate()
+        }
+
+        val all = repository.getHistory(limit = 50)
+        assertEquals(commits.reversed().map { it.name }, all.map { it.hash })
+        assertEquals(listOf(false, false, false, true, true, true, true), all.map { it.hasBeenPushed })
+
+        val pages = (0 until 7 step 3).flatMap { offset -> repository.getHistory(limit = 3, offset = offset) }
+        assertEquals(all, pages)
+        assertTrue(repository.getHistory(limit = 3, offset = 7).isEmpty())
+    }
+
+    @Test
+    fun testHistoryWithoutRemote() = runBlocking {
+        val commits = (1..4).map { i ->
+            write("file.txt", "version $i")
+            commit("commit $i")
+        }
+
+        val page = repository.getHistory(limit = 2, offset = 1)
+        assertEquals(listOf(commits[2].name, commits[1].name), page.map { it.hash })
+        assertTrue(page.none { it.hasBeenPushed })
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.lsp.util
+
+import com.itsaky.androidide.projects.IProjectManager
+import com.itsaky.androidide.projects.api.AndroidModule
+import com.itsaky.androidide.xml.versions.ApiVersions
+import com.itsaky.androidide.xml.versions.ClassInfo
+import java.nio.file.Path
+
+/**
+ * Checks references to platform APIs against the minimum SDK version of a module, similar to the
+ * `NewApi` lint check.
+ *
+ * Instances cache the results of their lookups and are meant to be used for a single diagnostics
+ * pass.
+ *
+ * @property versions The API versions of the module's platform.
+ * @property minSdk The minimum SDK version of the module.
+ */
+class NewApiChecker(
+	private val versions: ApiVersions,
+	val minSdk: Int,
+) {
+	private val cache = HashMap<String, Int>()
+
+	/**
+	 * The kind of a referenced symbol.
+	 *
+	 * @property label The subject of the diagnostic message for references to symbols of this kind.
+	 */
+	enum class SymbolKind(
+		val label: String,
+	) {
+		CLASS("Class"),
+		FIELD("Field"),
+		METHOD("Call"),
+	}
+
+	companion object {
+
+		/**
+		 * Create a [NewApiChecker] for the module containing the given file.
+		 *
+		 * @return The checker, or `null` if the file does not belong to an Android module or the API
+		 * versions of the module are not available.
+		 */
+		@JvmStatic
+		fun forFile(file: Path): NewApiChecker? {
+			val module = IProjectManager.getInstance().findModuleForFile(file, false)
+			if (module !is AndroidModule) {
+				return null
+			}
+
+			val minSdk = module.getMinSdkVersion()
+			if (minSdk <= 0) {
+				return null
+			}
+
+			val versions = module.getApiVersions() ?: return null
+			return NewApiChecker(versions, minSdk)
+		}
+	}
+
+	/**
+	 * Get the API level required to reference the class with the given name.
+	 *
+	 * @param className The fully qualified binary name of the class.
+	 * @return The required API level, or `-1` if the class is available at [minSdk].
+	 */
+	fun checkClass(className: String): Int =
+		cache.getOrPut(className) {
+			requiredApi(versions.getClass(className)?.since ?: -1)
+		}
+
+	/**
+	 * Get the API level required to reference the field with the given name.
+	 *
+	 * @param owner The fully qualified binary name of the class declaring the field.
+	 * @param name The name of the field.
+	 * @return The required API level, or `-1` if the field is available at [minSdk].
+	 */
+	fun checkField(
+		owner: String,
+		name: String,
+	): Int =
+		cache.getOrPut("$owner#$name") {
+			val klass = versions.getClass(owner) ?: return@getOrPut -1
+			requiredApi(memberSince(klass, klass.getField(name)?.since ?: return@getOrPut -1))
+		}
+
+	/**
+	 * Get the API level required to call the method with the given signature.
+	 *
+	 * @param owner The fully qualified binary name of the class declaring the method.
+	 * @param name The name of the method. `<init>` for constructors.
+	 * @param params The fully qualified binary names of the parameter types.
+	 * @return The required API level, or `-1` if the method is available at [minSdk].
+	 */
+	fun checkMethod(
+		owner: String,
+		name: String,
+		params: List<String>,
+	): Int =
+		cache.getOrPut("$owner#$name(${params.joinToString(",")})") {
+			val klass = versions.getClass(owner) ?: return@getOrPut -1
+			val method = klass.getMethod(name, *params.toTypedArray()) ?: return@getOrPut -1
+			requiredApi(memberSince(klass, method.since))
+		}
+
+	/** Create the diagnostic message for a reference to the [kind] of [symbol] which requires [api]. */
+	fun message(
+		kind: SymbolKind,
+		symbol: String,
+		api: Int,
+	): String = "${kind.label} requires API level $api (current min is $minSdk): $symbol"
+
+	// members without a 'since' version were introduced along with their class
+	private fun memberSince(
+		klass: ClassInfo,
+		since: Int,
+	): Int = if (since > 0) since else klass.since
+
+	private fun requiredApi(since: Int): Int = if (since > minSdk) since else -1
+}
@@ -0,0 +1,133 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.lsp.util
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.xml.versions.ApiVersions
+import com.itsaky.androidide.xml.versions.ClassInfo
+import com.itsaky.androidide.xml.versions.FieldInfo
+import com.itsaky.androidide.xml.versions.MethodInfo
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class NewApiCheckerTest {
+	private class Field(
+		override val name: String,
+		override val since: Int,
+	) : FieldInfo {
+		override val removed = -1
+		override val deprecated = -1
+	}
+
+	private class Method(
+		override val name: String,
+		override val since: Int,
+	) : MethodInfo {
+		override val simpleName = name.substringBefore('(')
+		override val removed = -1
+		override val deprecated = -1
+	}
+
+	private class Class(
+		override val name: String,
+		override val since: Int,
+		val fields: List<Field> = emptyList(),
+		val methods: List<Method> = emptyList(),
+	) : ClassInfo {
+		override val removed = -1
+		override val deprecated = -1
+		var lookups = 0
+
+		override fun getField(name: String): FieldInfo? = fields.find { it.name == name }.also { lookups++ }
+
+		override fun getMethod(
+			name: String,
+			vararg params: String,
+		): MethodInfo? = methods.find { it.simpleName == name && params.isEmpty() }.also { lookups++ }
+	}
+
+	private val view =
+		Class(
+			name = "android/view/View",
+			since = 1,
+			fields = listOf(Field("VISIBLE", -1), Field("SYSTEM_UI_FLAG_FULLSCREEN", 16)),
+			methods = listOf(Method("getZ()F", 21), Method("invalidate()V", -1)),
+		)
+
+	private val insets = Class(name = "android/view/WindowInsets", since = 20)
+
+	private val versions =
+		object : ApiVersions {
+			override fun getClass(name: String): ClassInfo? =
+				listOf(view, insets).find { it.name == name.replace('.', '/') }
+		}
+
+	@Test
+	fun `test class checks`() {
+		val checker = NewApiChecker(versions, minSdk = 21)
+		assertThat(checker.checkClass("android.view.View")).isEqualTo(-1)
+		assertThat(checker.checkClass("android.view.WindowInsets")).isEqualTo(-1)
+		assertThat(checker.checkClass("com.example.Unknown")).isEqualTo(-1)
+
+		assertThat(NewApiChecker(versions, minSdk = 16).checkClass("android.view.WindowInsets"))
+			.isEqualTo(20)
+	}
+
+	@Test
+	fun `test member checks`() {
+		val checker = NewApiChecker(versions, minSdk = 14)
+		assertThat(checker.checkField("android.view.View", "SYSTEM_UI_FLAG_FULLSCREEN")).isEqualTo(16)
+		assertThat(checker.checkField("android.view.View", "VISIBLE")).isEqualTo(-1)
+		assertThat(checker.checkField("android.view.View", "UNKNOWN")).isEqualTo(-1)
+		assertThat(checker.checkMethod("android.view.View", "getZ", emptyList())).isEqualTo(21)
+		assertThat(checker.checkMethod("android.view.View", "invalidate", emptyList())).isEqualTo(-1)
+	}
+
+	@Test
+	fun `test members inherit the version of their class`() {
+		val withField = Class(name = "android/view/WindowInsets", since = 20, fields = listOf(Field("CONSUMED", -1)))
+		val checker =
+			NewApiChecker(
+				object : ApiVersions {
+					override fun getClass(name: String): ClassInfo = withField
+				},
+				minSdk = 16,
+			)
+		assertThat(checker.checkField("android.view.WindowInsets", "CONSUMED")).isEqualTo(20)
+	}
+
+	@Test
+	fun `test lookups are cached`() {
+		val checker = NewApiChecker(versions, minSdk = 14)
+		repeat(3) { checker.checkMethod("android.view.View", "getZ", emptyList()) }
+		assertThat(view.lookups).isEqualTo(1)
+	}
+
+	@Test
+	fun `test messages name the kind of symbol`() {
+		val checker = NewApiChecker(versions, minSdk = 14)
+		assertThat(checker.message(NewApiChecker.SymbolKind.METHOD, "android.view.View#getZ", 21))
+			.isEqualTo("Call requires API level 21 (current min is 14): android.view.View#getZ")
+		assertThat(checker.message(NewApiChecker.SymbolKind.FIELD, "android.view.View#SYSTEM_UI_FLAG_FULLSCREEN", 16))
+			.startsWith("Field requires API level 16")
+		assertThat(checker.message(NewApiChecker.SymbolKind.CLASS, "android.view.WindowInsets", 20))
+			.startsWith("Class requires API level 20")
+	}
+}
@@ -1,8 +1,12 @@
 package org.appdevforall.codeonthego.indexing
 
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emptyFlow
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.IndexQuery
 import org.appdevforall.codeonthego.indexing.api.Indexable
 import org.appdevforall.codeonthego.indexing.api.ReadableIndex
+import org.appdevforall.codeonthego.indexing.api.ScoredEntry
 import java.io.Closeable
 import java.util.concurrent.ConcurrentHashMap
 
@@ -14,6 +18,10 @@ import java.util.concurrent.ConcurrentHashMap
  * This view controls which subset is visible based on which
  * sources (JAR paths, etc.) are currently "active."
  *
+ * The active set is passed to the backing index as
+ * [IndexQuery.sourceIds], so inactive entries are skipped by the backing
+ * query itself and never count towards [IndexQuery.limit].
+ *
  * @param T The indexed type.
  * @param backing The underlying index that holds all data.
  */
@@ -60,6 +68,15 @@ open class FilteredIndex<T : Indexable>(
 	open fun activeSources(): Set<String> =
 		activeSources.toSet()
 
+	/**
+	 * The sources whose entries queries may return, passed to the backing
+	 * index as [IndexQuery.sourceIds]; `null` if every source is visible.
+	 *
+	 * Subclasses that override [isActive] to widen visibility must
+	 * override this as well.
+	 */
+	protected open fun visibleSources(): Set<String>? = activeSources()
+
 	/**
 	 * Returns true if the source is currently active (visible).
 	 */
@@ -79,8 +96,23 @@ open class FilteredIndex<T : Indexable>(
 		if (query.sourceId != null && !isActive(query.sourceId)) {
 			return emptySequence()
 		}
-		val original = backing.query(query)
-		return original.filter { isActive(it.sourceId) }
+		return backing.query(restrict(query))
+	}
+
+	override fun queryFlow(query: IndexQuery): Flow<T> {
+		if (query.sourceId != null && !isActive(query.sourceId)) {
+			return emptyFlow()
+		}
+		return backing.queryFlow(restrict(query))
+	}
+
+	override fun fuzzyQuery(query: FuzzyQuery): List<ScoredEntry<T>> {
+		val sourceId = query.filter.sourceId
+		if (sourceId != null && !isActive(sourceId)) {
+			return emptyList()
+		}
+		// Filter before scoring, so inactive sources don't take up result slots
+		return backing.fuzzyQuery(query.copy(filter = restrict(query.filter)))
 	}
 
 	override suspend fun get(key: String): T? {
@@ -92,16 +124,14 @@ open class FilteredIndex<T : Indexable>(
 		return isActive(sourceId) && backing.containsSource(sourceId)
 	}
 
-	override fun distinctValues(fieldName: String): Sequence<String> {
-		// This is imprecise — the backing index may return values
-		// from inactive sources. For exact results, we'd need to
-		// query all entries and filter. For package enumeration
-		// (the main use case), this approximation is acceptable
-		// since packages from inactive JARs are harmless — they
-		// just produce empty results when queried further.
-		return backing.distinctValues(fieldName)
+	override fun distinctValues(fieldName: String, sourceIds: Set<String>?): Sequence<String> {
+		val visible = visibleSources() ?: return backing.distinctValues(fieldName, sourceIds)
+		return backing.distinctValues(fieldName, sourceIds?.let { it intersect visible } ?: visible)
 	}
 
+	private fun restrict(query: IndexQuery): IndexQuery =
+		visibleSources()?.let { query.restrictedTo(it) } ?: query
+
 	override fun close() {
 		activeSources.clear()
 		if (backing is Closeable) backing.close()
@@ -1,12 +1,14 @@
 package org.appdevforall.codeonthego.indexing
 
+import org.appdevforall.codeonthego.indexing.api.CamelHumpMatcher
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.Index
 import org.appdevforall.codeonthego.indexing.api.IndexDescriptor
 import org.appdevforall.codeonthego.indexing.api.IndexQuery
 import org.appdevforall.codeonthego.indexing.api.Indexable
+import org.appdevforall.codeonthego.indexing.api.ScoredEntry
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.locks.ReentrantReadWriteLock
-import kotlin.collections.iterator
 import kotlin.concurrent.read
 import kotlin.concurrent.write
 
@@ -16,12 +18,24 @@ import kotlin.concurrent.write
  * Optimized for small-to-medium datasets (source files, typically
  * hundreds to low thousands of entries) that change frequently.
  *
- * Data layout:
- * - [primaryMap]: key → entry (O(1) point lookup)
- * - [sourceMap]: sourceId → set of keys (O(1) bulk removal)
- * - [fieldMaps]: fieldName → (fieldValue → set of keys) (equality filter)
- * - [prefixBuckets]: fieldName → (lowercased first char → list of (value, key))
- *                    Provides a ~36-way partition for prefix search.
+ * Every key is interned to a dense `int` id, and all secondary indexes
+ * hold ids rather than keys. Data layout:
+ * - [primaryMap]: key → (id, entry) (O(1) point lookup)
+ * - [entriesById]: id → entry
+ * - [sourceMap]: sourceId → ids (O(1) bulk removal)
+ * - [fieldMaps]: field → (fieldValue → ids) (equality filter)
+ * - [presentIds]: field → ids of entries where the field is non-null
+ * - [prefixIndexes]: field → sorted (lowercased value, id) pairs
+ *                    ([PrefixIndex]); prefix lookups are O(log n + k)
+ *                    and removals O(log n).
+ * - [humpIndexes]: field → sorted (hump key, id) pairs of fuzzy-searchable
+ *                  fields, the candidates of [fuzzyQuery]
+ *
+ * Id sets are sorted [PostingList]s. A query is driven by its most
+ * selective predicate, whose ids are checked against the others by binary
+ * search, and stops as soon as [IndexQuery.limit] results are found.
+ * Set predicates ([IndexQuery.anyOf], [IndexQuery.sourceIds]) are unions
+ * of posting lists, so they can drive a query as well.
  *
  * All mutations go through [lock] in write mode for consistency
  * across the multiple maps. Reads use read mode.
@@ -34,40 +48,87 @@ class InMemoryIndex<T : Indexable>(
     override val name: String = "memory:${descriptor.name}",
 ) : Index<T> {
 
-    private val primaryMap = ConcurrentHashMap<String, T>(256)
-    private val sourceMap = ConcurrentHashMap<String, MutableSet<String>>(32)
-    private val fieldMaps = ConcurrentHashMap<String, ConcurrentHashMap<String, MutableSet<String>>>()
-    private val prefixBuckets = ConcurrentHashMap<String, ConcurrentHashMap<Char, MutableList<PrefixEntry>>>()
+    /** An entry and its interned id. */
+    private class Slot<T>(val id: Int, val entry: T)
 
-    private val lock = ReentrantReadWriteLock()
+    private val primaryMap = ConcurrentHashMap<String, Slot<T>>(256)
+    private val sourceMap = ConcurrentHashMap<String, PostingList>(32)
 
-    private data class PrefixEntry(val lowerValue: String, val key: String)
+    private val fields = descriptor.fields
+    private val fieldPositions = fields.withIndex().associate { (i, field) -> field.name to i }
 
-    init {
-        for (field in descriptor.fields) {
-            fieldMaps[field.name] = ConcurrentHashMap()
-            if (field.prefixSearchable) {
-                prefixBuckets[field.name] = ConcurrentHashMap()
+    // Guarded by lock
+    private var entriesById = arrayOfNulls<Any>(256)
+    private var nextId = 0
+    private var freeIds = IntArray(16)
+    private var freeCount = 0
+    private val fieldMaps = Array(fields.size) { HashMap<String, PostingList>() }
+    private val presentIds = Array(fields.size) { PostingList() }
+    private val prefixIndexes = Array(fields.size) { if (fields[it].prefixSearchable) PrefixIndex() else null }
+    private val humpIndexes = Array(fields.size) { if (fields[it].fuzzySearchable) PrefixIndex() else null }
+    private val fieldValuesBuffer = arrayOfNulls<String>(fields.size)
+
+    private val lock = ReentrantReadWriteLock()
+
+    override fun query(query: IndexQuery): Sequence<T> = lock.read {
+        val limit = if (query.limit <= 0) Int.MAX_VALUE else query.limit
+        val plan = planQuery(query) ?: return@read emptySequence()
+
+        val results = ArrayList<T>(minOf(limit, 64))
+        val values = arrayOfNulls<String>(fields.size)
+        plan.driver { id ->
+            val entry = entryAt(id)
+            if (entry != null && plan.matches(id, entry, values)) {
+                results.add(entry)
             }
+            results.size < limit
         }
+        results.asSequence()
     }
 
-    override fun query(query: IndexQuery): Sequence<T> {
-        val keys = resolveMatchingKeys(query)
-        val limit = if (query.limit <= 0) Int.MAX_VALUE else query.limit
-        return keys
-            .mapNotNull { primaryMap[it] }
-            .take(limit)
+    override fun fuzzyQuery(query: FuzzyQuery): List<ScoredEntry<T>> = lock.read {
+        val position = fieldPositions[query.field]
+        val humpIndex = position?.let { humpIndexes[it] }
+            ?: throw IllegalArgumentException("Field is not fuzzy-searchable: ${query.field}")
+        val patternHumps = CamelHumpMatcher.patternHumps(query.pattern)
+        if (patternHumps.isEmpty() || query.limit <= 0) return@read emptyList()
+        val filter = planQuery(query.filter, prefixAsFilter = true) ?: return@read emptyList()
+
+        val top = TopK<ScoredEntry<T>>(query.limit, ScoredEntry.RANKING)
+        val values = arrayOfNulls<String>(fields.size)
+        var scanned = 0
+        humpIndex.forEachWithPrefix(patternHumps.substring(0, 1)) { humps, id ->
+            if (!CamelHumpMatcher.humpsMatch(patternHumps, humps)) return@forEachWithPrefix true
+            scanned++
+
+            val entry = entryAt(id)
+            if (entry != null && filter.matches(id, entry, values)) {
+                descriptor.fieldValues(entry, values)
+                val value = values[position]
+                val score = if (value != null) query.scorer.score(query.pattern, value) else 0
+                if (score > 0) top.offer(ScoredEntry(entry, score, value!!))
+            }
+            scanned < query.maxCandidates
+        }
+        top.toSortedList()
     }
 
-    override suspend fun get(key: String): T? = primaryMap[key]
+    override suspend fun get(key: String): T? = primaryMap[key]?.entry
 
     override suspend fun containsSource(sourceId: String): Boolean =
         sourceMap.containsKey(sourceId)
 
-    override fun distinctValues(fieldName: String): Sequence<String> {
-        val fieldMap = fieldMaps[fieldName] ?: return emptySequence()
-        return lock.read { fieldMap.keys.toList() }.asSequence()
+    override fun distinctValues(fieldName: String, sourceIds: Set<String>?): Sequence<String> {
+        val position = fieldPositions[fieldName] ?: return emptySequence()
+        return lock.read {
+            if (sourceIds == null) {
+                fieldMaps[position].keys.toList()
+            } else {
+                fieldMaps[position].mapNotNull { (value, ids) ->
+                    value.takeIf { containsAnySource(ids, sourceIds) }
+                }
+            }
+        }.asSequence()
     }
 
     override suspend fun insertAll(entries: Sequence<T>) {
@@ -102,144 +163,265 @@ class InMemoryIndex<T : Indexable>(
      * indexes. Caller MUST already hold the write lock; this method does not lock.
      */
     private fun removeBySourceLocked(sourceId: String) {
-        val keys = sourceMap.remove(sourceId) ?: return
-        for (key in keys) {
-            val entry = primaryMap.remove(key) ?: continue
-            removeFromSecondaryIndexes(entry)
+        val ids = sourceMap.remove(sourceId) ?: return
+        for (i in 0 until ids.size) {
+            val id = ids[i]
+            val entry = entryAt(id) ?: continue
+            primaryMap.remove(entry.key)
+            removeFromSecondaryIndexes(id, entry)
+            releaseId(id)
         }
     }
 
     override suspend fun clear() = lock.write {
         primaryMap.clear()
         sourceMap.clear()
-        fieldMaps.values.forEach { it.clear() }
-        prefixBuckets.values.forEach { it.clear() }
+        entriesById = arrayOfNulls(256)
+        nextId = 0
+        freeCount = 0
+        fieldMaps.forEach { it.clear() }
+        presentIds.indices.forEach { presentIds[it] = PostingList() }
+        prefixIndexes.forEach { it?.clear() }
+        humpIndexes.forEach { it?.clear() }
     }
 
     val size: Int get() = primaryMap.size
     val sourceCount: Int get() = sourceMap.size
 
     /**
-     * Resolves the set of keys matching the query by intersecting
-     * the results of each predicate.
-     *
-     * Starts with the most selective predicate to minimize the
-     * intersection set.
+     * A resolved query: [driver] enumerates candidate ids (stopping when its
+     * callback returns `false`) and [matches] checks the remaining predicates.
      */
-    private fun resolveMatchingKeys(query: IndexQuery): Sequence<String> = lock.read {
-        var candidates: Set<String>? = null
-
-        if (query.key != null) {
-            return@read if (primaryMap.containsKey(query.key)) {
-                sequenceOf(query.key)
-            } else {
-                emptySequence()
+    private class QueryPlan<T : Indexable>(
+        val driver: ((Int) -> Boolean) -> Unit,
+        private val required: List<PostingList>,
+        private val excluded: List<PostingList>,
+        private val unions: List<List<PostingList>>,
+        private val sourceIds: Set<String>?,
+        private val valueFilters: List<(Array<String?>) -> Boolean>,
+        private val descriptor: IndexDescriptor<T>,
+    ) {
+        fun matches(id: Int, entry: T, values: Array<String?>): Boolean {
+            for (list in required) if (id !in list) return false
+            for (list in excluded) if (id in list) return false
+            for (union in unions) if (union.none { id in it }) return false
+            if (sourceIds != null && entry.sourceId !in sourceIds) return false
+            if (valueFilters.isNotEmpty()) {
+                descriptor.fieldValues(entry, values)
+                for (filter in valueFilters) if (!filter(values)) return false
             }
+            return true
         }
+    }
+
+    /** A case-insensitive prefix predicate on a prefix-searchable field. */
+    private class PrefixPredicate(val position: Int, val index: PrefixIndex, val lowerPrefix: String) {
+        fun asFilter(): (Array<String?>) -> Boolean =
+            { values -> values[position]?.lowercase()?.startsWith(lowerPrefix) == true }
+    }
+
+    /**
+     * Resolve [query] into a [QueryPlan], or `null` if it cannot match
+     * anything. The predicate with the fewest candidates drives the plan;
+     * the others become membership checks or value filters. The source set
+     * is checked on the entry itself, which is cheaper than a union of
+     * many posting lists.
+     *
+     * @param prefixAsFilter Check prefix predicates as value filters, for
+     *                       plans only used through [QueryPlan.matches].
+     */
+    private fun planQuery(query: IndexQuery, prefixAsFilter: Boolean = false): QueryPlan<T>? {
+        val lists = mutableListOf<PostingList>()
+        val excluded = mutableListOf<PostingList>()
+        val valueFilters = mutableListOf<(Array<String?>) -> Boolean>()
+        var prefixDriver: PrefixPredicate? = null
+
+        val unions = mutableListOf<List<PostingList>>()
+        var sourceUnion: List<PostingList>? = null
 
         if (query.sourceId != null) {
-            candidates = intersect(candidates, sourceMap[query.sourceId])
+            lists.add(sourceMap[query.sourceId] ?: return null)
+        }
+
+        query.sourceIds?.let { sourceIds ->
+            sourceUnion = sourceIds.mapNotNull { sourceMap[it] }.ifEmpty { return null }
         }
 
         for ((field, value) in query.exactMatch) {
-            val fieldMap = fieldMaps[field] ?: return@read emptySequence()
-            candidates = intersect(candidates, fieldMap[value])
+            val position = fieldPositions[field] ?: return null
+            lists.add(fieldMaps[position][value] ?: return null)
+        }
+
+        for ((field, values) in query.anyOf) {
+            val position = fieldPositions[field] ?: return null
+            unions.add(values.mapNotNull { fieldMaps[position][it] }.ifEmpty { return null })
         }
 
         for ((field, prefix) in query.prefixMatch) {
-            val buckets = prefixBuckets[field]
-            val matching: Set<String> = if (buckets != null) {
-                // Prefix-searchable: case-insensitive match via the lowercased buckets,
-                // mirroring SQLite's `lowerCol LIKE 'prefix%'`.
-                val lowerPrefix = prefix.lowercase()
-                val firstChar = lowerPrefix.firstOrNull()
-                if (firstChar == null) {
-                    // Empty prefix == "field present", matching SQLite's `LIKE '%'`
-                    // (which excludes rows where the column IS NULL).
-                    buckets.values.flatMapTo(mutableSetOf()) { entries -> entries.map { it.key } }
+            val position = fieldPositions[field] ?: return null
+            val prefixIndex = prefixIndexes[position]
+            if (prefixIndex != null) {
+                // Prefix-searchable: case-insensitive match on the lowercased values,
+                // mirroring SQLite's range scan over the `_lower` column. An empty
+                // prefix matches every entry where the field is present.
+                val predicate = PrefixPredicate(position, prefixIndex, prefix.lowercase())
+                if (prefixDriver == null && !prefixAsFilter) {
+                    prefixDriver = predicate
                 } else {
-                    val bucket = buckets[firstChar] ?: return@read emptySequence()
-                    bucket.asSequence()
-                        .filter { it.lowerValue.startsWith(lowerPrefix) }
-                        .map { it.key }
-                        .toSet()
+                    valueFilters.add(predicate.asFilter())
                 }
             } else {
-                // Not prefix-searchable: fall back to a case-sensitive prefix scan of the
-                // regular field map, mirroring SQLite's `col LIKE 'prefix%'` fallback.
-                val fieldMap = fieldMaps[field] ?: return@read emptySequence()
-                fieldMap.entries.asSequence()
-                    .filter { (value, _) -> value.startsWith(prefix) }
-                    .flatMap { (_, keys) -> keys.asSequence() }
-                    .toSet()
+                // Not prefix-searchable: case-sensitive match on the regular value,
+                // mirroring SQLite's `col LIKE 'prefix%'` fallback.
+                valueFilters.add { values -> values[position]?.startsWith(prefix) == true }
             }
-
-            candidates = intersect(candidates, matching)
         }
 
         for ((field, mustExist) in query.presence) {
-            val fieldMap = fieldMaps[field] ?: return@read emptySequence()
-            val allKeysWithField = fieldMap.values.flatMapTo(mutableSetOf()) { it }
-            candidates = if (mustExist) {
-                intersect(candidates, allKeysWithField)
+            val position = fieldPositions[field] ?: return null
+            if (mustExist) lists.add(presentIds[position]) else excluded.add(presentIds[position])
+        }
+
+        val key = query.key
+        if (key != null) {
+            val slot = primaryMap[key] ?: return null
+            prefixDriver?.let { valueFilters.add(it.asFilter()) }
+            return QueryPlan(
+                { action -> action(slot.id) }, lists, excluded, unions, query.sourceIds, valueFilters, descriptor,
+            )
+        }
+
+        lists.sortBy { it.size }
+        val smallest = lists.firstOrNull()
+        if (smallest != null && smallest.isEmpty()) return null
+        val smallestSize = smallest?.size ?: Int.MAX_VALUE
+
+        // Each entry has one source and one value per field, so the lists of
+        // a union are disjoint and its size is the sum of theirs
+        val smallestUnion = (unions + listOfNotNull(sourceUnion)).minByOrNull { union -> union.sumOf { it.size } }
+        val unionSize = smallestUnion?.sumOf { it.size } ?: Int.MAX_VALUE
+        val candidates = minOf(smallestSize, unionSize)
+
+        val driver: ((Int) -> Boolean) -> Unit
+        val required: List<PostingList>
+        var checkedUnions: List<List<PostingList>> = unions
+        val prefix = prefixDriver
+        if (prefix != null && (candidates == Int.MAX_VALUE || prefix.index.countWithPrefix(prefix.lowerPrefix, candidates) < candidates)) {
+            // The prefix range is the most selective predicate
+            driver = { action -> prefix.index.forEachIdWithPrefix(prefix.lowerPrefix, action) }
+            required = lists
+        } else {
+            prefix?.let { valueFilters.add(it.asFilter()) }
+            if (smallestUnion != null && unionSize < smallestSize) {
+                driver = { action -> forEachId(smallestUnion, action) }
+                required = lists
+                checkedUnions = unions.filter { it !== smallestUnion }
             } else {
-                // Keys that DON'T have this field
-                val allKeys = primaryMap.keys.toMutableSet()
-                allKeys.removeAll(allKeysWithField)
-                intersect(candidates, allKeys)
+                driver = if (smallest != null) {
+                    { action -> forEachId(smallest, action) }
+                } else {
+                    { action -> forEachLiveId(action) }
+                }
+                required = lists.drop(1)
             }
         }
 
-        candidates?.asSequence() ?: primaryMap.keys.asSequence()
+        return QueryPlan(driver, required, excluded, checkedUnions, query.sourceIds, valueFilters, descriptor)
     }
 
-    private fun intersect(current: Set<String>?, other: Set<String>?): Set<String>? {
-        if (other == null) return current
-        if (current == null) return other
-        return current.intersect(other)
+    private inline fun forEachId(list: PostingList, action: (Int) -> Boolean) {
+        for (i in 0 until list.size) {
+            if (!action(list[i])) return
+        }
     }
 
-    private fun insertSingleLocked(entry: T) {
-        val existing = primaryMap[entry.key]
-        if (existing != null) {
-            removeFromSecondaryIndexes(existing)
+    private inline fun forEachId(lists: List<PostingList>, action: (Int) -> Boolean) {
+        for (list in lists) {
+            for (i in 0 until list.size) {
+                if (!action(list[i])) return
+            }
         }
+    }
 
-        primaryMap[entry.key] = entry
-        sourceMap.getOrPut(entry.sourceId) { mutableSetOf() }.add(entry.key)
+    /** Whether any of [ids] belongs to an entry of one of [sourceIds]. */
+    private fun containsAnySource(ids: PostingList, sourceIds: Set<String>): Boolean {
+        for (i in 0 until ids.size) {
+            val entry = entryAt(ids[i]) ?: continue
+            if (entry.sourceId in sourceIds) return true
+        }
+        return false
+    }
 
-        val fields = descriptor.fieldValues(entry)
-        for ((fieldName, value) in fields) {
-            if (value == null) continue
+    private inline fun forEachLiveId(action: (Int) -> Boolean) {
+        for (id in 0 until nextId) {
+            if (entriesById[id] != null && !action(id)) return
+        }
+    }
 
-            fieldMaps[fieldName]
-                ?.getOrPut(value) { mutableSetOf() }
-                ?.add(entry.key)
+    @Suppress("UNCHECKED_CAST")
+    private fun entryAt(id: Int): T? = entriesById[id] as T?
 
-            val buckets = prefixBuckets[fieldName]
-            if (buckets != null) {
-                val lower = value.lowercase()
-                val firstChar = lower.firstOrNull() ?: continue
-                buckets.getOrPut(firstChar) { mutableListOf() }
-                    .add(PrefixEntry(lower, entry.key))
-            }
+    private fun allocateId(): Int {
+        if (freeCount > 0) return freeIds[--freeCount]
+        if (nextId == entriesById.size) {
+            entriesById = entriesById.copyOf(nextId * 2)
         }
+        return nextId++
     }
 
-    private fun removeFromSecondaryIndexes(entry: T) {
-        val fields = descriptor.fieldValues(entry)
-        for ((fieldName, value) in fields) {
-            if (value == null) continue
+    private fun releaseId(id: Int) {
+        entriesById[id] = null
+        if (freeCount == freeIds.size) {
+            freeIds = freeIds.copyOf(freeCount * 2)
+        }
+        freeIds[freeCount++] = id
+    }
 
-            fieldMaps[fieldName]?.get(value)?.remove(entry.key)
+    private fun insertSingleLocked(entry: T) {
+        val existing = primaryMap[entry.key]
+        val id = if (existing != null) {
+            removeFromSecondaryIndexes(existing.id, existing.entry)
+            existing.id
+        } else {
+            allocateId()
+        }
+
+        primaryMap[entry.key] = Slot(id, entry)
+        entriesById[id] = entry
+        sourceMap.getOrPut(entry.sourceId) { PostingList() }.add(id)
+
+        val values = fieldValuesBuffer
+        descriptor.fieldValues(entry, values)
+        for (i in values.indices) {
+            val value = values[i] ?: continue
+            fieldMaps[i].getOrPut(value) { PostingList() }.add(id)
+            presentIds[i].add(id)
+            prefixIndexes[i]?.add(value.lowercase(), id)
+            humpIndexes[i]?.add(CamelHumpMatcher.humps(value), id)
+        }
+        values.fill(null)
+    }
+
+    private fun removeFromSecondaryIndexes(id: Int, entry: T) {
+        // Absent when called from removeBySourceLocked, which drops the whole list
+        sourceMap[entry.sourceId]?.let { ids ->
+            ids.remove(id)
+            if (ids.isEmpty()) sourceMap.remove(entry.sourceId)
+        }
 
-            val buckets = prefixBuckets[fieldName]
-            if (buckets != null) {
-                val lower = value.lowercase()
-                val firstChar = lower.firstOrNull() ?: continue
-                buckets[firstChar]?.removeAll { it.key == entry.key }
+        val values = fieldValuesBuffer
+        descriptor.fieldValues(entry, values)
+        for (i in values.indices) {
+            val value = values[i] ?: continue
+            val ids = fieldMaps[i][value]
+            if (ids != null) {
+                ids.remove(id)
+                if (ids.isEmpty()) fieldMaps[i].remove(value)
             }
+            presentIds[i].remove(id)
+            prefixIndexes[i]?.remove(value.lowercase(), id)
+            humpIndexes[i]?.remove(CamelHumpMatcher.humps(value), id)
         }
-        // Note: sourceMap is handled by the caller
+        values.fill(null)
     }
 }
@@ -1,8 +1,13 @@
 package org.appdevforall.codeonthego.indexing
 
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.takeWhile
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.IndexQuery
 import org.appdevforall.codeonthego.indexing.api.Indexable
 import org.appdevforall.codeonthego.indexing.api.ReadableIndex
+import org.appdevforall.codeonthego.indexing.api.ScoredEntry
 import java.io.Closeable
 
 /**
@@ -37,6 +42,39 @@ class MergedIndex<T : Indexable>(
         }
     }
 
+    override fun queryFlow(query: IndexQuery): Flow<T> = flow {
+        val limit = if (query.limit <= 0) Int.MAX_VALUE else query.limit
+        val seen = mutableSetOf<String>()
+        var total = 0
+        for (index in indexes) {
+            if (total >= limit) break
+            index.queryFlow(query)
+                .takeWhile { total < limit }
+                .collect { entry ->
+                    if (seen.add(entry.key)) {
+                        emit(entry)
+                        total++
+                    }
+                }
+        }
+    }
+
+    /**
+     * Unlike [query], results are ranked across all indexes: each index
+     * returns its best [FuzzyQuery.limit] matches, which are then merged.
+     */
+    override fun fuzzyQuery(query: FuzzyQuery): List<ScoredEntry<T>> {
+        val seen = mutableSetOf<String>()
+        val results = mutableListOf<ScoredEntry<T>>()
+        for (index in indexes) {
+            for (scored in index.fuzzyQuery(query)) {
+                if (seen.add(scored.entry.key)) results.add(scored)
+            }
+        }
+        results.sortWith(ScoredEntry.RANKING)
+        return if (results.size > query.limit) results.subList(0, query.limit).toList() else results
+    }
+
     override suspend fun get(key: String): T? {
         // First match wins (priority order)
         for (index in indexes) {
@@ -50,10 +88,10 @@ class MergedIndex<T : Indexable>(
         return indexes.any { it.containsSource(sourceId) }
     }
 
-    override fun distinctValues(fieldName: String): Sequence<String> = sequence {
+    override fun distinctValues(fieldName: String, sourceIds: Set<String>?): Sequence<String> = sequence {
         val seen = mutableSetOf<String>()
         for (index in indexes) {
-            for (value in index.distinctValues(fieldName)) {
+            for (value in index.distinctValues(fieldName, sourceIds)) {
                 if (seen.add(value)) yield(value)
             }
         }
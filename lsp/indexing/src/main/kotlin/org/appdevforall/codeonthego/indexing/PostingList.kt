@@ -0,0 +1,64 @@
+package org.appdevforall.codeonthego.indexing
+
+import java.util.Arrays
+
+/**
+ * A sorted set of entry ids backed by an [IntArray], used by
+ * [InMemoryIndex] for its per-source and per-field-value key sets.
+ *
+ * Ids are mostly allocated in increasing order, so [add] usually appends.
+ * [contains] and [remove] binary-search the array.
+ *
+ * Not thread-safe; callers must synchronize access.
+ */
+internal class PostingList(initialCapacity: Int = 4) {
+
+    private var ids = IntArray(initialCapacity)
+
+    var size: Int = 0
+        private set
+
+    fun isEmpty(): Boolean = size == 0
+
+    operator fun get(index: Int): Int = ids[index]
+
+    operator fun contains(id: Int): Boolean = Arrays.binarySearch(ids, 0, size, id) >= 0
+
+    /** Add [id]. Returns `false` if it was already present. */
+    fun add(id: Int): Boolean {
+        if (size > 0 && ids[size - 1] < id) {
+            ensureCapacity(size + 1)
+            ids[size++] = id
+            return true
+        }
+
+        val index = Arrays.binarySearch(ids, 0, size, id)
+        if (index >= 0) return false
+
+        val at = -index - 1
+        ensureCapacity(size + 1)
+        System.arraycopy(ids, at, ids, at + 1, size - at)
+        ids[at] = id
+        size++
+        return true
+    }
+
+    /** Remove [id]. Returns `false` if it was not present. */
+    fun remove(id: Int): Boolean {
+        val index = Arrays.binarySearch(ids, 0, size, id)
+        if (index < 0) return false
+
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1)
+        size--
+        if (size < ids.size / 4 && ids.size > 16) {
+            ids = ids.copyOf(ids.size / 2)
+        }
+        return true
+    }
+
+    private fun ensureCapacity(capacity: Int) {
+        if (capacity > ids.size) {
+            ids = ids.copyOf(maxOf(capacity, ids.size + (ids.size shr 1) + 1))
+        }
+    }
+}
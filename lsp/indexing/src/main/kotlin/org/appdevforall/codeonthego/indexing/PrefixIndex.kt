@@ -0,0 +1,228 @@
+package org.appdevforall.codeonthego.indexing
+
+import java.util.BitSet
+import kotlin.math.sqrt
+
+/**
+ * A sorted multimap from (lowercased) field values to entry ids,
+ * used by [InMemoryIndex] for prefix search.
+ *
+ * Pairs are kept ordered by (value, id) in two sorted runs of parallel
+ * arrays:
+ * - a large, compact *main* run, and
+ * - a small *pending* run that absorbs inserts.
+ *
+ * A prefix lookup binary-searches each run for the first value `>= prefix`
+ * and walks both forward, merging them, while values still start with it:
+ * O(log n + k), with the pairs visited in (value, id) order.
+ * Removing a pair from the main run binary-searches it and marks its slot
+ * dead in a [BitSet], so it is O(log n); removing from the pending run
+ * shifts at most the (small) pending run. The runs are merged, dropping
+ * dead slots, when the pending run outgrows ~sqrt(n) or a quarter of the
+ * main run is dead.
+ *
+ * Each pair costs a reference and an `int` (plus a bit), rather than a
+ * wrapper object and a list slot.
+ *
+ * Not thread-safe; callers must synchronize access.
+ */
+internal class PrefixIndex {
+
+    companion object {
+        private const val MIN_PENDING = 64
+        private const val MIN_DEAD = 64
+        private val EMPTY_VALUES = emptyArray<String?>()
+        private val EMPTY_IDS = IntArray(0)
+    }
+
+    // Main run: values/ids[0 until mainSize], sorted by (value, id)
+    private var values: Array<String?> = EMPTY_VALUES
+    private var ids: IntArray = EMPTY_IDS
+    private var mainSize = 0
+    private val dead = BitSet()
+    private var deadCount = 0
+
+    // Pending run: pendingValues/pendingIds[0 until pendingSize], sorted by (value, id)
+    private var pendingValues: Array<String?> = arrayOfNulls(MIN_PENDING + 1)
+    private var pendingIds = IntArray(MIN_PENDING + 1)
+    private var pendingSize = 0
+
+    /** Number of live (value, id) pairs. */
+    val size: Int
+        get() = mainSize - deadCount + pendingSize
+
+    /**
+     * Add the pair ([value], [id]). The caller is expected to not add a pair
+     * that is already present.
+     */
+    fun add(value: String, id: Int) {
+        val index = search(pendingValues, pendingIds, pendingSize, value, id)
+        if (index >= 0) return
+
+        val at = -index - 1
+        if (pendingSize == pendingIds.size) {
+            pendingValues = pendingValues.copyOf(pendingSize * 2)
+            pendingIds = pendingIds.copyOf(pendingSize * 2)
+        }
+        System.arraycopy(pendingValues, at, pendingValues, at + 1, pendingSize - at)
+        System.arraycopy(pendingIds, at, pendingIds, at + 1, pendingSize - at)
+        pendingValues[at] = value
+        pendingIds[at] = id
+        pendingSize++
+
+        if (pendingSize > maxOf(MIN_PENDING, sqrt(mainSize.toDouble()).toInt())) {
+            compact()
+        }
+    }
+
+    /**
+     * Remove the pair ([value], [id]).
+     *
+     * @return Whether the pair was present.
+     */
+    fun remove(value: String, id: Int): Boolean {
+        val pending = search(pendingValues, pendingIds, pendingSize, value, id)
+        if (pending >= 0) {
+            System.arraycopy(pendingValues, pending + 1, pendingValues, pending, pendingSize - pending - 1)
+            System.arraycopy(pendingIds, pending + 1, pendingIds, pending, pendingSize - pending - 1)
+            pendingValues[--pendingSize] = null
+            return true
+        }
+
+        val main = search(values, ids, mainSize, value, id)
+        if (main < 0 || dead[main]) return false
+
+        dead.set(main)
+        deadCount++
+        if (deadCount > maxOf(MIN_DEAD, mainSize / 4)) {
+            compact()
+        }
+        return true
+    }
+
+    /**
+     * Call [action] with the id of every pair whose value starts with
+     * [prefix], until it returns `false`. An empty prefix matches every
+     * pair. Ids are visited in (value, id) order.
+     */
+    fun forEachIdWithPrefix(prefix: String, action: (Int) -> Boolean) =
+        forEachWithPrefix(prefix) { _, id -> action(id) }
+
+    /**
+     * Like [forEachIdWithPrefix], but also passes each pair's value.
+     */
+    fun forEachWithPrefix(prefix: String, action: (value: String, id: Int) -> Boolean) {
+        var i = lowerBound(values, mainSize, prefix)
+        var j = lowerBound(pendingValues, pendingSize, prefix)
+        while (true) {
+            while (i < mainSize && dead[i]) i++
+            val inMain = i < mainSize && values[i]!!.startsWith(prefix)
+            val inPending = j < pendingSize && pendingValues[j]!!.startsWith(prefix)
+            if (!inMain && !inPending) return
+
+            val takeMain = inMain && (!inPending || compare(
+                values[i]!!, ids[i], pendingValues[j]!!, pendingIds[j]
+            ) <= 0)
+            if (takeMain) {
+                if (!action(values[i]!!, ids[i])) return
+                i++
+            } else {
+                if (!action(pendingValues[j]!!, pendingIds[j])) return
+                j++
+            }
+        }
+    }
+
+    /**
+     * Count the pairs whose value starts with [prefix], stopping at [max].
+     * Used to estimate the selectivity of a prefix predicate.
+     */
+    fun countWithPrefix(prefix: String, max: Int): Int {
+        var count = 0
+        forEachIdWithPrefix(prefix) { ++count < max }
+        return count
+    }
+
+    fun clear() {
+        values = EMPTY_VALUES
+        ids = EMPTY_IDS
+        mainSize = 0
+        dead.clear()
+        deadCount = 0
+        pendingValues.fill(null)
+        pendingSize = 0
+    }
+
+    /** Index of the first of the first [size] [values] that is `>= value`. */
+    private fun lowerBound(values: Array<String?>, size: Int, value: String): Int {
+        var low = 0
+        var high = size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (values[mid]!! < value) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    /**
+     * Binary search for ([value], [id]) among the first [size] pairs.
+     * Returns its index, or `-(insertionPoint + 1)` if absent.
+     */
+    private fun search(values: Array<String?>, ids: IntArray, size: Int, value: String, id: Int): Int {
+        var low = 0
+        var high = size - 1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val cmp = compare(values[mid]!!, ids[mid], value, id)
+            when {
+                cmp < 0 -> low = mid + 1
+                cmp > 0 -> high = mid - 1
+                else -> return mid
+            }
+        }
+        return -(low + 1)
+    }
+
+    /** Merge the pending run into the main run, dropping dead slots. */
+    private fun compact() {
+        val newSize = size
+        val newValues = arrayOfNulls<String>(newSize)
+        val newIds = IntArray(newSize)
+
+        var i = 0
+        var j = 0
+        var n = 0
+        while (i < mainSize || j < pendingSize) {
+            if (i < mainSize && dead[i]) {
+                i++
+                continue
+            }
+            val takeMain = j >= pendingSize || (i < mainSize && compare(
+                values[i]!!, ids[i], pendingValues[j]!!, pendingIds[j]
+            ) <= 0)
+            if (takeMain) {
+                newValues[n] = values[i]
+                newIds[n] = ids[i]
+                i++
+            } else {
+                newValues[n] = pendingValues[j]
+                newIds[n] = pendingIds[j]
+                j++
+            }
+            n++
+        }
+
+        values = newValues
+        ids = newIds
+        mainSize = n
+        dead.clear()
+        deadCount = 0
+        pendingValues.fill(null, 0, pendingSize)
+        pendingSize = 0
+    }
+
+    private fun compare(value1: String, id1: Int, value2: String, id2: Int): Int {
+        val cmp = value1.compareTo(value2)
+        return if (cmp != 0) cmp else id1.compareTo(id2)
+    }
+}
@@ -1,23 +1,37 @@
 package org.appdevforall.codeonthego.indexing
 
-import android.content.ContentValues
 import android.content.Context
-import android.database.sqlite.SQLiteDatabase
 import android.os.Looper
 import androidx.sqlite.db.SupportSQLiteDatabase
 import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.SupportSQLiteStatement
 import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
+import org.appdevforall.codeonthego.indexing.api.CamelHumpMatcher
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.Index
 import org.appdevforall.codeonthego.indexing.api.IndexDescriptor
 import org.appdevforall.codeonthego.indexing.api.IndexQuery
 import org.appdevforall.codeonthego.indexing.api.Indexable
+import org.appdevforall.codeonthego.indexing.api.ScoredEntry
 import org.slf4j.LoggerFactory
+import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.collections.iterator
+import kotlin.concurrent.read
+import kotlin.concurrent.write
 
 /**
  * An [Index] backed by SQLite via AndroidX.
@@ -27,8 +41,10 @@ import kotlin.collections.iterator
  * CREATE TABLE IF NOT EXISTS {name} (
  *     _key TEXT PRIMARY KEY,
  *     _source_id TEXT NOT NULL,
+ *     _schema_version INTEGER NOT NULL,
  *     f_{field1} TEXT,
  *     f_{field1}_lower TEXT,  -- if prefix-searchable
+ *     f_{field1}_humps TEXT,  -- if fuzzy-searchable
  *     f_{field2} TEXT,
  *     ...
  *     _payload BLOB NOT NULL
@@ -38,15 +54,53 @@ import kotlin.collections.iterator
  * SQL indexes are created on:
  * - `_source_id` (for bulk removal)
  * - Each `f_{field}` (for equality filter)
- * - Each `f_{field}_lower` (for prefix search via `LIKE 'prefix%'`)
+ * - Each `f_{field}_lower` (for prefix search via a `>= prefix AND < successor` range)
+ * - Each `f_{field}_humps` (for [fuzzyQuery], see [CamelHumpMatcher.humps])
  *
- * Uses WAL journal mode for concurrent read/write performance.
- * Inserts are batched inside transactions for throughput.
+ * The [IndexDescriptor.schemaVersion] and [IndexDescriptor.fieldsHash] a
+ * table was last opened with are recorded in a shared `_index_meta` table.
+ * When they differ on open, the table is migrated in place instead of being
+ * dropped:
+ * - Columns of new fields are added with `ALTER TABLE` and backfilled by
+ *   deserializing the stored payloads, in the background and one page per
+ *   transaction, so opening the index stays fast. Until the backfill
+ *   finishes, queries on the new fields may miss older entries. The
+ *   fields still to backfill are recorded in `_index_meta`, so an
+ *   interrupted backfill resumes on the next open. Columns of removed
+ *   fields are left in place (SQLite cannot drop them on older devices)
+ *   but their SQL indexes are dropped and they are no longer written.
+ * - Every row records the schema version it was written with. After a
+ *   version bump the older rows are stale: reads skip them and
+ *   [containsSource] reports their sources as missing, so each source is
+ *   re-indexed lazily by whoever owns it. The stale rows themselves are
+ *   purged in the background, including those of sources that are never
+ *   re-indexed. A pending purge is recorded in `_index_meta` too, so
+ *   opening the table does not have to look for stale rows.
  *
- * [query] and [distinctValues] eagerly collect results and return a
- * [Sequence] backed by a list. The cursor is always closed before
- * returning; callers are responsible for running on an appropriate
- * thread (typically [Dispatchers.IO] via the suspend insert paths).
+ * File-backed databases use WAL journal mode, so readers run on their own
+ * pooled connections concurrently with writers. Writes are serialized by a
+ * [Mutex]; reads only take a shared lock that guards against [close].
+ * Inserts are batched inside transactions and go through a single
+ * compiled `INSERT OR REPLACE` statement whose columns are bound
+ * positionally.
+ *
+ * [bulkLoad] switches the index into a mode for large initial loads:
+ * `synchronous` is turned off and WAL auto-checkpointing is relaxed, and
+ * both are restored when the outermost [bulkLoad] returns. The SQL indexes
+ * are kept up to date throughout, so queries running concurrently with a
+ * bulk load stay fast, and a process that dies mid-load leaves no index
+ * behind to rebuild. Indexes missing from a table (e.g. dropped by an
+ * older version that was interrupted) are recreated when it is opened.
+ *
+ * [query] and [distinctValues] stream results using keyset pagination:
+ * rows are fetched [pageSize] at a time, ordered by `rowid` (or by the
+ * prefix column and `rowid` for prefix queries, so the SQL index provides
+ * the order). Each page's cursor is closed before any entry is handed to the
+ * caller, and payloads are only deserialized as the sequence is consumed, so
+ * abandoning a sequence early (e.g. after `take(50)`) holds no resources and
+ * wastes no work. [queryFlow] runs the same pages on [Dispatchers.IO].
+ * Every predicate of an [IndexQuery], including the value and source sets,
+ * is evaluated in SQL, so a page never holds rows the caller would discard.
  *
  * @param T The indexed entry type.
  * @param descriptor Defines fields and serialization.
@@ -55,6 +109,11 @@ import kotlin.collections.iterator
  *               that is discarded when closed. Different index types can share
  *               a database (each gets its own table) or use separate files.
  * @param batchSize Number of rows per INSERT transaction.
+ * @param pageSize Number of rows fetched per page by [query] and [distinctValues].
+ * @param sideTables Statements creating tables kept next to the index table,
+ *                   e.g. to record where its entries come from. They are run
+ *                   on every open, so they must be idempotent. Side tables are
+ *                   accessed through [readSideTables] and [writeSideTables].
  */
 class SQLiteIndex<T : Indexable>(
     override val descriptor: IndexDescriptor<T>,
@@ -62,15 +121,38 @@ class SQLiteIndex<T : Indexable>(
     dbName: String?,
     override val name: String = "sqlite:${descriptor.name}",
     private val batchSize: Int = 500,
+    private val pageSize: Int = 256,
+    sideTables: List<String> = emptyList(),
 ) : Index<T> {
     companion object {
         private val log = LoggerFactory.getLogger(SQLiteIndex::class.java)
 
         /**
-         * Max number of `_source_id` placeholders per batched DELETE.
-         * Kept well under SQLite's default 999 bound-parameter limit.
+         * Max number of placeholders per `IN (...)` list, e.g. of `_source_id`s
+         * in a batched DELETE. Kept well under SQLite's default 999
+         * bound-parameter limit.
+         */
+        private const val PLACEHOLDER_CHUNK_SIZE = 900
+
+        /**
+         * Max number of values of an `IN (...)` predicate of a query that are
+         * bound as parameters. Larger sets (e.g. the active sources of a big
+         * classpath) are inlined as SQL literals, leaving room for the other
+         * parameters of the query.
          */
-        private const val DELETE_CHUNK_SIZE = 900
+        private const val MAX_BOUND_SET_SIZE = 500
+
+        /** WAL pages between automatic checkpoints while bulk loading. */
+        private const val BULK_LOAD_WAL_AUTOCHECKPOINT = 10_000
+
+        /** Records the schema each index table was last opened with. */
+        private const val META_TABLE = "_index_meta"
+
+        /**
+         * Rows per transaction when backfilling new columns or purging stale
+         * rows after a migration.
+         */
+        private const val MAINTENANCE_PAGE_SIZE = 500
     }
 
 
@@ -86,24 +168,73 @@ class SQLiteIndex<T : Indexable>(
         .filter { it.prefixSearchable }
         .associate { it.name to "f_${it.name}_lower" }
 
+    // Fuzzy-searchable fields also get a "_humps" column holding their hump key
+    private val humpColumns = descriptor.fields
+        .filter { it.fuzzySearchable }
+        .associate { it.name to "f_${it.name}_humps" }
+
+    // The columns written for each field: "f_{field}", then its "_lower" and
+    // "_humps" columns if any
+    private val fieldColumnGroups = descriptor.fields.map { field ->
+        listOfNotNull(
+            fieldColumns[field.name],
+            prefixColumns[field.name],
+            humpColumns[field.name],
+        )
+    }
+
+    // Column order of insertStatement: _key, _source_id, _schema_version, then
+    // the column group of each field, then _payload
+    private val insertColumns = buildList {
+        add("_key")
+        add("_source_id")
+        add("_schema_version")
+        fieldColumnGroups.forEach(::addAll)
+        add("_payload")
+    }
+
+    private val prefixSearchable = BooleanArray(descriptor.fields.size) {
+        descriptor.fields[it].prefixSearchable
+    }
+
+    private val fuzzySearchable = BooleanArray(descriptor.fields.size) {
+        descriptor.fields[it].fuzzySearchable
+    }
+
+    // Guarded by mutex
+    private var insertStatement: SupportSQLiteStatement? = null
+    private val fieldValuesBuffer = arrayOfNulls<String>(descriptor.fields.size)
+    private var bulkLoadDepth = 0
+    private var savedSynchronous: Int? = null
+
     private val mutex = Mutex()
+    private val closeLock = ReentrantReadWriteLock()
     @Volatile private var closed = false
+
+    // Whether the table may hold rows written under an older schema version.
+    // Reads only filter on _schema_version while this is set.
+    @Volatile private var hasStaleRows = false
+
+    // Indices of the fields whose columns are still being backfilled
+    @Volatile private var pendingBackfill = emptyList<Int>()
     private val db: SupportSQLiteDatabase
 
+    // Runs the backfill and purge left by a migration, see startMaintenance
+    private val maintenanceScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private var maintenanceJob: Job? = null
+
     init {
         val config = SupportSQLiteOpenHelper.Configuration.builder(context)
             .name(dbName)
             .callback(object : SupportSQLiteOpenHelper.Callback(1) {
                 override fun onCreate(db: SupportSQLiteDatabase) {
-                    createTable(db)
                 }
 
                 override fun onUpgrade(
                     db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int,
                 ) {
-					// TODO: Add migration support
-                    db.execSQL("DROP TABLE IF EXISTS $tableName")
-                    createTable(db)
+                    // Tables are versioned individually through META_TABLE,
+                    // see migrateOrCreateTable
                 }
 
                 override fun onOpen(db: SupportSQLiteDatabase) {
@@ -113,33 +244,48 @@ class SQLiteIndex<T : Indexable>(
 
         db = FrameworkSQLiteOpenHelperFactory()
             .create(config)
+            .apply { if (dbName != null) setWriteAheadLoggingEnabled(true) }
             .writableDatabase
 
-        // Ensure table exists (for shared databases)
-        createTable(db)
+        // The database may be shared, so each table is created or migrated
+        // on its own rather than in the helper's callbacks
+        migrateOrCreateTable(db)
+        sideTables.forEach(db::execSQL)
+        startMaintenance()
     }
 
-    override fun query(query: IndexQuery): Sequence<T> = runBlocking {
-        ifOpen(emptySequence()) {
-            val (sql, args) = buildSelectQuery(query)
-            val cursor = db.query(sql, args.toTypedArray())
-            cursor.use {
-                val payloadIdx = it.getColumnIndexOrThrow("_payload")
-                buildList {
-                    while (it.moveToNext()) {
-                        add(descriptor.deserialize(it.getBlob(payloadIdx)))
-                    }
-                }
-            }.asSequence()
+    override fun query(query: IndexQuery): Sequence<T> = sequence {
+        val plan = buildSelectQuery(query)
+        var remaining = if (query.limit > 0) query.limit else Int.MAX_VALUE
+        var mark: PageMark? = null
+        while (remaining > 0) {
+            val requested = minOf(remaining, pageSize)
+            val page = readPage(plan, mark, requested) ?: break
+            for (payload in page.payloads) {
+                yield(descriptor.deserialize(payload))
+            }
+            remaining -= page.payloads.size
+            if (page.payloads.size < requested) break
+            mark = page.mark
         }
     }
 
+    override fun queryFlow(query: IndexQuery): Flow<T> =
+        query(query).asFlow().flowOn(Dispatchers.IO)
+
     override suspend fun get(key: String): T? = withContext(Dispatchers.IO) {
-        ifOpen(null) {
-            val cursor = db.query(
-                "SELECT _payload FROM $tableName WHERE _key = ? LIMIT 1",
-                arrayOf(key),
-            )
+        readIfOpen(null) {
+            val cursor = if (hasStaleRows) {
+                db.query(
+                    "SELECT _payload FROM $tableName WHERE _key = ? AND _schema_version = ? LIMIT 1",
+                    arrayOf<Any?>(key, descriptor.schemaVersion),
+                )
+            } else {
+                db.query(
+                    "SELECT _payload FROM $tableName WHERE _key = ? LIMIT 1",
+                    arrayOf(key),
+                )
+            }
             cursor.use {
                 if (it.moveToFirst()) {
                     descriptor.deserialize(it.getBlob(0))
@@ -150,27 +296,155 @@ class SQLiteIndex<T : Indexable>(
 
     override suspend fun containsSource(sourceId: String): Boolean =
         withContext(Dispatchers.IO) {
-            ifOpen(false) {
-                val cursor = db.query(
-                    "SELECT 1 FROM $tableName WHERE _source_id = ? LIMIT 1",
-                    arrayOf(sourceId),
-                )
+            readIfOpen(false) {
+                val cursor = if (hasStaleRows) {
+                    db.query(
+                        "SELECT 1 FROM $tableName WHERE _source_id = ? AND _schema_version = ? LIMIT 1",
+                        arrayOf<Any?>(sourceId, descriptor.schemaVersion),
+                    )
+                } else {
+                    db.query(
+                        "SELECT 1 FROM $tableName WHERE _source_id = ? LIMIT 1",
+                        arrayOf(sourceId),
+                    )
+                }
                 cursor.use { it.moveToFirst() }
             }
         }
 
-    override fun distinctValues(fieldName: String): Sequence<String> = runBlocking {
-        ifOpen(emptySequence()) {
-            val col = fieldColumns[fieldName]
-                ?: throw IllegalArgumentException("Unknown field: $fieldName")
-            val cursor = db.query("SELECT DISTINCT $col FROM $tableName WHERE $col IS NOT NULL")
-            cursor.use {
-                buildList {
-                    while (it.moveToNext()) {
-                        add(it.getString(0))
+    override fun distinctValues(fieldName: String, sourceIds: Set<String>?): Sequence<String> {
+        val col = fieldColumns[fieldName]
+            ?: throw IllegalArgumentException("Unknown field: $fieldName")
+        if (sourceIds != null && sourceIds.isEmpty()) return emptySequence()
+        return sequence {
+            var last: String? = null
+            while (true) {
+                val page = readIfOpen<List<String>?>(null) {
+                    val where = mutableListOf<String>()
+                    val args = mutableListOf<Any?>()
+                    if (last == null) {
+                        where.add("$col IS NOT NULL")
+                    } else {
+                        where.add("$col > ?")
+                        args.add(last)
+                    }
+                    if (hasStaleRows) {
+                        where.add("_schema_version = ?")
+                        args.add(descriptor.schemaVersion)
+                    }
+                    if (sourceIds != null) {
+                        where.add(sourceIdsClause(sourceIds, args))
+                    }
+                    val sql = "SELECT DISTINCT $col FROM $tableName WHERE ${where.joinToString(" AND ")} " +
+                            "ORDER BY $col LIMIT $pageSize"
+                    db.query(sql, args.toTypedArray()).use {
+                        buildList {
+                            while (it.moveToNext()) {
+                                add(it.getString(0))
+                            }
+                        }
+                    }
+                } ?: break
+
+                yieldAll(page)
+                if (page.size < pageSize) break
+                last = page.last()
+            }
+        }
+    }
+
+    /**
+     * Scans the candidates in two phases: first only the hump key and value
+     * of up to [FuzzyQuery.maxCandidates] rows matching the hump range, the
+     * `GLOB` and the [FuzzyQuery.filter] (source ids included), keeping the
+     * best [FuzzyQuery.limit] by rowid; then the payloads of those rows only.
+     */
+    override fun fuzzyQuery(query: FuzzyQuery): List<ScoredEntry<T>> {
+        val humpsCol = humpColumns[query.field]
+            ?: throw IllegalArgumentException("Field is not fuzzy-searchable: ${query.field}")
+        val col = fieldColumns[query.field]!!
+        val patternHumps = CamelHumpMatcher.patternHumps(query.pattern)
+        if (patternHumps.isEmpty() || query.limit <= 0) return emptyList()
+
+        val plan = buildSelectQuery(query.filter)
+        val where = plan.where.toMutableList()
+        val args = plan.args.toMutableList()
+        plan.range?.let { range ->
+            where.add("${range.column} >= ?")
+            args.add(range.lower)
+            if (range.upper != null) {
+                where.add("${range.column} < ?")
+                args.add(range.upper)
+            }
+        }
+
+        // The first hump is a range on the SQL index, the rest a GLOB on it
+        val firstHump = patternHumps.substring(0, 1)
+        where.add("$humpsCol >= ?")
+        args.add(firstHump)
+        prefixSuccessor(firstHump)?.let {
+            where.add("$humpsCol < ?")
+            args.add(it)
+        }
+        where.add("$humpsCol GLOB ?")
+        args.add(patternHumps.toList().joinToString("*", postfix = "*"))
+
+        val top = TopK(query.limit, FuzzyCandidate.RANKING)
+        var scanned = 0
+        var mark: PageMark? = null
+        while (scanned < query.maxCandidates) {
+            val size = minOf(pageSize, query.maxCandidates - scanned)
+            val pageWhere = where.toMutableList()
+            val pageArgs = args.toMutableList()
+            if (mark != null) {
+                pageWhere.add("($humpsCol > ? OR ($humpsCol = ? AND rowid > ?))")
+                pageArgs.add(mark.orderValue)
+                pageArgs.add(mark.orderValue)
+                pageArgs.add(mark.rowId)
+            }
+
+            val sql = "SELECT rowid, $humpsCol, $col FROM $tableName " +
+                    "WHERE ${pageWhere.joinToString(" AND ")} ORDER BY $humpsCol, rowid LIMIT $size"
+            val rows = readIfOpen<List<FuzzyRow>?>(null) {
+                db.query(sql, pageArgs.toTypedArray()).use { cursor ->
+                    buildList {
+                        while (cursor.moveToNext()) {
+                            add(FuzzyRow(cursor.getLong(0), cursor.getString(1), cursor.getString(2)))
+                        }
+                    }
+                }
+            } ?: return emptyList()
+
+            for (row in rows) {
+                scanned++
+                val value = row.value ?: continue
+                val score = query.scorer.score(query.pattern, value)
+                if (score > 0) top.offer(FuzzyCandidate(row.rowId, score, value))
+            }
+
+            if (rows.size < size) break
+            mark = PageMark(rows.last().humps, rows.last().rowId)
+        }
+
+        val candidates = top.toSortedList()
+        if (candidates.isEmpty()) return emptyList()
+
+        val payloads = readIfOpen<Map<Long, ByteArray>?>(null) {
+            buildMap {
+                for (chunk in candidates.chunked(PLACEHOLDER_CHUNK_SIZE)) {
+                    db.query(
+                        "SELECT rowid, _payload FROM $tableName WHERE rowid IN (${chunk.joinToString(",") { "?" }})",
+                        chunk.map { it.rowId }.toTypedArray<Any?>(),
+                    ).use { cursor ->
+                        while (cursor.moveToNext()) put(cursor.getLong(0), cursor.getBlob(1))
                     }
                 }
-            }.asSequence()
+            }
+        } ?: return emptyList()
+
+        return candidates.mapNotNull { candidate ->
+            val payload = payloads[candidate.rowId] ?: return@mapNotNull null
+            ScoredEntry(descriptor.deserialize(payload), candidate.score, candidate.value)
         }
     }
 
@@ -198,7 +472,7 @@ class SQLiteIndex<T : Indexable>(
 
     /**
      * Remove every row whose `_source_id` is in [sourceIds] using a single SQLite
-     * transaction. The ids are split into chunks of at most [DELETE_CHUNK_SIZE] so
+     * transaction. The ids are split into chunks of at most [PLACEHOLDER_CHUNK_SIZE] so
      * each `DELETE ... IN (?, ?, ...)` stays within SQLite's bound-parameter limit;
      * all chunks run inside the one transaction, so the batch commits atomically
      * (an empty [sourceIds] is a no-op and opens no transaction).
@@ -211,7 +485,7 @@ class SQLiteIndex<T : Indexable>(
             ifOpen {
                 db.beginTransaction()
                 try {
-                    for (chunk in sourceIds.chunked(DELETE_CHUNK_SIZE)) {
+                    for (chunk in sourceIds.chunked(PLACEHOLDER_CHUNK_SIZE)) {
                         val placeholders = chunk.joinToString(",") { "?" }
                         db.execSQL(
                             "DELETE FROM $tableName WHERE _source_id IN ($placeholders)",
@@ -226,7 +500,39 @@ class SQLiteIndex<T : Indexable>(
         }
 
     override suspend fun clear() = withContext(Dispatchers.IO) {
-        ifOpen { db.execSQL("DELETE FROM $tableName") }
+        ifOpen {
+            db.execSQL("DELETE FROM $tableName")
+            clearPurgePending()
+            hasStaleRows = false
+        }
+    }
+
+    override suspend fun <R> bulkLoad(block: suspend () -> R): R {
+        withContext(Dispatchers.IO) { ifOpen { beginBulkLoadLocked() } }
+        try {
+            return block()
+        } finally {
+            withContext(NonCancellable + Dispatchers.IO) { ifOpen { endBulkLoadLocked() } }
+        }
+    }
+
+    private fun beginBulkLoadLocked() {
+        if (bulkLoadDepth++ > 0) return
+
+        log.info("{}: entering bulk-load mode", name)
+        savedSynchronous = db.query("PRAGMA synchronous").use {
+            if (it.moveToFirst()) it.getInt(0) else null
+        }
+        db.execSQL("PRAGMA synchronous = OFF")
+        db.query("PRAGMA wal_autocheckpoint = $BULK_LOAD_WAL_AUTOCHECKPOINT").close()
+    }
+
+    private fun endBulkLoadLocked() {
+        if (bulkLoadDepth == 0 || --bulkLoadDepth > 0) return
+
+        db.query("PRAGMA wal_autocheckpoint = 1000").close()
+        db.execSQL("PRAGMA synchronous = ${savedSynchronous ?: 1}")
+        log.info("{}: left bulk-load mode", name)
     }
 
     override fun close() {
@@ -235,24 +541,59 @@ class SQLiteIndex<T : Indexable>(
                 "SQLiteIndex.close() called on the main thread; waiting on mutex and closing db may block and cause ANR"
             )
         }
+        maintenanceScope.cancel()
         runBlocking {
             mutex.withLock {
-                if (closed) return@withLock
-                closed = true
-                db.close()
+                closeLock.write {
+                    if (closed) return@write
+                    closed = true
+                    insertStatement?.close()
+                    insertStatement = null
+                    db.close()
+                }
             }
         }
     }
 
-    private suspend inline fun <R> ifOpen(default: R, crossinline block: () -> R): R =
-        mutex.withLock { if (closed) default else block() }
-
+    /**
+     * Run a write [block] if the index is still open. Writers are serialized
+     * by [mutex]; the shared [closeLock] keeps [close] from racing the write.
+     */
     private suspend inline fun ifOpen(crossinline block: () -> Unit) =
-        mutex.withLock { if (!closed) block() }
+        mutex.withLock { closeLock.read { if (!closed) block() } }
+
+    /**
+     * Run a read [block] if the index is still open. Reads do not take
+     * [mutex], so they proceed concurrently with each other and with writers.
+     */
+    private inline fun <R> readIfOpen(default: R, block: () -> R): R =
+        closeLock.read { if (closed) default else block() }
+
+    /**
+     * Read the side tables of this index. Returns [default] once the index
+     * is closed.
+     */
+    fun <R> readSideTables(default: R, block: (SupportSQLiteDatabase) -> R): R =
+        readIfOpen(default) { block(db) }
+
+    /**
+     * Write the side tables of this index. Writes are serialized with those
+     * of the index, and skipped once it is closed.
+     */
+    suspend fun writeSideTables(block: (SupportSQLiteDatabase) -> Unit) = withContext(Dispatchers.IO) {
+        ifOpen { block(db) }
+    }
 
     suspend fun size(): Int = withContext(Dispatchers.IO) {
-        ifOpen(0) {
-            val cursor = db.query("SELECT COUNT(*) FROM $tableName")
+        readIfOpen(0) {
+            val cursor = if (hasStaleRows) {
+                db.query(
+                    "SELECT COUNT(*) FROM $tableName WHERE _schema_version = ?",
+                    arrayOf<Any?>(descriptor.schemaVersion),
+                )
+            } else {
+                db.query("SELECT COUNT(*) FROM $tableName")
+            }
             cursor.use { if (it.moveToFirst()) it.getInt(0) else 0 }
         }
     }
@@ -261,14 +602,11 @@ class SQLiteIndex<T : Indexable>(
         val columns = buildString {
             append("_key TEXT PRIMARY KEY, ")
             append("_source_id TEXT NOT NULL, ")
+            append("_schema_version INTEGER NOT NULL, ")
 
-            for (field in descriptor.fields) {
-                val col = fieldColumns[field.name]!!
-                append("$col TEXT, ")
-
-                if (field.prefixSearchable) {
-                    val lowerCol = prefixColumns[field.name]!!
-                    append("$lowerCol TEXT, ")
+            for (columns in fieldColumnGroups) {
+                for (col in columns) {
+                    append("$col TEXT, ")
                 }
             }
 
@@ -276,88 +614,524 @@ class SQLiteIndex<T : Indexable>(
         }
 
         db.execSQL("CREATE TABLE IF NOT EXISTS $tableName ($columns)")
+        createIndexes(db)
+    }
 
-        // Indexes
+    /**
+     * Create the table if it does not exist, or migrate it in place if it
+     * was last opened with a different [IndexDescriptor.schemaVersion] or
+     * [IndexDescriptor.fieldsHash]. The backfill of new columns and the purge
+     * of stale rows are left to [startMaintenance].
+     */
+    private fun migrateOrCreateTable(db: SupportSQLiteDatabase) {
         db.execSQL(
-            "CREATE INDEX IF NOT EXISTS idx_${tableName}_source ON $tableName(_source_id)"
+            "CREATE TABLE IF NOT EXISTS $META_TABLE (" +
+                    "table_name TEXT PRIMARY KEY, " +
+                    "schema_version INTEGER NOT NULL, " +
+                    "fields_hash TEXT NOT NULL, " +
+                    "pending_backfill TEXT, " +
+                    "purge_pending INTEGER NOT NULL DEFAULT 0)"
         )
+        val metaColumns = tableColumns(db, META_TABLE)
+        if ("pending_backfill" !in metaColumns) {
+            db.execSQL("ALTER TABLE $META_TABLE ADD COLUMN pending_backfill TEXT")
+        }
+        if ("purge_pending" !in metaColumns) {
+            // Tables recorded before the flag existed may still hold stale
+            // rows, so each of them is purged once
+            db.execSQL("ALTER TABLE $META_TABLE ADD COLUMN purge_pending INTEGER NOT NULL DEFAULT 1")
+        }
+
+        val existingColumns = tableColumns(db)
+        if (existingColumns.isEmpty()) {
+            createTable(db)
+            writeMeta(db, pendingBackfill = emptySet(), purgePending = false)
+            return
+        }
 
-        for (field in descriptor.fields) {
-            val col = fieldColumns[field.name]!!
-            db.execSQL(
-                "CREATE INDEX IF NOT EXISTS idx_${tableName}_$col ON $tableName($col)"
+        val meta = db.query(
+            "SELECT schema_version, fields_hash, pending_backfill, purge_pending FROM $META_TABLE WHERE table_name = ?",
+            arrayOf(tableName),
+        ).use {
+            if (it.moveToFirst()) {
+                TableMeta(
+                    schemaVersion = it.getInt(0),
+                    fieldsHash = it.getString(1),
+                    pendingBackfill = it.getString(2)?.split(',')?.filter(String::isNotEmpty)?.toSet().orEmpty(),
+                    purgePending = it.getInt(3) != 0,
+                )
+            } else null
+        }
+
+        var pendingBackfill = meta?.pendingBackfill.orEmpty()
+        // A table without meta predates versioning and may hold rows of any version
+        var purgePending = meta == null || meta.purgePending
+        if (meta == null || meta.schemaVersion != descriptor.schemaVersion || meta.fieldsHash != descriptor.fieldsHash) {
+            val start = System.currentTimeMillis()
+            db.beginTransaction()
+            try {
+                pendingBackfill = pendingBackfill + migrateColumns(db, existingColumns)
+                purgePending = purgePending || meta?.schemaVersion != descriptor.schemaVersion
+                writeMeta(db, pendingBackfill, purgePending)
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+            log.info(
+                "{}: migrated table from {} to {} in {}ms", name,
+                meta?.let { it.schemaVersion to it.fieldsHash },
+                descriptor.schemaVersion to descriptor.fieldsHash,
+                System.currentTimeMillis() - start,
             )
+        } else {
+            val missing = missingIndexes(db)
+            if (missing.isNotEmpty()) {
+                val start = System.currentTimeMillis()
+                createIndexes(db)
+                log.info("{}: recreated missing indexes {} in {}ms", name, missing, System.currentTimeMillis() - start)
+            }
+        }
+
+        // Fields removed since their backfill was interrupted need none
+        this.pendingBackfill = descriptor.fields.indices
+            .filter { descriptor.fields[it].name in pendingBackfill }
+
+        hasStaleRows = purgePending
+
+        if (hasStaleRows) {
+            log.info("{}: table has entries of an older schema, they will be re-indexed per source", name)
+        }
+    }
+
+    private class TableMeta(
+        val schemaVersion: Int,
+        val fieldsHash: String,
+        val pendingBackfill: Set<String>,
+        val purgePending: Boolean,
+    )
+
+    private fun tableColumns(db: SupportSQLiteDatabase, table: String = tableName): Set<String> =
+        db.query("PRAGMA table_info($table)").use { cursor ->
+            val nameIndex = cursor.getColumnIndexOrThrow("name")
+            buildSet {
+                while (cursor.moveToNext()) add(cursor.getString(nameIndex))
+            }
+        }
+
+    /**
+     * Record the schema the table is opened with, the names of the fields
+     * whose columns are still to be backfilled, and whether rows of older
+     * schema versions are still to be purged.
+     */
+    private fun writeMeta(db: SupportSQLiteDatabase, pendingBackfill: Set<String>, purgePending: Boolean) {
+        db.execSQL(
+            "INSERT OR REPLACE INTO $META_TABLE " +
+                    "(table_name, schema_version, fields_hash, pending_backfill, purge_pending) " +
+                    "VALUES (?, ?, ?, ?, ?)",
+            arrayOf<Any?>(
+                tableName, descriptor.schemaVersion, descriptor.fieldsHash,
+                pendingBackfill.takeIf { it.isNotEmpty() }?.joinToString(","),
+                if (purgePending) 1 else 0,
+            ),
+        )
+    }
+
+    private fun clearPurgePending() {
+        db.execSQL("UPDATE $META_TABLE SET purge_pending = 0 WHERE table_name = ?", arrayOf(tableName))
+    }
+
+    /**
+     * Bring the columns of an existing table in line with the descriptor.
+     * Must be called inside a transaction.
+     *
+     * @return The names of the fields whose columns were added and must be
+     *         backfilled.
+     */
+    private fun migrateColumns(db: SupportSQLiteDatabase, existingColumns: Set<String>): Set<String> {
+        if ("_schema_version" !in existingColumns) {
+            // Tables created before versioning hold entries of version 1
+            db.execSQL("ALTER TABLE $tableName ADD COLUMN _schema_version INTEGER NOT NULL DEFAULT 1")
+        }
+
+        // Fields with a new column in their group must be backfilled
+        val backfill = mutableSetOf<String>()
+        for ((i, columns) in fieldColumnGroups.withIndex()) {
+            for (col in columns) {
+                if (col !in existingColumns) {
+                    db.execSQL("ALTER TABLE $tableName ADD COLUMN $col TEXT")
+                    backfill.add(descriptor.fields[i].name)
+                }
+            }
+        }
+
+        // Columns of removed fields stay, but are no longer indexed or written
+        val currentColumns = insertColumns.toSet()
+        for (col in existingColumns) {
+            if (col.startsWith("f_") && col !in currentColumns) {
+                db.execSQL("DROP INDEX IF EXISTS idx_${tableName}_$col")
+            }
+        }
+
+        createIndexes(db)
+        return backfill
+    }
+
+    /**
+     * Backfill the columns of [pendingBackfill] and purge the rows of older
+     * schema versions in the background, if the table needs either. Each
+     * page is written in its own transaction under [mutex], so inserts and
+     * removals interleave with the work instead of waiting for all of it.
+     */
+    private fun startMaintenance() {
+        val fieldIndices = pendingBackfill
+        if (fieldIndices.isEmpty() && !hasStaleRows) return
+
+        maintenanceJob = maintenanceScope.launch {
+            if (fieldIndices.isNotEmpty()) backfillColumns(fieldIndices)
+            if (hasStaleRows) purgeStaleRows()
+        }
+    }
+
+    /**
+     * Wait until the work started by [startMaintenance] is done.
+     */
+    internal suspend fun awaitMaintenance() {
+        maintenanceJob?.join()
+    }
+
+    /**
+     * Fill the columns of the fields at [fieldIndices] from the stored
+     * payloads, then clear them from the pending backfill in the meta table.
+     * Only rows of the current schema version are backfilled; older payloads
+     * may not be readable and are re-indexed anyway.
+     */
+    private suspend fun backfillColumns(fieldIndices: List<Int>) {
+        val start = System.currentTimeMillis()
+        val columns = fieldIndices.flatMap { fieldColumnGroups[it] }
+        val values = arrayOfNulls<String>(descriptor.fields.size)
+        var updated = 0
+        var lastRowId = 0L
+        var done = false
+
+        while (!done && !closed) {
+            ifOpen {
+                db.beginTransaction()
+                try {
+                    val rows = db.query(
+                        "SELECT rowid, _payload FROM $tableName WHERE rowid > ? AND _schema_version = ? " +
+                                "ORDER BY rowid LIMIT $MAINTENANCE_PAGE_SIZE",
+                        arrayOf<Any?>(lastRowId, descriptor.schemaVersion),
+                    ).use { cursor ->
+                        buildList {
+                            while (cursor.moveToNext()) add(cursor.getLong(0) to cursor.getBlob(1))
+                        }
+                    }
+
+                    if (rows.isEmpty()) {
+                        db.execSQL(
+                            "UPDATE $META_TABLE SET pending_backfill = NULL WHERE table_name = ?",
+                            arrayOf(tableName),
+                        )
+                        pendingBackfill = emptyList()
+                        done = true
+                    } else {
+                        db.compileStatement(
+                            "UPDATE $tableName SET ${columns.joinToString(", ") { "$it = ?" }} WHERE rowid = ?"
+                        ).use { statement ->
+                            for ((rowId, payload) in rows) {
+                                val entry = try {
+                                    descriptor.deserialize(payload)
+                                } catch (e: Exception) {
+                                    log.warn("{}: failed to read entry at row {} while migrating", name, rowId, e)
+                                    continue
+                                }
 
-            if (field.prefixSearchable) {
-                val lowerCol = prefixColumns[field.name]!!
+                                descriptor.fieldValues(entry, values)
+                                var index = 1
+                                for (i in fieldIndices) {
+                                    index = statement.bindFieldColumns(index, i, values[i])
+                                }
+                                statement.bindLong(index, rowId)
+                                statement.executeUpdateDelete()
+                                values.fill(null)
+                                updated++
+                            }
+                        }
+                        lastRowId = rows.last().first
+                    }
+                    db.setTransactionSuccessful()
+                } finally {
+                    db.endTransaction()
+                }
+            }
+        }
+
+        if (done) {
+            log.info("{}: backfilled {} for {} entries in {}ms", name, columns, updated, System.currentTimeMillis() - start)
+        }
+    }
+
+    /**
+     * Delete the rows of older schema versions, including those of sources
+     * that are never re-indexed, then clear the pending purge in the meta
+     * table.
+     */
+    private suspend fun purgeStaleRows() {
+        var purged = 0
+        var lastRowId = 0L
+        var done = false
+
+        while (!done && !closed) {
+            ifOpen {
+                val rowIds = db.query(
+                    "SELECT rowid FROM $tableName WHERE rowid > ? AND _schema_version != ? " +
+                            "ORDER BY rowid LIMIT $MAINTENANCE_PAGE_SIZE",
+                    arrayOf<Any?>(lastRowId, descriptor.schemaVersion),
+                ).use { cursor ->
+                    buildList {
+                        while (cursor.moveToNext()) add(cursor.getLong(0))
+                    }
+                }
+
+                if (rowIds.isEmpty()) {
+                    clearPurgePending()
+                    hasStaleRows = false
+                    done = true
+                } else {
+                    db.execSQL(
+                        "DELETE FROM $tableName WHERE rowid IN (${rowIds.joinToString(",")})"
+                    )
+                    purged += rowIds.size
+                    lastRowId = rowIds.last()
+                }
+            }
+        }
+
+        if (done) {
+            log.info("{}: purged {} entries of older schema versions", name, purged)
+        }
+    }
+
+    private fun createIndexes(db: SupportSQLiteDatabase) {
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS idx_${tableName}_source ON $tableName(_source_id)"
+        )
+
+        for (columns in fieldColumnGroups) {
+            for (col in columns) {
                 db.execSQL(
-                    "CREATE INDEX IF NOT EXISTS idx_${tableName}_$lowerCol ON $tableName($lowerCol)"
+                    "CREATE INDEX IF NOT EXISTS idx_${tableName}_$col ON $tableName($col)"
                 )
             }
         }
     }
 
+    /**
+     * The names of the SQL indexes created by [createIndexes] that the table
+     * does not have.
+     */
+    private fun missingIndexes(db: SupportSQLiteDatabase): List<String> {
+        val existing = db.query(
+            "SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?",
+            arrayOf(tableName),
+        ).use { cursor ->
+            buildSet {
+                while (cursor.moveToNext()) add(cursor.getString(0))
+            }
+        }
+
+        val expected = listOf("idx_${tableName}_source") +
+                fieldColumnGroups.flatten().map { "idx_${tableName}_$it" }
+        return expected.filter { it !in existing }
+    }
+
+    private fun insertStatementLocked(): SupportSQLiteStatement =
+        insertStatement ?: db.compileStatement(
+            "INSERT OR REPLACE INTO $tableName (${insertColumns.joinToString(", ")}) " +
+                    "VALUES (${insertColumns.joinToString(", ") { "?" }})"
+        ).also { insertStatement = it }
+
     private fun insertBatchLocked(entries: List<T>) {
+        val statement = insertStatementLocked()
+        val values = fieldValuesBuffer
         db.beginTransaction()
         try {
             for (entry in entries) {
-                val cv = ContentValues().apply {
-                    put("_key", entry.key)
-                    put("_source_id", entry.sourceId)
-
-                    val fields = descriptor.fieldValues(entry)
-                    for ((fieldName, value) in fields) {
-                        val col = fieldColumns[fieldName] ?: continue
-                        put(col, value)
-
-                        val lowerCol = prefixColumns[fieldName]
-                        if (lowerCol != null) {
-                            put(lowerCol, value?.lowercase())
-                        }
-                    }
+                var index = 1
+                statement.bindString(index++, entry.key)
+                statement.bindString(index++, entry.sourceId)
+                statement.bindLong(index++, descriptor.schemaVersion.toLong())
 
-                    put("_payload", descriptor.serialize(entry))
+                descriptor.fieldValues(entry, values)
+                for (i in values.indices) {
+                    index = statement.bindFieldColumns(index, i, values[i])
                 }
 
-                db.insert(
-                    tableName,
-                    SQLiteDatabase.CONFLICT_REPLACE,
-                    cv,
-                )
+                statement.bindBlob(index, descriptor.serialize(entry))
+                statement.executeInsert()
             }
             db.setTransactionSuccessful()
         } finally {
             db.endTransaction()
+            values.fill(null)
         }
     }
 
-    private data class SqlQuery(val sql: String, val args: List<String>)
+    /**
+     * Bind the column group of the field at [fieldIndex] starting at [index].
+     * Returns the index following the group.
+     */
+    private fun SupportSQLiteStatement.bindFieldColumns(index: Int, fieldIndex: Int, value: String?): Int {
+        var next = index
+        bindStringOrNull(next++, value)
+        if (prefixSearchable[fieldIndex]) {
+            bindStringOrNull(next++, value?.lowercase())
+        }
+        if (fuzzySearchable[fieldIndex]) {
+            bindStringOrNull(next++, value?.let(CamelHumpMatcher::humps))
+        }
+        return next
+    }
+
+    private fun SupportSQLiteStatement.bindStringOrNull(index: Int, value: String?) {
+        if (value == null) bindNull(index) else bindString(index, value)
+    }
+
+    /**
+     * The range scanned by a prefix query over a lowercased column. Pages are
+     * ordered by ([column], `rowid`) so the column's SQL index yields them in
+     * order without a sort.
+     *
+     * @param upper Exclusive upper bound, or `null` when the prefix has no
+     *              simple successor (the prefix is then matched with `instr`).
+     */
+    private class PrefixRange(val column: String, val lower: String, val upper: String?)
+
+    private class SelectPlan(
+        val where: List<String>,
+        val args: List<Any?>,
+        val range: PrefixRange?,
+    )
+
+    private class FuzzyRow(val rowId: Long, val humps: String, val value: String?)
+
+    private class FuzzyCandidate(val rowId: Long, val score: Int, val value: String) {
+        companion object {
+            /** Same order as [ScoredEntry.RANKING], then by rowid. */
+            val RANKING: Comparator<FuzzyCandidate> =
+                compareByDescending<FuzzyCandidate> { it.score }
+                    .thenBy { it.value.length }
+                    .thenBy { it.value }
+                    .thenBy { it.rowId }
+        }
+    }
+
+    /** Position of the last row of a page, used as the keyset for the next page. */
+    private class PageMark(val orderValue: String?, val rowId: Long)
+
+    private class Page(val payloads: List<ByteArray>, val mark: PageMark?)
+
+    /**
+     * Read up to [size] rows of [plan] following [after]. Returns `null` if
+     * the index has been closed. Payloads are copied out and the cursor closed
+     * before returning; deserialization is left to the caller.
+     */
+    private fun readPage(plan: SelectPlan, after: PageMark?, size: Int): Page? {
+        val where = plan.where.toMutableList()
+        val args = plan.args.toMutableList()
+        val range = plan.range
+
+        if (range != null) {
+            if (after == null) {
+                where.add("${range.column} >= ?")
+                args.add(range.lower)
+            } else {
+                where.add("${range.column} >= ? AND (${range.column} > ? OR rowid > ?)")
+                args.add(after.orderValue)
+                args.add(after.orderValue)
+                args.add(after.rowId)
+            }
+            if (range.upper != null) {
+                where.add("${range.column} < ?")
+                args.add(range.upper)
+            }
+        } else if (after != null) {
+            where.add("rowid > ?")
+            args.add(after.rowId)
+        }
+
+        val sql = buildString {
+            append("SELECT rowid, ")
+            append(range?.column ?: "NULL")
+            append(", _payload FROM $tableName")
+            if (where.isNotEmpty()) {
+                append(" WHERE ")
+                where.joinTo(this, " AND ")
+            }
+            append(" ORDER BY ")
+            if (range != null) append("${range.column}, ")
+            append("rowid LIMIT $size")
+        }
 
-    private fun buildSelectQuery(query: IndexQuery): SqlQuery {
-        val where = StringBuilder()
-        val args = mutableListOf<String>()
+        return readIfOpen(null) {
+            db.query(sql, args.toTypedArray()).use { cursor ->
+                val payloads = ArrayList<ByteArray>()
+                while (cursor.moveToNext()) {
+                    payloads.add(cursor.getBlob(2))
+                }
+                val mark = if (cursor.moveToLast()) {
+                    PageMark(cursor.getString(1), cursor.getLong(0))
+                } else null
+                Page(payloads, mark)
+            }
+        }
+    }
 
-        fun and(clause: String, vararg values: String) {
-            if (where.isNotEmpty()) where.append(" AND ")
-            where.append(clause)
+    private fun buildSelectQuery(query: IndexQuery): SelectPlan {
+        val where = mutableListOf<String>()
+        val args = mutableListOf<Any?>()
+        var range: PrefixRange? = null
+
+        fun and(clause: String, vararg values: Any?) {
+            where.add(clause)
             args.addAll(values)
         }
 
+        if (hasStaleRows) and("_schema_version = ?", descriptor.schemaVersion)
         query.key?.let { and("_key = ?", it) }
         query.sourceId?.let { and("_source_id = ?", it) }
+        query.sourceIds?.let { where.add(sourceIdsClause(it, args)) }
 
         for ((field, value) in query.exactMatch) {
             val col = fieldColumns[field] ?: continue
             and("$col = ?", value)
         }
 
+        for ((field, values) in query.anyOf) {
+            val col = fieldColumns[field] ?: continue
+            where.add(inClause(col, values, args))
+        }
+
         for ((field, prefix) in query.prefixMatch) {
             val lowerCol = prefixColumns[field]
             if (lowerCol != null) {
-                // Use the pre-lowercased column for index-friendly LIKE
-                and("$lowerCol LIKE ?", "${prefix.lowercase()}%")
+                // Use the pre-lowercased column as an index-friendly range. Unlike
+                // LIKE, a range scan can use the (BINARY collated) SQL index and
+                // does not treat '_' in identifiers as a wildcard.
+                val lowerPrefix = prefix.lowercase()
+                val upper = prefixSuccessor(lowerPrefix)
+                if (range == null) {
+                    range = PrefixRange(lowerCol, lowerPrefix, upper)
+                    if (lowerPrefix.isEmpty()) and("$lowerCol IS NOT NULL")
+                } else {
+                    and("$lowerCol >= ?", lowerPrefix)
+                    if (upper != null) and("$lowerCol < ?", upper)
+                }
+                if (upper == null && lowerPrefix.isNotEmpty()) {
+                    and("instr($lowerCol, ?) = 1", lowerPrefix)
+                }
             } else {
-                // Fallback: case-sensitive prefix on the regular column
+                // Fallback: prefix LIKE on the regular column
                 val col = fieldColumns[field] ?: continue
                 and("$col LIKE ?", "$prefix%")
             }
@@ -372,17 +1146,42 @@ class SQLiteIndex<T : Indexable>(
             }
         }
 
-        val sql = buildString {
-            append("SELECT _payload FROM $tableName")
-            if (where.isNotEmpty()) {
-                append(" WHERE ")
-                append(where)
-            }
-            if (query.limit > 0) {
-                append(" LIMIT ${query.limit}")
+        return SelectPlan(where, args, range)
+    }
+
+    /**
+     * A `_source_id IN (...)` predicate. The column is written as
+     * `+_source_id` so SQLite does not pick the `_source_id` index over a
+     * more selective field index: a source set is usually a visibility
+     * filter (e.g. every active JAR) rather than the narrowest predicate.
+     */
+    private fun sourceIdsClause(sourceIds: Set<String>, args: MutableList<Any?>): String =
+        inClause("+_source_id", sourceIds, args)
+
+    /**
+     * A `[column] IN (...)` predicate matching [values], adding its bound
+     * parameters to [args]. Sets larger than [MAX_BOUND_SET_SIZE] are
+     * inlined as SQL string literals to stay within the parameter limit.
+     */
+    private fun inClause(column: String, values: Set<String>, args: MutableList<Any?>): String {
+        if (values.isEmpty()) return "0"
+        if (values.size > MAX_BOUND_SET_SIZE) {
+            return values.joinToString(",", prefix = "$column IN (", postfix = ")") { value ->
+                "'" + value.replace("'", "''") + "'"
             }
         }
+        args.addAll(values)
+        return values.joinToString(",", prefix = "$column IN (", postfix = ")") { "?" }
+    }
 
-        return SqlQuery(sql, args)
+    /**
+     * The smallest string greater than every string starting with [prefix],
+     * or `null` if there is no simple successor (empty prefix, or a last char
+     * that cannot be incremented without breaking UTF-8 ordering).
+     */
+    private fun prefixSuccessor(prefix: String): String? {
+        val last = prefix.lastOrNull() ?: return null
+        if (last == Char.MAX_VALUE || last.isSurrogate() || (last + 1).isSurrogate()) return null
+        return prefix.substring(0, prefix.length - 1) + (last + 1)
     }
 }
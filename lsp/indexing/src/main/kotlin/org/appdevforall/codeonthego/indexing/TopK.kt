@@ -0,0 +1,31 @@
+package org.appdevforall.codeonthego.indexing
+
+import java.util.PriorityQueue
+
+/**
+ * Keeps the best [k] of the elements offered to it, as ordered by
+ * [comparator] (best first), in O(log k) per offer.
+ *
+ * Not thread-safe.
+ */
+internal class TopK<E>(private val k: Int, private val comparator: Comparator<in E>) {
+
+    // Head is the worst element kept
+    private val heap = PriorityQueue<E>(maxOf(k, 1), comparator.reversed())
+
+    val size: Int
+        get() = heap.size
+
+    fun offer(element: E) {
+        if (k <= 0) return
+        if (heap.size < k) {
+            heap.add(element)
+        } else if (comparator.compare(element, heap.peek()) < 0) {
+            heap.poll()
+            heap.add(element)
+        }
+    }
+
+    /** The kept elements, best first. */
+    fun toSortedList(): List<E> = heap.sortedWith(comparator)
+}
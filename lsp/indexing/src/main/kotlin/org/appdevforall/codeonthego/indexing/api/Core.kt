@@ -1,5 +1,7 @@
 package org.appdevforall.codeonthego.indexing.api
 
+import java.util.zip.CRC32
+
 /**
  * Any object that can be stored in an index.
  *
@@ -52,6 +54,39 @@ interface IndexDescriptor<T : Indexable> {
      */
     val fields: List<IndexField>
 
+    /**
+     * Version of the serialized payload format and of the semantics of
+     * [fieldValues].
+     *
+     * Bump this when [serialize]'s output can no longer be read by
+     * [deserialize], or when existing field values would be computed
+     * differently. Persistent indexes treat entries written under an older
+     * version as stale: they are hidden from reads and reported as missing
+     * by [ReadableIndex.containsSource], so their sources get re-indexed
+     * one by one instead of the whole index being dropped.
+     *
+     * Adding or removing [fields] does not require a version bump; persistent
+     * indexes migrate their storage in place and backfill new fields by
+     * deserializing the stored payloads.
+     */
+    val schemaVersion: Int
+        get() = 1
+
+    /**
+     * A stable hash of [fields] (names and search capabilities), used by
+     * persistent indexes to detect that the field list changed.
+     */
+    val fieldsHash: String
+        get() {
+            val crc = CRC32()
+            for (field in fields) {
+                crc.update("${field.name}:${field.prefixSearchable}".toByteArray())
+                if (field.fuzzySearchable) crc.update(":fuzzy".toByteArray())
+                crc.update(";".toByteArray())
+            }
+            return crc.value.toString(16)
+        }
+
     /**
      * Extract the queryable field values from an entry.
      *
@@ -61,6 +96,23 @@ interface IndexDescriptor<T : Indexable> {
      */
     fun fieldValues(entry: T): Map<String, String?>
 
+    /**
+     * Positional variant of [fieldValues] used by bulk insert paths.
+     *
+     * Writes the value of each field of [fields] into [values] at the
+     * same position (`values[i]` is the value of `fields[i]`). The default
+     * implementation adapts [fieldValues]; descriptors of high-volume types
+     * should override it to avoid allocating a [Map] per entry.
+     *
+     * @param values An array of at least `fields.size` elements.
+     */
+    fun fieldValues(entry: T, values: Array<String?>) {
+        val map = fieldValues(entry)
+        for (i in fields.indices) {
+            values[i] = map[fields[i].name]
+        }
+    }
+
     /**
      * Serialize an entry to bytes for persistent storage.
      *
@@ -84,8 +136,11 @@ interface IndexDescriptor<T : Indexable> {
  * @param prefixSearchable  Whether this field supports prefix queries
  *                          (e.g. name prefix for completions). Affects how
  *                          the persistent layer creates SQL indexes.
+ * @param fuzzySearchable   Whether this field supports [FuzzyQuery]s. Indexes
+ *                          keep a camel-hump side index for it.
  */
 data class IndexField(
     val name: String,
     val prefixSearchable: Boolean = false,
+    val fuzzySearchable: Boolean = false,
 )
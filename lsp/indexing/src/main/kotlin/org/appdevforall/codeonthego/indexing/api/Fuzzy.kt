@@ -0,0 +1,212 @@
+package org.appdevforall.codeonthego.indexing.api
+
+/**
+ * A ranked fuzzy query on a [IndexField.fuzzySearchable] field.
+ *
+ * Candidates are found through the field's *hump key* (see
+ * [CamelHumpMatcher.humps]): the first pattern character must match the
+ * first character of the value, as in code completion, and the humps of
+ * the pattern (its first character, upper-case letters and digits) must
+ * appear in the value's humps in order. The candidates are then scored
+ * with [scorer], and the best [limit] of them returned.
+ *
+ * Upper-case pattern letters narrow the candidate set the most, e.g.
+ * `MSF` only scans values whose humps look like `m*s*f*`. An all
+ * lower-case pattern only narrows by its first character, so the scan is
+ * bounded by [maxCandidates] to keep latency predictable on large indexes.
+ *
+ * @param field The fuzzy-searchable field to match against.
+ * @param pattern The text typed by the user, e.g. `MSF` or `getV`.
+ * @param filter Additional predicates every result must satisfy, e.g.
+ *               [IndexQuery.sourceIds] to search only some sources. They
+ *               are applied before candidates are counted against
+ *               [maxCandidates] and scored, so they never reduce the number
+ *               of results below [limit]. Its [IndexQuery.limit] is ignored.
+ * @param limit Maximum number of results.
+ * @param maxCandidates Maximum number of candidates scored.
+ * @param scorer Scores a candidate value against [pattern]. Any
+ *               [FuzzyScorer] can be used, e.g. one backed by the
+ *               `fuzzysearch` library's ratios.
+ */
+data class FuzzyQuery(
+    val field: String,
+    val pattern: String,
+    val filter: IndexQuery = IndexQuery(limit = 0),
+    val limit: Int = 50,
+    val maxCandidates: Int = 20_000,
+    val scorer: FuzzyScorer = CamelHumpMatcher,
+)
+
+/**
+ * An entry returned by [ReadableIndex.fuzzyQuery].
+ *
+ * @param entry The matching entry.
+ * @param score The [FuzzyScorer] score, higher is better.
+ * @param value The value of the searched field.
+ */
+data class ScoredEntry<T : Indexable>(
+    val entry: T,
+    val score: Int,
+    val value: String,
+) {
+    companion object {
+        /**
+         * Result order: by descending score, then shorter values first,
+         * then alphabetically.
+         */
+        val RANKING: Comparator<ScoredEntry<*>> =
+            compareByDescending<ScoredEntry<*>> { it.score }
+                .thenBy { it.value.length }
+                .thenBy { it.value }
+    }
+}
+
+/**
+ * Scores a candidate value against a fuzzy pattern.
+ */
+fun interface FuzzyScorer {
+
+    /**
+     * @return A positive score if [candidate] matches [pattern] (higher is
+     *         better), or `0` if it does not match.
+     */
+    fun score(pattern: String, candidate: String): Int
+}
+
+/**
+ * Camel-hump matching, as used by code completion: `MSF` matches
+ * `MutableStateFlow`, `getV` matches `getValue` and `URLC` matches
+ * `URLConnection`.
+ *
+ * A value is split into humps, which start at its first character, at
+ * every upper-case letter, at a letter or digit following `_`, `$`, `.` or
+ * `-`, and at a digit following a non-digit. A pattern matches if it can be
+ * split into fragments that each match the start of a hump, in order,
+ * starting with the first hump. A fragment may run on into the following
+ * humps, and humps may be skipped, but an upper-case pattern letter must
+ * always match the start of a hump. Matching is case-insensitive
+ * otherwise.
+ *
+ * Scores favour long fragments, matches of the whole prefix, exact case
+ * and short values.
+ */
+object CamelHumpMatcher : FuzzyScorer {
+
+    private const val NO_MATCH = Int.MIN_VALUE
+    private const val UNKNOWN = Int.MAX_VALUE
+
+    /**
+     * The hump key of [value]: the lower-cased first character of each of
+     * its humps, e.g. `msf` for `MutableStateFlow`. Characters other than
+     * letters and digits are left out.
+     */
+    fun humps(value: String): String = buildString {
+        for (i in value.indices) {
+            if (value[i].isLetterOrDigit() && isHumpStart(value, i)) {
+                append(value[i].lowercaseChar())
+            }
+        }
+    }
+
+    /**
+     * The humps every match of [pattern] must contain, in order: its first
+     * character and every character that starts a hump in the pattern
+     * itself, lower-cased. For `getV` this is `gv`.
+     */
+    fun patternHumps(pattern: String): String = humps(pattern)
+
+    /**
+     * Whether [patternHumps] can match [valueHumps]: its first character
+     * must be the first hump, the rest must appear in order.
+     */
+    fun humpsMatch(patternHumps: String, valueHumps: String): Boolean {
+        if (patternHumps.isEmpty()) return true
+        if (valueHumps.isEmpty() || valueHumps[0] != patternHumps[0]) return false
+        var v = 1
+        for (p in 1 until patternHumps.length) {
+            while (v < valueHumps.length && valueHumps[v] != patternHumps[p]) v++
+            if (v == valueHumps.length) return false
+            v++
+        }
+        return true
+    }
+
+    override fun score(pattern: String, candidate: String): Int {
+        if (pattern.isEmpty()) return 1
+        if (candidate.isEmpty()) return 0
+
+        val humpStart = BooleanArray(candidate.length) { isHumpStart(candidate, it) }
+        val memo = IntArray((pattern.length + 1) * candidate.length) { UNKNOWN }
+        val matched = match(pattern, candidate, humpStart, memo, 0, 0)
+        if (matched == NO_MATCH) return 0
+
+        var score = 1000 + matched - candidate.length
+        if (candidate.startsWith(pattern, ignoreCase = true)) {
+            score += 200
+            if (candidate.startsWith(pattern)) score += 100
+            if (candidate.length == pattern.length) score += 100
+        }
+        return score.coerceAtLeast(1)
+    }
+
+    /**
+     * Best score for matching `pattern[p..]` from the hump starting at
+     * `candidate[n]`, or [NO_MATCH].
+     */
+    private fun match(
+        pattern: String,
+        candidate: String,
+        humpStart: BooleanArray,
+        memo: IntArray,
+        p: Int,
+        n: Int,
+    ): Int {
+        if (p == pattern.length) return 0
+        val slot = p * candidate.length + n
+        if (memo[slot] != UNKNOWN) return memo[slot]
+
+        var best = NO_MATCH
+        var k = 0
+        while (p + k < pattern.length && n + k < candidate.length) {
+            val pc = pattern[p + k]
+            val cc = candidate[n + k]
+            if (!pc.equals(cc, ignoreCase = true)) break
+            if (k > 0 && pc.isUpperCase() && !humpStart[n + k]) break
+            k++
+
+            // Fragment of k chars: 10 per char plus a bonus growing with its length,
+            // and 1 per char of exactly matching case
+            var fragment = 10 * k + k * k
+            for (i in 0 until k) if (pattern[p + i] == candidate[n + i]) fragment++
+
+            if (p + k == pattern.length) {
+                best = maxOf(best, fragment)
+                continue
+            }
+
+            // Continue at a following hump, paying for each hump skipped
+            var skipped = 0
+            for (h in n + k until candidate.length) {
+                if (!humpStart[h]) continue
+                val rest = match(pattern, candidate, humpStart, memo, p + k, h)
+                if (rest != NO_MATCH) best = maxOf(best, fragment + rest - 5 * skipped)
+                skipped++
+            }
+        }
+
+        memo[slot] = best
+        return best
+    }
+
+    private fun isHumpStart(value: String, i: Int): Boolean {
+        if (i == 0) return true
+        val c = value[i]
+        val prev = value[i - 1]
+        return when {
+            c.isUpperCase() -> true
+            prev == '_' || prev == '$' || prev == '.' || prev == '-' -> c.isLetterOrDigit()
+            c.isDigit() -> !prev.isDigit()
+            else -> false
+        }
+    }
+}
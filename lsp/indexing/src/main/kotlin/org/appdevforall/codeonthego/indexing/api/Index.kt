@@ -1,5 +1,7 @@
 package org.appdevforall.codeonthego.indexing.api
 
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
 import java.io.Closeable
 
 /**
@@ -22,6 +24,17 @@ interface ReadableIndex<T : Indexable> {
      */
     fun query(query: IndexQuery): Sequence<T>
 
+    /**
+     * Query the index as a cold [Flow] of matching entries.
+     *
+     * Entries are produced on demand; cancelling the collector stops
+     * the query and releases any resources held by the implementation.
+     * The default implementation simply adapts [query].
+     *
+     * If [IndexQuery.limit] is 0, all matches are emitted.
+     */
+    fun queryFlow(query: IndexQuery): Flow<T> = query(query).asFlow()
+
     /**
      * Point lookup by key. Returns null if not found.
      */
@@ -33,15 +46,33 @@ interface ReadableIndex<T : Indexable> {
     suspend fun containsSource(sourceId: String): Boolean
 
     /**
-     * Returns distinct values for a given field across all entries.
+     * Returns distinct values for a given field across all entries,
+     * or across the entries of [sourceIds] only.
      *
      * Useful for enumerating packages, kinds, etc. without
      * deserializing full entries.
      *
      * @param fieldName Must be one of the fields declared in the
      *                  [IndexDescriptor].
+     * @param sourceIds The sources to enumerate, or `null` for all
+     *                  sources. Same semantics as [IndexQuery.sourceIds].
+     */
+    fun distinctValues(fieldName: String, sourceIds: Set<String>? = null): Sequence<String>
+
+    /**
+     * Ranked fuzzy search, see [FuzzyQuery].
+     *
+     * Returns at most [FuzzyQuery.limit] entries, best first (ordered by
+     * [ScoredEntry.RANKING]). Unlike [query], the result is computed eagerly:
+     * ranking needs every candidate to be scored.
+     *
+     * The default implementation returns no results; indexes that keep a
+     * camel-hump side index override it.
+     *
+     * @throws IllegalArgumentException if [FuzzyQuery.field] is not
+     *         [IndexField.fuzzySearchable].
      */
-    fun distinctValues(fieldName: String): Sequence<String>
+    fun fuzzyQuery(query: FuzzyQuery): List<ScoredEntry<T>> = emptyList()
 }
 
 /**
@@ -82,6 +113,18 @@ interface WritableIndex<T : Indexable> {
      * Remove all entries.
      */
     suspend fun clear()
+
+    /**
+     * Run [block], which is expected to insert a large number of entries,
+     * in bulk-load mode.
+     *
+     * Implementations may trade durability for insert throughput while
+     * [block] runs (e.g. by relaxing syncing), and restore it afterwards.
+     * Entries of other sources must stay queryable as usual meanwhile.
+     * Calls may be nested; the mode ends when the outermost call returns.
+     * The default implementation simply runs [block].
+     */
+    suspend fun <R> bulkLoad(block: suspend () -> R): R = block()
 }
 
 /**
@@ -14,6 +14,12 @@ data class IndexQuery(
     /** Prefix match predicates: field name → prefix (case-insensitive). */
     val prefixMatch: Map<String, String> = emptyMap(),
 
+    /**
+     * Set membership predicates: field name → allowed values. The field
+     * must be equal to one of the values; an empty set matches nothing.
+     */
+    val anyOf: Map<String, Set<String>> = emptyMap(),
+
     /**
      * Presence predicates: field name → whether the field must be
      * non-null (true) or null (false).
@@ -23,6 +29,12 @@ data class IndexQuery(
     /** Filter by source ID. */
     val sourceId: String? = null,
 
+    /**
+     * Filter by a set of source IDs, e.g. the sources that are currently
+     * visible. `null` means any source; an empty set matches nothing.
+     */
+    val sourceIds: Set<String>? = null,
+
     /** Filter by key (exact). */
     val key: String? = null,
 
@@ -39,6 +51,13 @@ data class IndexQuery(
         /** All entries from a specific source. */
         fun bySource(sourceId: String) = IndexQuery(sourceId = sourceId, limit = 0)
     }
+
+    /**
+     * This query, further restricted to entries from [sources]. Intersects
+     * with [sourceIds] if the query already has a source set.
+     */
+    fun restrictedTo(sources: Set<String>): IndexQuery =
+        copy(sourceIds = sourceIds?.let { current -> current intersect sources } ?: sources)
 }
 
 /**
@@ -48,7 +67,9 @@ class IndexQueryBuilder {
     private val exact = mutableMapOf<String, String>()
     private val prefix = mutableMapOf<String, String>()
     private val pres = mutableMapOf<String, Boolean>()
+    private val any = mutableMapOf<String, Set<String>>()
     var sourceId: String? = null
+    var sourceIds: Set<String>? = null
     var key: String? = null
     var limit: Int = 200
 
@@ -58,6 +79,9 @@ class IndexQueryBuilder {
     /** Prefix match on a field (case-insensitive). */
     fun prefix(field: String, value: String) { prefix[field] = value }
 
+    /** Field must be equal to one of [values]. */
+    fun oneOf(field: String, values: Collection<String>) { any[field] = values.toSet() }
+
     /** Field must be non-null. */
     fun exists(field: String) { pres[field] = true }
 
@@ -67,8 +91,10 @@ class IndexQueryBuilder {
     fun build() = IndexQuery(
         exactMatch = exact.toMap(),
         prefixMatch = prefix.toMap(),
+        anyOf = any.toMap(),
         presence = pres.toMap(),
         sourceId = sourceId,
+        sourceIds = sourceIds,
         key = key,
         limit = limit,
     )
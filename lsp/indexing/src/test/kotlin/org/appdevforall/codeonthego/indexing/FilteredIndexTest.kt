@@ -1,7 +1,9 @@
 package org.appdevforall.codeonthego.indexing
 
 import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.test.runTest
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.IndexDescriptor
 import org.appdevforall.codeonthego.indexing.api.IndexField
 import org.appdevforall.codeonthego.indexing.api.IndexQuery
@@ -21,7 +23,7 @@ class FilteredIndexTest {
 
     private val descriptor = object : IndexDescriptor<Entry> {
         override val name = "test_filtered"
-        override val fields = listOf(IndexField("value"))
+        override val fields = listOf(IndexField("value", fuzzySearchable = true))
 
         override fun fieldValues(entry: Entry) = mapOf("value" to entry.value)
 
@@ -56,6 +58,15 @@ class FilteredIndexTest {
         assertThat(keys).containsExactly("k1", "k2")
     }
 
+    @Test
+    fun `queryFlow returns entries for active source only`() = runTest {
+        val (_, filtered) = setupBackingAndFiltered()
+        filtered.activateSource("src2")
+        val keys = filtered.queryFlow(IndexQuery.ALL).toList().map { it.key }
+        assertThat(keys).containsExactly("k3")
+        assertThat(filtered.queryFlow(IndexQuery.bySource("src1")).toList()).isEmpty()
+    }
+
     @Test
     fun `deactivateSource hides entries from that source`() = runTest {
         val (_, filtered) = setupBackingAndFiltered()
@@ -162,4 +173,39 @@ class FilteredIndexTest {
         filtered.close()
         assertThat(filtered.activeSources()).isEmpty()
     }
+
+    @Test
+    fun `limit only counts entries of active sources`() = runTest {
+        val backing = InMemoryIndex(descriptor)
+        backing.insertAll((1..10).map { i -> Entry("hidden$i", "src1", "hidden$i") }.asSequence())
+        backing.insert(Entry("k1", "src2", "val1"))
+        backing.insert(Entry("k2", "src2", "val2"))
+        val filtered = FilteredIndex(backing)
+        filtered.activateSource("src2")
+
+        val keys = filtered.query(IndexQuery(limit = 2)).map { it.key }.toList()
+        assertThat(keys).containsExactly("k1", "k2")
+        assertThat(filtered.queryFlow(IndexQuery(limit = 1)).toList().map { it.key }).containsExactly("k1")
+    }
+
+    @Test
+    fun `distinctValues only returns values of active sources`() = runTest {
+        val (_, filtered) = setupBackingAndFiltered()
+        assertThat(filtered.distinctValues("value").toList()).isEmpty()
+
+        filtered.activateSource("src2")
+        assertThat(filtered.distinctValues("value").toList()).containsExactly("val3")
+        assertThat(filtered.distinctValues("value", setOf("src1", "src2")).toList()).containsExactly("val3")
+    }
+
+    @Test
+    fun `fuzzyQuery only returns entries for active sources`() = runTest {
+        val (_, filtered) = setupBackingAndFiltered()
+        assertThat(filtered.fuzzyQuery(FuzzyQuery("value", "val"))).isEmpty()
+
+        filtered.activateSource("src2")
+        val keys = filtered.fuzzyQuery(FuzzyQuery("value", "val")).map { it.entry.key }
+        assertThat(keys).containsExactly("k3")
+        assertThat(filtered.fuzzyQuery(FuzzyQuery("value", "val", filter = IndexQuery.bySource("src1")))).isEmpty()
+    }
 }
@@ -0,0 +1,137 @@
+package org.appdevforall.codeonthego.indexing
+
+import kotlinx.coroutines.runBlocking
+import org.appdevforall.codeonthego.indexing.api.IndexDescriptor
+import org.appdevforall.codeonthego.indexing.api.IndexField
+import org.appdevforall.codeonthego.indexing.api.IndexQuery
+import org.appdevforall.codeonthego.indexing.api.Indexable
+import org.appdevforall.codeonthego.indexing.api.indexQuery
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import kotlin.random.Random
+
+/**
+ * Measures query latency and retained heap per entry of [InMemoryIndex].
+ *
+ * Skipped unless the `INDEXING_BENCHMARKS` environment variable is set:
+ * ```
+ * INDEXING_BENCHMARKS=1 ./gradlew :lsp:indexing:testDebugUnitTest --tests '*InMemoryIndexBenchmark'
+ * ```
+ * Results are printed to stdout. Heap figures come from
+ * [Runtime.totalMemory] - [Runtime.freeMemory] around forced GCs, so they
+ * are approximate; run on an otherwise idle JVM.
+ */
+@RunWith(JUnit4::class)
+class InMemoryIndexBenchmark {
+
+    companion object {
+        private const val ENTRIES = 100_000
+        private const val SOURCES = 500
+        private const val QUERY_ROUNDS = 2_000
+        private const val WARMUP_ROUNDS = 500
+    }
+
+    private data class Symbol(
+        override val key: String,
+        override val sourceId: String,
+        val name: String,
+        val kind: String,
+        val pkg: String,
+        val receiver: String?,
+    ) : Indexable
+
+    private object SymbolDescriptor : IndexDescriptor<Symbol> {
+        override val name = "benchmark"
+        override val fields = listOf(
+            IndexField("name", prefixSearchable = true),
+            IndexField("kind"),
+            IndexField("package"),
+            IndexField("receiver"),
+        )
+
+        override fun fieldValues(entry: Symbol) = mapOf(
+            "name" to entry.name,
+            "kind" to entry.kind,
+            "package" to entry.pkg,
+            "receiver" to entry.receiver,
+        )
+
+        override fun fieldValues(entry: Symbol, values: Array<String?>) {
+            values[0] = entry.name
+            values[1] = entry.kind
+            values[2] = entry.pkg
+            values[3] = entry.receiver
+        }
+
+        override fun serialize(entry: Symbol) = throw UnsupportedOperationException()
+        override fun deserialize(bytes: ByteArray) = throw UnsupportedOperationException()
+    }
+
+    private lateinit var symbols: List<Symbol>
+
+    @Before
+    fun setUp() {
+        assumeTrue("Set INDEXING_BENCHMARKS to run", System.getenv("INDEXING_BENCHMARKS") != null)
+
+        val random = Random(11)
+        val verbs = listOf("get", "set", "is", "create", "find", "to", "on", "add")
+        val nouns = listOf("Name", "Value", "Item", "List", "View", "Context", "File", "Path")
+        val kinds = listOf("CLASS", "FUNCTION", "PROPERTY", "FIELD")
+        symbols = List(ENTRIES) { i ->
+            val name = verbs.random(random) + nouns.random(random) + (i % 997)
+            Symbol(
+                key = "com/example/p${i % 50}/C${i / 20}#$name$i",
+                sourceId = "source-${i % SOURCES}",
+                name = name,
+                kind = kinds.random(random),
+                pkg = "com.example.p${i % 50}",
+                receiver = if (random.nextInt(4) == 0) "com.example.Receiver${i % 20}" else null,
+            )
+        }
+    }
+
+    @Test
+    fun queryLatencyAndHeap() = runBlocking {
+        // Keep the symbols themselves out of the per-entry figure
+        val baseline = usedHeap()
+        val index = InMemoryIndex(SymbolDescriptor)
+        index.insertAll(symbols.asSequence())
+        val perEntry = (usedHeap() - baseline).toDouble() / ENTRIES
+
+        val queries = mapOf(
+            "prefix 'g', limit 50" to indexQuery { prefix("name", "g"); limit = 50 },
+            "prefix 'getname', limit 50" to indexQuery { prefix("name", "getname"); limit = 50 },
+            "kind + package" to indexQuery { eq("kind", "FUNCTION"); eq("package", "com.example.p7"); limit = 0 },
+            "package + prefix" to indexQuery { eq("package", "com.example.p3"); prefix("name", "is"); limit = 0 },
+            "no receiver, limit 20" to indexQuery { notExists("receiver"); limit = 20 },
+            "by source" to IndexQuery.bySource("source-42"),
+        )
+
+        println("InMemoryIndexBenchmark: $ENTRIES entries, ~%.0f bytes/entry retained".format(perEntry))
+        for ((label, query) in queries) {
+            var results = 0
+            repeat(WARMUP_ROUNDS) { results = index.query(query).count() }
+            val start = System.nanoTime()
+            repeat(QUERY_ROUNDS) { index.query(query).count() }
+            val micros = (System.nanoTime() - start) / 1_000.0 / QUERY_ROUNDS
+            println("  %-28s %9.1f µs/query (%d results)".format(label, micros, results))
+        }
+
+        val start = System.nanoTime()
+        index.removeBySources((0 until SOURCES step 2).map { "source-$it" })
+        println("  removeBySources(half)        %9.1f ms".format((System.nanoTime() - start) / 1_000_000.0))
+        check(index.size == ENTRIES / 2)
+    }
+
+    private fun usedHeap(): Long {
+        val runtime = Runtime.getRuntime()
+        repeat(3) {
+            System.gc()
+            Thread.sleep(50)
+        }
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+}
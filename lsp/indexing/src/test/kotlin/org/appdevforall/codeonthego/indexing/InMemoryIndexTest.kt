@@ -2,6 +2,7 @@ package org.appdevforall.codeonthego.indexing
 
 import com.google.common.truth.Truth.assertThat
 import kotlinx.coroutines.test.runTest
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.IndexDescriptor
 import org.appdevforall.codeonthego.indexing.api.IndexField
 import org.appdevforall.codeonthego.indexing.api.IndexQuery
@@ -10,6 +11,7 @@ import org.appdevforall.codeonthego.indexing.api.indexQuery
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.junit.runners.JUnit4
+import kotlin.random.Random
 
 @RunWith(JUnit4::class)
 class InMemoryIndexTest {
@@ -24,7 +26,7 @@ class InMemoryIndexTest {
     private val descriptor = object : IndexDescriptor<TestEntry> {
         override val name = "test"
         override val fields = listOf(
-            IndexField("name", prefixSearchable = true),
+            IndexField("name", prefixSearchable = true, fuzzySearchable = true),
             IndexField("category"),
         )
 
@@ -207,6 +209,44 @@ class InMemoryIndexTest {
         assertThat(values).containsExactly("lib", "app")
     }
 
+    @Test
+    fun `oneOf and sourceIds restrict the query before the limit`() = runTest {
+        val index = makeIndex()
+        index.insertAll((1..20).map { i -> entry("lib$i", "src1", "Lib$i", "lib") }.asSequence())
+        index.insert(entry("k1", "src2", "Alpha", "app"))
+        index.insert(entry("k2", "src2", "Beta", "test"))
+        index.insert(entry("k3", "src3", "Gamma", "lib"))
+
+        val byCategory = index.query(indexQuery { oneOf("category", listOf("app", "test")); limit = 2 }).toList()
+        assertThat(byCategory.map { it.key }).containsExactly("k1", "k2")
+
+        val bySources = index.query(indexQuery { sourceIds = setOf("src2", "src3"); limit = 3 }).toList()
+        assertThat(bySources.map { it.key }).containsExactly("k1", "k2", "k3")
+
+        val combined = index.query(indexQuery {
+            oneOf("category", listOf("app", "lib"))
+            sourceIds = setOf("src2", "src3", "missing")
+            prefix("name", "")
+        }).toList()
+        assertThat(combined.map { it.key }).containsExactly("k1", "k3")
+
+        assertThat(index.query(indexQuery { oneOf("category", emptyList()) }).toList()).isEmpty()
+        assertThat(index.query(indexQuery { sourceIds = emptySet() }).toList()).isEmpty()
+        assertThat(index.query(indexQuery { key = "k1"; sourceIds = setOf("src3") }).toList()).isEmpty()
+    }
+
+    @Test
+    fun `distinctValues can be restricted to sources`() = runTest {
+        val index = makeIndex()
+        index.insert(entry("k1", "src1", "Alpha", "lib"))
+        index.insert(entry("k2", "src2", "Beta", "lib"))
+        index.insert(entry("k3", "src2", "Gamma", "app"))
+
+        assertThat(index.distinctValues("category", setOf("src1")).toList()).containsExactly("lib")
+        assertThat(index.distinctValues("category", setOf("src2")).toSet()).containsExactly("lib", "app")
+        assertThat(index.distinctValues("category", emptySet()).toList()).isEmpty()
+    }
+
     @Test
     fun `multi-field combined query`() = runTest {
         val index = makeIndex()
@@ -239,6 +279,96 @@ class InMemoryIndexTest {
         assertThat(results).isEmpty()
     }
 
+    @Test
+    fun `prefix query with limit returns matches in name order`() = runTest {
+        val index = makeIndex()
+        index.insertAll((1..50).map { i -> entry("k$i", "src1", "Get%02d".format(i)) }.asSequence())
+        index.insert(entry("other", "src1", "Set01"))
+
+        val results = index.query(indexQuery {
+            prefix("name", "get")
+            limit = 5
+        }).toList()
+        assertThat(results.map { it.name }).containsExactly("Get01", "Get02", "Get03", "Get04", "Get05").inOrder()
+    }
+
+    @Test
+    fun `prefix query returns matches in name order once inserts spill over into the main run`() = runTest {
+        val index = makeIndex()
+        // Enough entries to compact the prefix index several times, inserted
+        // out of order so that both of its runs hold matches
+        val names = (1..300).map { "Get%03d".format(it) }.shuffled(Random(7))
+        for ((i, name) in names.withIndex()) {
+            index.insert(entry("k$i", "src1", name))
+        }
+
+        val results = index.query(indexQuery {
+            prefix("name", "get")
+            limit = 5
+        }).toList()
+        assertThat(results.map { it.name }).containsExactly("Get001", "Get002", "Get003", "Get004", "Get005").inOrder()
+
+        val all = index.query(indexQuery { prefix("name", "get"); limit = 0 }).toList()
+        assertThat(all.map { it.name }).containsExactlyElementsIn(names.sorted()).inOrder()
+    }
+
+    @Test
+    fun `key query applies the other predicates`() = runTest {
+        val index = makeIndex()
+        index.insert(entry("k1", "src1", "Alpha", "lib"))
+
+        assertThat(index.query(indexQuery { key = "k1"; eq("category", "lib") }).toList()).hasSize(1)
+        assertThat(index.query(indexQuery { key = "k1"; eq("category", "app") }).toList()).isEmpty()
+    }
+
+    @Test
+    fun `replacing and removing entries updates every index`() = runTest {
+        val index = makeIndex()
+        index.insert(entry("k1", "src1", "Alpha", "lib"))
+        index.insert(entry("k1", "src2", "Beta", "app"))
+
+        assertThat(index.containsSource("src1")).isFalse()
+        assertThat(index.query(indexQuery { prefix("name", "al") }).toList()).isEmpty()
+        assertThat(index.distinctValues("category").toList()).containsExactly("app")
+
+        index.removeBySource("src2")
+        index.insert(entry("k2", "src3", "Gamma"))
+
+        assertThat(index.distinctValues("category").toList()).isEmpty()
+        assertThat(index.query(indexQuery { notExists("category") }).toList().map { it.key }).containsExactly("k2")
+        assertThat(index.query(indexQuery { prefix("name", "") }).toList().map { it.key }).containsExactly("k2")
+    }
+
+    @Test
+    fun `fuzzy query ranks camel-hump matches`() = runTest {
+        val index = makeIndex()
+        index.insert(entry("k1", "src1", "MutableStateFlow", "lib"))
+        index.insert(entry("k2", "src1", "MutableSharedFlow", "lib"))
+        index.insert(entry("k3", "src1", "MutableSharedStateFlow", "app"))
+        index.insert(entry("k4", "src2", "StateFlow", "lib"))
+        index.insert(entry("k5", "src2", "MapStateFactory", "lib"))
+
+        val results = index.fuzzyQuery(FuzzyQuery("name", "MSF"))
+        assertThat(results.map { it.value })
+            .containsExactly("MutableStateFlow", "MutableSharedFlow", "MapStateFactory", "MutableSharedStateFlow")
+        assertThat(results.last().value).isEqualTo("MutableSharedStateFlow")
+
+        val filtered = index.fuzzyQuery(FuzzyQuery("name", "MSF", filter = indexQuery { eq("category", "app") }))
+        assertThat(filtered.map { it.entry.key }).containsExactly("k3")
+
+        val limited = index.fuzzyQuery(FuzzyQuery("name", "MSF", limit = 1))
+        assertThat(limited).hasSize(1)
+        assertThat(limited.single().score).isEqualTo(results.first().score)
+
+        index.removeBySource("src1")
+        assertThat(index.fuzzyQuery(FuzzyQuery("name", "MSF")).map { it.entry.key }).containsExactly("k5")
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `fuzzy query rejects fields that are not fuzzy-searchable`() {
+        makeIndex().fuzzyQuery(FuzzyQuery("category", "lib"))
+    }
+
     @Test
     fun `removeBySource is no-op for unknown source`() = runTest {
         val index = makeIndex()
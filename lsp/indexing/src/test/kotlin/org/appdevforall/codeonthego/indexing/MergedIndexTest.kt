@@ -1,7 +1,9 @@
 package org.appdevforall.codeonthego.indexing
 
 import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.test.runTest
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.IndexDescriptor
 import org.appdevforall.codeonthego.indexing.api.IndexField
 import org.appdevforall.codeonthego.indexing.api.IndexQuery
@@ -21,7 +23,7 @@ class MergedIndexTest {
 
     private val descriptor = object : IndexDescriptor<Entry> {
         override val name = "test_merged"
-        override val fields = listOf(IndexField("value"))
+        override val fields = listOf(IndexField("value", fuzzySearchable = true))
 
         override fun fieldValues(entry: Entry) = mapOf("value" to entry.value)
 
@@ -71,6 +73,23 @@ class MergedIndexTest {
         assertThat(results).hasSize(3)
     }
 
+    @Test
+    fun `queryFlow deduplicates and respects limit across indexes`() = runTest {
+        val idx1 = makeIndex().also { e ->
+            (1..3).forEach { i -> e.insert(Entry("k$i", "s1", "v$i")) }
+        }
+        val idx2 = makeIndex().also { e ->
+            (2..6).forEach { i -> e.insert(Entry("k$i", "s2", "v$i")) }
+        }
+        val merged = MergedIndex(idx1, idx2)
+
+        val all = merged.queryFlow(IndexQuery(limit = 0)).toList()
+        assertThat(all.map { it.key }).containsExactly("k1", "k2", "k3", "k4", "k5", "k6")
+
+        val limited = merged.queryFlow(IndexQuery(limit = 4)).toList()
+        assertThat(limited).hasSize(4)
+    }
+
     @Test
     fun `get returns first match in priority order`() = runTest {
         val idx1 = makeIndex().also { it.insert(Entry("k1", "s1", "primary")) }
@@ -153,4 +172,22 @@ class MergedIndexTest {
 
         assertThat(merged.query(IndexQuery.ALL).toList()).hasSize(2)
     }
+
+    @Test
+    fun `fuzzyQuery ranks across indexes and deduplicates`() = runTest {
+        val idx1 = makeIndex().also {
+            it.insert(Entry("k1", "s1", "getValueOrNull"))
+            it.insert(Entry("k2", "s1", "getValue"))
+        }
+        val idx2 = makeIndex().also {
+            it.insert(Entry("k2", "s2", "getValue"))
+            it.insert(Entry("k3", "s2", "getV"))
+        }
+        val merged = MergedIndex(idx1, idx2)
+
+        val results = merged.fuzzyQuery(FuzzyQuery("value", "getV"))
+        assertThat(results.map { it.entry.key }).containsExactly("k3", "k2", "k1").inOrder()
+        assertThat(results[1].entry.sourceId).isEqualTo("s1")
+        assertThat(merged.fuzzyQuery(FuzzyQuery("value", "getV", limit = 2))).hasSize(2)
+    }
 }
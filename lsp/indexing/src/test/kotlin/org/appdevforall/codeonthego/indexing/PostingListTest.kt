@@ -0,0 +1,36 @@
+package org.appdevforall.codeonthego.indexing
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class PostingListTest {
+
+    private fun PostingList.toList() = List(size) { this[it] }
+
+    @Test
+    fun `keeps ids sorted and unique`() {
+        val list = PostingList()
+        for (id in listOf(5, 1, 9, 3, 5, 7, 1)) list.add(id)
+
+        assertThat(list.toList()).containsExactly(1, 3, 5, 7, 9).inOrder()
+        assertThat(3 in list).isTrue()
+        assertThat(4 in list).isFalse()
+    }
+
+    @Test
+    fun `removes ids`() {
+        val list = PostingList()
+        repeat(100) { list.add(it) }
+
+        assertThat(list.remove(50)).isTrue()
+        assertThat(list.remove(50)).isFalse()
+        repeat(90) { list.remove(it) }
+
+        assertThat(list.toList()).containsExactly(90, 91, 92, 93, 94, 95, 96, 97, 98, 99).inOrder()
+        assertThat(list.add(0)).isTrue()
+        assertThat(list[0]).isEqualTo(0)
+    }
+}
@@ -0,0 +1,101 @@
+package org.appdevforall.codeonthego.indexing
+
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import kotlin.random.Random
+
+/**
+ * Compares [PrefixIndex] with the per-first-character bucket lists that
+ * [InMemoryIndex] used before it.
+ *
+ * Skipped unless the `INDEXING_BENCHMARKS` environment variable is set:
+ * ```
+ * INDEXING_BENCHMARKS=1 ./gradlew :lsp:indexing:testDebugUnitTest --tests '*PrefixIndexBenchmark'
+ * ```
+ * Results are printed to stdout.
+ */
+@RunWith(JUnit4::class)
+class PrefixIndexBenchmark {
+
+    companion object {
+        private const val ENTRIES = 200_000
+        private const val QUERIES = 2_000
+        private const val WARMUP_ROUNDS = 3
+    }
+
+    /** The former layout: lowercased first char → list of (value, key). */
+    private class BucketPrefixIndex {
+        private class Entry(val lowerValue: String, val key: Int)
+
+        private val buckets = HashMap<Char, MutableList<Entry>>()
+
+        fun add(value: String, key: Int) {
+            val first = value.firstOrNull() ?: return
+            buckets.getOrPut(first) { mutableListOf() }.add(Entry(value, key))
+        }
+
+        fun remove(value: String, key: Int) {
+            val first = value.firstOrNull() ?: return
+            buckets[first]?.removeAll { it.key == key }
+        }
+
+        fun forEachIdWithPrefix(prefix: String, action: (Int) -> Boolean) {
+            val bucket = buckets[prefix.first()] ?: return
+            for (entry in bucket) {
+                if (entry.lowerValue.startsWith(prefix) && !action(entry.key)) return
+            }
+        }
+    }
+
+    private lateinit var names: List<String>
+    private lateinit var prefixes: List<String>
+
+    @Before
+    fun setUp() {
+        assumeTrue("Set INDEXING_BENCHMARKS to run", System.getenv("INDEXING_BENCHMARKS") != null)
+
+        val random = Random(7)
+        val verbs = listOf("get", "set", "is", "has", "create", "find", "to", "on", "add", "remove")
+        val nouns = listOf("name", "value", "item", "list", "view", "context", "file", "path", "index", "state")
+        names = List(ENTRIES) { i ->
+            verbs.random(random) + nouns.random(random).replaceFirstChar { it.uppercase() } + i
+        }.map { it.lowercase() }
+        prefixes = List(QUERIES) { names.random(random).take(random.nextInt(1, 6)) }
+    }
+
+    @Test
+    fun compare() {
+        val buckets = BucketPrefixIndex()
+        val sorted = PrefixIndex()
+
+        val bucketInsert = measure { names.forEachIndexed { i, name -> buckets.add(name, i) } }
+        val sortedInsert = measure { names.forEachIndexed { i, name -> sorted.add(name, i) } }
+
+        var bucketQuery = 0L
+        var sortedQuery = 0L
+        repeat(WARMUP_ROUNDS + 1) {
+            var matches = 0L
+            bucketQuery = measure { for (p in prefixes) buckets.forEachIdWithPrefix(p) { matches++; true } }
+            sortedQuery = measure { for (p in prefixes) sorted.forEachIdWithPrefix(p) { matches--; true } }
+            check(matches == 0L) { "Implementations disagree" }
+        }
+
+        val removals = names.indices.shuffled(Random(3)).take(2_000)
+        val bucketRemove = measure { for (i in removals) buckets.remove(names[i], i) }
+        val sortedRemove = measure { for (i in removals) sorted.remove(names[i], i) }
+
+        println("PrefixIndexBenchmark: $ENTRIES entries, $QUERIES prefix queries, ${removals.size} removals")
+        println("  insert: buckets %6d ms, sorted %6d ms".format(bucketInsert / 1_000_000, sortedInsert / 1_000_000))
+        println("  query:  buckets %6d ms, sorted %6d ms".format(bucketQuery / 1_000_000, sortedQuery / 1_000_000))
+        println("  remove: buckets %6d ms, sorted %6d ms".format(bucketRemove / 1_000_000, sortedRemove / 1_000_000))
+    }
+
+    private inline fun measure(block: () -> Unit): Long {
+        val start = System.nanoTime()
+        block()
+        return System.nanoTime() - start
+    }
+}
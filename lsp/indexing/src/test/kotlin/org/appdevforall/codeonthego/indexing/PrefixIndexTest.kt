@@ -0,0 +1,96 @@
+package org.appdevforall.codeonthego.indexing
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import kotlin.random.Random
+
+@RunWith(JUnit4::class)
+class PrefixIndexTest {
+
+    private fun PrefixIndex.idsWithPrefix(prefix: String): List<Int> =
+        buildList { forEachIdWithPrefix(prefix) { add(it) } }
+
+    @Test
+    fun `finds keys by prefix`() {
+        val index = PrefixIndex()
+        index.add("arraylist", 1)
+        index.add("arraydeque", 2)
+        index.add("hashmap", 3)
+        index.add("array", 4)
+
+        assertThat(index.idsWithPrefix("array")).containsExactly(1, 2, 4)
+        assertThat(index.idsWithPrefix("arrayl")).containsExactly(1)
+        assertThat(index.idsWithPrefix("b")).isEmpty()
+        assertThat(index.idsWithPrefix("")).hasSize(4)
+    }
+
+    @Test
+    fun `same value maps to several keys`() {
+        val index = PrefixIndex()
+        index.add("get", 1)
+        index.add("get", 2)
+        index.add("getall", 3)
+
+        assertThat(index.idsWithPrefix("get")).containsExactly(1, 2, 3)
+        assertThat(index.remove("get", 1)).isTrue()
+        assertThat(index.remove("get", 1)).isFalse()
+        assertThat(index.idsWithPrefix("get")).containsExactly(2, 3)
+    }
+
+    @Test
+    fun `lookup stops when the action returns false`() {
+        val index = PrefixIndex()
+        repeat(500) { index.add("name$it", it) }
+
+        val visited = mutableListOf<Int>()
+        index.forEachIdWithPrefix("name") { visited.add(it); visited.size < 10 }
+
+        assertThat(visited).hasSize(10)
+        assertThat(index.countWithPrefix("name", 20)).isEqualTo(20)
+        assertThat(index.countWithPrefix("name1", 1000)).isEqualTo(111)
+    }
+
+    @Test
+    fun `matches a reference model across compactions`() {
+        val random = Random(42)
+        val index = PrefixIndex()
+        val model = mutableSetOf<Pair<String, Int>>()
+        val words = List(500) { i ->
+            val letters = (0 until random.nextInt(1, 6)).joinToString("") { ('a' + random.nextInt(4)).toString() }
+            "w$letters${i % 7}"
+        }
+
+        repeat(20_000) { step ->
+            val pair = words.random(random) to random.nextInt(50)
+            if (pair in model && random.nextInt(3) > 0) {
+                assertThat(index.remove(pair.first, pair.second)).isTrue()
+                model.remove(pair)
+            } else if (pair !in model) {
+                index.add(pair.first, pair.second)
+                model.add(pair)
+            }
+
+            if (step % 1000 == 0) {
+                for (prefix in listOf("", "w", "wa", "wab", "wc", "wd1", "x")) {
+                    val expected = model.filter { it.first.startsWith(prefix) }
+                        .sortedWith(compareBy({ it.first }, { it.second }))
+                        .map { it.second }
+                    assertThat(index.idsWithPrefix(prefix)).containsExactlyElementsIn(expected).inOrder()
+                }
+            }
+        }
+        assertThat(index.size).isEqualTo(model.size)
+    }
+
+    @Test
+    fun `clear removes everything`() {
+        val index = PrefixIndex()
+        repeat(1000) { index.add("name$it", it) }
+        index.clear()
+
+        assertThat(index.size).isEqualTo(0)
+        assertThat(index.idsWithPrefix("")).isEmpty()
+    }
+}
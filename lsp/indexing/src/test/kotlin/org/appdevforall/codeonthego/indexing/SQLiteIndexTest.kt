@@ -0,0 +1,348 @@
+package org.appdevforall.codeonthego.indexing
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.test.runTest
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
+import org.appdevforall.codeonthego.indexing.api.IndexDescriptor
+import org.appdevforall.codeonthego.indexing.api.IndexField
+import org.appdevforall.codeonthego.indexing.api.IndexQuery
+import org.appdevforall.codeonthego.indexing.api.Indexable
+import org.appdevforall.codeonthego.indexing.api.indexQuery
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class SQLiteIndexTest {
+
+    data class TestEntry(
+        override val key: String,
+        override val sourceId: String,
+        val name: String,
+        val category: String? = null,
+    ) : Indexable
+
+    private class TestDescriptor(
+        override val fields: List<IndexField>,
+        override val schemaVersion: Int = 1,
+    ) : IndexDescriptor<TestEntry> {
+        override val name = "test"
+
+        override fun fieldValues(entry: TestEntry) = mapOf(
+            "name" to entry.name,
+            "category" to entry.category,
+        ).filterKeys { key -> fields.any { it.name == key } }
+
+        override fun serialize(entry: TestEntry) =
+            "${entry.key}|${entry.sourceId}|${entry.name}|${entry.category}".toByteArray()
+
+        override fun deserialize(bytes: ByteArray): TestEntry {
+            val parts = String(bytes).split("|")
+            return TestEntry(parts[0], parts[1], parts[2], parts[3].takeIf { it != "null" })
+        }
+    }
+
+    private val nameOnly = listOf(IndexField("name", prefixSearchable = true))
+    private val nameAndCategory = nameOnly + IndexField("category")
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val dbName = "sqlite_index_test.db"
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(dbName)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(dbName)
+    }
+
+    private fun openIndex(descriptor: TestDescriptor, pageSize: Int = 256) =
+        SQLiteIndex(descriptor, context, dbName, pageSize = pageSize)
+
+    private fun <R> withDatabase(block: (SQLiteDatabase) -> R): R =
+        SQLiteDatabase.openDatabase(context.getDatabasePath(dbName).path, null, SQLiteDatabase.OPEN_READWRITE)
+            .use(block)
+
+    private fun purgePending() = withDatabase { db ->
+        db.rawQuery("SELECT purge_pending FROM _index_meta WHERE table_name = 'test'", null).use {
+            it.moveToFirst()
+            it.getInt(0) != 0
+        }
+    }
+
+    private fun sqlIndexNames() = withDatabase { db ->
+        db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'test'", null).use { cursor ->
+            buildSet {
+                while (cursor.moveToNext()) add(cursor.getString(0))
+            }
+        }
+    }
+
+    @Test
+    fun `prefix queries page through all matches`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory), pageSize = 2).use { index ->
+            index.insertAll((1..7).map { TestEntry("k$it", "src", "Foo$it") }.asSequence())
+            index.insert(TestEntry("b", "src", "Bar"))
+
+            val results = index.query(indexQuery { prefix("name", "foo") }).toList()
+            assertThat(results.map { it.key }).containsExactly("k1", "k2", "k3", "k4", "k5", "k6", "k7")
+            assertThat(index.query(IndexQuery.ALL).toList()).hasSize(8)
+        }
+    }
+
+    @Test
+    fun `value and source sets are applied before the limit`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory), pageSize = 2).use { index ->
+            index.insertAll((1..10).map { TestEntry("lib$it", "src1", "Lib$it", "lib") }.asSequence())
+            index.insert(TestEntry("k1", "src2", "Alpha", "app"))
+            index.insert(TestEntry("k2", "src3", "Beta", "test"))
+            index.insert(TestEntry("k3", "src3", "Gamma", "lib"))
+
+            val byCategory = index.query(indexQuery { oneOf("category", listOf("app", "test")); limit = 2 }).toList()
+            assertThat(byCategory.map { it.key }).containsExactly("k1", "k2")
+
+            val bySources = index.query(indexQuery {
+                sourceIds = setOf("src2", "src3")
+                prefix("name", "")
+                limit = 3
+            }).toList()
+            assertThat(bySources.map { it.key }).containsExactly("k1", "k2", "k3")
+
+            assertThat(index.query(indexQuery { sourceIds = emptySet() }).toList()).isEmpty()
+            assertThat(index.distinctValues("category", setOf("src3")).toList()).containsExactly("lib", "test")
+        }
+    }
+
+    @Test
+    fun `large source sets are inlined`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "it's", "Alpha"))
+            index.insert(TestEntry("k2", "other", "Beta"))
+
+            val sources = (1..2000).map { "src$it" }.toSet() + "it's"
+            assertThat(index.query(indexQuery { sourceIds = sources }).toList().map { it.key }).containsExactly("k1")
+        }
+    }
+
+    @Test
+    fun `added fields are backfilled from payloads`() = runTest {
+        openIndex(TestDescriptor(nameOnly)).use { index ->
+            index.insert(TestEntry("k1", "src", "Alpha", "lib"))
+            index.insert(TestEntry("k2", "src", "Beta", "app"))
+        }
+
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.awaitMaintenance()
+            assertThat(index.containsSource("src")).isTrue()
+            val results = index.query(indexQuery { eq("category", "lib") }).toList()
+            assertThat(results.map { it.key }).containsExactly("k1")
+            assertThat(index.distinctValues("category").toList()).containsExactly("app", "lib")
+        }
+    }
+
+    @Test
+    fun `removed fields keep the remaining data`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "src", "Alpha", "lib"))
+        }
+
+        openIndex(TestDescriptor(nameOnly)).use { index ->
+            index.insert(TestEntry("k2", "src", "Beta", "app"))
+            val results = index.query(indexQuery { prefix("name", "al") }).toList()
+            assertThat(results.map { it.key }).containsExactly("k1")
+            assertThat(index.size()).isEqualTo(2)
+        }
+    }
+
+    @Test
+    fun `schema version bump hides stale entries until their source is re-indexed`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "src1", "Alpha"))
+            index.insert(TestEntry("k2", "src2", "Beta"))
+        }
+
+        openIndex(TestDescriptor(nameAndCategory, schemaVersion = 2)).use { index ->
+            assertThat(index.containsSource("src1")).isFalse()
+            assertThat(index.get("k1")).isNull()
+            assertThat(index.query(IndexQuery.ALL).toList()).isEmpty()
+
+            index.removeBySource("src1")
+            index.insert(TestEntry("k1", "src1", "Alpha"))
+
+            assertThat(index.containsSource("src1")).isTrue()
+            assertThat(index.containsSource("src2")).isFalse()
+            assertThat(index.query(IndexQuery.ALL).toList().map { it.key }).containsExactly("k1")
+            assertThat(index.size()).isEqualTo(1)
+        }
+    }
+
+    @Test
+    fun `stale entries of sources that are never re-indexed are purged`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insertAll((1..10).map { TestEntry("k$it", "src$it", "Alpha$it") }.asSequence())
+        }
+
+        openIndex(TestDescriptor(nameAndCategory, schemaVersion = 2)).use { index ->
+            index.insert(TestEntry("k11", "src11", "Beta"))
+            index.awaitMaintenance()
+        }
+
+        val keys = withDatabase { db ->
+            db.rawQuery("SELECT _key FROM test", null).use { cursor ->
+                buildList {
+                    while (cursor.moveToNext()) add(cursor.getString(0))
+                }
+            }
+        }
+        assertThat(keys).containsExactly("k11")
+        assertThat(purgePending()).isFalse()
+    }
+
+    @Test
+    fun `interrupted purge resumes on the next open`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "src1", "Alpha"))
+            index.insert(TestEntry("k2", "src2", "Beta"))
+        }
+        assertThat(purgePending()).isFalse()
+        withDatabase { db ->
+            db.execSQL("UPDATE test SET _schema_version = 0 WHERE _key = 'k1'")
+            db.execSQL("UPDATE _index_meta SET purge_pending = 1 WHERE table_name = 'test'")
+        }
+
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            assertThat(index.get("k1")).isNull()
+            index.awaitMaintenance()
+            assertThat(index.query(IndexQuery.ALL).toList().map { it.key }).containsExactly("k2")
+        }
+        assertThat(purgePending()).isFalse()
+    }
+
+    @Test
+    fun `interrupted backfill resumes on the next open`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "src", "Alpha", "lib"))
+        }
+        withDatabase { db ->
+            db.execSQL("UPDATE test SET f_category = NULL")
+            db.execSQL("UPDATE _index_meta SET pending_backfill = 'category' WHERE table_name = 'test'")
+        }
+
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.awaitMaintenance()
+            val results = index.query(indexQuery { eq("category", "lib") }).toList()
+            assertThat(results.map { it.key }).containsExactly("k1")
+        }
+
+        val pending = withDatabase { db ->
+            db.rawQuery("SELECT pending_backfill FROM _index_meta WHERE table_name = 'test'", null).use {
+                it.moveToFirst()
+                it.getString(0)
+            }
+        }
+        assertThat(pending).isNull()
+    }
+
+    @Test
+    fun `side tables are kept in the database of the index`() = runTest {
+        val sideTables = listOf("CREATE TABLE IF NOT EXISTS sources (path TEXT PRIMARY KEY)")
+        fun SQLiteIndex<*>.paths() = readSideTables(emptyList()) { db ->
+            db.query("SELECT path FROM sources").use { cursor ->
+                buildList {
+                    while (cursor.moveToNext()) add(cursor.getString(0))
+                }
+            }
+        }
+
+        val index = SQLiteIndex(TestDescriptor(nameOnly), context, dbName, sideTables = sideTables)
+        index.use {
+            it.insert(TestEntry("k1", "src", "Alpha"))
+            it.writeSideTables { db -> db.execSQL("INSERT INTO sources (path) VALUES ('src')") }
+        }
+        assertThat(index.paths()).isEmpty()
+
+        SQLiteIndex(TestDescriptor(nameOnly), context, dbName, sideTables = sideTables).use {
+            assertThat(it.paths()).containsExactly("src")
+            assertThat(it.get("k1")).isNotNull()
+        }
+    }
+
+    @Test
+    fun `unchanged schema keeps entries across reopen`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "src", "Alpha"))
+        }
+
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            assertThat(index.get("k1")).isEqualTo(TestEntry("k1", "src", "Alpha"))
+        }
+    }
+
+    @Test
+    fun `bulk load keeps the SQL indexes`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            val expected = sqlIndexNames()
+            index.bulkLoad {
+                index.insertAll((1..10).map { TestEntry("k$it", "src", "Foo$it") }.asSequence())
+                assertThat(sqlIndexNames()).containsAtLeastElementsIn(expected)
+            }
+            assertThat(index.query(indexQuery { prefix("name", "foo") }).toList()).hasSize(10)
+        }
+    }
+
+    @Test
+    fun `missing SQL indexes are recreated on open`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "src", "Alpha"))
+        }
+        val expected = sqlIndexNames()
+        withDatabase { it.execSQL("DROP INDEX idx_test_f_name_lower") }
+
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            assertThat(sqlIndexNames()).containsAtLeastElementsIn(expected)
+            assertThat(index.query(indexQuery { prefix("name", "al") }).toList().map { it.key }).containsExactly("k1")
+        }
+    }
+
+    @Test
+    fun `fuzzy query ranks camel-hump matches`() = runTest {
+        val fuzzyName = listOf(IndexField("name", prefixSearchable = true, fuzzySearchable = true), IndexField("category"))
+        openIndex(TestDescriptor(fuzzyName), pageSize = 2).use { index ->
+            index.insert(TestEntry("k1", "src1", "MutableStateFlow", "lib"))
+            index.insert(TestEntry("k2", "src1", "MutableSharedStateFlow", "app"))
+            index.insert(TestEntry("k3", "src2", "StateFlow", "lib"))
+            index.insert(TestEntry("k4", "src2", "MapStateFactory", "lib"))
+
+            val results = index.fuzzyQuery(FuzzyQuery("name", "MSF"))
+            assertThat(results.map { it.entry.key }).containsExactly("k4", "k1", "k2").inOrder()
+
+            val filtered = index.fuzzyQuery(FuzzyQuery("name", "MSF", filter = indexQuery { eq("category", "lib") }))
+            assertThat(filtered.map { it.entry.key }).containsExactly("k4", "k1").inOrder()
+
+            val bySource = index.fuzzyQuery(FuzzyQuery("name", "MSF", filter = indexQuery { sourceIds = setOf("src2") }))
+            assertThat(bySource.map { it.entry.key }).containsExactly("k4")
+        }
+    }
+
+    @Test
+    fun `making a field fuzzy-searchable backfills its hump keys`() = runTest {
+        openIndex(TestDescriptor(nameAndCategory)).use { index ->
+            index.insert(TestEntry("k1", "src", "MutableStateFlow"))
+        }
+
+        val fuzzyName = listOf(IndexField("name", prefixSearchable = true, fuzzySearchable = true), IndexField("category"))
+        openIndex(TestDescriptor(fuzzyName)).use { index ->
+            index.awaitMaintenance()
+            assertThat(index.fuzzyQuery(FuzzyQuery("name", "MSF")).map { it.entry.key }).containsExactly("k1")
+        }
+    }
+}
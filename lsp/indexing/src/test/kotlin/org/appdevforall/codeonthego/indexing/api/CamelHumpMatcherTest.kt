@@ -0,0 +1,65 @@
+package org.appdevforall.codeonthego.indexing.api
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class CamelHumpMatcherTest {
+
+    private fun matches(pattern: String, candidate: String) =
+        CamelHumpMatcher.score(pattern, candidate) > 0
+
+    @Test
+    fun `humps are the first letters of each word`() {
+        assertThat(CamelHumpMatcher.humps("MutableStateFlow")).isEqualTo("msf")
+        assertThat(CamelHumpMatcher.humps("URLConnection")).isEqualTo("urlc")
+        assertThat(CamelHumpMatcher.humps("get_value2")).isEqualTo("gv2")
+        assertThat(CamelHumpMatcher.humps("getV")).isEqualTo("gv")
+    }
+
+    @Test
+    fun `humpsMatch requires the first hump and the rest in order`() {
+        assertThat(CamelHumpMatcher.humpsMatch("msf", "msf")).isTrue()
+        assertThat(CamelHumpMatcher.humpsMatch("mf", "msf")).isTrue()
+        assertThat(CamelHumpMatcher.humpsMatch("sf", "msf")).isFalse()
+        assertThat(CamelHumpMatcher.humpsMatch("mfs", "msf")).isFalse()
+    }
+
+    @Test
+    fun `matches camel humps`() {
+        assertThat(matches("MSF", "MutableStateFlow")).isTrue()
+        assertThat(matches("MuStFl", "MutableStateFlow")).isTrue()
+        assertThat(matches("getV", "getValue")).isTrue()
+        assertThat(matches("getv", "getValue")).isTrue()
+        assertThat(matches("URLC", "URLConnection")).isTrue()
+        assertThat(matches("MF", "MutableStateFlow")).isTrue()
+    }
+
+    @Test
+    fun `rejects non-matches`() {
+        assertThat(matches("SF", "MutableStateFlow")).isFalse()
+        assertThat(matches("MFS", "MutableStateFlow")).isFalse()
+        assertThat(matches("getX", "getValue")).isFalse()
+        // Upper-case pattern letters must start a hump
+        assertThat(matches("MU", "Mutable")).isFalse()
+    }
+
+    @Test
+    fun `prefix matches rank above hump matches`() {
+        val prefix = CamelHumpMatcher.score("Str", "String")
+        val humps = CamelHumpMatcher.score("Str", "SomeTypeRef")
+        assertThat(prefix).isGreaterThan(humps)
+    }
+
+    @Test
+    fun `shorter and exact-case matches rank higher`() {
+        assertThat(CamelHumpMatcher.score("MSF", "MutableStateFlow"))
+            .isGreaterThan(CamelHumpMatcher.score("MSF", "MutableSharedStateFlow"))
+        assertThat(CamelHumpMatcher.score("List", "List"))
+            .isGreaterThan(CamelHumpMatcher.score("List", "ListView"))
+        assertThat(CamelHumpMatcher.score("list", "list"))
+            .isGreaterThan(CamelHumpMatcher.score("list", "List"))
+    }
+}
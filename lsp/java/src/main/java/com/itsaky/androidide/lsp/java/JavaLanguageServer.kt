@@ -22,6 +22,9 @@ import com.itsaky.androidide.eventbus.events.editor.DocumentChangeEvent
 import com.itsaky.androidide.eventbus.events.editor.DocumentCloseEvent
 import com.itsaky.androidide.eventbus.events.editor.DocumentOpenEvent
 import com.itsaky.androidide.eventbus.events.editor.DocumentSelectedEvent
+import com.itsaky.androidide.eventbus.events.file.FileCreationEvent
+import com.itsaky.androidide.eventbus.events.file.FileDeletionEvent
+import com.itsaky.androidide.eventbus.events.file.FileRenameEvent
 import com.itsaky.androidide.javac.services.fs.CacheFSInfoSingleton
 import com.itsaky.androidide.javac.services.fs.CachingJarFileSystemProvider.clearCache
 import com.itsaky.androidide.javac.services.fs.CachingJarFileSystemProvider.clearCachesForPaths
@@ -65,7 +68,6 @@ import com.itsaky.androidide.lsp.models.SignatureHelpParams
 import com.itsaky.androidide.lsp.util.LSPEditorActions
 import com.itsaky.androidide.models.Range
 import com.itsaky.androidide.projects.FileManager.getActiveDocumentCount
-import com.itsaky.androidide.projects.IProjectManager.Companion.getInstance
 import com.itsaky.androidide.projects.ProjectManagerImpl
 import com.itsaky.androidide.projects.api.ModuleProject
 import com.itsaky.androidide.projects.api.Workspace
@@ -81,6 +83,7 @@ import org.greenrobot.eventbus.EventBus
 import org.greenrobot.eventbus.Subscribe
 import org.greenrobot.eventbus.ThreadMode
 import org.slf4j.LoggerFactory
+import java.io.File
 import java.nio.file.Files
 import java.nio.file.Path
 import java.util.Objects
@@ -314,15 +317,6 @@ class JavaLanguageServer : ILanguageServer {
 			return
 		}
 
-		// TODO Find an alternative to efficiently update changeDelta in JavaCompilerService instance
-		JavaCompilerService.NO_MODULE_COMPILER.onDocumentChange(event)
-		val module =
-			getInstance()
-				.findModuleForFile(event.changedFile)
-		if (module != null) {
-			val compiler = JavaCompilerProvider.get(module)
-			compiler.onDocumentChange(event)
-		}
 		startOrRestartAnalyzeTimer()
 	}
 
@@ -344,12 +338,50 @@ class JavaLanguageServer : ILanguageServer {
 	fun onFileClosed(event: DocumentCloseEvent) {
 		diagnosticProvider.clearTimestamp(event.closedFile)
 
+		// Unsaved changes of the document are discarded, re-read the file from disk
+		markSourceChanged(event.closedFile.toFile())
+
 		if (getActiveDocumentCount() == 0) {
 			selectedFile = null
 			timer.cancel()
 		}
 	}
 
+	@Subscribe(threadMode = ThreadMode.ASYNC)
+	@Suppress("unused")
+	fun onFileCreated(event: FileCreationEvent) {
+		markSourceChanged(event.file)
+	}
+
+	@Subscribe(threadMode = ThreadMode.ASYNC)
+	@Suppress("unused")
+	fun onFileDeleted(event: FileDeletionEvent) {
+		markSourceChanged(event.file)
+	}
+
+	@Subscribe(threadMode = ThreadMode.ASYNC)
+	@Suppress("unused")
+	fun onFileRenamed(event: FileRenameEvent) {
+		markSourceChanged(event.file)
+		markSourceChanged(event.newFile)
+	}
+
+	/** Updates the identifier index of the module that contains [file], if it is a Java source. */
+	private fun markSourceChanged(file: File) {
+		// Do not use DocumentUtils.isJavaFile(...), deleted files must be handled as well
+		if (file.extension != "java") {
+			return
+		}
+
+		val module = ProjectManagerImpl.getInstance().findModuleForFile(file, false) ?: return
+		module.findSourceRoot(file) ?: return
+		// A compiler created later checks every source when its index is loaded
+		val index = JavaCompilerProvider.getInstance().find { compiler ->
+			compiler.identifierIndex.takeIf { compiler.module == module }
+		}
+		index?.markChanged(file.toPath())
+	}
+
 	private fun analyzeSelected() {
 		val file = selectedFile ?: return
 		if (client == null) return
@@ -0,0 +1,119 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.lsp.java.compiler;
+
+import androidx.annotation.NonNull;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how {@link JavaCompilerService} served the compilation requests that needed a
+ * compilation: by reparsing the edited method body, by reusing the cached compilation as-is, or
+ * by recompiling, and why a reparse was not possible.
+ *
+ * <p>Counters are cumulative and thread-safe.
+ */
+public final class IncrementalCompileStats {
+
+	/** Why a request could not be served by a method body reparse. */
+	public enum Fallback {
+		/** There is no cached compilation to reparse. */
+		NO_CACHED_COMPILE,
+		/** The request, or the one the cached compilation was made for, has no file contents. */
+		NOT_INCREMENTAL,
+		/** The request compiles other or more files than the cached compilation. */
+		DIFFERENT_SOURCES,
+		/** The edit is not confined to the body of a single method. */
+		EDIT_OUTSIDE_METHOD_BODY,
+		/** The cursor moved to another method. */
+		CURSOR_IN_OTHER_METHOD,
+		/** The partial reparser rejected the new method body. */
+		REPARSE_FAILED,
+	}
+
+	private final AtomicLong reparsed = new AtomicLong();
+	private final AtomicLong reused = new AtomicLong();
+	private final AtomicLong recompiled = new AtomicLong();
+	private final AtomicLongArray fallbacks = new AtomicLongArray(Fallback.values().length);
+
+	void recordReparse() {
+		reparsed.incrementAndGet();
+	}
+
+	void recordReuse() {
+		reused.incrementAndGet();
+	}
+
+	void recordRecompile(@NonNull Fallback reason) {
+		recompiled.incrementAndGet();
+		fallbacks.incrementAndGet(reason.ordinal());
+	}
+
+	/** Number of requests served by reparsing a single method body. */
+	public long getReparsed() {
+		return reparsed.get();
+	}
+
+	/** Number of requests whose contents matched the cached compilation. */
+	public long getReused() {
+		return reused.get();
+	}
+
+	/** Number of requests that required a full recompilation. */
+	public long getRecompiled() {
+		return recompiled.get();
+	}
+
+	/** Number of recompilations caused by {@code reason}. */
+	public long getFallbacks(@NonNull Fallback reason) {
+		return fallbacks.get(reason.ordinal());
+	}
+
+	/** Fraction of requests that did not require a full recompilation, or 0 if there were none. */
+	public double getHitRate() {
+		final long hits = getReparsed() + getReused();
+		final long total = hits + getRecompiled();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public void reset() {
+		reparsed.set(0);
+		reused.set(0);
+		recompiled.set(0);
+		for (int i = 0; i < fallbacks.length(); i++) {
+			fallbacks.set(i, 0);
+		}
+	}
+
+	@NonNull
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("IncrementalCompileStats{")
+				.append("reparsed=").append(getReparsed())
+				.append(", reused=").append(getReused())
+				.append(", recompiled=").append(getRecompiled())
+				.append(", hitRate=").append(String.format("%.2f", getHitRate()));
+		for (Fallback reason : Fallback.values()) {
+			final long count = getFallbacks(reason);
+			if (count > 0) {
+				sb.append(", ").append(reason).append('=').append(count);
+			}
+		}
+		return sb.append('}').toString();
+	}
+}
@@ -20,7 +20,6 @@ package com.itsaky.androidide.lsp.java.compiler;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.util.Pair;
-import com.itsaky.androidide.eventbus.events.editor.DocumentChangeEvent;
 import com.itsaky.androidide.javac.services.compiler.ReusableCompiler;
 import com.itsaky.androidide.javac.services.partial.CompilationInfo;
 import com.itsaky.androidide.javac.services.partial.PartialReparser;
@@ -31,22 +30,19 @@ import com.itsaky.androidide.lsp.java.parser.ParseTask;
 import com.itsaky.androidide.lsp.java.parser.Parser;
 import com.itsaky.androidide.lsp.java.utils.Extractors;
 import com.itsaky.androidide.lsp.java.visitors.FindTypeDeclarations;
-import com.itsaky.androidide.models.Position;
 import com.itsaky.androidide.models.Range;
-import com.itsaky.androidide.projects.FileManager;
 import com.itsaky.androidide.projects.api.AndroidModule;
 import com.itsaky.androidide.projects.api.ModuleProject;
 import com.itsaky.androidide.projects.util.BootClasspathProvider;
-import com.itsaky.androidide.projects.util.StringSearch;
 import com.itsaky.androidide.utils.Cache;
 import com.itsaky.androidide.utils.Environment;
 import com.itsaky.androidide.utils.SourceClassTrie;
 import com.itsaky.androidide.utils.StopWatch;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -57,8 +53,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import jdkx.tools.Diagnostic;
 import jdkx.tools.JavaFileObject;
 import jdkx.tools.StandardLocation;
@@ -67,30 +61,35 @@ import openjdk.source.tree.MethodTree;
 import openjdk.source.util.SourcePositions;
 import openjdk.source.util.TreePath;
 import openjdk.source.util.Trees;
+import openjdk.tools.javac.api.ClientCodeWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class JavaCompilerService implements CompilerProvider {
 
 	public static final JavaCompilerService NO_MODULE_COMPILER = new JavaCompilerService(null);
-	private static final Cache<String, Boolean> cacheContainsWord = new Cache<>();
 	private static final Cache<Void, List<String>> cacheContainsType = new Cache<>();
 	private static final Logger LOG = LoggerFactory.getLogger(JavaCompilerService.class);
 	protected final Set<String> classPathClasses;
 	protected final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
 	protected final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
-	protected final Cache<Void, List<String>> cacheFileImports = new Cache<>();
 	protected final SynchronizedTask synchronizedTask = new SynchronizedTask();
 	protected final SourceFileManager fileManager;
+	protected final JavaIdentifierIndex identifierIndex;
 	protected final ModuleProject module;
 	public ReusableCompiler compiler = new JCReusableCompiler();
 	protected Set<String> bootClasspathClasses = BootClasspathProvider.getTopLevelClasses(
 			Collections.singleton(Environment.ANDROID_JAR.getAbsolutePath()));
 	private CompileBatch cachedCompile;
-	private int changeDelta = 0;
 
-	private Position lastReparsePosition = Position.NONE;
-	private Position newCursorPosition = Position.NONE;
+	/**
+	 * The partial request {@link #cachedCompile} reflects, if it was made for a single file with
+	 * known contents. Edits are found by comparing its contents with those of the next request.
+	 */
+	@Nullable
+	private PartialReparseRequest cachedPartialRequest;
+
+	private final IncrementalCompileStats incrementalStats = new IncrementalCompileStats();
 
 	// The module project must not be null
 	// It is marked as nullable just for some special cases like tests
@@ -98,9 +97,11 @@ public class JavaCompilerService implements CompilerProvider {
 		this.module = module;
 		if (module == null) {
 			this.fileManager = SourceFileManager.NO_MODULE;
+			this.identifierIndex = new JavaIdentifierIndex(Collections::emptyList, null);
 			this.classPathClasses = Collections.emptySet();
 		} else {
 			this.fileManager = SourceFileManager.forModule(module);
+			this.identifierIndex = JavaIdentifierIndex.forModule(module);
 			this.classPathClasses = Collections.unmodifiableSet(module.compileClasspathClasses.allClassNames());
 			this.bootClasspathClasses = Collections.unmodifiableSet(getBootclasspathClasses());
 		}
@@ -109,10 +110,12 @@ public class JavaCompilerService implements CompilerProvider {
 	private JavaCompilerService(
 			@Nullable ModuleProject module,
 			SourceFileManager fileManager,
+			JavaIdentifierIndex identifierIndex,
 			Set<String> bootClasspathClasses,
 			Set<String> classPathClasses) {
 		this.module = module;
 		this.fileManager = fileManager;
+		this.identifierIndex = identifierIndex;
 		this.bootClasspathClasses = bootClasspathClasses;
 		this.classPathClasses = classPathClasses;
 	}
@@ -131,11 +134,10 @@ public class JavaCompilerService implements CompilerProvider {
 
 	public JavaCompilerService copy() {
 		final JavaCompilerService compiler = new JavaCompilerService(
-				this.module, this.fileManager, this.bootClasspathClasses, this.classPathClasses);
+				this.module, this.fileManager, this.identifierIndex, this.bootClasspathClasses,
+				this.classPathClasses);
 		compiler.cachedCompile = null;
-		compiler.newCursorPosition = Position.NONE;
-		compiler.lastReparsePosition = Position.NONE;
-		compiler.changeDelta = 0;
+		compiler.cachedPartialRequest = null;
 		compiler.compiler = new ReusableCompiler();
 		compiler.diagnostics.clear();
 		compiler.cachedModified.clear();
@@ -147,8 +149,10 @@ public class JavaCompilerService implements CompilerProvider {
 				() -> {
 					close();
 					cachedCompile = null;
+					cachedPartialRequest = null;
 					cachedModified.clear();
 					compiler = new ReusableCompiler();
+					identifierIndex.save();
 				});
 	}
 
@@ -163,15 +167,7 @@ public class JavaCompilerService implements CompilerProvider {
 
 	@Override
 	public Path[] findMemberReferences(String className, String memberName) {
-		List<Path> candidates = new ArrayList<>();
-		List<SourceClassTrie.SourceNode> sourceNodes = module != null ? module.compileJavaSourceClasses.allSources() : Collections.emptyList();
-		for (SourceClassTrie.SourceNode node : sourceNodes) {
-			final Path path = node.getFile();
-			if (containsWord(path, memberName)) {
-				candidates.add(path);
-			}
-		}
-		return candidates.toArray(new Path[0]);
+		return identifierIndex.filesContaining(memberName).toArray(new Path[0]);
 	}
 
 	@Override
@@ -207,7 +203,7 @@ public class JavaCompilerService implements CompilerProvider {
 		List<SourceClassTrie.SourceNode> classes = module != null ? module.listClassesFromSourceDirs(packageName) : Collections.emptyList();
 		for (SourceClassTrie.SourceNode node : classes) {
 			final Path path = node.getFile();
-			if (containsWord(path, simpleName) && containsType(path, className)) {
+			if (identifierIndex.containsWord(path, simpleName) && containsType(path, className)) {
 				return path;
 			}
 		}
@@ -219,12 +215,8 @@ public class JavaCompilerService implements CompilerProvider {
 		String packageName = Extractors.packageName(className);
 		String simpleName = Extractors.simpleName(className);
 		List<Path> candidates = new ArrayList<>();
-		List<SourceClassTrie.SourceNode> sourceNodes = module != null ? module.compileJavaSourceClasses.allSources() : Collections.emptyList();
-		for (SourceClassTrie.SourceNode node : sourceNodes) {
-			final Path path = node.getFile();
-			if (containsWord(path, packageName)
-					&& containsImport(path, className)
-					&& containsWord(path, simpleName)) {
+		for (Path path : identifierIndex.filesContaining(simpleName)) {
+			if (identifierIndex.containsWord(path, packageName) && containsImport(path, className)) {
 				candidates.add(path);
 			}
 		}
@@ -240,9 +232,19 @@ public class JavaCompilerService implements CompilerProvider {
 		return synchronizedTask;
 	}
 
-	public void onDocumentChange(@NonNull DocumentChangeEvent event) {
-		this.changeDelta += event.getChangeDelta();
-		this.newCursorPosition = event.getChangeRange().getEnd();
+	/** The index used to find the source files that mention a name. */
+	@NonNull
+	public JavaIdentifierIndex getIdentifierIndex() {
+		return identifierIndex;
+	}
+
+	/**
+	 * How compilation requests have been served so far: by reparsing a method body or by
+	 * recompiling.
+	 */
+	@NonNull
+	public IncrementalCompileStats getIncrementalStats() {
+		return incrementalStats;
 	}
 
 	@Override
@@ -317,7 +319,7 @@ public class JavaCompilerService implements CompilerProvider {
 			return true;
 		}
 		String star = packageName + ".*";
-		for (String i : readImports(file)) {
+		for (String i : identifierIndex.imports(file)) {
 			if (i.equals(className) || i.equals(star)) {
 				return true;
 			}
@@ -335,13 +337,6 @@ public class JavaCompilerService implements CompilerProvider {
 		return cacheContainsType.get(file, null).contains(className);
 	}
 
-	private boolean containsWord(Path file, String word) {
-		if (cacheContainsWord.needs(file, word)) {
-			cacheContainsWord.load(file, word, StringSearch.containsWord(file, word));
-		}
-		return cacheContainsWord.get(file, word);
-	}
-
 	private Path findPublicTypeDeclaration(String className) {
 		JavaFileObject source;
 		try {
@@ -373,40 +368,6 @@ public class JavaCompilerService implements CompilerProvider {
 		return bootClasspathClasses;
 	}
 
-	private boolean isChangeValidForReparse() {
-		return this.lastReparsePosition == Position.NONE
-				|| (this.newCursorPosition != Position.NONE
-						&& this.lastReparsePosition.getLine() == this.newCursorPosition.getLine());
-	}
-
-	private void loadImports(Path file) {
-		List<String> list = new ArrayList<>();
-		Pattern importClass = Pattern.compile("^import +([\\w.]+\\.\\w+);");
-		Pattern importStar = Pattern.compile("^import +([\\w.]+\\.\\*);");
-		try (BufferedReader lines = FileManager.INSTANCE.getReader(file)) {
-			for (String line = lines.readLine(); line != null; line = lines.readLine()) {
-				// If we reach a class declaration, stop looking for imports
-				// TODO This could be a little more specific
-				if (line.contains("class")) {
-					break;
-				}
-				// import foo.bar.Doh;
-				Matcher matchesClass = importClass.matcher(line);
-				if (matchesClass.matches()) {
-					list.add(matchesClass.group(1));
-				}
-				// import foo.bar.*
-				Matcher matchesStar = importStar.matcher(line);
-				if (matchesStar.matches()) {
-					list.add(matchesStar.group(1));
-				}
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		cacheFileImports.load(file, null, list);
-	}
-
 	private boolean needsCompilation(Collection<? extends JavaFileObject> sources) {
 		if (cachedModified.size() != sources.size()) {
 			return true;
@@ -424,15 +385,6 @@ public class JavaCompilerService implements CompilerProvider {
 		return false;
 	}
 
-	private boolean needsRecompilation(final CompilationRequest request) {
-		return this.cachedCompile == null
-				|| this.cachedCompile.closed;
-		// || request.partialRequest == null
-		// || request.partialRequest.cursor < 0
-		// || !isChangeValidForReparse()
-		// || request.sources.size() != 1; // Cannot perform a reparse if there are multiple files
-	}
-
 	private String packageNameOrEmpty(Path file) {
 		return module != null ? module.packageNameOrEmpty(file) : "";
 	}
@@ -463,92 +415,189 @@ public class JavaCompilerService implements CompilerProvider {
 		return new CompileBatch(this, moreSources, request);
 	}
 
-	private List<String> readImports(Path file) {
-		if (cacheFileImports.needs(file, null)) {
-			loadImports(file);
-		}
-		return cacheFileImports.get(file, null);
-	}
-
 	private synchronized void recompile(CompilationRequest request) {
 		close();
 		this.cachedCompile = performCompilation(request);
-		this.changeDelta = 0;
+		this.cachedPartialRequest = request.sources.size() == 1 ? request.partialRequest : null;
 		updateModificationCache(request);
 	}
 
 	private synchronized void reparseOrRecompile(CompilationRequest request) {
-		// if (needsRecompilation(request)) {
-		// LOG.warn("Cannot reparse. Recompilation is required");
-		recompile(request);
-		// } else {
-		// LOG.debug("Trying to perform a reparse...");
-		// tryReparse(request);
-		// }
-	}
-
-	private void tryReparse(@NonNull final CompilationRequest request) {
+		final IncrementalCompileStats.Fallback fallback = tryReparse(request);
+		if (fallback != null) {
+			LOG.debug("Cannot reparse ({}), recompiling", fallback);
+			incrementalStats.recordRecompile(fallback);
+			recompile(request);
+		}
+		LOG.debug("{}", incrementalStats);
+	}
+
+	/**
+	 * Try to bring the cached compilation up to date by reparsing and re-attributing the body of
+	 * the method that was edited, instead of recompiling the whole batch.
+	 *
+	 * <p>The edit is found by comparing the contents of the request with those the cached
+	 * compilation reflects: it must fall strictly between the braces of a single method body, and
+	 * the cursor must be in that method both before and after the edit. The latter matters
+	 * because completion compilations prune every method body but the one at the cursor.
+	 *
+	 * @return {@code null} if the cached compilation is now up to date, or why it could not be
+	 * updated, in which case it must be recompiled.
+	 */
+	@Nullable
+	private IncrementalCompileStats.Fallback tryReparse(@NonNull final CompilationRequest request) {
+		if (this.cachedCompile == null || this.cachedCompile.closed) {
+			return IncrementalCompileStats.Fallback.NO_CACHED_COMPILE;
+		}
 
-		// Satisfy lint
 		final PartialReparseRequest partialRequest = request.partialRequest;
-		Objects.requireNonNull(partialRequest);
+		final PartialReparseRequest cachedRequest = this.cachedPartialRequest;
+		if (partialRequest == null || partialRequest.cursor < 0 || cachedRequest == null) {
+			return IncrementalCompileStats.Fallback.NOT_INCREMENTAL;
+		}
+
+		// Cannot perform a reparse if there are multiple files
+		if (request.sources.size() != 1 || cachedModified.size() != 1) {
+			return IncrementalCompileStats.Fallback.DIFFERENT_SOURCES;
+		}
+
+		final JavaFileObject source = request.sources.iterator().next();
+		final JavaFileObject cachedSource = cachedModified.keySet().iterator().next();
+		final CompilationUnitTree root = findRoot(source);
+		if (!source.toUri().equals(cachedSource.toUri()) || root == null) {
+			return IncrementalCompileStats.Fallback.DIFFERENT_SOURCES;
+		}
+
+		final String oldContents = cachedRequest.contents;
+		final String newContents = partialRequest.contents;
+		if (oldContents.equals(newContents)) {
+			final List<Pair<Range, TreePath>> positions = methodPositions(root);
+			if (binarySearchCurrentMethod(positions, cachedRequest.cursor)
+					!= binarySearchCurrentMethod(positions, partialRequest.cursor)) {
+				return IncrementalCompileStats.Fallback.CURSOR_IN_OTHER_METHOD;
+			}
+			LOG.info("...contents unchanged, reusing cached compile");
+			onReparsed(request, root);
+			incrementalStats.recordReuse();
+			return null;
+		}
 
 		final StopWatch watch = new StopWatch("Method reparse");
-		final File file = new File(request.sources.iterator().next().toUri());
-		final String path = file.getAbsolutePath();
-		final List<Pair<Range, TreePath>> positions = this.cachedCompile.methodPositions.get(path);
-		if (positions == null) {
-			LOG.warn("Cannot perform reparse. No method positions found.");
-			recompile(request);
-			return;
+
+		// The edited region: everything between the common prefix and the common suffix
+		final int minLength = Math.min(oldContents.length(), newContents.length());
+		int prefix = 0;
+		while (prefix < minLength && oldContents.charAt(prefix) == newContents.charAt(prefix)) {
+			prefix++;
 		}
+		int suffix = 0;
+		while (suffix < minLength - prefix
+				&& oldContents.charAt(oldContents.length() - 1 - suffix)
+				== newContents.charAt(newContents.length() - 1 - suffix)) {
+			suffix++;
+		}
+		final int editStart = prefix;
+		final int oldEditEnd = oldContents.length() - suffix;
+		final int delta = newContents.length() - oldContents.length();
 
-		final Pair<Range, TreePath> currentMethod = binarySearchCurrentMethod(positions, partialRequest.cursor);
+		final Pair<Range, TreePath> currentMethod = binarySearchCurrentMethod(methodPositions(root), editStart);
 		if (currentMethod == null) {
-			LOG.warn("Cannot perform reparse. Unable to find current method");
-			recompile(request);
-			return;
-		} else {
-			watch.lapFromLast("Found method at cursor position");
+			return IncrementalCompileStats.Fallback.EDIT_OUTSIDE_METHOD_BODY;
 		}
 
 		final MethodTree methodTree = (MethodTree) currentMethod.second.getLeaf();
-		LOG.debug("Trying to reparse method: {}", methodTree.getName());
+		if (methodTree.getBody() == null) {
+			return IncrementalCompileStats.Fallback.EDIT_OUTSIDE_METHOD_BODY;
+		}
 
-		final CompilationInfo info = new CompilationInfo(
-				cachedCompile.task, cachedCompile.diagnosticListener, cachedCompile.roots.get(0));
-		watch.setLastLap(System.currentTimeMillis());
 		final SourcePositions sourcePositions = Trees.instance(cachedCompile.task).getSourcePositions();
-		final int start = (int) sourcePositions.getStartPosition(info.cu, methodTree.getBody());
-		final int end = (int) sourcePositions.getEndPosition(info.cu, methodTree.getBody()) + this.changeDelta;
-
-		if (start < 0 || end < 0 || start > end || end >= partialRequest.contents.length()) {
-			LOG.warn(
-					"Cannot reparse. Invalid change delta. end: {} changeDelta: {} content.length: {}",
-					end,
-					this.changeDelta,
-					partialRequest.contents.length());
-			recompile(request);
-			return;
+		final int start = (int) sourcePositions.getStartPosition(root, methodTree.getBody());
+		final int end = (int) sourcePositions.getEndPosition(root, methodTree.getBody());
+		if (start < 0 || end <= start || editStart <= start || oldEditEnd >= end) {
+			return IncrementalCompileStats.Fallback.EDIT_OUTSIDE_METHOD_BODY;
 		}
 
-		watch.lapFromLast("Found start and end positions of current method");
-		final PartialReparser reparser = new PartialReparserImpl();
+		final int newEnd = end + delta;
+		if (newEnd > newContents.length()
+				|| newContents.charAt(start) != '{'
+				|| newContents.charAt(newEnd - 1) != '}') {
+			LOG.warn("Cannot reparse. Body of method '{}' does not match the cached contents",
+					methodTree.getName());
+			return IncrementalCompileStats.Fallback.EDIT_OUTSIDE_METHOD_BODY;
+		}
 
-		final String newBody = partialRequest.contents.substring(start, end);
-		final boolean reparsed = reparser.reparseMethod(info, currentMethod.second, newBody, partialRequest.contents);
-		if (!reparsed) {
-			LOG.error("Failed to reparse");
-			recompile(request);
-			return;
+		if (cachedRequest.cursor <= start || cachedRequest.cursor >= end
+				|| partialRequest.cursor <= start || partialRequest.cursor >= newEnd) {
+			return IncrementalCompileStats.Fallback.CURSOR_IN_OTHER_METHOD;
+		}
+
+		watch.lapFromLast("Found edited method");
+		LOG.debug("Trying to reparse method: {}", methodTree.getName());
+
+		// Diagnostics of the old body are replaced by those reported while re-attributing it
+		removeDiagnostics(source, start, end);
+
+		final CompilationInfo info = new CompilationInfo(
+				cachedCompile.task, cachedCompile.diagnosticListener, root);
+		final PartialReparser reparser = new PartialReparserImpl();
+		final String newBody = newContents.substring(start, newEnd);
+		if (!reparser.reparseMethod(info, currentMethod.second, newBody, newContents)) {
+			LOG.error("Failed to reparse method: {}", methodTree.getName());
+			return IncrementalCompileStats.Fallback.REPARSE_FAILED;
 		}
 
 		watch.log();
 		LOG.info("Successfully reparsed method: {}", methodTree.getName());
+		cachedCompile.updatePositions(root, true);
+		onReparsed(request, root);
+		incrementalStats.recordReparse();
+		return null;
+	}
+
+	/** Record that the cached compilation now reflects the contents of {@code request}. */
+	private void onReparsed(@NonNull final CompilationRequest request, @NonNull final CompilationUnitTree root) {
+		final PartialReparseRequest partialRequest = Objects.requireNonNull(request.partialRequest);
+		final JavaFileObject source = request.sources.iterator().next();
+
+		// Providers read the contents of the compiled file from its compilation unit
+		final JavaFileObject compiled = ClientCodeWrapper.instance(cachedCompile.task.getContext())
+				.unwrap(root.getSourceFile());
+		if (compiled instanceof SourceFileObject) {
+			((SourceFileObject) compiled).updateContents(
+					partialRequest.contents, Instant.ofEpochMilli(source.getLastModified()));
+		}
+
+		this.cachedPartialRequest = partialRequest;
 		updateModificationCache(request);
-		cachedCompile.updatePositions(info.cu, true);
-		this.changeDelta = 0;
-		this.lastReparsePosition = this.newCursorPosition;
+	}
+
+	/** The method ranges of {@code root}, computed on first use after a compilation. */
+	@NonNull
+	private List<Pair<Range, TreePath>> methodPositions(@NonNull final CompilationUnitTree root) {
+		final String path = new File(root.getSourceFile().toUri()).getAbsolutePath();
+		List<Pair<Range, TreePath>> positions = cachedCompile.methodPositions.get(path);
+		if (positions == null) {
+			cachedCompile.updatePositions(root, false);
+			positions = cachedCompile.methodPositions.get(path);
+		}
+		return positions;
+	}
+
+	@Nullable
+	private CompilationUnitTree findRoot(@NonNull final JavaFileObject source) {
+		for (CompilationUnitTree root : cachedCompile.roots) {
+			if (root.getSourceFile().toUri().equals(source.toUri())) {
+				return root;
+			}
+		}
+		return null;
+	}
+
+	private void removeDiagnostics(@NonNull final JavaFileObject source, final int start, final int end) {
+		diagnostics.removeIf(diagnostic -> diagnostic.getSource() != null
+				&& diagnostic.getSource().toUri().equals(source.toUri())
+				&& diagnostic.getStartPosition() >= start
+				&& diagnostic.getStartPosition() < end);
 	}
 
 	private void updateModificationCache(final CompilationRequest request) {
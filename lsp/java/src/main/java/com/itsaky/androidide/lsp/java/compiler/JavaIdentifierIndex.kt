@@ -0,0 +1,347 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.lsp.java.compiler
+
+import com.itsaky.androidide.projects.FileManager
+import com.itsaky.androidide.projects.api.ModuleProject
+import com.itsaky.androidide.projects.models.buildDir
+import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+
+/**
+ * An identifier index of the Java sources of a module: which files contain a given word, and
+ * which imports each file declares.
+ *
+ * [JavaCompilerService] uses it to find the candidate files for references and type declarations
+ * without reading every source file. A word is a maximal run of letters, digits, `_` and `$`, in
+ * code, comments and strings alike, so a lookup matches whatever the word search of
+ * [com.itsaky.androidide.projects.util.StringSearch] matched.
+ *
+ * The index is built lazily on the first lookup and kept up to date incrementally:
+ * - files reported through [markChanged] are re-read on the next lookup;
+ * - open documents are re-read when [FileManager] has newer contents for them;
+ * - at most every [rescanIntervalMs], a lookup checks the modification times of all sources
+ *   again, so that files changed outside the IDE (by a VCS checkout, a build, or another editor)
+ *   are re-read, and files added or deleted outside the IDE are added or removed.
+ *
+ * If a [storeFile] is given, the index is persisted there by [save] and reloaded in the next
+ * session, where only the files whose modification time changed are re-read.
+ *
+ * @param sources Provides the source files of the module.
+ * @param storeFile The file to persist the index to, or `null` to keep it in memory only.
+ * @param rescanIntervalMs The minimum time between two checks of all sources.
+ */
+class JavaIdentifierIndex @JvmOverloads constructor(
+  private val sources: () -> Collection<Path>,
+  private val storeFile: File?,
+  private val rescanIntervalMs: Long = DEFAULT_RESCAN_INTERVAL_MS,
+) {
+
+  companion object {
+
+    private val log = LoggerFactory.getLogger(JavaIdentifierIndex::class.java)
+
+    private const val MAGIC = 0x4a494458 // "JIDX"
+
+    /** Default minimum time between two checks of the modification times of all sources. */
+    const val DEFAULT_RESCAN_INTERVAL_MS = 5_000L
+    private const val VERSION = 1
+
+    private val IMPORT_CLASS = Regex("^import +([\\w.]+\\.\\w+);")
+    private val IMPORT_STAR = Regex("^import +([\\w.]+\\.\\*);")
+
+    /** Creates the index of the Java sources of [module], persisted in its build directory. */
+    @JvmStatic
+    fun forModule(module: ModuleProject): JavaIdentifierIndex {
+      return JavaIdentifierIndex(
+        sources = { module.compileJavaSourceClasses.allSources().map { it.file } },
+        storeFile = File(module.buildDir, "intermediates/androidide/java_identifier_index.bin")
+      )
+    }
+
+    private fun isWordChar(c: Char): Boolean =
+      Character.isAlphabetic(c.code) || Character.isDigit(c) || c == '_' || c == '$'
+
+    /**
+     * The distinct words of [text]. Words starting with a digit are skipped, as no identifier
+     * does.
+     */
+    internal fun words(text: CharSequence): Set<String> {
+      val words = HashSet<String>()
+      var start = -1
+      for (i in 0..text.length) {
+        if (i < text.length && isWordChar(text[i])) {
+          if (start < 0) start = i
+        } else if (start >= 0) {
+          if (!Character.isDigit(text[start])) {
+            words.add(text.substring(start, i))
+          }
+          start = -1
+        }
+      }
+      return words
+    }
+
+    /** The imports of [text], up to the first line that looks like a class declaration. */
+    internal fun imports(text: CharSequence): List<String> {
+      val imports = mutableListOf<String>()
+      for (line in text.lineSequence()) {
+        // If we reach a class declaration, stop looking for imports
+        if (line.contains("class")) {
+          break
+        }
+        (IMPORT_CLASS.matchEntire(line) ?: IMPORT_STAR.matchEntire(line))?.let {
+          imports.add(it.groupValues[1])
+        }
+      }
+      return imports
+    }
+  }
+
+  private class FileEntry(val modified: Long, val words: Array<String>, val imports: List<String>)
+
+  // Guarded by this
+  private val entries = HashMap<Path, FileEntry>()
+  private val postings = HashMap<String, HashSet<Path>>()
+  private val dirty = HashSet<Path>()
+  private var loaded = false
+  private var unsaved = false
+  private var lastScan = 0L
+
+  /**
+   * Marks [file] as created, modified or deleted. It is re-read, or removed from the index if it
+   * no longer exists, on the next lookup.
+   */
+  @Synchronized
+  fun markChanged(file: Path) {
+    dirty.add(file.normalize())
+  }
+
+  /**
+   * The files that contain [word]. A qualified name matches the files that contain each of its
+   * segments.
+   */
+  @Synchronized
+  fun filesContaining(word: String): List<Path> {
+    sync()
+    val segments = segments(word)
+    if (segments.isEmpty()) {
+      return entries.keys.toList()
+    }
+
+    // Drive the lookup with the rarest segment and check the others per file
+    val lists = segments.map { postings[it] ?: return emptyList() }.sortedBy { it.size }
+    return lists[0].filter { file -> lists.all { file in it } }
+  }
+
+  /**
+   * Whether [file] contains [word], with the same matching as [filesContaining]. A file that is
+   * not indexed yet is read and added to the index.
+   */
+  @Synchronized
+  fun containsWord(file: Path, word: String): Boolean {
+    sync()
+    val normalized = file.normalize()
+    entryOf(normalized) ?: return false
+    return segments(word).all { postings[it]?.contains(normalized) == true }
+  }
+
+  /** The imports declared by [file], as written (e.g. `java.util.List` or `java.util.*`). */
+  @Synchronized
+  fun imports(file: Path): List<String> {
+    sync()
+    return entryOf(file.normalize())?.imports ?: emptyList()
+  }
+
+  /** Writes the index to its store file, if it has one and has changed since it was loaded. */
+  @Synchronized
+  fun save() {
+    val store = storeFile ?: return
+    if (!loaded || !unsaved) {
+      return
+    }
+
+    try {
+      store.parentFile?.mkdirs()
+      val temp = File(store.parentFile, "${store.name}.tmp")
+      DataOutputStream(BufferedOutputStream(temp.outputStream())).use { out ->
+        out.writeInt(MAGIC)
+        out.writeInt(VERSION)
+        out.writeInt(entries.size)
+        for ((file, entry) in entries) {
+          out.writeUTF(file.toString())
+          out.writeLong(entry.modified)
+          out.writeInt(entry.imports.size)
+          entry.imports.forEach(out::writeUTF)
+          out.writeInt(entry.words.size)
+          entry.words.forEach(out::writeUTF)
+        }
+      }
+      Files.move(temp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE)
+      unsaved = false
+    } catch (err: Exception) {
+      log.warn("Unable to save Java identifier index to {}", store, err)
+    }
+  }
+
+  private fun segments(word: String): List<String> = word.split('.').filter { it.isNotEmpty() }
+
+  private fun entryOf(normalized: Path): FileEntry? =
+    entries[normalized] ?: indexFile(normalized)
+
+  /**
+   * Loads the index on first use, then brings the changed and open files up to date, and all
+   * sources when the last check of their modification times is older than [rescanIntervalMs].
+   */
+  private fun sync() {
+    if (!loaded) {
+      loaded = true
+      load()
+    } else if (System.currentTimeMillis() - lastScan >= rescanIntervalMs) {
+      scan()
+      save()
+    }
+
+    if (dirty.isNotEmpty()) {
+      for (file in dirty) {
+        if (Files.exists(file)) indexFile(file) else removeFile(file)
+      }
+      dirty.clear()
+    }
+
+    for (document in FileManager.activeDocuments) {
+      val file = document.file.normalize()
+      val entry = entries[file] ?: continue
+      if (entry.modified != document.modified.toEpochMilli()) {
+        indexFile(file)
+      }
+    }
+  }
+
+  /** Reads the store file, then re-reads the sources that were added or changed since. */
+  private fun load() {
+    readStore()
+    scan()
+    log.debug("Java identifier index of {} files, {} words", entries.size, postings.size)
+    save()
+  }
+
+  /**
+   * Re-reads the sources whose modification time differs from the indexed one, and removes the
+   * files that are no longer sources.
+   */
+  private fun scan() {
+    lastScan = System.currentTimeMillis()
+    val current = HashSet<Path>()
+    for (source in sources()) {
+      val file = source.normalize()
+      current.add(file)
+      val entry = entries[file]
+      if (entry == null || entry.modified != lastModified(file)) {
+        indexFile(file)
+      }
+    }
+
+    val removed = entries.keys.filter { it !in current }
+    removed.forEach(::removeFile)
+  }
+
+  private fun readStore() {
+    val store = storeFile ?: return
+    if (!store.isFile) {
+      return
+    }
+
+    try {
+      DataInputStream(BufferedInputStream(store.inputStream())).use { input ->
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+          log.info("Discarding Java identifier index with an unknown format: {}", store)
+          return
+        }
+        repeat(input.readInt()) {
+          val file = Paths.get(input.readUTF())
+          val modified = input.readLong()
+          val imports = List(input.readInt()) { input.readUTF() }
+          val words = Array(input.readInt()) { input.readUTF() }
+          addEntry(file, FileEntry(modified, words, imports))
+        }
+      }
+    } catch (err: Exception) {
+      log.warn("Unable to read Java identifier index from {}", store, err)
+      entries.clear()
+      postings.clear()
+    }
+  }
+
+  private fun lastModified(file: Path): Long {
+    return try {
+      FileManager.getLastModified(file).toEpochMilli()
+    } catch (err: Exception) {
+      -1
+    }
+  }
+
+  private fun indexFile(file: Path): FileEntry? {
+    val document = FileManager.getActiveDocument(file)
+    val modified: Long
+    val contents: CharSequence
+    try {
+      modified = document?.modified?.toEpochMilli() ?: Files.getLastModifiedTime(file).toMillis()
+      contents = document?.snapshot() ?: file.toFile().readText()
+    } catch (err: IOException) {
+      log.warn("Unable to index {}", file, err)
+      removeFile(file)
+      return null
+    }
+
+    removeFile(file)
+    val entry = FileEntry(modified, words(contents).toTypedArray(), imports(contents))
+    addEntry(file, entry)
+    unsaved = true
+    return entry
+  }
+
+  private fun addEntry(file: Path, entry: FileEntry) {
+    entries[file] = entry
+    for (word in entry.words) {
+      postings.getOrPut(word) { HashSet() }.add(file)
+    }
+  }
+
+  private fun removeFile(file: Path) {
+    val entry = entries.remove(file) ?: return
+    for (word in entry.words) {
+      val files = postings[word] ?: continue
+      files.remove(file)
+      if (files.isEmpty()) {
+        postings.remove(word)
+      }
+    }
+    unsaved = true
+  }
+}
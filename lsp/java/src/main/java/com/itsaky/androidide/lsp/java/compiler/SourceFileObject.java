@@ -54,6 +54,15 @@ public class SourceFileObject implements JavaFileObject {
     this.modified = modified;
   }
   
+  /**
+   * Replace the in-memory contents of this file. Used when a compilation of this file is updated
+   * in place, so that its compilation unit reports the contents it now reflects.
+   */
+  void updateContents(String contents, Instant modified) {
+    this.contents = contents;
+    this.modified = modified;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).add("path", this.path.toString()).toString();
@@ -126,7 +135,7 @@ public class SourceFileObject implements JavaFileObject {
     if (contents != null) {
       return contents;
     }
-    return FileManager.INSTANCE.getDocumentContents(this.path);
+    return FileManager.INSTANCE.getDocumentSnapshot(this.path);
   }
 
   @Override
@@ -49,6 +49,9 @@ enum class DiagnosticCode(val id: String) {
   /** A block with no statements i.e. an empty block */
   EMPTY_BLOCK("ide.java.empty.block"),
 
+  /** Reference to an API which is newer than the minimum SDK version of the module. */
+  NEW_API("NewApi"),
+
   // ------------ Compiler warnings and errors ------------
   UNCHECKED("compiler.warn.unchecked.call.mbr.of.raw.type"),
   DOES_NOT_OVERRIDE_ABSTRACT("compiler.err.does.not.override.abstract"),
@@ -19,11 +19,14 @@ package com.itsaky.androidide.lsp.java.providers
 import com.itsaky.androidide.lsp.java.compiler.CompileTask
 import com.itsaky.androidide.lsp.java.models.DiagnosticCode
 import com.itsaky.androidide.lsp.java.models.DiagnosticCode.EMPTY_BLOCK
+import com.itsaky.androidide.lsp.java.models.DiagnosticCode.NEW_API
 import com.itsaky.androidide.lsp.java.models.DiagnosticCode.UNUSED_THROWS
 import com.itsaky.androidide.lsp.java.visitors.DiagnosticVisitor
+import com.itsaky.androidide.lsp.java.visitors.NewApiVisitor
 import com.itsaky.androidide.lsp.models.DiagnosticItem
 import com.itsaky.androidide.lsp.models.DiagnosticSeverity
 import com.itsaky.androidide.lsp.models.DiagnosticSeverity.WARNING
+import com.itsaky.androidide.lsp.util.NewApiChecker
 import com.itsaky.androidide.models.Range
 import com.itsaky.androidide.progress.ProgressManager.Companion.abortIfCancelled
 import com.itsaky.androidide.projects.FileManager
@@ -86,9 +89,35 @@ object DiagnosticsProvider {
     abortIfCancelled()
     addDiagnosticsByVisiting(task, root, result)
     abortIfCancelled()
+    addNewApiDiagnostics(task, root, file!!, result)
+    abortIfCancelled()
     return result
   }
 
+  private fun addNewApiDiagnostics(
+    task: CompileTask,
+    root: CompilationUnitTree,
+    file: Path,
+    result: MutableList<DiagnosticItem>
+  ) {
+    val checker = NewApiChecker.forFile(file) ?: return
+    val usages = mutableListOf<NewApiVisitor.Usage>()
+    NewApiVisitor(task.task, checker).scan(root, usages)
+
+    val positions = Trees.instance(task.task).sourcePositions
+    for (usage in usages) {
+      val start = positions.getStartPosition(root, usage.path.leaf)
+      val end = positions.getEndPosition(root, usage.path.leaf)
+      if (start == -1L || end == -1L) {
+        continue
+      }
+
+      result.add(
+        asDiagnosticItem(WARNING, NEW_API.id, checker.message(usage.kind, usage.symbol, usage.api), start, end, root)
+      )
+    }
+  }
+
   private fun addDiagnosticsByVisiting(
     task: CompileTask,
     root: CompilationUnitTree,
@@ -186,7 +215,7 @@ object DiagnosticsProvider {
     }
 
     val file = Paths.get(root.sourceFile.toUri())
-    val contents = FileManager.getDocumentContents(file)
+    val contents = FileManager.getDocumentSnapshot(file)
     var name = unusedEl.simpleName
     if (name.contentEquals("<init>")) {
       name = unusedEl.enclosingElement.simpleName
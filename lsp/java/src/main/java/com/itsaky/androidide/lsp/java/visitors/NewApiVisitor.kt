@@ -0,0 +1,252 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.itsaky.androidide.lsp.java.visitors
+
+import com.itsaky.androidide.lsp.util.NewApiChecker
+import com.itsaky.androidide.lsp.util.NewApiChecker.SymbolKind
+import com.itsaky.androidide.progress.ProgressManager.Companion.abortIfCancelled
+import jdkx.lang.model.element.Element
+import jdkx.lang.model.element.ElementKind
+import jdkx.lang.model.element.ExecutableElement
+import jdkx.lang.model.element.TypeElement
+import jdkx.lang.model.element.VariableElement
+import jdkx.lang.model.type.ArrayType
+import jdkx.lang.model.type.DeclaredType
+import jdkx.lang.model.type.TypeMirror
+import openjdk.source.tree.BinaryTree
+import openjdk.source.tree.ClassTree
+import openjdk.source.tree.ExpressionTree
+import openjdk.source.tree.IdentifierTree
+import openjdk.source.tree.IfTree
+import openjdk.source.tree.ImportTree
+import openjdk.source.tree.LiteralTree
+import openjdk.source.tree.MemberSelectTree
+import openjdk.source.tree.MethodTree
+import openjdk.source.tree.NewClassTree
+import openjdk.source.tree.ParenthesizedTree
+import openjdk.source.tree.Tree
+import openjdk.source.tree.VariableTree
+import openjdk.source.util.TreePath
+import openjdk.source.util.TreePathScanner
+import openjdk.source.util.Trees
+import openjdk.tools.javac.api.JavacTaskImpl
+
+/**
+ * Finds references to platform APIs which are newer than the minimum SDK version of the module.
+ *
+ * References are not reported inside declarations annotated with `@RequiresApi` or `@TargetApi`
+ * and inside the body of `if (Build.VERSION.SDK_INT >= N)` checks, as long as they raise the API
+ * level high enough. Compile-time constants are not reported either, as they are inlined.
+ */
+class NewApiVisitor(task: JavacTaskImpl, private val checker: NewApiChecker) :
+  TreePathScanner<Unit?, MutableList<NewApiVisitor.Usage>>() {
+
+  /**
+   * A reference to a newer API.
+   *
+   * @property path The path to the referencing tree.
+   * @property kind The kind of the referenced symbol.
+   * @property symbol The display name of the referenced symbol.
+   * @property api The API level required by the referenced symbol.
+   */
+  data class Usage(val path: TreePath, val kind: SymbolKind, val symbol: String, val api: Int)
+
+  private val trees = Trees.instance(task)
+  private val elements = task.elements
+  private val types = task.types
+
+  /** The API level guaranteed at the current location. */
+  private var apiLevel = checker.minSdk
+
+  override fun visitImport(node: ImportTree?, p: MutableList<Usage>?): Unit? {
+    // imports are not usages
+    return null
+  }
+
+  override fun visitClass(node: ClassTree, p: MutableList<Usage>): Unit? {
+    return withDeclarationApi { super.visitClass(node, p) }
+  }
+
+  override fun visitMethod(node: MethodTree, p: MutableList<Usage>): Unit? {
+    return withDeclarationApi { super.visitMethod(node, p) }
+  }
+
+  override fun visitVariable(node: VariableTree, p: MutableList<Usage>): Unit? {
+    return withDeclarationApi { super.visitVariable(node, p) }
+  }
+
+  override fun visitIf(node: IfTree, p: MutableList<Usage>): Unit? {
+    val guarded = sdkIntCheck(node.condition)
+    if (guarded <= apiLevel) {
+      return super.visitIf(node, p)
+    }
+
+    scan(node.condition, p)
+    withApiLevel(guarded) { scan(node.thenStatement, p) }
+    scan(node.elseStatement, p)
+    return null
+  }
+
+  override fun visitIdentifier(node: IdentifierTree, p: MutableList<Usage>): Unit? {
+    check(p)
+    return super.visitIdentifier(node, p)
+  }
+
+  override fun visitMemberSelect(node: MemberSelectTree, p: MutableList<Usage>): Unit? {
+    check(p)
+    return super.visitMemberSelect(node, p)
+  }
+
+  override fun visitNewClass(node: NewClassTree, p: MutableList<Usage>): Unit? {
+    check(p)
+    return super.visitNewClass(node, p)
+  }
+
+  private fun check(usages: MutableList<Usage>) {
+    abortIfCancelled()
+    val element = trees.getElement(currentPath) ?: return
+    val kind: SymbolKind
+    val symbol: String
+    val api: Int
+    when (element.kind) {
+      ElementKind.CLASS,
+      ElementKind.INTERFACE,
+      ElementKind.ENUM,
+      ElementKind.ANNOTATION_TYPE -> {
+        if (currentPath.parentPath?.leaf is NewClassTree) {
+          // reported along with the constructor
+          return
+        }
+        kind = SymbolKind.CLASS
+        symbol = binaryName(element as TypeElement)
+        api = checker.checkClass(symbol)
+      }
+      ElementKind.FIELD,
+      ElementKind.ENUM_CONSTANT -> {
+        if ((element as VariableElement).constantValue != null) {
+          // constants are inlined by the compiler, e.g. Build.VERSION_CODES.TIRAMISU
+          return
+        }
+        val owner = element.enclosingElement as? TypeElement ?: return
+        val name = binaryName(owner)
+        kind = SymbolKind.FIELD
+        symbol = "$name#${element.simpleName}"
+        api = checker.checkField(name, element.simpleName.toString())
+      }
+      ElementKind.METHOD,
+      ElementKind.CONSTRUCTOR -> {
+        val method = element as ExecutableElement
+        val owner = method.enclosingElement as? TypeElement ?: return
+        val name = binaryName(owner)
+        val methodName =
+          if (method.kind == ElementKind.CONSTRUCTOR) "<init>" else method.simpleName.toString()
+        val params = method.parameters.map { typeName(it.asType()) }
+        kind = SymbolKind.METHOD
+        symbol = "$name#$methodName"
+        api = checker.checkMethod(name, methodName, params)
+      }
+      else -> return
+    }
+
+    if (api > apiLevel) {
+      usages.add(Usage(currentPath, kind, symbol, api))
+    }
+  }
+
+  private fun binaryName(type: TypeElement): String = elements.getBinaryName(type).toString()
+
+  private fun typeName(type: TypeMirror): String {
+    return when (val erased = types.erasure(type)) {
+      is ArrayType -> typeName(erased.componentType) + "[]"
+      is DeclaredType -> binaryName(erased.asElement() as TypeElement)
+      else -> erased.toString()
+    }
+  }
+
+  private inline fun withDeclarationApi(action: () -> Unit?): Unit? {
+    val element = trees.getElement(currentPath) ?: return action()
+    return withApiLevel(declaredApi(element)) { action() }
+  }
+
+  private inline fun withApiLevel(api: Int, action: () -> Unit?): Unit? {
+    val previous = apiLevel
+    apiLevel = maxOf(previous, api)
+    return try {
+      action()
+    } finally {
+      apiLevel = previous
+    }
+  }
+
+  /** The API level declared with `@RequiresApi` or `@TargetApi` on the given element. */
+  private fun declaredApi(element: Element): Int {
+    for (annotation in element.annotationMirrors) {
+      val name = annotation.annotationType.asElement().simpleName.toString()
+      if (name != "RequiresApi" && name != "TargetApi") {
+        continue
+      }
+
+      for ((key, value) in annotation.elementValues) {
+        val attr = key.simpleName.toString()
+        if ((attr == "value" || attr == "api") && value.value is Int) {
+          return value.value as Int
+        }
+      }
+    }
+    return -1
+  }
+
+  /**
+   * The API level guaranteed by the given `if` condition, if it is a check like
+   * `Build.VERSION.SDK_INT >= N` or `Build.VERSION.SDK_INT > N`.
+   */
+  private fun sdkIntCheck(condition: ExpressionTree): Int {
+    var tree: ExpressionTree = condition
+    while (tree is ParenthesizedTree) {
+      tree = tree.expression
+    }
+
+    if (tree !is BinaryTree || !isSdkInt(tree.leftOperand)) {
+      return -1
+    }
+
+    val value = constantValue(tree.rightOperand) ?: return -1
+    return when (tree.kind) {
+      Tree.Kind.GREATER_THAN_EQUAL -> value
+      Tree.Kind.GREATER_THAN -> value + 1
+      else -> -1
+    }
+  }
+
+  private fun isSdkInt(tree: ExpressionTree): Boolean {
+    return when (tree) {
+      is IdentifierTree -> tree.name.contentEquals("SDK_INT")
+      is MemberSelectTree -> tree.identifier.contentEquals("SDK_INT")
+      else -> false
+    }
+  }
+
+  private fun constantValue(tree: ExpressionTree): Int? {
+    if (tree is LiteralTree) {
+      return tree.value as? Int
+    }
+
+    val path = TreePath(currentPath, tree)
+    val element = trees.getElement(path) as? VariableElement ?: return null
+    return element.constantValue as? Int
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.lsp.java.compiler
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.javac.services.util.ReparserUtils
+import com.itsaky.androidide.lsp.java.JavaLSPTest
+import com.itsaky.androidide.lsp.java.compiler.IncrementalCompileStats.Fallback
+import com.itsaky.androidide.lsp.java.models.CompilationRequest
+import com.itsaky.androidide.lsp.java.models.PartialReparseRequest
+import openjdk.source.util.Trees
+import openjdk.tools.javac.tree.JCTree
+import openjdk.tools.javac.tree.JCTree.JCCompilationUnit
+import openjdk.tools.javac.tree.TreeScanner
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.time.Instant
+
+/**
+ * Checks that the method body reparse of [JavaCompilerService] produces the same trees, types,
+ * positions and diagnostics as a full recompilation.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class IncrementalCompileTest {
+
+  private lateinit var original: String
+
+  // Every compiled source gets a distinct modification time, as edits in the editor do
+  private var modified = Instant.now()
+
+  @Before
+  fun setup() {
+    JavaLSPTest.setup()
+    JavaLSPTest.openFile("partial/PartialReparserTest")
+    original = JavaLSPTest.contents.toString().replace("str.;", "str.trim();")
+  }
+
+  @Test
+  fun `edit inside a method body is reparsed`() {
+    assumeTrue("Partial reparse is not supported", ReparserUtils.canReparse())
+    val compiler = JavaLSPTest.getCompiler().copy()
+    val stats = compiler.incrementalStats
+
+    compile(compiler, original, original.indexOf("str.trim()"))
+
+    val edited = original.replace("str.trim();", "int length = str.length();\n    str.isEmpty();")
+    val reparsed = compile(compiler, edited, edited.indexOf("str.isEmpty()"))
+    assertThat(stats.reparsed).isEqualTo(1)
+    assertThat(stats.recompiled).isEqualTo(1)
+
+    // Without a partial request, the same contents are compiled from scratch
+    val recompiled = compile(compiler, edited, -1)
+    assertThat(stats.getFallbacks(Fallback.NOT_INCREMENTAL)).isEqualTo(1)
+    assertThat(reparsed).isEqualTo(recompiled)
+  }
+
+  @Test
+  fun `edit introducing an error reports the same diagnostics`() {
+    assumeTrue("Partial reparse is not supported", ReparserUtils.canReparse())
+    val compiler = JavaLSPTest.getCompiler().copy()
+
+    compile(compiler, original, original.indexOf("str.trim()"))
+
+    val edited = original.replace("str.trim();", "str.noSuchMethod();")
+    val reparsed = compile(compiler, edited, edited.indexOf("str.noSuchMethod()"))
+    assertThat(compiler.incrementalStats.reparsed).isEqualTo(1)
+    assertThat(reparsed.diagnostics).isNotEmpty()
+
+    assertThat(reparsed).isEqualTo(compile(compiler, edited, -1))
+  }
+
+  @Test
+  fun `unchanged contents reuse the cached compilation`() {
+    val compiler = JavaLSPTest.getCompiler().copy()
+    val cursor = original.indexOf("str.trim()")
+
+    val first = compile(compiler, original, cursor)
+    val second = compile(compiler, original, cursor)
+
+    assertThat(compiler.incrementalStats.reused).isEqualTo(1)
+    assertThat(second).isEqualTo(first)
+  }
+
+  @Test
+  fun `edit outside a method body is recompiled`() {
+    val compiler = JavaLSPTest.getCompiler().copy()
+    val stats = compiler.incrementalStats
+
+    compile(compiler, original, original.indexOf("str.trim()"))
+
+    val edited = original.replace("public static void main", "private int field;\n  public static void main")
+    compile(compiler, edited, edited.indexOf("str.trim()"))
+
+    assertThat(stats.reparsed).isEqualTo(0)
+    assertThat(stats.getFallbacks(Fallback.EDIT_OUTSIDE_METHOD_BODY)).isEqualTo(1)
+    assertThat(stats.hitRate).isEqualTo(0.0)
+  }
+
+  /** What a compilation produced for the test file, in a comparable form. */
+  private data class Snapshot(val trees: List<String>, val diagnostics: List<String>)
+
+  private fun compile(compiler: JavaCompilerService, contents: String, cursor: Int): Snapshot {
+    val source = SourceFileObject(JavaLSPTest.file!!, contents, modified.also { modified = it.plusMillis(1) })
+    val partialRequest = if (cursor < 0) null else PartialReparseRequest(cursor.toLong(), contents)
+    return compiler.compile(CompilationRequest(listOf(source), partialRequest)).get { task ->
+      val root = task.root() as JCCompilationUnit
+      val positions = Trees.instance(task.task).sourcePositions
+      val trees = mutableListOf<String>()
+      object : TreeScanner() {
+        override fun scan(tree: JCTree?) {
+          if (tree != null) {
+            val start = positions.getStartPosition(root, tree)
+            val end = positions.getEndPosition(root, tree)
+            trees.add("${tree.tag} [$start, $end) ${tree.type}: $tree")
+          }
+          super.scan(tree)
+        }
+      }.scan(root)
+
+      val diagnostics = task.diagnostics
+        .filter { it.source?.toUri() == root.sourceFile.toUri() }
+        .map { "${it.code} [${it.startPosition}, ${it.endPosition})" }
+        .sorted()
+
+      assertThat(root.sourceFile.getCharContent(true).toString()).isEqualTo(contents)
+      Snapshot(trees, diagnostics)
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.lsp.java.compiler
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class JavaIdentifierIndexTest {
+
+  @get:Rule
+  val temp = TemporaryFolder()
+
+  private val sources = mutableListOf<Path>()
+
+  private fun source(name: String, contents: String): Path {
+    val file = File(temp.root, "src/$name").apply {
+      parentFile!!.mkdirs()
+      writeText(contents)
+    }
+    return file.toPath().normalize().also { sources.add(it) }
+  }
+
+  private fun index(store: File? = null, rescanIntervalMs: Long = Long.MAX_VALUE) =
+    JavaIdentifierIndex({ sources.toList() }, store, rescanIntervalMs)
+
+  private fun Path.rewrite(contents: String) {
+    val modified = Files.getLastModifiedTime(this).toMillis()
+    toFile().writeText(contents)
+    toFile().setLastModified(modified + 10_000)
+  }
+
+  @Test
+  fun `words are maximal identifier runs`() {
+    val words = JavaIdentifierIndex.words("int a_b = foo$1(x.y); // 42 is not a word, 4g neither")
+    assertThat(words).containsExactly("int", "a_b", "foo$1", "x", "y", "is", "not", "a", "word", "neither")
+  }
+
+  @Test
+  fun `imports stop at the class declaration`() {
+    val imports = JavaIdentifierIndex.imports(
+      """
+      package com.example;
+      import java.util.List;
+      import java.io.*;
+      import static java.lang.Math.max;
+      public class Main {}
+      import java.util.Map;
+      """.trimIndent()
+    )
+    assertThat(imports).containsExactly("java.util.List", "java.io.*").inOrder()
+  }
+
+  @Test
+  fun `finds the files containing a word`() {
+    val main = source("Main.java", "package com.example;\nclass Main { void run() { Helper.help(); } }")
+    val helper = source("Helper.java", "package com.example;\nclass Helper { static void help() {} }")
+    source("Other.java", "package com.other;\nclass Other {}")
+    val index = index()
+
+    assertThat(index.filesContaining("help")).containsExactly(main, helper)
+    assertThat(index.filesContaining("run")).containsExactly(main)
+    assertThat(index.filesContaining("hel")).isEmpty()
+    assertThat(index.filesContaining("com.example")).containsExactly(main, helper)
+    assertThat(index.containsWord(helper, "Helper")).isTrue()
+    assertThat(index.containsWord(helper, "run")).isFalse()
+  }
+
+  @Test
+  fun `files marked as changed are reindexed`() {
+    val main = source("Main.java", "class Main { void run() {} }")
+    val index = index()
+    assertThat(index.filesContaining("run")).containsExactly(main)
+
+    // Not checked again until the rescan interval elapses
+    main.rewrite("class Main { void walk() {} }")
+    assertThat(index.filesContaining("run")).containsExactly(main)
+
+    index.markChanged(main)
+    assertThat(index.filesContaining("run")).isEmpty()
+    assertThat(index.filesContaining("walk")).containsExactly(main)
+
+    Files.delete(main)
+    index.markChanged(main)
+    assertThat(index.filesContaining("walk")).isEmpty()
+    assertThat(index.containsWord(main, "Main")).isFalse()
+  }
+
+  @Test
+  fun `files changed outside the IDE are reindexed on the next scan`() {
+    val main = source("Main.java", "class Main { void run() {} }")
+    val helper = source("Helper.java", "class Helper { void run() {} }")
+    val index = index(rescanIntervalMs = 0)
+    assertThat(index.filesContaining("run")).containsExactly(main, helper)
+
+    main.rewrite("class Main { void walk() {} }")
+    Files.delete(helper)
+    sources.remove(helper)
+    val added = source("Added.java", "class Added { void walk() {} }")
+
+    assertThat(index.filesContaining("run")).isEmpty()
+    assertThat(index.filesContaining("walk")).containsExactly(main, added)
+    assertThat(index.containsWord(helper, "Helper")).isFalse()
+  }
+
+  @Test
+  fun `index is restored from its store file`() {
+    val store = File(temp.root, "index.bin")
+    val main = source("Main.java", "import java.util.List;\nclass Main { List<String> names; }")
+    val removed = source("Removed.java", "class Removed {}")
+
+    index(store).apply {
+      assertThat(filesContaining("names")).containsExactly(main)
+      markChanged(main)
+      save()
+    }
+    assertThat(store.exists()).isTrue()
+
+    // Changes made while the index was not loaded are picked up from the sources
+    Files.delete(removed)
+    sources.remove(removed)
+    val added = source("Added.java", "class Added { String names; }")
+
+    index(store).apply {
+      assertThat(filesContaining("names")).containsExactly(main, added)
+      assertThat(filesContaining("Removed")).isEmpty()
+      assertThat(imports(main)).containsExactly("java.util.List")
+    }
+  }
+
+  @Test
+  fun `unreadable store file is rebuilt`() {
+    val store = File(temp.root, "index.bin").apply { writeText("not an index") }
+    val main = source("Main.java", "class Main {}")
+
+    assertThat(index(store).filesContaining("Main")).containsExactly(main)
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.lsp.java.visitors
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.lsp.java.JavaLSPTest
+import com.itsaky.androidide.lsp.util.NewApiChecker
+import com.itsaky.androidide.lsp.util.NewApiChecker.SymbolKind
+import com.itsaky.androidide.xml.versions.ApiVersions
+import com.itsaky.androidide.xml.versions.ClassInfo
+import com.itsaky.androidide.xml.versions.FieldInfo
+import com.itsaky.androidide.xml.versions.MethodInfo
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class NewApiVisitorTest {
+
+  private class Member(override val name: String, override val since: Int) : FieldInfo, MethodInfo {
+    override val simpleName = name
+    override val removed = -1
+    override val deprecated = -1
+  }
+
+  private class Class(override val name: String, private val members: List<Member>) : ClassInfo {
+    override val since = 1
+    override val removed = -1
+    override val deprecated = -1
+
+    override fun getField(name: String): FieldInfo? = members.find { it.name == name }
+
+    override fun getMethod(name: String, vararg params: String): MethodInfo? =
+      members.find { it.name == name }
+  }
+
+  private val versions =
+    object : ApiVersions {
+      private val classes =
+        listOf(
+            Class("android.view.View", listOf(Member("getZ", 21))),
+            // a constant, which must not be reported even though it is newer than minSdk
+            Class("android.os.Build\$VERSION_CODES", listOf(Member("LOLLIPOP", 21))),
+          )
+          .associateBy { it.name }
+
+      override fun getClass(name: String): ClassInfo? = classes[name]
+    }
+
+  @Before
+  fun setup() {
+    JavaLSPTest.setup()
+  }
+
+  @Test
+  fun `test guarded references and constants are not reported`() {
+    JavaLSPTest.apply {
+      openFile("diagnostics/NewApiTest")
+
+      val usages = mutableListOf<NewApiVisitor.Usage>()
+      getCompiler().compile(file!!).run { task ->
+        NewApiVisitor(task.task, NewApiChecker(versions, minSdk = 16)).scan(task.root(), usages)
+      }
+
+      // only the unguarded call
+      assertThat(usages.map { Triple(it.kind, it.symbol, it.api) })
+        .containsExactly(Triple(SymbolKind.METHOD, "android.view.View#getZ", 21))
+    }
+  }
+}
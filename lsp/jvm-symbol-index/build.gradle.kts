@@ -24,4 +24,7 @@ dependencies {
 
 	testImplementation(projects.testing.unit)
 	testImplementation(libs.tests.kotlinx.coroutines)
+
+	androidTestImplementation(projects.testing.android)
+	androidTestImplementation(libs.tests.kotlinx.coroutines)
 }
@@ -0,0 +1,149 @@
+package org.appdevforall.codeonthego.indexing.jvm
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import android.os.Bundle
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import kotlinx.coroutines.runBlocking
+import org.appdevforall.codeonthego.indexing.SQLiteIndex
+import org.junit.After
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.nio.file.Paths
+
+/**
+ * Measures the insert throughput of [SQLiteIndex] on the symbols of a real
+ * `android.jar`.
+ *
+ * The JAR is not bundled; pass its on-device path as an instrumentation
+ * argument, e.g.
+ * ```
+ * adb push android.jar /data/local/tmp/android.jar
+ * ./gradlew :lsp:jvm-symbol-index:connectedAndroidTest \
+ *     -Pandroid.testInstrumentationRunnerArguments.androidJar=/data/local/tmp/android.jar
+ * ```
+ *
+ * Results are logged under [TAG] and reported as instrumentation status,
+ * as rows per second for:
+ * - the former per-row `ContentValues` insert path (baseline),
+ * - [SQLiteIndex.insertAll] with its compiled statement,
+ * - [SQLiteIndex.insertAll] inside [SQLiteIndex.bulkLoad].
+ */
+@RunWith(AndroidJUnit4::class)
+class SQLiteIndexInsertBenchmark {
+
+	companion object {
+		private const val TAG = "SQLiteIndexBenchmark"
+		private const val ARG_ANDROID_JAR = "androidJar"
+		private const val DB_NAME = "sqlite_index_benchmark.db"
+		private const val BATCH_SIZE = 500
+	}
+
+	private val context = InstrumentationRegistry.getInstrumentation().targetContext
+	private lateinit var symbols: List<JvmSymbol>
+
+	@Before
+	fun setUp() {
+		val jarPath = InstrumentationRegistry.getArguments().getString(ARG_ANDROID_JAR)
+		assumeTrue(
+			"Pass the path of an android.jar as the '$ARG_ANDROID_JAR' instrumentation argument",
+			jarPath != null && File(jarPath).isFile,
+		)
+
+		context.deleteDatabase(DB_NAME)
+		symbols = CombinedJarScanner.scan(Paths.get(jarPath!!)).toList()
+	}
+
+	@After
+	fun tearDown() {
+		context.deleteDatabase(DB_NAME)
+	}
+
+	@Test
+	fun contentValuesInsert() {
+		// Create the schema, then insert the way SQLiteIndex used to
+		newIndex().close()
+		val db = SQLiteDatabase.openDatabase(
+			context.getDatabasePath(DB_NAME).path,
+			null,
+			SQLiteDatabase.OPEN_READWRITE,
+		)
+
+		db.use {
+			measure("contentValues") {
+				for (batch in symbols.chunked(BATCH_SIZE)) {
+					db.beginTransaction()
+					try {
+						for (symbol in batch) {
+							db.insertWithOnConflict(
+								JvmSymbolDescriptor.name,
+								null,
+								symbol.toContentValues(),
+								SQLiteDatabase.CONFLICT_REPLACE,
+							)
+						}
+						db.setTransactionSuccessful()
+					} finally {
+						db.endTransaction()
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	fun preparedStatementInsert() {
+		newIndex().use { index ->
+			measure("preparedStatement") {
+				runBlocking { index.insertAll(symbols.asSequence()) }
+			}
+		}
+	}
+
+	@Test
+	fun bulkLoadInsert() {
+		newIndex().use { index ->
+			measure("bulkLoad") {
+				runBlocking { index.bulkLoad { index.insertAll(symbols.asSequence()) } }
+			}
+		}
+	}
+
+	private fun newIndex() = SQLiteIndex(
+		descriptor = JvmSymbolDescriptor,
+		context = context,
+		dbName = DB_NAME,
+		batchSize = BATCH_SIZE,
+	)
+
+	private inline fun measure(label: String, block: () -> Unit) {
+		val start = System.nanoTime()
+		block()
+		val millis = (System.nanoTime() - start) / 1_000_000.0
+		val rowsPerSecond = symbols.size * 1000.0 / millis
+
+		val result = "%s: %d rows in %.0f ms (%.0f rows/s)".format(label, symbols.size, millis, rowsPerSecond)
+		Log.i(TAG, result)
+		InstrumentationRegistry.getInstrumentation().sendStatus(0, Bundle().apply {
+			putString(label, result)
+		})
+	}
+
+	private fun JvmSymbol.toContentValues() = ContentValues().apply {
+		put("_key", key)
+		put("_source_id", sourceId)
+		put("_schema_version", JvmSymbolDescriptor.schemaVersion)
+		for ((field, value) in JvmSymbolDescriptor.fieldValues(this@toContentValues)) {
+			put("f_$field", value)
+			if (JvmSymbolDescriptor.fields.first { it.name == field }.prefixSearchable) {
+				put("f_${field}_lower", value?.lowercase())
+			}
+		}
+		put("_payload", JvmSymbolDescriptor.serialize(this@toContentValues))
+	}
+}
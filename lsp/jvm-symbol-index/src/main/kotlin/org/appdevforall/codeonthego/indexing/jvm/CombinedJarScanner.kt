@@ -25,16 +25,10 @@ object CombinedJarScanner {
 	fun scan(rootVf: VirtualFile, sourceId: String = rootVf.path): Sequence<JvmSymbol> = sequence {
 		val allFiles = LibraryUtils.getAllVirtualFilesFromRoot(rootVf, includeRoot = true)
 		for (vf in allFiles) {
-			if (!vf.name.endsWith(".class")) continue
-			if (vf.name == "module-info.class" || vf.name == "package-info.class") continue
+			if (!isIndexableClass(vf.name)) continue
 			try {
 				val bytes = vf.contentsToByteArray()
-				val symbols = if (hasKotlinMetadata(bytes)) {
-					KotlinMetadataScanner.parseKotlinClass(bytes.inputStream(), sourceId)
-				} else {
-					JarSymbolScanner.parseClassFile(bytes.inputStream(), sourceId)
-				}
-				symbols?.forEach { yield(it) }
+				parseClass(bytes, sourceId)?.forEach { yield(it) }
 			} catch (e: Exception) {
 				log.debug("Failed to parse {}: {}", vf.path, e.message)
 			}
@@ -53,8 +47,7 @@ object CombinedJarScanner {
 			val entries = jar.entries()
 			while (entries.hasMoreElements()) {
 				val entry = entries.nextElement()
-				if (!entry.name.endsWith(".class")) continue
-				if (entry.name == "module-info.class" || entry.name == "package-info.class") continue
+				if (!isIndexableClass(entry.name)) continue
 
 				try {
 					val bytes = jar.getInputStream(entry).use { input ->
@@ -63,13 +56,7 @@ object CombinedJarScanner {
 						buf.toByteArray()
 					}
 
-					val symbols = if (hasKotlinMetadata(bytes)) {
-						KotlinMetadataScanner.parseKotlinClass(bytes.inputStream(), sourceId)
-					} else {
-						JarSymbolScanner.parseClassFile(bytes.inputStream(), sourceId)
-					}
-
-					symbols?.forEach { yield(it) }
+					parseClass(bytes, sourceId)?.forEach { yield(it) }
 				} catch (e: Exception) {
 					log.debug("Failed to parse {}: {}", entry.name, e.message)
 				}
@@ -77,6 +64,25 @@ object CombinedJarScanner {
 		}
 	}
 
+	/**
+	 * Whether the JAR entry (or file) [name] is a class file that should be indexed.
+	 */
+	internal fun isIndexableClass(name: String): Boolean {
+		if (!name.endsWith(".class")) return false
+		val fileName = name.substringAfterLast('/')
+		return fileName != "module-info.class" && fileName != "package-info.class"
+	}
+
+	/**
+	 * Parse a single class file with the scanner appropriate for it.
+	 */
+	internal fun parseClass(bytes: ByteArray, sourceId: String): List<JvmSymbol>? =
+		if (hasKotlinMetadata(bytes)) {
+			KotlinMetadataScanner.parseKotlinClass(bytes.inputStream(), sourceId)
+		} else {
+			JarSymbolScanner.parseClassFile(bytes.inputStream(), sourceId)
+		}
+
 	private fun hasKotlinMetadata(classBytes: ByteArray): Boolean {
 		var found = false
 		try {
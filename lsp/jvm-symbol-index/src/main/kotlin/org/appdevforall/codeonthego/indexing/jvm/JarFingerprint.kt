@@ -0,0 +1,139 @@
+package org.appdevforall.codeonthego.indexing.jvm
+
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+
+/**
+ * A cheap content fingerprint of a JAR/AAR file.
+ *
+ * [size] and [lastModified] are used as a fast "unchanged" check. The
+ * [hash] identifies the content: it is a digest of the ZIP central
+ * directory, which records the name, size and CRC-32 of every entry, so
+ * any change to any class changes the hash while reading only the tail of
+ * the archive. Two copies of the same library at different paths share the
+ * same [hash].
+ *
+ * @param size File size in bytes.
+ * @param lastModified File modification time in milliseconds.
+ * @param hash Hex digest of the archive's central directory (or of sampled
+ *             blocks, for files without a readable central directory).
+ */
+data class JarFingerprint(
+	val size: Long,
+	val lastModified: Long,
+	val hash: String,
+) {
+
+	/**
+	 * Whether [size] and [lastModified] still match the file at [path],
+	 * i.e. whether [hash] can be reused without re-reading the file.
+	 */
+	fun isUpToDate(path: Path): Boolean =
+		try {
+			Files.size(path) == size && Files.getLastModifiedTime(path).toMillis() == lastModified
+		} catch (_: IOException) {
+			false
+		}
+
+	companion object {
+		private val log = LoggerFactory.getLogger(JarFingerprint::class.java)
+
+		private const val EOCD_SIGNATURE = 0x06054b50
+		private const val EOCD_MIN_SIZE = 22
+		private const val EOCD_MAX_COMMENT = 0xFFFF
+
+		/** Size of each block hashed when the central directory cannot be read. */
+		private const val SAMPLE_BLOCK_SIZE = 64 * 1024
+
+		/** Upper bound on the central directory size we are willing to hash. */
+		private const val MAX_CENTRAL_DIRECTORY_SIZE = 64 * 1024 * 1024
+
+		/**
+		 * Compute the fingerprint of the file at [path].
+		 *
+		 * @throws IOException If the file cannot be read.
+		 */
+		fun compute(path: Path): JarFingerprint {
+			val size = Files.size(path)
+			val lastModified = Files.getLastModifiedTime(path).toMillis()
+			val digest = MessageDigest.getInstance("SHA-256")
+
+			FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+				if (!digestCentralDirectory(channel, size, digest)) {
+					log.debug("No central directory found in {}, sampling content", path)
+					digest.reset()
+					digestSamples(channel, size, digest)
+				}
+			}
+
+			digest.update(ByteBuffer.allocate(Long.SIZE_BYTES).putLong(0, size))
+			return JarFingerprint(size, lastModified, digest.digest().toHex())
+		}
+
+		/**
+		 * Locate the end-of-central-directory record and feed the central
+		 * directory into [digest]. Returns `false` if the archive has no
+		 * readable central directory.
+		 */
+		private fun digestCentralDirectory(
+			channel: FileChannel,
+			size: Long,
+			digest: MessageDigest,
+		): Boolean {
+			if (size < EOCD_MIN_SIZE) return false
+
+			val tailSize = minOf(size, (EOCD_MIN_SIZE + EOCD_MAX_COMMENT).toLong()).toInt()
+			val tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN)
+			readFully(channel, tail, size - tailSize)
+
+			var eocd = tailSize - EOCD_MIN_SIZE
+			while (eocd >= 0 && tail.getInt(eocd) != EOCD_SIGNATURE) {
+				eocd--
+			}
+			if (eocd < 0) return false
+
+			val cdSize = tail.getInt(eocd + 12).toLong() and 0xFFFFFFFFL
+			val cdOffset = tail.getInt(eocd + 16).toLong() and 0xFFFFFFFFL
+			if (cdSize == 0L || cdSize > MAX_CENTRAL_DIRECTORY_SIZE || cdOffset + cdSize > size) {
+				// Empty archive, ZIP64 (offsets are 0xFFFFFFFF) or a corrupt record
+				return false
+			}
+
+			val cd = ByteBuffer.allocate(cdSize.toInt())
+			readFully(channel, cd, cdOffset)
+			digest.update(cd)
+			return true
+		}
+
+		/** Hash the first, middle and last [SAMPLE_BLOCK_SIZE] bytes of the file. */
+		private fun digestSamples(channel: FileChannel, size: Long, digest: MessageDigest) {
+			val block = minOf(size, SAMPLE_BLOCK_SIZE.toLong()).toInt()
+			if (block == 0) return
+			val buffer = ByteBuffer.allocate(block)
+			for (offset in longArrayOf(0L, (size - block) / 2, size - block)) {
+				buffer.clear()
+				readFully(channel, buffer, offset)
+				digest.update(buffer)
+			}
+		}
+
+		private fun readFully(channel: FileChannel, buffer: ByteBuffer, position: Long) {
+			var pos = position
+			while (buffer.hasRemaining()) {
+				val read = channel.read(buffer, pos)
+				if (read < 0) throw IOException("Unexpected end of file at $pos")
+				pos += read
+			}
+			buffer.flip()
+		}
+
+		private fun ByteArray.toHex(): String = joinToString("") { "%02x".format(it) }
+	}
+}
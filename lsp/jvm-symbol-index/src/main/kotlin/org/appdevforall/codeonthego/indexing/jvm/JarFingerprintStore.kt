@@ -0,0 +1,118 @@
+package org.appdevforall.codeonthego.indexing.jvm
+
+import android.database.Cursor
+import org.appdevforall.codeonthego.indexing.SQLiteIndex
+
+/**
+ * Side table recording the [JarFingerprint] of every library path known
+ * to a [JvmSymbolIndex], and whether that path currently owns the indexed
+ * symbols for its content.
+ *
+ * ```
+ * CREATE TABLE IF NOT EXISTS jar_fingerprints (
+ *     path TEXT PRIMARY KEY,
+ *     size INTEGER NOT NULL,
+ *     last_modified INTEGER NOT NULL,
+ *     hash TEXT NOT NULL,
+ *     indexed INTEGER NOT NULL  -- 1 if the index holds symbols with sourceId = path
+ * );
+ * ```
+ *
+ * The table is a side table of the [SQLiteIndex] holding the symbols, created
+ * from [SIDE_TABLES]. It goes through the connection of that index, so the
+ * fingerprints and the symbols they describe live in the same database file
+ * and are deleted together, and writes to both are serialized.
+ *
+ * [get] and [findIndexedPath] perform blocking database I/O; call them off
+ * the main thread.
+ *
+ * @param index The index holding the symbols, opened with [SIDE_TABLES].
+ */
+class JarFingerprintStore(
+	private val index: SQLiteIndex<*>,
+) {
+
+	companion object {
+		private const val TABLE = "jar_fingerprints"
+
+		/** The statements creating the table, for the `sideTables` of the [SQLiteIndex]. */
+		val SIDE_TABLES = listOf(
+			"""
+			CREATE TABLE IF NOT EXISTS $TABLE (
+				path TEXT PRIMARY KEY,
+				size INTEGER NOT NULL,
+				last_modified INTEGER NOT NULL,
+				hash TEXT NOT NULL,
+				indexed INTEGER NOT NULL
+			)
+			""".trimIndent(),
+			"CREATE INDEX IF NOT EXISTS idx_${TABLE}_hash ON $TABLE(hash)",
+		)
+	}
+
+	/**
+	 * A stored fingerprint.
+	 *
+	 * @param path The library path.
+	 * @param fingerprint The fingerprint recorded for [path].
+	 * @param indexed Whether the symbol index holds rows with `sourceId == path`
+	 *                for this fingerprint's content.
+	 */
+	data class Record(
+		val path: String,
+		val fingerprint: JarFingerprint,
+		val indexed: Boolean,
+	)
+
+	/**
+	 * Get the record for [path], or `null` if the path has never been seen.
+	 */
+	fun get(path: String): Record? =
+		index.readSideTables(null) { db ->
+			db.query(
+				"SELECT path, size, last_modified, hash, indexed FROM $TABLE WHERE path = ?",
+				arrayOf(path),
+			).use { if (it.moveToFirst()) it.toRecord() else null }
+		}
+
+	/**
+	 * Find the path whose indexed symbols have the content identified by
+	 * [hash], preferring one of [preferred]. Returns `null` if no path with
+	 * that content has been indexed.
+	 */
+	fun findIndexedPath(hash: String, preferred: Set<String> = emptySet()): String? {
+		val paths = index.readSideTables(emptyList()) { db ->
+			db.query(
+				"SELECT path FROM $TABLE WHERE hash = ? AND indexed = 1",
+				arrayOf(hash),
+			).use { cursor ->
+				buildList {
+					while (cursor.moveToNext()) add(cursor.getString(0))
+				}
+			}
+		}
+		return paths.firstOrNull { it in preferred } ?: paths.firstOrNull()
+	}
+
+	/**
+	 * Insert or replace the record for [path].
+	 */
+	suspend fun put(path: String, fingerprint: JarFingerprint, indexed: Boolean) {
+		index.writeSideTables { db ->
+			db.execSQL(
+				"INSERT OR REPLACE INTO $TABLE (path, size, last_modified, hash, indexed) VALUES (?, ?, ?, ?, ?)",
+				arrayOf(path, fingerprint.size, fingerprint.lastModified, fingerprint.hash, if (indexed) 1 else 0),
+			)
+		}
+	}
+
+	private fun Cursor.toRecord() = Record(
+		path = getString(0),
+		fingerprint = JarFingerprint(
+			size = getLong(1),
+			lastModified = getLong(2),
+			hash = getString(3),
+		),
+		indexed = getInt(4) != 0,
+	)
+}
@@ -0,0 +1,283 @@
+package org.appdevforall.codeonthego.indexing.jvm
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import org.appdevforall.codeonthego.indexing.api.WritableIndex
+import org.appdevforall.codeonthego.indexing.util.IndexingEvent
+import org.appdevforall.codeonthego.indexing.util.IndexingProgressListener
+import org.slf4j.LoggerFactory
+import java.nio.file.Path
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+/**
+ * Throughput counters of a [JarIndexingPipeline] run.
+ *
+ * @param jars Number of JARs fully indexed.
+ * @param entries Number of class entries parsed.
+ * @param symbols Number of symbols written to the index.
+ * @param parseNanos Time spent reading and parsing class files, summed over all parser workers.
+ * @param writeNanos Time spent by the writer inside the index.
+ * @param wallNanos Elapsed time since the run started.
+ */
+data class JarIndexingStats(
+	val jars: Int,
+	val entries: Long,
+	val symbols: Long,
+	val parseNanos: Long,
+	val writeNanos: Long,
+	val wallNanos: Long,
+) {
+
+	/** Class entries processed per second of wall time. */
+	val entriesPerSecond: Double
+		get() = if (wallNanos == 0L) 0.0 else entries * 1_000_000_000.0 / wallNanos
+
+	override fun toString(): String =
+		"%d jars, %d entries, %d symbols in %d ms (%.0f entries/s, parse %d ms, write %d ms)".format(
+			jars, entries, symbols, wallNanos / 1_000_000, entriesPerSecond,
+			parseNanos / 1_000_000, writeNanos / 1_000_000,
+		)
+}
+
+/**
+ * Callback for [JarIndexingStats] updates. Called from the writer
+ * coroutine after every flush.
+ */
+fun interface JarIndexingStatsListener {
+	fun onStats(stats: JarIndexingStats)
+}
+
+/**
+ * Indexes many JARs at once with a parse/write pipeline.
+ *
+ * ```
+ * enumerator ──units──▶ [parserCount parsers] ──symbols──▶ writer ──▶ index
+ * ```
+ *
+ * - The enumerator opens each JAR as a [ZipFile] (which only reads the
+ *   central directory; on Android it is memory-mapped by the native zip
+ *   reader) and splits its class entries into units of [unitSize] entries,
+ *   so a single large JAR such as `android.jar` is parsed by every worker.
+ * - [parserCount] workers read and parse units concurrently.
+ * - A single writer drains the bounded result channel and writes symbols
+ *   in batches of [writeBatchSize], so writes never contend for the
+ *   database and parsers are throttled when the writer falls behind.
+ *
+ * The stale entries of a source are removed right before its first batch is
+ * written. Per-source events are reported through [progressListener] and
+ * throughput through [statsListener].
+ *
+ * @param index The index to write to.
+ * @param parserCount Number of concurrent parser workers.
+ * @param unitSize Number of class entries per work unit.
+ * @param writeBatchSize Number of symbols per [WritableIndex.insertAll] call.
+ * @param channelCapacity Number of parsed units buffered ahead of the writer.
+ */
+class JarIndexingPipeline(
+	private val index: WritableIndex<JvmSymbol>,
+	private val parserCount: Int = Runtime.getRuntime().availableProcessors().coerceIn(2, 4),
+	private val unitSize: Int = 128,
+	private val writeBatchSize: Int = 4000,
+	private val channelCapacity: Int = parserCount * 4,
+) {
+
+	companion object {
+		private val log = LoggerFactory.getLogger(JarIndexingPipeline::class.java)
+	}
+
+	var progressListener: IndexingProgressListener? = null
+	var statsListener: JarIndexingStatsListener? = null
+
+	/** An open JAR, closed when its last unit has been parsed. */
+	private class OpenJar(val sourceId: String, val zip: ZipFile, units: Int) {
+		private val remaining = AtomicInteger(units)
+
+		fun unitDone() {
+			if (remaining.decrementAndGet() == 0) zip.close()
+		}
+	}
+
+	private class WorkUnit(val jar: OpenJar, val entries: List<ZipEntry>)
+
+	private sealed interface Message {
+		val sourceId: String
+
+		class Started(override val sourceId: String, val units: Int) : Message
+		class Parsed(override val sourceId: String, val symbols: List<JvmSymbol>, val entries: Int) : Message
+		class Failed(override val sourceId: String, val error: Throwable) : Message
+	}
+
+	/**
+	 * Index every JAR in [jars] (source id → JAR path), replacing any
+	 * existing entries of those sources.
+	 *
+	 * Suspends until all JARs have been written. Cancelling the caller
+	 * cancels the pipeline and closes all open JARs.
+	 *
+	 * @param onSourceIndexed Called by the writer after the last batch of a source is written.
+	 * @return The final throughput counters.
+	 */
+	suspend fun index(
+		jars: Map<String, Path>,
+		onSourceIndexed: suspend (sourceId: String) -> Unit = {},
+	): JarIndexingStats = coroutineScope {
+		val startNanos = System.nanoTime()
+		val parseNanos = AtomicLong()
+		val openJars = mutableListOf<OpenJar>()
+
+		val work = Channel<WorkUnit>(channelCapacity)
+		val results = Channel<Message>(channelCapacity)
+
+		val enumerator = launch(Dispatchers.IO) {
+			try {
+				for ((sourceId, jarPath) in jars) {
+					val zip = try {
+						ZipFile(jarPath.toFile())
+					} catch (e: Exception) {
+						log.warn("Failed to open JAR: {}", jarPath, e)
+						results.send(Message.Failed(sourceId, e))
+						continue
+					}
+
+					val units = zip.entries().asSequence()
+						.filter { CombinedJarScanner.isIndexableClass(it.name) }
+						.chunked(unitSize)
+						.toList()
+
+					val jar = OpenJar(sourceId, zip, units.size)
+					synchronized(openJars) { openJars.add(jar) }
+					if (units.isEmpty()) zip.close()
+
+					// Started must precede the source's results on the channel
+					results.send(Message.Started(sourceId, units.size))
+					for (entries in units) {
+						work.send(WorkUnit(jar, entries))
+					}
+				}
+			} finally {
+				work.close()
+			}
+		}
+
+		val parsers = List(parserCount) {
+			launch(Dispatchers.Default) {
+				for (unit in work) {
+					val start = System.nanoTime()
+					val symbols = ArrayList<JvmSymbol>(unit.entries.size * 8)
+					try {
+						for (entry in unit.entries) {
+							try {
+								val bytes = unit.jar.zip.getInputStream(entry).use { it.readBytes() }
+								CombinedJarScanner.parseClass(bytes, unit.jar.sourceId)?.let(symbols::addAll)
+							} catch (e: CancellationException) {
+								throw e
+							} catch (e: Exception) {
+								log.debug("Failed to parse {}: {}", entry.name, e.message)
+							}
+						}
+					} finally {
+						unit.jar.unitDone()
+					}
+					parseNanos.addAndGet(System.nanoTime() - start)
+					results.send(Message.Parsed(unit.jar.sourceId, symbols, unit.entries.size))
+				}
+			}
+		}
+
+		launch {
+			enumerator.join()
+			parsers.joinAll()
+			results.close()
+		}
+
+		var jarCount = 0
+		var entryCount = 0L
+		var symbolCount = 0L
+		var writeNanos = 0L
+
+		fun stats() = JarIndexingStats(
+			jars = jarCount,
+			entries = entryCount,
+			symbols = symbolCount,
+			parseNanos = parseNanos.get(),
+			writeNanos = writeNanos,
+			wallNanos = System.nanoTime() - startNanos,
+		)
+
+		val remainingUnits = mutableMapOf<String, Int>()
+		val processed = mutableMapOf<String, Int>()
+		val pending = ArrayList<JvmSymbol>(writeBatchSize)
+
+		suspend fun flush() {
+			if (pending.isEmpty()) return
+			val start = System.nanoTime()
+			index.insertAll(pending.asSequence())
+			writeNanos += System.nanoTime() - start
+			symbolCount += pending.size
+			pending.clear()
+			statsListener?.onStats(stats())
+		}
+
+		suspend fun complete(sourceId: String) {
+			flush()
+			jarCount++
+			remainingUnits.remove(sourceId)
+			val total = processed.remove(sourceId) ?: 0
+			progressListener?.onProgress(sourceId, IndexingEvent.Completed(total))
+			onSourceIndexed(sourceId)
+		}
+
+		try {
+			withContext(Dispatchers.IO) {
+				for (message in results) {
+					when (message) {
+						is Message.Started -> {
+							val start = System.nanoTime()
+							index.removeBySource(message.sourceId)
+							writeNanos += System.nanoTime() - start
+							progressListener?.onProgress(message.sourceId, IndexingEvent.Started)
+							if (message.units == 0) {
+								complete(message.sourceId)
+							} else {
+								remainingUnits[message.sourceId] = message.units
+							}
+						}
+
+						is Message.Parsed -> {
+							entryCount += message.entries
+							pending.addAll(message.symbols)
+							val count = processed.merge(message.sourceId, message.symbols.size, Int::plus)!!
+							progressListener?.onProgress(message.sourceId, IndexingEvent.Progress(count))
+
+							val left = remainingUnits.merge(message.sourceId, -1, Int::plus)!!
+							if (left == 0) {
+								complete(message.sourceId)
+							} else if (pending.size >= writeBatchSize) {
+								flush()
+							}
+						}
+
+						is Message.Failed -> {
+							progressListener?.onProgress(message.sourceId, IndexingEvent.Failed(message.error))
+						}
+					}
+				}
+				flush()
+			}
+		} finally {
+			synchronized(openJars) {
+				openJars.forEach { runCatching { it.zip.close() } }
+			}
+		}
+
+		stats().also { log.info("Indexed {}", it) }
+	}
+}
@@ -107,18 +107,14 @@ class JvmGeneratedIndexingService(
 		// Make exactly these JARs visible; remove stale ones from scope.
 		index.setActiveSources(generatedJars)
 
-		var submitted = 0
-		for (jarPath in generatedJars) {
-			if (forceReindex || !index.isCached(jarPath)) {
-				submitted++
-				index.indexSource(jarPath, skipIfExists = false) { sourceId ->
-					CombinedJarScanner.scan(Paths.get(jarPath), sourceId)
-				}
-			}
-		}
-
-		if (submitted > 0) {
-			log.info("{} generated JARs submitted for background indexing (force={})", submitted, forceReindex)
+		val toIndex = generatedJars
+			.filter { jarPath -> forceReindex || !index.isCached(jarPath) }
+			.associateWith { jarPath -> Paths.get(jarPath) }
+
+		if (toIndex.isNotEmpty()) {
+			log.info("Indexing {} generated JARs (force={})", toIndex.size, forceReindex)
+			val stats = index.indexJars(toIndex)
+			log.info("Generated JAR indexing finished: {}", stats)
 		} else {
 			log.info("All generated JARs already cached, nothing to index")
 		}
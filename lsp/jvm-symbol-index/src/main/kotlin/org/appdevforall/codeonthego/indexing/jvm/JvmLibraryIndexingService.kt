@@ -8,15 +8,21 @@ import com.itsaky.androidide.projects.models.bootClassPaths
 import com.itsaky.androidide.tasks.cancelIfActive
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancelAndJoin
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
+import org.appdevforall.codeonthego.indexing.SQLiteIndex
 import org.appdevforall.codeonthego.indexing.service.IndexKey
 import org.appdevforall.codeonthego.indexing.service.IndexRegistry
 import org.appdevforall.codeonthego.indexing.service.IndexingService
+import org.appdevforall.codeonthego.indexing.util.BackgroundIndexer
 import org.greenrobot.eventbus.Subscribe
 import org.greenrobot.eventbus.ThreadMode
 import org.slf4j.LoggerFactory
+import java.io.IOException
 import java.nio.file.Path
 import java.nio.file.Paths
 import kotlin.io.path.extension
@@ -33,6 +39,13 @@ val JVM_LIBRARY_SYMBOL_INDEX = IndexKey<JvmSymbolIndex>("jvm-library-symbols")
  * [IndexingService] that scans classpath JARs/AARs and builds
  * a [JvmSymbolIndex].
  *
+ * Libraries are tracked by content, not only by path: each JAR's
+ * [JarFingerprint] is recorded in a [JarFingerprintStore]. A JAR that was
+ * replaced in place is re-indexed, and a JAR whose content is already
+ * indexed under another path (the same AAR used by another project, or
+ * copied into another transforms directory) reuses those symbols instead
+ * of being scanned again.
+ *
  * Thread safety: all methods are called from the
  * [IndexingServiceManager][org.appdevforall.codeonthego.indexing.service.IndexingServiceManager]'s
  * coroutine scope. The [JvmSymbolIndex] handles its own internal thread safety.
@@ -51,17 +64,25 @@ class JvmLibraryIndexingService(
 	override val providedKeys = listOf(JVM_LIBRARY_SYMBOL_INDEX)
 
 	private var libraryIndex: JvmSymbolIndex? = null
+	private var fingerprints: JarFingerprintStore? = null
+	private var pipelineJob: Job? = null
 	private var indexingMutex = Mutex()
 	private val coroutineScope = CoroutineScope(Dispatchers.Default)
 
 	override suspend fun initialize(registry: IndexRegistry) {
-		val jvmIndex = JvmSymbolIndex.createSqliteIndex(
+		// The fingerprints are a side table of the symbol index, so that both
+		// share one connection to the database
+		val cache = SQLiteIndex(
+			descriptor = JvmSymbolDescriptor,
 			context = context,
 			dbName = JvmSymbolIndex.DB_NAME_DEFAULT,
-			indexName = JvmSymbolIndex.INDEX_NAME_LIBRARY
+			name = JvmSymbolIndex.INDEX_NAME_LIBRARY,
+			sideTables = JarFingerprintStore.SIDE_TABLES,
 		)
+		val jvmIndex = JvmSymbolIndex(cache, BackgroundIndexer(cache))
 
 		this.libraryIndex = jvmIndex
+		this.fingerprints = JarFingerprintStore(cache)
 		registry.register(JVM_LIBRARY_SYMBOL_INDEX, jvmIndex)
 		log.info("JVM symbol index initialized")
 	}
@@ -111,37 +132,155 @@ class JvmLibraryIndexingService(
 
 		log.info("{} JARs on classpath", currentJars.size)
 
-		// Step 1: Set the active set - this is instant.
+		val fingerprints = this.fingerprints ?: return
+		val toIndex = mutableMapOf<String, JarFingerprint>()
+		// Active source id -> the classpath paths it serves
+		val activeSources = mutableMapOf<String, MutableSet<String>>()
+
+		// Step 1: Resolve which indexed source serves each JAR. This only
+		// stats unchanged JARs, and reads the central directory of JARs
+		// that are new or were modified.
+		withContext(Dispatchers.IO) {
+			for (jarPath in currentJars) {
+				val source = resolveSource(index, fingerprints, jarPath, currentJars)
+				when (source) {
+					is LibrarySource.Indexed -> activeSources.serve(source.sourceId, jarPath)
+					is LibrarySource.NeedsIndexing -> {
+						// Identical new JARs at several paths are scanned once
+						val pending = toIndex.entries
+							.firstOrNull { it.value.hash == source.fingerprint.hash }
+						if (pending != null) {
+							activeSources.serve(pending.key, jarPath)
+						} else {
+							activeSources.serve(jarPath, jarPath)
+							toIndex[jarPath] = source.fingerprint
+						}
+					}
+
+					LibrarySource.Unreadable -> Unit
+				}
+			}
+		}
+
+		// Step 2: Set the active set - this is instant.
 		// JARs not in the set become invisible to queries.
 		// JARs in the set that are already cached become
-		// visible immediately.
-		index.setActiveSources(currentJars)
-
-		// Step 2: Index any JARs not yet in the cache.
-		// Already-cached JARs are skipped (cheap existence check).
-		// Newly cached JARs are automatically visible because
-		// they're already in the active set.
-		var newCount = 0
-		for (jarPath in currentJars) {
-			if (!index.isCached(jarPath)) {
-				newCount++
-				index.indexSource(jarPath, skipIfExists = true) { sourceId ->
-					CombinedJarScanner.scan(Paths.get(jarPath), sourceId)
+		// visible immediately. Symbols shared by identical JARs are
+		// visible to the modules depending on any of their paths.
+		index.setActiveSources(activeSources)
+
+		// Step 3: Index the JARs whose content is not in the cache yet,
+		// all at once through the parallel pipeline. Newly cached JARs
+		// are automatically visible because they're already in the
+		// active set. A newer refresh supersedes this one: the previous
+		// pipeline is stopped before the new one starts, so the two never
+		// write at the same time. Interrupted JARs are not marked as
+		// indexed and are picked up again.
+		pipelineJob?.cancelAndJoin()
+		if (toIndex.isEmpty()) {
+			log.info("All JARs already cached, nothing to index")
+			return
+		}
+
+		log.info("{} new or changed JARs submitted for background indexing", toIndex.size)
+		pipelineJob = coroutineScope.launch {
+			val stats = index.indexJars(toIndex.mapValues { (jarPath, _) -> Paths.get(jarPath) }) { sourceId ->
+				withContext(Dispatchers.IO) {
+					fingerprints.put(sourceId, toIndex.getValue(sourceId), indexed = true)
 				}
 			}
+			log.info("Library indexing finished: {}", stats)
 		}
+	}
 
-		if (newCount > 0) {
-			log.info("{} new JARs submitted for background indexing", newCount)
-		} else {
-			log.info("All JARs already cached, nothing to index")
+	private sealed interface LibrarySource {
+
+		/** The JAR's content is indexed under [sourceId]. */
+		data class Indexed(val sourceId: String) : LibrarySource
+
+		/** The JAR's content is not in the index and must be scanned. */
+		data class NeedsIndexing(val fingerprint: JarFingerprint) : LibrarySource
+
+		/** The JAR could not be fingerprinted. */
+		data object Unreadable : LibrarySource
+	}
+
+	private fun MutableMap<String, MutableSet<String>>.serve(sourceId: String, jarPath: String) {
+		getOrPut(sourceId) { mutableSetOf() }.add(jarPath)
+	}
+
+	/**
+	 * Decide where the symbols of [jarPath] come from. Content that is
+	 * already indexed under another path, on this classpath or for another
+	 * project, is shared with that path rather than indexed again.
+	 */
+	private suspend fun resolveSource(
+		index: JvmSymbolIndex,
+		fingerprints: JarFingerprintStore,
+		jarPath: String,
+		currentJars: Set<String>,
+	): LibrarySource {
+		val path = Paths.get(jarPath)
+		val record = fingerprints.get(jarPath)
+
+		// Fast path: same size and mtime as when the JAR was indexed
+		if (record != null && record.indexed && record.fingerprint.isUpToDate(path)
+			&& index.isCached(jarPath)
+		) {
+			return LibrarySource.Indexed(jarPath)
+		}
+
+		val fingerprint = try {
+			if (record != null && record.fingerprint.isUpToDate(path)) {
+				record.fingerprint
+			} else {
+				JarFingerprint.compute(path)
+			}
+		} catch (e: IOException) {
+			log.warn("Failed to fingerprint {}", jarPath, e)
+			return LibrarySource.Unreadable
 		}
+
+		// Touched but not changed (e.g. re-extracted by Gradle), or indexed
+		// before fingerprints were recorded
+		val unchanged = record == null || (record.indexed && record.fingerprint.hash == fingerprint.hash)
+		if (unchanged && index.isCached(jarPath)) {
+			fingerprints.put(jarPath, fingerprint, indexed = true)
+			return LibrarySource.Indexed(jarPath)
+		}
+
+		if (record != null && record.indexed) {
+			if (record.fingerprint.hash != fingerprint.hash) {
+				// The JAR was replaced in place, its cached symbols are stale
+				log.info("Content of {} changed, invalidating cached symbols", jarPath)
+			} else {
+				// The cached symbols were dropped, e.g. on a schema change
+				log.info("Cached symbols of {} are missing, re-indexing", jarPath)
+			}
+			index.removeBySource(jarPath)
+		}
+
+		val owner = fingerprints.findIndexedPath(fingerprint.hash, preferred = currentJars)
+			?.takeIf { it != jarPath && index.isCached(it) }
+
+		if (owner == null) {
+			fingerprints.put(jarPath, fingerprint, indexed = false)
+			return LibrarySource.NeedsIndexing(fingerprint)
+		}
+
+		// The same library is on the classpath at another path as well, or
+		// was indexed for another project. Share its symbols; the owner keeps
+		// them, so switching between projects does not move them back and forth.
+		log.debug("{} has the same content as {}, sharing its symbols", jarPath, owner)
+		fingerprints.put(jarPath, fingerprint, indexed = false)
+		return LibrarySource.Indexed(owner)
 	}
 
 	override fun close() {
 		coroutineScope.cancelIfActive("indexing service closed")
 		libraryIndex?.close()
 		libraryIndex = null
+		fingerprints = null
 	}
 
 	private fun isIndexableJar(path: Path): Boolean {
@@ -9,7 +9,7 @@ import org.appdevforall.codeonthego.indexing.jvm.proto.JvmSymbolProtos.JvmSymbol
  * [IndexDescriptor] for [JvmSymbol].
  *
  * Queryable fields:
- * - `name`           : prefix-searchable, for completion
+ * - `name`           : prefix- and fuzzy-searchable, for completion
  * - `package`        : exact, for package-scoped queries
  * - `kind`           : exact, for filtering by CLASS/FUNCTION/etc.
  * - `receiverType`   : exact, for extension function matching
@@ -30,7 +30,7 @@ object JvmSymbolDescriptor : IndexDescriptor<JvmSymbol> {
     override val name: String = "jvm_symbols"
 
     override val fields: List<IndexField> = listOf(
-        IndexField(name = KEY_NAME, prefixSearchable = true),
+        IndexField(name = KEY_NAME, prefixSearchable = true, fuzzySearchable = true),
         IndexField(name = KEY_PACKAGE),
         IndexField(name = KEY_KIND),
         IndexField(name = KEY_RECEIVER_TYPE),
@@ -47,6 +47,15 @@ object JvmSymbolDescriptor : IndexDescriptor<JvmSymbol> {
         KEY_LANGUAGE to entry.language.name,
     )
 
+    override fun fieldValues(entry: JvmSymbol, values: Array<String?>) {
+        values[0] = entry.shortName
+        values[1] = entry.packageName
+        values[2] = entry.kind.name
+        values[3] = entry.receiverTypeName
+        values[4] = entry.containingClassName.ifEmpty { null }
+        values[5] = entry.language.name
+    }
+
     override fun serialize(entry: JvmSymbol): ByteArray =
         toProto(entry).toByteArray()
 
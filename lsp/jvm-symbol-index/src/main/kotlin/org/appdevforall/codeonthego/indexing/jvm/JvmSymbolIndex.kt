@@ -5,10 +5,14 @@ import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import org.appdevforall.codeonthego.indexing.FilteredIndex
 import org.appdevforall.codeonthego.indexing.SQLiteIndex
+import org.appdevforall.codeonthego.indexing.api.FuzzyQuery
 import org.appdevforall.codeonthego.indexing.api.Index
+import org.appdevforall.codeonthego.indexing.api.IndexQuery
+import org.appdevforall.codeonthego.indexing.api.ScoredEntry
 import org.appdevforall.codeonthego.indexing.api.WritableIndex
 import org.appdevforall.codeonthego.indexing.api.indexQuery
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolDescriptor.KEY_CONTAINING_CLASS
+import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolDescriptor.KEY_KIND
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolDescriptor.KEY_NAME
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolDescriptor.KEY_PACKAGE
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolDescriptor.KEY_RECEIVER_TYPE
@@ -16,6 +20,7 @@ import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolIndex.Companion.DB_NAM
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolIndex.Companion.INDEX_NAME_LIBRARY
 import org.appdevforall.codeonthego.indexing.util.BackgroundIndexer
 import java.io.Closeable
+import java.nio.file.Path
 
 /**
  * An index of symbols from JVM source and binary files.
@@ -30,6 +35,19 @@ open class JvmSymbolIndex(
 		const val DB_NAME_DEFAULT = "jvm_symbol_index.db"
 		const val INDEX_NAME_LIBRARY = "jvm-library-cache"
 
+		/**
+		 * Minimum number of JARs for [indexJars] to use [Index.bulkLoad].
+		 * Smaller loads are written with full durability; relaxing it only
+		 * pays off when many JARs are indexed at once.
+		 */
+		private const val BULK_LOAD_MIN_JARS = 16
+
+		/** The [KEY_KIND] values of [JvmSymbolKind.CALLABLE_KINDS]. */
+		private val CALLABLE_KIND_NAMES = JvmSymbolKind.CALLABLE_KINDS.map { it.name }
+
+		/** The [KEY_KIND] values of [JvmSymbolKind.CLASSIFIER_KINDS]. */
+		private val CLASSIFIER_KIND_NAMES = JvmSymbolKind.CLASSIFIER_KINDS.map { it.name }
+
 		/**
 		 * Create (or get) a JVM symbol index backed by SQLite.
 		 *
@@ -54,6 +72,9 @@ open class JvmSymbolIndex(
 		}
 	}
 
+	@Volatile
+	private var classpathPaths: Map<String, Set<String>> = emptyMap()
+
 	/**
 	 * Index a single source. The [provider] returns a [Sequence] that
 	 * lazily produces entries — it is consumed on [Dispatchers.IO] by
@@ -73,6 +94,50 @@ open class JvmSymbolIndex(
 		provider: (sourceId: String) -> Sequence<JvmSymbol>,
 	): Job = indexer.indexSource(sourceId, skipIfExists, provider)
 
+	/**
+	 * Index several JARs with a parallel [JarIndexingPipeline], replacing the
+	 * existing entries of those sources. This is much faster than calling
+	 * [indexSource] for each JAR when many JARs need indexing at once.
+	 * Large loads (such as the first open of a project) run in
+	 * [bulk-load mode][Index.bulkLoad].
+	 *
+	 * @param jars Source id → JAR path.
+	 * @param onSourceIndexed Called after each source has been fully written.
+	 * @return The throughput counters of the run.
+	 */
+	suspend fun indexJars(
+		jars: Map<String, Path>,
+		onSourceIndexed: suspend (sourceId: String) -> Unit = {},
+	): JarIndexingStats {
+		val pipeline = JarIndexingPipeline(backing)
+		pipeline.progressListener = indexer.progressListener
+		if (jars.size < BULK_LOAD_MIN_JARS) {
+			return pipeline.index(jars, onSourceIndexed)
+		}
+		return backing.bulkLoad { pipeline.index(jars, onSourceIndexed) }
+	}
+
+	/**
+	 * Replace the active set with the keys of [classpathPaths], recording
+	 * the classpath paths each source is indexed for.
+	 *
+	 * Identical JARs at several paths are indexed once, under one source ID;
+	 * the symbols of that source belong to every one of its paths.
+	 *
+	 * @param classpathPaths Source id → the classpath paths it serves.
+	 */
+	fun setActiveSources(classpathPaths: Map<String, Set<String>>) {
+		this.classpathPaths = classpathPaths
+		setActiveSources(classpathPaths.keys)
+	}
+
+	/**
+	 * The classpath paths whose content is indexed under [sourceId], or just
+	 * [sourceId] if it was not given to [setActiveSources] with its paths.
+	 */
+	fun classpathPathsOf(sourceId: String): Set<String> =
+		classpathPaths[sourceId] ?: setOf(sourceId)
+
 	/**
 	 * Find symbols matching the given prefix.
 	 *
@@ -83,6 +148,17 @@ open class JvmSymbolIndex(
 	fun findByPrefix(prefix: String, limit: Int = 200): Sequence<JvmSymbol> =
 		query(indexQuery { prefix(KEY_NAME, prefix); this.limit = limit })
 
+	/**
+	 * Find symbols whose name camel-hump matches [pattern], best matches
+	 * first, e.g. `MSF` finds `MutableStateFlow`.
+	 *
+	 * @param pattern The text typed by the user.
+	 * @param limit The result limit.
+	 * @see FuzzyQuery
+	 */
+	fun fuzzyFind(pattern: String, limit: Int = 50): List<ScoredEntry<JvmSymbol>> =
+		fuzzyQuery(FuzzyQuery(field = KEY_NAME, pattern = pattern, limit = limit))
+
 	/**
 	 * Find symbols having the given [receiver type][receiverTypeFqName].
 	 */
@@ -102,9 +178,12 @@ open class JvmSymbolIndex(
 		limit: Int = 200,
 	): Sequence<JvmSymbol> = query(indexQuery {
 		eq(KEY_PACKAGE, packageName)
+		oneOf(KEY_KIND, CALLABLE_KIND_NAMES)
+		// Top-level symbols are stored without a containing class
+		notExists(KEY_CONTAINING_CLASS)
 		if (namePrefix.isNotEmpty()) prefix(KEY_NAME, namePrefix)
-		this.limit = 0
-	}).filter { it.kind.isCallable && it.isTopLevel }.take(limit)
+		this.limit = limit
+	})
 
 	fun findClassifiersInPackage(
 		packageName: String,
@@ -112,9 +191,10 @@ open class JvmSymbolIndex(
 		limit: Int = 200,
 	): Sequence<JvmSymbol> = query(indexQuery {
 		eq(KEY_PACKAGE, packageName)
+		oneOf(KEY_KIND, CLASSIFIER_KIND_NAMES)
 		if (namePrefix.isNotEmpty()) prefix(KEY_NAME, namePrefix)
-		this.limit = 0
-	}).filter { it.kind.isClassifier }.take(limit)
+		this.limit = limit
+	})
 
 	fun findMembersOf(
 		classFqName: String,
@@ -21,6 +21,15 @@ import java.time.Instant
  *                  Files are inserted with `isIndexed = false` as a placeholder
  *                  when first discovered; the indexer flips this to `true`
  *                  after scanning and writing all symbols.
+ * @param isResolved Whether the symbols of this file carry resolved type
+ *                   information. The syntactic first pass writes names,
+ *                   kinds and containers only and leaves this `false`; the
+ *                   resolve pass sets it once types have been filled in.
+ * @param fileSize Length of the file content, in characters.
+ * @param contentHash SHA-256 of the file content, or an empty string when
+ *                    unknown. Together with [fileSize] it survives IDE
+ *                    restarts, unlike [modificationStamp], so a reopened
+ *                    project can tell unchanged files apart.
  * @param symbolKeys The [Indexable.key] values of every [JvmSymbol]
  *                        declared in this file that was written to the symbol
  *                        index. Empty until [isIndexed] becomes `true`.
@@ -31,6 +40,9 @@ data class KtFileMetadata(
 	val lastModified: Instant,
 	val modificationStamp: Long,
 	val isIndexed: Boolean = false,
+	val isResolved: Boolean = false,
+	val fileSize: Long = 0L,
+	val contentHash: String = "",
 	val symbolKeys: List<String> = emptyList(),
 ) : Indexable {
 
@@ -40,6 +52,25 @@ data class KtFileMetadata(
 					existing.modificationStamp >= new.modificationStamp &&
 					(new.modificationStamp != 0L || existing.modificationStamp == 0L)
 		}
+
+		/**
+		 * Whether [existing] was recorded for the same content as [new].
+		 * Only meaningful when both carry a [contentHash].
+		 */
+		fun hasSameContent(existing: KtFileMetadata? = null, new: KtFileMetadata): Boolean {
+			return existing != null && new.contentHash.isNotEmpty() &&
+					existing.fileSize == new.fileSize &&
+					existing.contentHash == new.contentHash
+		}
+
+		/**
+		 * Whether the data recorded in [existing] is still valid for [new], either
+		 * because it is not older ([shouldBeSkipped]) or because the content did
+		 * not change ([hasSameContent]).
+		 */
+		fun isUpToDate(existing: KtFileMetadata? = null, new: KtFileMetadata): Boolean {
+			return shouldBeSkipped(existing, new) || hasSameContent(existing, new)
+		}
 	}
 
     override val key: String get() = filePath
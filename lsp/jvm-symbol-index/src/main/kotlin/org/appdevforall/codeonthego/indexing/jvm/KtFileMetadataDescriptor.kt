@@ -15,7 +15,8 @@ import java.time.Instant
  * - `isIndexed` : exact match ("true"/"false"), to enumerate files that still
  *                 need their declaration keys populated.
  *
- * Non-queryable data (`lastModified`, `modificationStamp`, `declarationKeys`)
+ * Non-queryable data (`lastModified`, `modificationStamp`, `isResolved`,
+ * `fileSize`, `contentHash`, `declarationKeys`)
  * is stored opaquely in the protobuf payload blob.
  *
  * Serialization uses the `KtFileData` message from `jvm_symbol.proto`.
@@ -46,6 +47,9 @@ object KtFileMetadataDescriptor : IndexDescriptor<KtFileMetadata> {
             .setLastModified(entry.lastModified.toEpochMilli())
             .setModificationStamp(entry.modificationStamp)
             .setIndexed(entry.isIndexed)
+            .setResolved(entry.isResolved)
+            .setFileSize(entry.fileSize)
+            .setContentHash(entry.contentHash)
 			.addAllSymbolKeys(entry.symbolKeys)
             .build()
             .toByteArray()
@@ -58,6 +62,9 @@ object KtFileMetadataDescriptor : IndexDescriptor<KtFileMetadata> {
             lastModified = Instant.ofEpochMilli(proto.lastModified),
             modificationStamp = proto.modificationStamp,
             isIndexed = proto.indexed,
+            isResolved = proto.resolved,
+            fileSize = proto.fileSize,
+            contentHash = proto.contentHash,
             symbolKeys = proto.symbolKeysList.toList(),
         )
     }
@@ -145,6 +145,15 @@ class KtFileMetadataIndex(
 			limit = 0
 		}).map { it.filePath }
 
+	/**
+	 * Returns a [Sequence] of the paths of every file in the index.
+	 */
+	fun allFilePaths(): Sequence<String> =
+		backing.query(indexQuery {
+			oneOf(KEY_IS_INDEXED, listOf(true.toString(), false.toString()))
+			limit = 0
+		}).map { it.filePath }
+
 	/** Remove all records from the index. */
 	suspend fun clear() = backing.clear()
 
@@ -0,0 +1,73 @@
+package org.appdevforall.codeonthego.indexing.jvm
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+@RunWith(JUnit4::class)
+class JarFingerprintTest {
+
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private fun jar(name: String, vararg entries: Pair<String, String>): File {
+        val file = tmp.newFile(name)
+        ZipOutputStream(file.outputStream()).use { zip ->
+            for ((entryName, content) in entries) {
+                zip.putNextEntry(ZipEntry(entryName).apply { time = 0L })
+                zip.write(content.toByteArray())
+                zip.closeEntry()
+            }
+        }
+        return file
+    }
+
+    @Test
+    fun `same content at different paths has the same hash`() {
+        val a = jar("a.jar", "com/example/A.class" to "aaa", "com/example/B.class" to "bbb")
+        val b = jar("b.jar", "com/example/A.class" to "aaa", "com/example/B.class" to "bbb")
+
+        val fpA = JarFingerprint.compute(a.toPath())
+        val fpB = JarFingerprint.compute(b.toPath())
+
+        assertThat(fpA.hash).isEqualTo(fpB.hash)
+        assertThat(fpA.size).isEqualTo(a.length())
+    }
+
+    @Test
+    fun `changed entry content changes the hash`() {
+        val a = jar("a.jar", "com/example/A.class" to "aaa")
+        val b = jar("b.jar", "com/example/A.class" to "aab")
+
+        assertThat(JarFingerprint.compute(a.toPath()).hash)
+            .isNotEqualTo(JarFingerprint.compute(b.toPath()).hash)
+    }
+
+    @Test
+    fun `isUpToDate tracks size and modification time`() {
+        val a = jar("a.jar", "com/example/A.class" to "aaa")
+        val fp = JarFingerprint.compute(a.toPath())
+        assertThat(fp.isUpToDate(a.toPath())).isTrue()
+
+        Files.setLastModifiedTime(a.toPath(), FileTime.fromMillis(fp.lastModified + 5_000))
+        assertThat(fp.isUpToDate(a.toPath())).isFalse()
+    }
+
+    @Test
+    fun `files without a central directory are sampled`() {
+        val file = tmp.newFile("not-a.jar").apply { writeText("definitely not a zip") }
+        val other = tmp.newFile("other.jar").apply { writeText("definitely not a zip!") }
+
+        val fp = JarFingerprint.compute(file.toPath())
+        assertThat(fp.hash).isNotEmpty()
+        assertThat(fp.hash).isNotEqualTo(JarFingerprint.compute(other.toPath()).hash)
+    }
+}
@@ -0,0 +1,110 @@
+package org.appdevforall.codeonthego.indexing.jvm
+
+import com.google.common.truth.Truth.assertThat
+import kotlinx.coroutines.test.runTest
+import org.appdevforall.codeonthego.indexing.InMemoryIndex
+import org.appdevforall.codeonthego.indexing.api.IndexQuery
+import org.appdevforall.codeonthego.indexing.util.IndexingEvent
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.io.File
+import java.util.Collections
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+@RunWith(JUnit4::class)
+class JarIndexingPipelineTest {
+
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private val jdkClasses = listOf(
+        "java/util/ArrayList",
+        "java/util/ArrayDeque",
+        "java/util/HashMap",
+        "java/util/LinkedList",
+        "java/lang/StringBuilder",
+    )
+
+    private fun jarOf(name: String, classes: List<String>): File {
+        val file = tmp.newFile(name)
+        ZipOutputStream(file.outputStream()).use { zip ->
+            zip.putNextEntry(ZipEntry("META-INF/MANIFEST.MF"))
+            zip.write("Manifest-Version: 1.0\n".toByteArray())
+            zip.closeEntry()
+            for (internalName in classes) {
+                val bytes = Any::class.java.getResourceAsStream("/$internalName.class")!!.use { it.readBytes() }
+                zip.putNextEntry(ZipEntry("$internalName.class"))
+                zip.write(bytes)
+                zip.closeEntry()
+            }
+        }
+        return file
+    }
+
+    @Test
+    fun `indexes all jars through parallel parsers and a single writer`() = runTest {
+        val jarA = jarOf("a.jar", jdkClasses.take(3))
+        val jarB = jarOf("b.jar", jdkClasses.drop(3))
+        val index = InMemoryIndex(JvmSymbolDescriptor)
+        val completed = Collections.synchronizedList(mutableListOf<String>())
+
+        val pipeline = JarIndexingPipeline(index, parserCount = 3, unitSize = 1, writeBatchSize = 10)
+        pipeline.progressListener = { sourceId, event ->
+            if (event is IndexingEvent.Completed) completed.add(sourceId)
+        }
+
+        val indexed = mutableListOf<String>()
+        val stats = pipeline.index(mapOf("a" to jarA.toPath(), "b" to jarB.toPath())) { indexed.add(it) }
+
+        assertThat(stats.jars).isEqualTo(2)
+        assertThat(stats.entries).isEqualTo(jdkClasses.size.toLong())
+        assertThat(stats.symbols).isEqualTo(index.size.toLong())
+        assertThat(completed).containsExactly("a", "b")
+        assertThat(indexed).containsExactly("a", "b")
+
+        for (internalName in jdkClasses) {
+            assertThat(index.get(internalName)).isNotNull()
+        }
+        assertThat(index.get("java/util/ArrayList")!!.sourceId).isEqualTo("a")
+        assertThat(index.get("java/lang/StringBuilder")!!.sourceId).isEqualTo("b")
+    }
+
+    @Test
+    fun `replaces stale entries of reindexed sources`() = runTest {
+        val index = InMemoryIndex(JvmSymbolDescriptor)
+        val jar = jarOf("a.jar", jdkClasses.take(1))
+        val pipeline = JarIndexingPipeline(index)
+
+        pipeline.index(mapOf("a" to jarOf("old.jar", jdkClasses.drop(1)).toPath()))
+        assertThat(index.get("java/util/HashMap")).isNotNull()
+
+        pipeline.index(mapOf("a" to jar.toPath()))
+        assertThat(index.get("java/util/HashMap")).isNull()
+        assertThat(index.get("java/util/ArrayList")).isNotNull()
+        assertThat(index.query(IndexQuery.bySource("a")).all { it.sourceId == "a" }).isTrue()
+    }
+
+    @Test
+    fun `unreadable jars are reported and skipped`() = runTest {
+        val index = InMemoryIndex(JvmSymbolDescriptor)
+        val broken = tmp.newFile("broken.jar").apply { writeText("not a zip") }
+        val failed = mutableListOf<String>()
+
+        val pipeline = JarIndexingPipeline(index)
+        pipeline.progressListener = { sourceId, event ->
+            if (event is IndexingEvent.Failed) failed.add(sourceId)
+        }
+
+        val stats = pipeline.index(
+            mapOf("broken" to broken.toPath(), "ok" to jarOf("ok.jar", jdkClasses).toPath())
+        )
+
+        assertThat(failed).containsExactly("broken")
+        assertThat(stats.jars).isEqualTo(1)
+        assertThat(index.containsSource("ok")).isTrue()
+    }
+}
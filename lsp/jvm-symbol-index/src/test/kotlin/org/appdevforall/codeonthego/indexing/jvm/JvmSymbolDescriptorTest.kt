@@ -344,6 +344,30 @@ class JvmSymbolDescriptorTest {
             .isEqualTo("kotlin/collections/List")
     }
 
+    @Test
+    fun `positional fieldValues matches fieldValues map`() {
+        val symbols = listOf(
+            classSymbol(),
+            classSymbol(containingClass = "com/example/Outer"),
+            JvmSymbol(
+                key = "f()", sourceId = "s", name = "f", shortName = "f", packageName = "p",
+                kind = JvmSymbolKind.EXTENSION_FUNCTION, language = JvmSourceLanguage.JAVA,
+                data = JvmFunctionInfo(
+                    kotlin = KotlinFunctionInfo(receiverTypeName = "kotlin/collections/List"),
+                ),
+            ),
+        )
+
+        val values = arrayOfNulls<String>(JvmSymbolDescriptor.fields.size)
+        for (symbol in symbols) {
+            JvmSymbolDescriptor.fieldValues(symbol, values)
+            val map = JvmSymbolDescriptor.fieldValues(symbol)
+            JvmSymbolDescriptor.fields.forEachIndexed { i, field ->
+                assertThat(values[i]).isEqualTo(map[field.name])
+            }
+        }
+    }
+
     @Test
     fun `descriptor name is jvm_symbols`() {
         assertThat(JvmSymbolDescriptor.name).isEqualTo("jvm_symbols")
@@ -193,6 +193,23 @@ class JvmSymbolIndexTest {
         assertThat(results).containsExactly("filter", "filterNot")
     }
 
+    @Test
+    fun `findTopLevelCallablesInPackage limit skips members and inactive sources`() = runTest {
+        val index = makeIndex()
+        index.activateSource(defaultSource)
+        index.insertAll((1..10).map {
+            funSymbol("com/example/Foo.m$it", "m$it", "com.example", containingClass = "com/example/Foo")
+        }.asSequence())
+        index.insertAll((1..10).map {
+            funSymbol("com/example/hidden$it", "hidden$it", "com.example", sourceId = "other.jar")
+        }.asSequence())
+        index.insert(funSymbol("com/example/topFun", "topFun", "com.example"))
+        index.insert(funSymbol("com/example/otherFun", "otherFun", "com.example"))
+
+        val results = index.findTopLevelCallablesInPackage("com.example", limit = 2).map { it.shortName }.toList()
+        assertThat(results).containsExactly("topFun", "otherFun")
+    }
+
     @Test
     fun `findClassifiersInPackage returns only classifiers`() = runTest {
         val index = makeIndex()
@@ -261,6 +278,16 @@ class JvmSymbolIndexTest {
         assertThat(packages).containsAtLeast("com.example", "org.other")
     }
 
+    @Test
+    fun `allPackages skips packages of inactive sources`() = runTest {
+        val index = makeIndex()
+        index.activateSource(defaultSource)
+        index.insert(classSymbol("com/example/Foo"))
+        index.insert(classSymbol("org/other/Baz", pkg = "org.other", sourceId = "other.jar"))
+
+        assertThat(index.allPackages().toList()).containsExactly("com.example")
+    }
+
     @Test
     fun `findByKey retrieves symbol by exact key`() = runTest {
         val index = makeIndex()
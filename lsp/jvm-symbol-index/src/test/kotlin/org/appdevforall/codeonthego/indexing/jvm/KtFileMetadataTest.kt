@@ -75,6 +75,32 @@ class KtFileMetadataTest {
         // Both have stamp 0 — treated as "no stamp info available"
         assertThat(KtFileMetadata.shouldBeSkipped(a, b)).isTrue()
     }
+
+    @Test
+    fun `hasSameContent is true for equal hash and size regardless of stamps`() {
+        val existing = KtFileMetadata("/f.kt", "p", Instant.ofEpochMilli(100L), 9L, fileSize = 10L, contentHash = "abc")
+        val new = KtFileMetadata("/f.kt", "p", Instant.ofEpochMilli(200L), 0L, fileSize = 10L, contentHash = "abc")
+        assertThat(KtFileMetadata.shouldBeSkipped(existing, new)).isFalse()
+        assertThat(KtFileMetadata.hasSameContent(existing, new)).isTrue()
+        assertThat(KtFileMetadata.isUpToDate(existing, new)).isTrue()
+    }
+
+    @Test
+    fun `hasSameContent is false when hash or size differ`() {
+        val existing = KtFileMetadata("/f.kt", "p", Instant.EPOCH, 1L, fileSize = 10L, contentHash = "abc")
+        val otherHash = existing.copy(contentHash = "abd")
+        val otherSize = existing.copy(fileSize = 11L)
+        assertThat(KtFileMetadata.hasSameContent(existing, otherHash)).isFalse()
+        assertThat(KtFileMetadata.hasSameContent(existing, otherSize)).isFalse()
+    }
+
+    @Test
+    fun `hasSameContent is false without a hash`() {
+        val existing = KtFileMetadata("/f.kt", "p", Instant.EPOCH, 1L)
+        val new = KtFileMetadata("/f.kt", "p", Instant.EPOCH, 1L)
+        assertThat(KtFileMetadata.hasSameContent(existing, new)).isFalse()
+        assertThat(KtFileMetadata.hasSameContent(null, new)).isFalse()
+    }
 }
 
 @RunWith(JUnit4::class)
@@ -91,6 +117,9 @@ class KtFileMetadataDescriptorTest {
             lastModified = Instant.ofEpochMilli(1_234_567_890L),
             modificationStamp = 42L,
             isIndexed = true,
+            isResolved = true,
+            fileSize = 128L,
+            contentHash = "0123abcd",
             symbolKeys = listOf("com.example.main.Foo", "com.example.main.Bar"),
         )
         val restored = roundtrip(meta)
@@ -99,6 +128,9 @@ class KtFileMetadataDescriptorTest {
         assertThat(restored.lastModified).isEqualTo(meta.lastModified)
         assertThat(restored.modificationStamp).isEqualTo(meta.modificationStamp)
         assertThat(restored.isIndexed).isTrue()
+        assertThat(restored.isResolved).isTrue()
+        assertThat(restored.fileSize).isEqualTo(128L)
+        assertThat(restored.contentHash).isEqualTo("0123abcd")
         assertThat(restored.symbolKeys).containsExactlyElementsIn(meta.symbolKeys)
     }
 
@@ -115,6 +147,7 @@ class KtFileMetadataDescriptorTest {
         val restored = roundtrip(meta)
         assertThat(restored.symbolKeys).isEmpty()
         assertThat(restored.isIndexed).isFalse()
+        assertThat(restored.isResolved).isFalse()
         assertThat(restored.packageFqName).isEmpty()
         assertThat(restored.lastModified).isEqualTo(Instant.EPOCH)
     }
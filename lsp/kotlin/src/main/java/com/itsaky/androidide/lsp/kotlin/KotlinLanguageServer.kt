@@ -35,6 +35,8 @@ import com.itsaky.androidide.lsp.kotlin.compiler.Compiler
 import com.itsaky.androidide.lsp.kotlin.compiler.KotlinProjectModel
 import com.itsaky.androidide.lsp.kotlin.compiler.index.KT_SOURCE_FILE_INDEX_KEY
 import com.itsaky.androidide.lsp.kotlin.compiler.index.KT_SOURCE_FILE_META_INDEX_KEY
+import com.itsaky.androidide.lsp.kotlin.compiler.index.ProjectIndexDatabases
+import com.itsaky.androidide.lsp.kotlin.compiler.index.projectIndexDbName
 import com.itsaky.androidide.lsp.kotlin.completion.codeComplete
 import com.itsaky.androidide.lsp.kotlin.diagnostic.collectDiagnosticsFor
 import com.itsaky.androidide.lsp.kotlin.navigation.findDefinitionAt
@@ -54,6 +56,7 @@ import com.itsaky.androidide.models.Range
 import com.itsaky.androidide.projects.FileManager
 import com.itsaky.androidide.projects.ProjectManagerImpl
 import com.itsaky.androidide.projects.api.Workspace
+import com.itsaky.androidide.projects.models.projectDir
 import com.itsaky.androidide.tasks.createJobCancelChecker
 import com.itsaky.androidide.utils.DocumentUtils
 import com.itsaky.androidide.utils.Environment
@@ -138,13 +141,18 @@ class KotlinLanguageServer : ILanguageServer {
 				.getInstance()
 				.indexingServiceManager
 
+		// One database per project, kept across restarts: reopening a project only
+		// re-indexes the source files whose content changed. The former shared
+		// databases are superseded by these.
+		ProjectIndexDatabases.deleteLegacyDatabases(context)
+		val projectDir = workspace.rootProject.projectDir
 		val indexingRegistry = indexingServiceManager.registry
 		indexingRegistry.register(
 			key = KT_SOURCE_FILE_INDEX_KEY,
 			index =
 				JvmSymbolIndex.createSqliteIndex(
 					context = context,
-					dbName = KT_SOURCE_FILE_INDEX_KEY.name,
+					dbName = projectIndexDbName(KT_SOURCE_FILE_INDEX_KEY, projectDir),
 					indexName = KT_SOURCE_FILE_INDEX_KEY.name,
 				),
 		)
@@ -154,9 +162,10 @@ class KotlinLanguageServer : ILanguageServer {
 			index =
 				KtFileMetadataIndex.sqliteBacked(
 					context = context,
-					dbName = KT_SOURCE_FILE_META_INDEX_KEY.name,
+					dbName = projectIndexDbName(KT_SOURCE_FILE_META_INDEX_KEY, projectDir),
 				),
 		)
+		ProjectIndexDatabases.touchAndEvict(context, projectDir)
 
 		val jvmLibraryIndexingService =
 			indexingServiceManager.getService(JvmLibraryIndexingService.ID) as? JvmLibraryIndexingService?
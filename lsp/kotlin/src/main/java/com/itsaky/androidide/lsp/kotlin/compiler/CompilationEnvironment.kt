@@ -131,7 +131,7 @@ internal class CompilationEnvironment(
 		get() = ktProject.generatedIndex
 
 	val symbolVisibilityChecker: SymbolVisibilityChecker by lazy {
-		SymbolVisibilityChecker(ProjectStructureProvider.getInstance(project))
+		SymbolVisibilityChecker(ProjectStructureProvider.getInstance(project), libraryIndex)
 	}
 
 	var languageClient: ILanguageClient?
@@ -12,4 +12,6 @@ internal sealed interface IndexCommand {
 	data class IndexModifiedFile(val ktFile: KtFile): IndexCommand
 	data class IndexSourceFile(val vf: VirtualFile): IndexCommand
 	data class RemoveFromIndex(val path: Path): IndexCommand
+	data class ResolveSourceFile(val ktFile: KtFile, val filePath: String): IndexCommand
+	data object ResolveComplete: IndexCommand
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.itsaky.androidide.lsp.kotlin.compiler.index
+
+/**
+ * The two tiers of Kotlin source indexing.
+ *
+ * - [SYNTACTIC]: names, kinds, packages and containers, read from PSI without the Analysis API.
+ * - [RESOLVED]: full symbols with types, written once the analysis scheduler is idle.
+ */
+internal enum class IndexTier {
+	SYNTACTIC,
+	RESOLVED,
+}
+
+/**
+ * Counters of one completed [IndexTier] run, reported by [IndexWorker].
+ *
+ * @param tier The tier that completed.
+ * @param files Number of files processed by the tier, including ones found up to date.
+ * @param symbols Number of symbols written by the tier.
+ * @param wallNanos Elapsed time from the start of the tier to its completion.
+ */
+internal data class IndexTierStats(
+	val tier: IndexTier,
+	val files: Int,
+	val symbols: Long,
+	val wallNanos: Long,
+) {
+	override fun toString(): String =
+		"%s: %d files, %d symbols in %d ms".format(
+			tier.name.lowercase(),
+			files,
+			symbols,
+			wallNanos / 1_000_000,
+		)
+}
+
+/** Mutable counters of a tier in progress. */
+internal class IndexTierCounter(
+	private val tier: IndexTier,
+) {
+	private var startNanos = 0L
+	private var files = 0
+	private var symbols = 0L
+
+	fun record(symbolCount: Int) {
+		if (startNanos == 0L) startNanos = System.nanoTime()
+		files++
+		symbols += symbolCount
+	}
+
+	/** Returns the stats of the current run and resets the counter for the next one. */
+	fun finish(): IndexTierStats {
+		val stats =
+			IndexTierStats(
+				tier = tier,
+				files = files,
+				symbols = symbols,
+				wallNanos = if (startNanos == 0L) 0L else System.nanoTime() - startNanos,
+			)
+		startNanos = 0L
+		files = 0
+		symbols = 0L
+		return stats
+	}
+}
@@ -2,14 +2,16 @@ package com.itsaky.androidide.lsp.kotlin.compiler.index
 
 import com.itsaky.androidide.lsp.kotlin.compiler.CompilationEnvironment
 import com.itsaky.androidide.lsp.kotlin.compiler.modules.AnalysisPreemptedException
+import com.itsaky.androidide.lsp.kotlin.compiler.modules.AnalysisScheduler
 import com.itsaky.androidide.lsp.kotlin.compiler.modules.backingFilePath
 import com.itsaky.androidide.lsp.kotlin.compiler.read
 import com.itsaky.androidide.progress.ICancelChecker
 import com.itsaky.androidide.utils.KeyedDebouncingAction
+import io.sentry.Sentry
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.isActive
-import kotlinx.coroutines.launch
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolIndex
 import org.appdevforall.codeonthego.indexing.jvm.KtFileMetadata
 import org.appdevforall.codeonthego.indexing.jvm.KtFileMetadataIndex
@@ -29,6 +31,9 @@ internal class IndexWorker(
 ) {
 	companion object {
 		private val logger = LoggerFactory.getLogger(IndexWorker::class.java)
+
+		/** How long the resolve tier steps aside when the analysis scheduler is busy. */
+		private const val RESOLVE_BACKOFF_MILLIS = 100L
 	}
 
 	private class ModFileIndexKey(
@@ -47,7 +52,8 @@ internal class IndexWorker(
 	suspend fun start() =
 		coroutineScope {
 			var scanCount = 0
-			var sourceIndexCount = 0
+			val syntacticTier = IndexTierCounter(IndexTier.SYNTACTIC)
+			val resolvedTier = IndexTierCounter(IndexTier.RESOLVED)
 
 			val modifiedFileIndexer =
 				KeyedDebouncingAction<ModFileIndexKey>(
@@ -55,13 +61,9 @@ internal class IndexWorker(
 					debounceDuration = CompilationEnvironment.DEFAULT_FILE_MOD_EVENT_DEBOUNCE_DURATION,
 				) { (path, ktFile), cancelChecker ->
 					logger.debug("Indexing modified file: {}", path)
-					try {
-						indexSourceFile(project, ktFile, fileIndex, sourceIndex, cancelChecker)
-						sourceIndexCount++
-					} catch (e: AnalysisPreemptedException) {
-						// Preempted by higher-priority analysis; re-queue so the edit still gets indexed.
-						logger.debug("Indexing of modified file {} preempted; re-queueing", path)
-						scope.launch { submitCommand(IndexCommand.IndexModifiedFile(ktFile)) }
+					val result = indexSourceFileSyntactically(project, ktFile, fileIndex, sourceIndex, cancelChecker)
+					if (result?.needsResolve == true) {
+						queue.putResolveQueue(IndexCommand.ResolveSourceFile(ktFile, result.filePath))
 					}
 				}
 
@@ -102,22 +104,61 @@ internal class IndexWorker(
 							continue
 						}
 
-						try {
-							indexSourceFile(
+						// Publish names right away; types follow in the resolve tier.
+						val result =
+							indexSourceFileSyntactically(
 								project = project,
 								ktFile = ktFile,
 								fileIndex = fileIndex,
 								symbolsIndex = sourceIndex,
-								// A real (cancellable) checker so the scheduler can preempt this pass
-								// in favour of completion/diagnostics.
 								cancelChecker = ICancelChecker.Default(),
-							)
+							) ?: continue
+
+						syntacticTier.record(result.symbolCount)
+						if (result.needsResolve) {
+							queue.putResolveQueue(IndexCommand.ResolveSourceFile(ktFile, result.filePath))
+						}
+					}
 
-							sourceIndexCount++
+					is IndexCommand.ResolveSourceFile -> {
+						// Only resolve in gaps between completion/diagnostics requests: waiting at
+						// INDEXING priority would just get this pass preempted and re-queued over and
+						// over. Step aside, and let any newly queued work run first.
+						if (!AnalysisScheduler.isIdle()) {
+							queue.putResolveQueue(cmd)
+							delay(RESOLVE_BACKOFF_MILLIS)
+							continue
+						}
+
+						// Removed from the index while waiting; don't bring its symbols back.
+						if (fileIndex.get(cmd.filePath) == null) continue
+
+						try {
+							val symbolCount =
+								indexSourceFile(
+									project = project,
+									ktFile = cmd.ktFile,
+									fileIndex = fileIndex,
+									symbolsIndex = sourceIndex,
+									// A real (cancellable) checker so the scheduler can preempt this pass
+									// in favour of completion/diagnostics.
+									cancelChecker = ICancelChecker.Default(),
+								)
+
+							resolvedTier.record(symbolCount)
 						} catch (e: AnalysisPreemptedException) {
-							// Preempted by higher-priority analysis; re-queue so the file still gets indexed.
-							logger.debug("Indexing of {} preempted; re-queueing", cmd.vf.path)
-							scope.launch { submitCommand(cmd) }
+							// Preempted by higher-priority analysis; re-queue so the file still gets resolved.
+							logger.debug("Resolving {} preempted; re-queueing", cmd.filePath)
+							queue.putResolveQueue(cmd)
+						}
+					}
+
+					IndexCommand.ResolveComplete -> {
+						if (queue.hasPendingResolves()) {
+							// Preempted files were re-queued behind this marker; wait for them.
+							queue.putResolveQueue(cmd)
+						} else {
+							reportTier(resolvedTier.finish())
 						}
 					}
 
@@ -131,11 +172,9 @@ internal class IndexWorker(
 					}
 
 					IndexCommand.IndexingComplete -> {
-						logger.info(
-							"Indexing complete: scanned={}, sourceIndexCount={}",
-							scanCount,
-							sourceIndexCount,
-						)
+						logger.info("Indexing complete: scanned={}", scanCount)
+						reportTier(syntacticTier.finish())
+						queue.putResolveQueue(IndexCommand.ResolveComplete)
 					}
 
 					is IndexCommand.ScanSourceFile -> {
@@ -149,7 +188,7 @@ internal class IndexWorker(
 
 						val newFile = ktFile.toMetadata(project, isIndexed = false)
 						val existingFile = fileIndex.get(newFile.filePath)
-						if (KtFileMetadata.shouldBeSkipped(existingFile, newFile)) {
+						if (KtFileMetadata.isUpToDate(existingFile, newFile)) {
 							continue
 						}
 
@@ -168,6 +207,11 @@ internal class IndexWorker(
 			}
 		}
 
+	private fun reportTier(stats: IndexTierStats) {
+		logger.info("Index tier complete: {}", stats)
+		Sentry.addBreadcrumb("KtSymbolIndex tier complete ($stats)")
+	}
+
 	suspend fun submitCommand(cmd: IndexCommand) {
 		when (cmd) {
 			is IndexCommand.ScanSourceFile, IndexCommand.SourceScanningComplete -> {
@@ -178,6 +222,10 @@ internal class IndexWorker(
 				queue.putEditQueue(cmd)
 			}
 
+			is IndexCommand.ResolveSourceFile, IndexCommand.ResolveComplete -> {
+				queue.putResolveQueue(cmd)
+			}
+
 			else -> {
 				queue.putIndexQueue(cmd)
 			}
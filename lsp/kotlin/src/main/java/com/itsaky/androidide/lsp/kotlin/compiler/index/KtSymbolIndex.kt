@@ -31,7 +31,9 @@ import org.jetbrains.kotlin.com.intellij.psi.PsiManager
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.KtPsiFactory
 import org.slf4j.LoggerFactory
+import java.io.File
 import java.nio.file.Path
+import java.security.MessageDigest
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
@@ -42,6 +44,23 @@ import kotlin.io.path.pathString
 val KT_SOURCE_FILE_INDEX_KEY = IndexKey<JvmSymbolIndex>("kt-source-file-index")
 val KT_SOURCE_FILE_META_INDEX_KEY = IndexKey<KtFileMetadataIndex>("kt-source-file-meta-index")
 
+/**
+ * Name of the database that persists the index [key] for the project in [projectDir].
+ *
+ * Source indexes are kept per project so that they survive IDE restarts and project switches
+ * without mixing the symbols of different projects.
+ */
+fun projectIndexDbName(
+	key: IndexKey<*>,
+	projectDir: File,
+): String {
+	val digest =
+		MessageDigest
+			.getInstance("SHA-256")
+			.digest(projectDir.absolutePath.toByteArray(Charsets.UTF_8))
+	return "${key.name}-${digest.take(8).joinToString("") { "%02x".format(it) }}"
+}
+
 /**
  * An index of symbols from Kotlin source files and JARs.
  *
@@ -84,6 +103,7 @@ internal class KtSymbolIndex(
 		ScanningWorker(
 			kind = kind,
 			sourceIndex = sourceIndex,
+			fileIndex = fileIndex,
 			indexWorker = indexWorker,
 			modules = modules,
 		)
@@ -0,0 +1,77 @@
+package com.itsaky.androidide.lsp.kotlin.compiler.index
+
+import android.content.Context
+import org.slf4j.LoggerFactory
+import java.io.File
+
+/**
+ * Housekeeping of the per-project source index databases named by [projectIndexDbName].
+ *
+ * Databases are kept for the [MAX_PROJECTS] most recently opened projects only, so that
+ * opening many projects over time does not fill up the app's storage.
+ */
+internal object ProjectIndexDatabases {
+	private val logger = LoggerFactory.getLogger(ProjectIndexDatabases::class.java)
+
+	private const val PREFS_NAME = "kotlin_source_index_databases"
+	private const val KEY_LEGACY_DELETED = "legacy_databases_deleted"
+
+	/** Number of projects whose source index databases are kept. */
+	const val MAX_PROJECTS = 8
+
+	private val INDEX_KEYS = listOf(KT_SOURCE_FILE_INDEX_KEY, KT_SOURCE_FILE_META_INDEX_KEY)
+
+	// "{key name}-{project hash}", without the -wal, -shm and -journal files of SQLite
+	private val DB_NAME_REGEX =
+		Regex("^(${INDEX_KEYS.joinToString("|") { Regex.escape(it.name) }})-([0-9a-f]{16})$")
+
+	/**
+	 * Delete the databases that were shared by all projects before source indexes were kept
+	 * per project. This only happens once per installation.
+	 */
+	fun deleteLegacyDatabases(context: Context) {
+		val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+		if (prefs.getBoolean(KEY_LEGACY_DELETED, false)) {
+			return
+		}
+
+		for (key in INDEX_KEYS) {
+			context.deleteDatabase(key.name)
+		}
+		prefs.edit().putBoolean(KEY_LEGACY_DELETED, true).apply()
+	}
+
+	/**
+	 * Mark the databases of the project in [projectDir] as used now, and delete the databases
+	 * of all but the [MAX_PROJECTS] most recently used projects.
+	 */
+	fun touchAndEvict(
+		context: Context,
+		projectDir: File,
+	) {
+		val now = System.currentTimeMillis()
+		for (key in INDEX_KEYS) {
+			context.getDatabasePath(projectIndexDbName(key, projectDir)).setLastModified(now)
+		}
+
+		// project hash -> names of its databases
+		val databasesByProject =
+			context
+				.databaseList()
+				.mapNotNull { name -> DB_NAME_REGEX.matchEntire(name)?.let { it.groupValues[2] to name } }
+				.groupBy({ it.first }, { it.second })
+
+		val evicted =
+			databasesByProject.entries
+				.sortedByDescending { (_, names) -> names.maxOf { context.getDatabasePath(it).lastModified() } }
+				.drop(MAX_PROJECTS)
+
+		for ((_, names) in evicted) {
+			names.forEach(context::deleteDatabase)
+		}
+
+		if (evicted.isNotEmpty()) {
+			logger.info("Deleted the source index databases of {} least recently used projects", evicted.size)
+		}
+	}
+}
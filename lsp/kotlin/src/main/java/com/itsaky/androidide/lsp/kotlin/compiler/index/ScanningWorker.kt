@@ -8,11 +8,14 @@ import com.itsaky.androidide.lsp.kotlin.utils.toNioPathOrNull
 import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.isActive
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolIndex
+import org.appdevforall.codeonthego.indexing.jvm.KtFileMetadataIndex
 import org.slf4j.LoggerFactory
+import java.nio.file.Paths
 
 internal class ScanningWorker(
     private val kind: CompilationKind,
     private val sourceIndex: JvmSymbolIndex,
+    private val fileIndex: KtFileMetadataIndex,
     private val indexWorker: IndexWorker,
     private val modules: List<KtModule>,
 ) {
@@ -34,13 +37,24 @@ internal class ScanningWorker(
             .takeWhile { isActive }
             .toList()
 
-        sourceIndex.setActiveSources(
-            sourceFiles
-                .asSequence()
-                .map { it.path }
-                .takeWhile { isActive }
-                .toSet()
-        )
+        val sourcePaths = sourceFiles
+            .asSequence()
+            .map { it.path }
+            .takeWhile { isActive }
+            .toSet()
+
+        sourceIndex.setActiveSources(sourcePaths)
+        if (!isActive) return@coroutineScope
+
+        // The indexes persist across restarts; drop the files of this kind that were
+        // deleted while the project was closed. Everything else is revalidated below.
+        fileIndex.allFilePaths()
+            .filter { it !in sourcePaths && kind.acceptsFile(Paths.get(it)) }
+            .toList()
+            .forEach { path ->
+                if (!isActive) return@coroutineScope
+                indexWorker.submitCommand(IndexCommand.RemoveFromIndex(Paths.get(path)))
+            }
 
         for (sourceFile in sourceFiles) {
             if (!isActive) return@coroutineScope
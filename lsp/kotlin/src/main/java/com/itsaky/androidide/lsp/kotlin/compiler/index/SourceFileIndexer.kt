@@ -45,16 +45,19 @@ import org.jetbrains.kotlin.psi.KtElement
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.KtModifierListOwner
 import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtNullableType
 import org.jetbrains.kotlin.psi.KtObjectDeclaration
 import org.jetbrains.kotlin.psi.KtParameter
 import org.jetbrains.kotlin.psi.KtProperty
 import org.jetbrains.kotlin.psi.KtTreeVisitorVoid
 import org.jetbrains.kotlin.psi.KtTypeAlias
+import org.jetbrains.kotlin.psi.KtTypeReference
 import org.jetbrains.kotlin.psi.debugText.getDebugText
 import org.jetbrains.kotlin.utils.exceptions.KotlinExceptionWithAttachments
 import org.slf4j.LoggerFactory
 import java.io.FileNotFoundException
 import java.nio.file.NoSuchFileException
+import java.security.MessageDigest
 import java.time.Instant
 import kotlin.io.path.pathString
 
@@ -92,17 +95,118 @@ internal fun KtFile.toMetadata(
 					?: Instant.ofEpochMilli(virtualFile?.timeStamp ?: System.currentTimeMillis()),
 			modificationStamp = modificationStamp,
 			isIndexed = isIndexed,
+			fileSize = textLength.toLong(),
+			contentHash = text.contentHash(),
 			symbolKeys = emptyList(),
 		)
 	}
 
+/** Hex SHA-256 of this text, see [KtFileMetadata.contentHash]. */
+private fun String.contentHash(): String =
+	MessageDigest
+		.getInstance("SHA-256")
+		.digest(toByteArray(Charsets.UTF_8))
+		.joinToString("") { "%02x".format(it) }
+
+/**
+ * Outcome of [indexSourceFileSyntactically].
+ *
+ * @param filePath Path of the indexed file, as recorded in the [KtFileMetadataIndex].
+ * @param symbolCount Number of symbols written by the pass (0 when the file was already up to date).
+ * @param needsResolve Whether the file still has to go through the resolve pass ([indexSourceFile]).
+ */
+internal data class SyntacticIndexResult(
+	val filePath: String,
+	val symbolCount: Int,
+	val needsResolve: Boolean,
+)
+
+/**
+ * First indexing tier: publishes the declarations of [ktFile] straight from its PSI, without entering the
+ * Analysis API. Names, kinds, packages, visibility, modifiers and containing classes are exact; type names
+ * are left empty and type display names carry the declared type text as written (empty when inferred).
+ *
+ * This pass does not take the [AnalysisPriority] scheduler lock, so it is never preempted and a freshly
+ * opened project has its source symbols available for unimported-symbol completion after a single walk
+ * over the PSI. The file is recorded with [KtFileMetadata.isResolved] `= false`; [indexSourceFile] later
+ * replaces its symbols with fully resolved ones.
+ *
+ * @return The pass result, or `null` if the project was disposed.
+ */
+internal suspend fun indexSourceFileSyntactically(
+	project: Project,
+	ktFile: KtFile,
+	fileIndex: KtFileMetadataIndex,
+	symbolsIndex: JvmSymbolIndex,
+	cancelChecker: ICancelChecker,
+): SyntacticIndexResult? {
+	if (project.isDisposed) return null
+
+	val newFile =
+		project.read {
+			if (project.isDisposed) return@read null
+			ktFile.toMetadata(project, isIndexed = true)
+		} ?: return null
+	val existingFile = fileIndex.get(newFile.filePath)
+	cancelChecker.abortIfCancelled()
+
+	if (KtFileMetadata.isUpToDate(existingFile, newFile) && existingFile?.isIndexed == true) {
+		// Already published; only the resolve pass may still be outstanding.
+		return SyntacticIndexResult(newFile.filePath, symbolCount = 0, needsResolve = !existingFile.isResolved)
+	}
+
+	// Same breadth as the resolve pass below: this runs on KtSymbolIndex.scope, which has no exception
+	// handler. A failure here is not fatal for the file - the resolve pass still gets a chance at it.
+	val symbols =
+		try {
+			project.read {
+				if (project.isDisposed) return@read null
+
+				val list = mutableListOf<JvmSymbol>()
+				ktFile.accept(
+					object : KtTreeVisitorVoid() {
+						override fun visitDeclaration(dcl: KtDeclaration) {
+							cancelChecker.abortIfCancelled()
+							syntacticDeclaration(newFile.filePath, dcl)?.let { list.add(it) }
+							super.visitDeclaration(dcl)
+						}
+					},
+				)
+				list
+			} ?: return null
+		} catch (e: CancellationException) {
+			throw e
+		} catch (e: Throwable) {
+			logger.error("Failed to syntactically index {}", newFile.filePath, e)
+			Sentry.captureException(e)
+			return SyntacticIndexResult(newFile.filePath, symbolCount = 0, needsResolve = true)
+		}
+
+	// A changed file may have been reset to an unindexed placeholder by the scan, which
+	// leaves its previous symbols in place.
+	if (existingFile != null) {
+		symbolsIndex.removeBySource(newFile.filePath)
+		cancelChecker.abortIfCancelled()
+	}
+
+	symbolsIndex.insertAll(symbols.asSequence())
+	fileIndex.upsert(newFile.copy(isResolved = false, symbolKeys = symbols.map { it.key }))
+	return SyntacticIndexResult(newFile.filePath, symbolCount = symbols.size, needsResolve = true)
+}
+
+/**
+ * Second indexing tier: resolves every declaration of [ktFile] through the Analysis API and replaces the
+ * symbols of the file (including any written by [indexSourceFileSyntactically]) with fully typed ones.
+ *
+ * @return The number of symbols written; 0 when the file was skipped.
+ */
 internal suspend fun indexSourceFile(
 	project: Project,
 	ktFile: KtFile,
 	fileIndex: KtFileMetadataIndex,
 	symbolsIndex: JvmSymbolIndex,
 	cancelChecker: ICancelChecker,
-) {
+): Int {
 	// Indexing runs at the lowest priority, yielding to completion and diagnostics. Wrapping the checker
 	// lets the scheduler preempt an in-progress pass; the preemption surfaces as AnalysisPreemptedException
 	// at the abortIfCancelled() checkpoints below, which IndexWorker catches to re-queue the file.
@@ -111,7 +215,7 @@ internal suspend fun indexSourceFile(
 	// Defensive backstop: this runs on the debounced/async index scope, so a disposal path that
 	// didn't first drain & join the workers could otherwise touch PSI on a disposed project and
 	// throw "Project is already disposed" (APPDEVFORALL-17R). Cheap fast-path before the reads below.
-	if (project.isDisposed) return
+	if (project.isDisposed) return 0
 
 	// Re-check disposal *inside* the read lock so it is atomic with toMetadata()'s PSI access:
 	// the fast-path check above can race a concurrent disposal before toMetadata enters its read.
@@ -119,16 +223,21 @@ internal suspend fun indexSourceFile(
 		project.read {
 			if (project.isDisposed) return@read null
 			ktFile.toMetadata(project, isIndexed = true)
-		} ?: return
+		} ?: return 0
 	val existingFile = fileIndex.get(newFile.filePath)
 	checker.abortIfCancelled()
 
-	if (KtFileMetadata.shouldBeSkipped(existingFile, newFile) && existingFile?.isIndexed == true) {
-		return
+	// Skip when the stored symbols are already resolved, or when they were written for a newer version
+	// of the file than [ktFile] (a queued resolve for a superseded edit; the newer one is queued too).
+	if (KtFileMetadata.isUpToDate(existingFile, newFile) &&
+		existingFile?.isIndexed == true &&
+		(existingFile.isResolved || existingFile.isNewerThan(newFile))
+	) {
+		return 0
 	}
 
 	// Remove stale symbols written during the previous indexing pass.
-	if (existingFile?.isIndexed == true) {
+	if (existingFile != null) {
 		symbolsIndex.removeBySource(newFile.filePath)
 		checker.abortIfCancelled()
 	}
@@ -173,13 +282,17 @@ internal suspend fun indexSourceFile(
 				logger.error("Failed to index {}", newFile.filePath, e)
 				Sentry.captureException(e)
 			}
-			return
+			return 0
 		}
 
 	symbolsIndex.insertAll(symbols.asSequence())
-	fileIndex.upsert(newFile.copy(symbolKeys = symbols.map { it.key }))
+	fileIndex.upsert(newFile.copy(isResolved = true, symbolKeys = symbols.map { it.key }))
+	return symbols.size
 }
 
+private fun KtFileMetadata.isNewerThan(other: KtFileMetadata): Boolean =
+	modificationStamp > other.modificationStamp || lastModified.isAfter(other.lastModified)
+
 @OptIn(KaImplementationDetail::class)
 private fun KaSession.analyzeDeclaration(
 	filePath: String,
@@ -386,19 +499,6 @@ private fun KaSession.analyzeClassOrObject(
 
 	val clsSymbol = dcl.symbol as? KaClassSymbol ?: return null
 
-	val kind =
-		when (dcl) {
-			is KtObjectDeclaration if dcl.isCompanion() -> JvmSymbolKind.COMPANION_OBJECT
-			is KtObjectDeclaration -> JvmSymbolKind.OBJECT
-			is KtClass if dcl.isInterface() -> JvmSymbolKind.INTERFACE
-			is KtClass if dcl.isEnum() -> JvmSymbolKind.ENUM
-			is KtClass if dcl.isAnnotation() -> JvmSymbolKind.ANNOTATION_CLASS
-			is KtClass if dcl.isData() -> JvmSymbolKind.DATA_CLASS
-			is KtClass if dcl.hasModifier(KtTokens.VALUE_KEYWORD) -> JvmSymbolKind.VALUE_CLASS
-			is KtClass if dcl.hasModifier(KtTokens.SEALED_KEYWORD) -> JvmSymbolKind.SEALED_CLASS
-			else -> JvmSymbolKind.CLASS
-		}
-
 	val supertypes =
 		clsSymbol.superTypes.mapNotNull { st ->
 			if (st !is KaClassType) return@mapNotNull null
@@ -420,33 +520,59 @@ private fun KaSession.analyzeClassOrObject(
 		name = internalName,
 		shortName = shortName,
 		packageName = pkg,
-		kind = kind,
+		kind = dcl.classKind(),
 		language = JvmSourceLanguage.KOTLIN,
 		visibility = visibility,
 		data =
-			JvmClassInfo(
+			dcl.classInfo(
 				internalName = internalName,
-				containingClassName = containingClass ?: "",
-				supertypeNames = supertypes,
+				containingClass = containingClass,
+				supertypes = supertypes,
 				typeParameters = clsSymbol.typeParameters.map { it.name.asString() },
-				isAbstract = dcl.hasModifier(KtTokens.ABSTRACT_KEYWORD),
-				isFinal = dcl.hasModifier(KtTokens.FINAL_KEYWORD),
-				isInner = dcl is KtClass && dcl.isInner(),
-				isStatic = containingClass != null && !(dcl is KtClass && dcl.isInner()),
-				kotlin =
-					KotlinClassInfo(
-						isData = dcl is KtClass && dcl.isData(),
-						isValue = dcl is KtClass && dcl.hasModifier(KtTokens.VALUE_KEYWORD),
-						isSealed = dcl is KtClass && dcl.hasModifier(KtTokens.SEALED_KEYWORD),
-						isFunInterface = dcl is KtClass && dcl.hasModifier(KtTokens.FUN_KEYWORD),
-						isExpect = dcl.hasModifier(KtTokens.EXPECT_KEYWORD),
-						isActual = dcl.hasModifier(KtTokens.ACTUAL_KEYWORD),
-						isExternal = dcl.hasModifier(KtTokens.EXTERNAL_KEYWORD),
-					),
 			),
 	)
 }
 
+private fun KtClassOrObject.classKind(): JvmSymbolKind =
+	when (this) {
+		is KtObjectDeclaration if isCompanion() -> JvmSymbolKind.COMPANION_OBJECT
+		is KtObjectDeclaration -> JvmSymbolKind.OBJECT
+		is KtClass if isInterface() -> JvmSymbolKind.INTERFACE
+		is KtClass if isEnum() -> JvmSymbolKind.ENUM
+		is KtClass if isAnnotation() -> JvmSymbolKind.ANNOTATION_CLASS
+		is KtClass if isData() -> JvmSymbolKind.DATA_CLASS
+		is KtClass if hasModifier(KtTokens.VALUE_KEYWORD) -> JvmSymbolKind.VALUE_CLASS
+		is KtClass if hasModifier(KtTokens.SEALED_KEYWORD) -> JvmSymbolKind.SEALED_CLASS
+		else -> JvmSymbolKind.CLASS
+	}
+
+private fun KtClassOrObject.classInfo(
+	internalName: String,
+	containingClass: String?,
+	supertypes: List<String>,
+	typeParameters: List<String>,
+): JvmClassInfo =
+	JvmClassInfo(
+		internalName = internalName,
+		containingClassName = containingClass ?: "",
+		supertypeNames = supertypes,
+		typeParameters = typeParameters,
+		isAbstract = hasModifier(KtTokens.ABSTRACT_KEYWORD),
+		isFinal = hasModifier(KtTokens.FINAL_KEYWORD),
+		isInner = this is KtClass && isInner(),
+		isStatic = containingClass != null && !(this is KtClass && isInner()),
+		kotlin =
+			KotlinClassInfo(
+				isData = this is KtClass && isData(),
+				isValue = this is KtClass && hasModifier(KtTokens.VALUE_KEYWORD),
+				isSealed = this is KtClass && hasModifier(KtTokens.SEALED_KEYWORD),
+				isFunInterface = this is KtClass && hasModifier(KtTokens.FUN_KEYWORD),
+				isExpect = hasModifier(KtTokens.EXPECT_KEYWORD),
+				isActual = hasModifier(KtTokens.ACTUAL_KEYWORD),
+				isExternal = hasModifier(KtTokens.EXTERNAL_KEYWORD),
+			),
+	)
+
 private fun KaSession.analyzeProperty(
 	filePath: String,
 	dcl: KtProperty,
@@ -585,3 +711,258 @@ private fun KaSession.analyzeTypeAlias(
 			),
 	)
 }
+
+/**
+ * PSI-only counterpart of [analyzeDeclaration], used by [indexSourceFileSyntactically].
+ * Applies the same filters (local, private, anonymous, plain parameters) so both tiers
+ * publish the same set of declarations.
+ */
+private fun syntacticDeclaration(
+	filePath: String,
+	dcl: KtDeclaration,
+): JvmSymbol? {
+	dcl.name ?: return null
+	return when (dcl) {
+		is KtNamedFunction -> syntacticFunction(filePath, dcl)
+		is KtClassOrObject -> syntacticClassOrObject(filePath, dcl)
+		is KtParameter -> syntacticParameter(filePath, dcl)
+		is KtProperty -> syntacticProperty(filePath, dcl)
+		is KtTypeAlias -> syntacticTypeAlias(filePath, dcl)
+		else -> null
+	}
+}
+
+/** The type as written in source, or an empty string when it is omitted (inferred). */
+private fun KtTypeReference?.declaredText(): String = this?.text ?: ""
+
+private fun KtTypeReference?.isDeclaredNullable(): Boolean = this?.typeElement is KtNullableType
+
+private fun syntacticFunction(
+	filePath: String,
+	dcl: KtNamedFunction,
+): JvmSymbol? {
+	if (dcl.isLocal) return null
+	val fnName = dcl.name ?: return null
+	val visibility = dcl.jvmVisibility()
+	if (visibility == JvmVisibility.PRIVATE) return null
+
+	val pkg = dcl.containingKtFile.packageFqName.asString()
+	val containingClass = dcl.containingClassInternalName()
+
+	val parameters =
+		dcl.valueParameters.map { param ->
+			JvmParameterInfo(
+				name = param.name ?: "",
+				typeName = "",
+				typeDisplayName = param.typeReference.declaredText(),
+				hasDefaultValue = param.hasDefaultValue(),
+				isVararg = param.isVarArg,
+			)
+		}
+
+	val receiverType = dcl.receiverTypeReference
+	val returnType = dcl.typeReference
+
+	val qualifiedName =
+		if (containingClass != null) {
+			"$containingClass#$fnName"
+		} else {
+			"$pkg#$fnName"
+		}
+
+	// Type names are unknown before resolution, so overloads are told apart by their declared
+	// parameter types. The resolve pass replaces this key with the canonical one.
+	val key = "$qualifiedName(${parameters.joinToString(",") { it.typeDisplayName }})"
+
+	val signatureDisplay =
+		buildString {
+			append("(")
+			append(parameters.joinToString(", ") { "${it.name}: ${it.typeDisplayName}" })
+			append("): ")
+			append(returnType.declaredText())
+		}
+
+	return JvmSymbol(
+		key = key,
+		sourceId = filePath,
+		name = qualifiedName,
+		shortName = fnName,
+		packageName = pkg,
+		kind = if (receiverType != null) JvmSymbolKind.EXTENSION_FUNCTION else JvmSymbolKind.FUNCTION,
+		language = JvmSourceLanguage.KOTLIN,
+		visibility = visibility,
+		data =
+			JvmFunctionInfo(
+				containingClassName = containingClass ?: "",
+				returnTypeDisplayName = returnType.declaredText(),
+				parameterCount = parameters.size,
+				parameters = parameters,
+				signatureDisplay = signatureDisplay,
+				typeParameters = dcl.typeParameters.mapNotNull { it.name },
+				kotlin =
+					KotlinFunctionInfo(
+						receiverTypeDisplayName = receiverType.declaredText(),
+						isSuspend = dcl.hasModifier(KtTokens.SUSPEND_KEYWORD),
+						isInline = dcl.hasModifier(KtTokens.INLINE_KEYWORD),
+						isInfix = dcl.hasModifier(KtTokens.INFIX_KEYWORD),
+						isOperator = dcl.hasModifier(KtTokens.OPERATOR_KEYWORD),
+						isTailrec = dcl.hasModifier(KtTokens.TAILREC_KEYWORD),
+						isExternal = dcl.hasModifier(KtTokens.EXTERNAL_KEYWORD),
+						isExpect = dcl.hasModifier(KtTokens.EXPECT_KEYWORD),
+						isReturnTypeNullable = returnType.isDeclaredNullable(),
+					),
+			),
+	)
+}
+
+private fun syntacticClassOrObject(
+	filePath: String,
+	dcl: KtClassOrObject,
+): JvmSymbol? {
+	dcl.name ?: return null
+	val visibility = dcl.jvmVisibility()
+	if (visibility == JvmVisibility.PRIVATE) return null
+
+	val internalName = dcl.internalName() ?: return null
+	val pkg = dcl.containingKtFile.packageFqName.asString()
+	val shortName = internalName.substringAfterLast('/').substringAfterLast('$')
+	val containingClass = dcl.containingClassInternalName()
+
+	return JvmSymbol(
+		key = internalName,
+		sourceId = filePath,
+		name = internalName,
+		shortName = shortName,
+		packageName = pkg,
+		kind = dcl.classKind(),
+		language = JvmSourceLanguage.KOTLIN,
+		visibility = visibility,
+		data =
+			dcl.classInfo(
+				internalName = internalName,
+				containingClass = containingClass,
+				// Supertype internal names need resolution; the resolve pass fills them in.
+				supertypes = emptyList(),
+				typeParameters = dcl.typeParameters.mapNotNull { it.name },
+			),
+	)
+}
+
+private fun syntacticProperty(
+	filePath: String,
+	dcl: KtProperty,
+): JvmSymbol? {
+	if (dcl.isLocal) return null
+	val propName = dcl.name ?: return null
+	val visibility = dcl.jvmVisibility()
+	if (visibility == JvmVisibility.PRIVATE) return null
+
+	val pkg = dcl.containingKtFile.packageFqName.asString()
+	val containingClass = dcl.containingClassInternalName()
+	val receiverType = dcl.receiverTypeReference
+
+	val qualifiedName =
+		if (containingClass != null) {
+			"$containingClass#$propName"
+		} else {
+			"$pkg#$propName"
+		}
+
+	return JvmSymbol(
+		key = qualifiedName,
+		sourceId = filePath,
+		name = qualifiedName,
+		shortName = propName,
+		packageName = pkg,
+		kind = if (receiverType != null) JvmSymbolKind.EXTENSION_PROPERTY else JvmSymbolKind.PROPERTY,
+		language = JvmSourceLanguage.KOTLIN,
+		visibility = visibility,
+		data =
+			JvmFieldInfo(
+				containingClassName = containingClass ?: "",
+				typeDisplayName = dcl.typeReference.declaredText(),
+				kotlin =
+					KotlinPropertyInfo(
+						receiverTypeDisplayName = receiverType.declaredText(),
+						isConst = dcl.hasModifier(KtTokens.CONST_KEYWORD),
+						isLateinit = dcl.hasModifier(KtTokens.LATEINIT_KEYWORD),
+						hasGetter = dcl.getter != null,
+						hasSetter = dcl.setter != null,
+						isDelegated = dcl.delegateExpression != null,
+						isTypeNullable = dcl.typeReference.isDeclaredNullable(),
+						isExpect = dcl.hasModifier(KtTokens.EXPECT_KEYWORD),
+						isActual = dcl.hasModifier(KtTokens.ACTUAL_KEYWORD),
+						isExternal = dcl.hasModifier(KtTokens.EXTERNAL_KEYWORD),
+					),
+			),
+	)
+}
+
+private fun syntacticParameter(
+	filePath: String,
+	dcl: KtParameter,
+): JvmSymbol? {
+	if (!dcl.hasValOrVar()) return null
+
+	val propName = dcl.name ?: return null
+	val visibility = dcl.jvmVisibility()
+	if (visibility == JvmVisibility.PRIVATE) return null
+
+	val pkg = dcl.containingKtFile.packageFqName.asString()
+	val containingClass = dcl.containingClassInternalName()
+
+	val qualifiedName =
+		if (containingClass != null) {
+			"$containingClass#$propName"
+		} else {
+			"$pkg#$propName"
+		}
+
+	return JvmSymbol(
+		key = qualifiedName,
+		sourceId = filePath,
+		name = qualifiedName,
+		shortName = propName,
+		packageName = pkg,
+		kind = JvmSymbolKind.PROPERTY,
+		language = JvmSourceLanguage.KOTLIN,
+		visibility = visibility,
+		data =
+			JvmFieldInfo(
+				containingClassName = containingClass ?: "",
+				typeDisplayName = dcl.typeReference.declaredText(),
+				kotlin =
+					KotlinPropertyInfo(
+						isTypeNullable = dcl.typeReference.isDeclaredNullable(),
+					),
+			),
+	)
+}
+
+private fun syntacticTypeAlias(
+	filePath: String,
+	dcl: KtTypeAlias,
+): JvmSymbol? {
+	val aliasName = dcl.name ?: return null
+	val visibility = dcl.jvmVisibility()
+	if (visibility == JvmVisibility.PRIVATE) return null
+
+	val pkg = dcl.containingKtFile.packageFqName.asString()
+	val fqName = if (pkg.isEmpty()) aliasName else "$pkg.$aliasName"
+
+	return JvmSymbol(
+		key = fqName,
+		sourceId = filePath,
+		name = fqName,
+		shortName = aliasName,
+		packageName = pkg,
+		kind = JvmSymbolKind.TYPE_ALIAS,
+		language = JvmSourceLanguage.KOTLIN,
+		visibility = visibility,
+		data =
+			JvmTypeAliasInfo(
+				expandedTypeDisplayName = dcl.getTypeReference().declaredText(),
+				typeParameters = dcl.typeParameters.mapNotNull { it.name },
+			),
+	)
+}
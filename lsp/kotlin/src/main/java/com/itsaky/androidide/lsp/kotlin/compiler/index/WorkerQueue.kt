@@ -9,6 +9,11 @@ internal class WorkerQueue<T> {
 	private val editChannel = Channel<T>(capacity = 20)
 	private val indexChannel = Channel<T>(capacity = 100)
 
+	// Resolve-tier work. Unbounded because the worker enqueues into it itself (after the
+	// syntactic pass of every file) and must never suspend on its own queue. Drained only
+	// when every other channel is empty.
+	private val resolveChannel = Channel<T>(capacity = Channel.UNLIMITED)
+
 	// Single-slot pushback for an index-queue item that was polled (to coalesce
 	// removals) but turned out not to be batchable. It is returned ahead of the
 	// channels by the next [take], preserving command order.
@@ -17,6 +22,12 @@ internal class WorkerQueue<T> {
 	suspend fun putScanQueue(item: T) = scanChannel.send(item)
 	suspend fun putEditQueue(item: T) = editChannel.send(item)
 	suspend fun putIndexQueue(item: T) = indexChannel.send(item)
+	fun putResolveQueue(item: T) {
+		resolveChannel.trySend(item)
+	}
+
+	/** Whether resolve-tier items are still queued. */
+	fun hasPendingResolves(): Boolean = !resolveChannel.isEmpty
 
 	/**
 	 * Non-blocking poll of the index queue. Returns the next already-available
@@ -45,11 +56,13 @@ internal class WorkerQueue<T> {
 		scanChannel.tryReceive().getOrNull()?.let { return it }
 		editChannel.tryReceive().getOrNull()?.let { return it }
 		indexChannel.tryReceive().getOrNull()?.let { return it }
+		resolveChannel.tryReceive().getOrNull()?.let { return it }
 
 		return select {
 			scanChannel.onReceive { it }
 			editChannel.onReceive { it }
 			indexChannel.onReceive { it }
+			resolveChannel.onReceive { it }
 		}
 	}
 }
\ No newline at end of file
@@ -226,6 +226,16 @@ internal object AnalysisScheduler {
 		}
 	}
 
+	/**
+	 * Whether no analysis is running and none is queued. A cheap, racy snapshot: background work that
+	 * only wants to run in gaps (the resolve tier of the source indexer) polls this before asking for
+	 * the lock, instead of queueing at [AnalysisPriority.INDEXING] and being preempted repeatedly.
+	 */
+	fun isIdle(): Boolean =
+		mutex.withLock {
+			holderThread == null && waiting.all { it == 0 }
+		}
+
 	private fun higherPriorityWaiting(priority: AnalysisPriority): Boolean {
 		for (i in priority.ordinal + 1 until waiting.size) {
 			if (waiting[i] > 0) return true
@@ -9,6 +9,7 @@ import com.itsaky.androidide.lsp.kotlin.utils.toRange
 import com.itsaky.androidide.lsp.models.DiagnosticItem
 import com.itsaky.androidide.lsp.models.DiagnosticResult
 import com.itsaky.androidide.lsp.models.DiagnosticSeverity
+import com.itsaky.androidide.lsp.util.NewApiChecker
 import com.itsaky.androidide.progress.ICancelChecker
 import kotlinx.coroutines.CancellationException
 import org.jetbrains.kotlin.analysis.api.KaExperimentalApi
@@ -78,6 +79,7 @@ private fun doAnalyze(
 	// preemption into an AnalysisPreemptedException, which CompilationEnvironment's fileAnalyzer catches
 	// to re-schedule this run once the higher-priority work finishes.
 	val checker = ScheduledCancelChecker(cancelChecker)
+	val newApiChecker = NewApiChecker.forFile(file)
 
 	val diagnostics =
 		env.project.read {
@@ -129,6 +131,20 @@ private fun doAnalyze(
 								},
 							)
 						}
+
+					if (newApiChecker != null) {
+						collectNewApiUsages(ktFile, newApiChecker, checker).forEach { usage ->
+							add(
+								diagnosticItem(
+									file = ktFile,
+									message = newApiChecker.message(usage.kind, usage.symbol, usage.api),
+									range = usage.range,
+									severity = DiagnosticSeverity.WARNING,
+									code = NEW_API_DIAGNOSTIC_CODE,
+								),
+							)
+						}
+					}
 				}
 			}
 		}
@@ -156,9 +172,10 @@ private fun diagnosticItem(
 	message: String,
 	range: TextRange,
 	severity: DiagnosticSeverity,
+	code: String = "",
 ) = DiagnosticItem(
 	message = message,
-	code = "",
+	code = code,
 	range = range.toRange(file),
 	source = "kotlin",
 	severity = severity,
@@ -0,0 +1,255 @@
+package com.itsaky.androidide.lsp.kotlin.diagnostic
+
+import com.itsaky.androidide.lsp.util.NewApiChecker
+import com.itsaky.androidide.lsp.util.NewApiChecker.SymbolKind
+import com.itsaky.androidide.progress.ICancelChecker
+import org.jetbrains.kotlin.analysis.api.KaSession
+import org.jetbrains.kotlin.analysis.api.base.KaConstantValue
+import org.jetbrains.kotlin.analysis.api.symbols.KaClassLikeSymbol
+import org.jetbrains.kotlin.analysis.api.symbols.KaConstructorSymbol
+import org.jetbrains.kotlin.analysis.api.symbols.KaFunctionSymbol
+import org.jetbrains.kotlin.analysis.api.symbols.KaJavaFieldSymbol
+import org.jetbrains.kotlin.analysis.api.symbols.KaSymbol
+import org.jetbrains.kotlin.analysis.api.symbols.KaSymbolOrigin
+import org.jetbrains.kotlin.analysis.api.symbols.KaSyntheticJavaPropertySymbol
+import org.jetbrains.kotlin.analysis.api.types.KaClassType
+import org.jetbrains.kotlin.analysis.api.types.KaFlexibleType
+import org.jetbrains.kotlin.analysis.api.types.KaType
+import org.jetbrains.kotlin.analysis.api.types.KaTypeParameterType
+import org.jetbrains.kotlin.builtins.jvm.JavaToKotlinClassMap
+import org.jetbrains.kotlin.com.intellij.openapi.util.TextRange
+import org.jetbrains.kotlin.com.intellij.psi.PsiElement
+import org.jetbrains.kotlin.idea.references.mainReference
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.StandardClassIds
+import org.jetbrains.kotlin.psi.KtAnnotated
+import org.jetbrains.kotlin.psi.KtBinaryExpression
+import org.jetbrains.kotlin.psi.KtContainerNodeForControlStructureBody
+import org.jetbrains.kotlin.psi.KtDotQualifiedExpression
+import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtIfExpression
+import org.jetbrains.kotlin.psi.KtImportList
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression
+import org.jetbrains.kotlin.psi.KtPackageDirective
+import org.jetbrains.kotlin.psi.KtParenthesizedExpression
+import org.jetbrains.kotlin.psi.psiUtil.collectDescendantsOfType
+import org.jetbrains.kotlin.psi.psiUtil.getQualifiedExpressionForSelectorOrThis
+
+/** The diagnostic code of NewApi diagnostics, the ID of the equivalent lint check. */
+internal const val NEW_API_DIAGNOSTIC_CODE = "NewApi"
+
+/**
+ * A reference to a platform API which is newer than the module's minimum SDK version. Contains only
+ * plain data, so it can safely escape the analysis session.
+ */
+internal data class NewApiUsage(
+	val range: TextRange,
+	val kind: SymbolKind,
+	val symbol: String,
+	val api: Int,
+)
+
+/**
+ * Finds references to platform APIs which require a higher API level than [checker]'s minimum SDK
+ * version. MUST be called inside [analyzeMaybeDangling][com.itsaky.androidide.lsp.kotlin.compiler.modules.analyzeMaybeDangling].
+ *
+ * References inside declarations annotated with `@RequiresApi` or `@TargetApi`, and inside the
+ * `then` branch of `if (Build.VERSION.SDK_INT >= N)` checks, are not reported as long as they raise
+ * the API level high enough. Compile-time constants are not reported either, as they are inlined.
+ */
+internal fun KaSession.collectNewApiUsages(
+	ktFile: KtFile,
+	checker: NewApiChecker,
+	cancelChecker: ICancelChecker,
+): List<NewApiUsage> {
+	val usages = mutableListOf<NewApiUsage>()
+	val guards = HashMap<PsiElement, Int>()
+
+	ktFile.collectDescendantsOfType<KtNameReferenceExpression>().forEach { ref ->
+		cancelChecker.abortIfCancelled()
+		if (isInHeader(ref)) return@forEach
+
+		val symbol = runCatching { ref.mainReference.resolveToSymbol() }.getOrNull() ?: return@forEach
+		if (symbol.origin != KaSymbolOrigin.JAVA_LIBRARY) return@forEach
+
+		// constants are inlined by the compiler, e.g. Build.VERSION_CODES.TIRAMISU
+		if (symbol is KaJavaFieldSymbol && isConstant(ref)) return@forEach
+
+		val (kind, name, api) = checkSymbol(symbol, checker) ?: return@forEach
+		if (api <= checker.minSdk || api <= guaranteedApi(ref, guards)) return@forEach
+
+		usages.add(NewApiUsage(ref.textRange, kind, name, api))
+	}
+
+	return usages
+}
+
+private fun isInHeader(element: PsiElement): Boolean {
+	var current: PsiElement? = element
+	while (current != null && current !is KtFile) {
+		if (current is KtImportList || current is KtPackageDirective) return true
+		current = current.parent
+	}
+	return false
+}
+
+private fun KaSession.checkSymbol(
+	symbol: KaSymbol,
+	checker: NewApiChecker,
+): Triple<SymbolKind, String, Int>? =
+	when (symbol) {
+		// must precede KaFunctionSymbol, which a constructor also matches
+		is KaConstructorSymbol -> {
+			val owner = symbol.containingClassId?.binaryName() ?: return null
+			val params = symbol.valueParameters.map { it.returnType.jvmTypeName() ?: return null }
+			Triple(SymbolKind.METHOD, "$owner#<init>", checker.checkMethod(owner, "<init>", params))
+		}
+
+		is KaFunctionSymbol -> {
+			val callableId = symbol.callableId ?: return null
+			val owner = callableId.classId?.binaryName() ?: return null
+			val name = callableId.callableName.asString()
+			val params = symbol.valueParameters.map { it.returnType.jvmTypeName() ?: return null }
+			Triple(SymbolKind.METHOD, "$owner#$name", checker.checkMethod(owner, name, params))
+		}
+
+		// property syntax for Java getters, e.g. `view.z` for `view.getZ()`
+		is KaSyntheticJavaPropertySymbol -> checkSymbol(symbol.javaGetterSymbol, checker)
+
+		is KaJavaFieldSymbol -> {
+			val callableId = symbol.callableId ?: return null
+			val owner = callableId.classId?.binaryName() ?: return null
+			val name = callableId.callableName.asString()
+			Triple(SymbolKind.FIELD, "$owner#$name", checker.checkField(owner, name))
+		}
+
+		is KaClassLikeSymbol -> {
+			val name = symbol.classId?.binaryName() ?: return null
+			Triple(SymbolKind.CLASS, name, checker.checkClass(name))
+		}
+
+		else -> null
+	}
+
+/**
+ * The API level guaranteed at [element] by the `@RequiresApi`/`@TargetApi` annotations and the
+ * `SDK_INT` checks enclosing it. Results for the enclosing elements are cached in [guards].
+ */
+private fun KaSession.guaranteedApi(
+	element: PsiElement,
+	guards: MutableMap<PsiElement, Int>,
+): Int {
+	var api = -1
+	var child: PsiElement = element
+	var current: PsiElement? = element.parent
+	while (current != null && current !is KtFile) {
+		val guard =
+			when (current) {
+				is KtAnnotated -> guards.getOrPut(current) { declaredApi(current) }
+				is KtIfExpression ->
+					if (child is KtContainerNodeForControlStructureBody && child == current.thenBranch?.parent) {
+						guards.getOrPut(current) { sdkIntCheck(current.condition) }
+					} else {
+						-1
+					}
+				else -> -1
+			}
+		api = maxOf(api, guard)
+		child = current
+		current = current.parent
+	}
+	return api
+}
+
+private fun KaSession.declaredApi(declaration: KtAnnotated): Int {
+	for (annotation in declaration.annotationEntries) {
+		val name = annotation.shortName?.asString()
+		if (name != "RequiresApi" && name != "TargetApi") continue
+
+		for (argument in annotation.valueArguments) {
+			val argName = argument.getArgumentName()?.asName?.asString()
+			if (argName != null && argName != "value" && argName != "api") continue
+			val value = argument.getArgumentExpression()?.intValue() ?: continue
+			return value
+		}
+	}
+	return -1
+}
+
+/** The API level guaranteed by `SDK_INT >= N` and `SDK_INT > N` conditions. */
+private fun KaSession.sdkIntCheck(condition: KtExpression?): Int {
+	var expression = condition
+	while (expression is KtParenthesizedExpression) {
+		expression = expression.expression
+	}
+
+	if (expression !is KtBinaryExpression || !isSdkInt(expression.left)) return -1
+
+	val value = expression.right?.intValue() ?: return -1
+	return when (expression.operationToken) {
+		KtTokens.GTEQ -> value
+		KtTokens.GT -> value + 1
+		else -> -1
+	}
+}
+
+private fun isSdkInt(expression: KtExpression?): Boolean =
+	when (expression) {
+		is KtNameReferenceExpression -> expression.getReferencedName() == "SDK_INT"
+		is KtDotQualifiedExpression -> isSdkInt(expression.selectorExpression)
+		else -> false
+	}
+
+private fun KaSession.isConstant(ref: KtNameReferenceExpression): Boolean =
+	runCatching { ref.getQualifiedExpressionForSelectorOrThis().evaluate() }.getOrNull() != null
+
+private fun KaSession.intValue(expression: KtExpression): Int? =
+	(runCatching { expression.evaluate() }.getOrNull() as? KaConstantValue.IntValue)?.value
+
+private fun ClassId.binaryName(): String {
+	val relativeName = relativeClassName.asString().replace('.', '$')
+	return if (packageFqName.isRoot) relativeName else "${packageFqName.asString()}.$relativeName"
+}
+
+private val primitiveTypes =
+	mapOf(
+		StandardClassIds.Boolean to "boolean",
+		StandardClassIds.Byte to "byte",
+		StandardClassIds.Char to "char",
+		StandardClassIds.Short to "short",
+		StandardClassIds.Int to "int",
+		StandardClassIds.Long to "long",
+		StandardClassIds.Float to "float",
+		StandardClassIds.Double to "double",
+	)
+
+private val primitiveArrayTypes =
+	primitiveTypes.entries.associate { (classId, name) ->
+		ClassId(classId.packageFqName, classId.shortClassName.asString() + "Array") to "$name[]"
+	}
+
+/**
+ * The erased JVM binary name of this type, as it appears in the parameter list of a Java method,
+ * or `null` if it cannot be determined.
+ */
+private fun KaType.jvmTypeName(): String? =
+	when (this) {
+		is KaFlexibleType -> lowerBound.jvmTypeName()
+		is KaTypeParameterType -> symbol.upperBounds.firstOrNull()?.jvmTypeName() ?: "java.lang.Object"
+		is KaClassType -> {
+			when {
+				!isMarkedNullable && classId in primitiveTypes -> primitiveTypes[classId]
+				classId in primitiveArrayTypes -> primitiveArrayTypes[classId]
+				classId == StandardClassIds.Array ->
+					typeArguments.firstOrNull()?.type?.jvmTypeName()?.let { "$it[]" }
+				else -> {
+					val javaClassId =
+						JavaToKotlinClassMap.mapKotlinToJava(classId.asSingleFqName().toUnsafe()) ?: classId
+					javaClassId.binaryName()
+				}
+			}
+		}
+		else -> null
+	}
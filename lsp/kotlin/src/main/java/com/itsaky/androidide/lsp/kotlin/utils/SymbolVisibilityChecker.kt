@@ -2,6 +2,7 @@ package com.itsaky.androidide.lsp.kotlin.utils
 
 import com.itsaky.androidide.lsp.kotlin.compiler.services.ProjectStructureProvider
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbol
+import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolIndex
 import org.appdevforall.codeonthego.indexing.jvm.JvmVisibility
 import org.jetbrains.kotlin.analysis.api.projectStructure.KaModule
 import org.jetbrains.kotlin.analysis.api.projectStructure.allDirectDependencies
@@ -10,6 +11,7 @@ import java.util.concurrent.ConcurrentHashMap
 
 internal class SymbolVisibilityChecker(
 	private val structureProvider: ProjectStructureProvider,
+	private val libraryIndex: JvmSymbolIndex? = null,
 ) {
 	companion object {
 		private val logger = LoggerFactory.getLogger(SymbolVisibilityChecker::class.java)
@@ -24,14 +26,19 @@ internal class SymbolVisibilityChecker(
 		useSiteModule: KaModule,
 		useSitePackage: String? = null,
 	): Boolean {
-		val declaringModule = structureProvider.findModuleForSourceId(symbol.sourceId)
-			?: return false
-
-		if (!isReachable(useSiteModule, declaringModule)) return false
-		if (!arePlatformCompatible(useSiteModule, declaringModule)) return false
-		if (!isDeclarationVisible(symbol, useSiteModule, declaringModule, useSitePackage)) return false
-
-		return true
+		// a library indexed once for several identical JARs is declared by
+		// the modules of each of those JARs
+		val sourcePaths = libraryIndex?.classpathPathsOf(symbol.sourceId)
+			?: setOf(symbol.sourceId)
+
+		return sourcePaths.any { sourcePath ->
+			val declaringModule = structureProvider.findModuleForSourceId(sourcePath)
+				?: return@any false
+
+			isReachable(useSiteModule, declaringModule)
+					&& arePlatformCompatible(useSiteModule, declaringModule)
+					&& isDeclarationVisible(symbol, useSiteModule, declaringModule, useSitePackage)
+		}
 	}
 
 	fun isReachable(useSiteModule: KaModule, declaringModule: KaModule): Boolean {
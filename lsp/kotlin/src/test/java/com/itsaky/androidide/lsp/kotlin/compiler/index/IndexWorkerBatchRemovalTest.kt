@@ -87,6 +87,7 @@ class IndexWorkerBatchRemovalTest {
         val counting = CountingIndex(backing)
         val index = object : JvmSymbolIndex(counting, BackgroundIndexer(counting)) {
             override fun isActive(sourceId: String): Boolean = true
+            override fun visibleSources(): Set<String>? = null
         }
         return counting to index
     }
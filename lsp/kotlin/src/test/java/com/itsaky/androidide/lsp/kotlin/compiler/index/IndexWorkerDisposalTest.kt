@@ -28,6 +28,7 @@ class IndexWorkerDisposalTest : KtLspTest() {
 		val backing = InMemoryIndex(JvmSymbolDescriptor)
 		return object : JvmSymbolIndex(backing, BackgroundIndexer(backing)) {
 			override fun isActive(sourceId: String) = true
+			override fun visibleSources(): Set<String>? = null
 		}
 	}
 
@@ -0,0 +1,137 @@
+package com.itsaky.androidide.lsp.kotlin.compiler.index
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.lsp.kotlin.fixtures.KtLspTest
+import com.itsaky.androidide.progress.ICancelChecker
+import kotlinx.coroutines.runBlocking
+import org.appdevforall.codeonthego.indexing.InMemoryIndex
+import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolDescriptor
+import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolIndex
+import org.appdevforall.codeonthego.indexing.jvm.KtFileMetadataDescriptor
+import org.appdevforall.codeonthego.indexing.jvm.KtFileMetadataIndex
+import org.appdevforall.codeonthego.indexing.util.BackgroundIndexer
+import org.jetbrains.kotlin.psi.KtFile
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import java.time.Instant
+
+/**
+ * Measures time-to-first-useful-completion of the Kotlin source index, on a cold start and on a
+ * reopen of the same project.
+ *
+ * The sample projects under `testing/resources` have no Kotlin sources, so the benchmark generates
+ * [FILES] source files of the same shape as a small app module (a class with a few members per file).
+ * "Useful" means an unimported top-level declaration of the last file can be found by name.
+ *
+ * Skipped unless the `INDEXING_BENCHMARKS` environment variable is set:
+ * ```
+ * INDEXING_BENCHMARKS=1 ./gradlew :lsp:kotlin:testDebugUnitTest --tests '*KtSourceIndexStartupBenchmark'
+ * ```
+ * Results are printed to stdout. A reopen is simulated by resetting the timestamps of every stored
+ * [org.appdevforall.codeonthego.indexing.jvm.KtFileMetadata], as a new session would see them.
+ */
+class KtSourceIndexStartupBenchmark : KtLspTest() {
+	companion object {
+		private const val FILES = 200
+	}
+
+	@Before
+	fun checkEnabled() {
+		assumeTrue(
+			"Set INDEXING_BENCHMARKS to run benchmarks",
+			System.getenv("INDEXING_BENCHMARKS") != null,
+		)
+	}
+
+	private fun buildSymbolIndex(): JvmSymbolIndex {
+		val backing = InMemoryIndex(JvmSymbolDescriptor)
+		return object : JvmSymbolIndex(backing, BackgroundIndexer(backing)) {
+			override fun isActive(sourceId: String): Boolean = true
+
+			override fun visibleSources(): Set<String>? = null
+		}
+	}
+
+	private fun generateSources(): List<KtFile> =
+		(0 until FILES).map { i ->
+			createSourceFile(
+				"com/example/app/feature$i/Feature$i.kt",
+				"""
+				package com.example.app.feature$i
+
+				class Feature$i(val id: Int, private val name: String) {
+					fun render(times: Int = 1): String = name.repeat(times)
+					val label get() = "#${'$'}id ${'$'}name"
+				}
+
+				fun createFeature$i(name: String) = Feature$i($i, name)
+				""".trimIndent(),
+			)
+		}
+
+	@Test
+	fun `time to first useful completion, cold and reopened`(): Unit =
+		runBlocking {
+			val files = generateSources()
+			val symbolsIndex = buildSymbolIndex()
+			val fileIndex = KtFileMetadataIndex(InMemoryIndex(KtFileMetadataDescriptor))
+			val target = "createFeature${FILES - 1}"
+
+			// Cold start: every file goes through both tiers.
+			val coldStart = System.nanoTime()
+			val coldIndexed = syntacticPass(files, fileIndex, symbolsIndex)
+			assertThat(symbolsIndex.findBySimpleName(target, 1).toList()).isNotEmpty()
+			val coldUseful = System.nanoTime() - coldStart
+			val coldResolved = resolvePass(files, fileIndex, symbolsIndex)
+			val coldTotal = System.nanoTime() - coldStart
+
+			// Reopen: same content, new session stamps.
+			fileIndex.allFilePaths().toList().forEach { path ->
+				val stored = fileIndex.get(path)!!
+				fileIndex.upsert(stored.copy(lastModified = Instant.EPOCH, modificationStamp = 0L))
+			}
+
+			val warmStart = System.nanoTime()
+			val warmIndexed = syntacticPass(files, fileIndex, symbolsIndex)
+			assertThat(symbolsIndex.findBySimpleName(target, 1).toList()).isNotEmpty()
+			val warmUseful = System.nanoTime() - warmStart
+			val warmResolved = resolvePass(files, fileIndex, symbolsIndex)
+			val warmTotal = System.nanoTime() - warmStart
+
+			println("Kotlin source index startup, $FILES files")
+			println(
+				"  cold    : first useful %7.1f ms, all resolved %7.1f ms (%d indexed, %d resolved)"
+					.format(coldUseful / 1e6, coldTotal / 1e6, coldIndexed, coldResolved),
+			)
+			println(
+				"  reopen  : first useful %7.1f ms, all resolved %7.1f ms (%d indexed, %d resolved)"
+					.format(warmUseful / 1e6, warmTotal / 1e6, warmIndexed, warmResolved),
+			)
+
+			assertThat(warmIndexed).isEqualTo(0)
+			assertThat(warmResolved).isEqualTo(0)
+		}
+
+	/** Returns the number of files whose symbols were (re)written. */
+	private suspend fun syntacticPass(
+		files: List<KtFile>,
+		fileIndex: KtFileMetadataIndex,
+		symbolsIndex: JvmSymbolIndex,
+	): Int =
+		files.count { file ->
+			val result =
+				indexSourceFileSyntactically(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)
+			result != null && result.symbolCount > 0
+		}
+
+	/** Returns the number of files that were resolved. */
+	private suspend fun resolvePass(
+		files: List<KtFile>,
+		fileIndex: KtFileMetadataIndex,
+		symbolsIndex: JvmSymbolIndex,
+	): Int =
+		files.count { file ->
+			indexSourceFile(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP) > 0
+		}
+}
@@ -0,0 +1,63 @@
+package com.itsaky.androidide.lsp.kotlin.compiler.index
+
+import android.content.Context
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import java.io.File
+
+@RunWith(RobolectricTestRunner::class)
+class ProjectIndexDatabasesTest {
+	private val context: Context = RuntimeEnvironment.getApplication()
+
+	private fun createDatabase(
+		name: String,
+		lastModified: Long,
+	) {
+		val file = context.getDatabasePath(name)
+		file.parentFile?.mkdirs()
+		file.writeText("")
+		file.setLastModified(lastModified)
+	}
+
+	private fun projectDatabases(projectDir: File) =
+		listOf(KT_SOURCE_FILE_INDEX_KEY, KT_SOURCE_FILE_META_INDEX_KEY).map { projectIndexDbName(it, projectDir) }
+
+	@Test
+	fun `legacy databases are deleted only once`() {
+		createDatabase(KT_SOURCE_FILE_INDEX_KEY.name, 1000L)
+		ProjectIndexDatabases.deleteLegacyDatabases(context)
+		assertThat(context.databaseList().toList()).doesNotContain(KT_SOURCE_FILE_INDEX_KEY.name)
+
+		createDatabase(KT_SOURCE_FILE_INDEX_KEY.name, 1000L)
+		ProjectIndexDatabases.deleteLegacyDatabases(context)
+		assertThat(context.databaseList().toList()).contains(KT_SOURCE_FILE_INDEX_KEY.name)
+	}
+
+	@Test
+	fun `databases of the least recently used projects are evicted`() {
+		val projects = (0..ProjectIndexDatabases.MAX_PROJECTS + 1).map { File("/projects/p$it") }
+		for ((i, project) in projects.withIndex()) {
+			for (name in projectDatabases(project)) {
+				createDatabase(name, 1_000_000L + i * 1000L)
+				createDatabase("$name-wal", 1_000_000L + i * 1000L)
+			}
+		}
+		createDatabase("unrelated.db", 0L)
+
+		// The oldest project is the one being opened, so it is kept
+		val opened = projects.first()
+		ProjectIndexDatabases.touchAndEvict(context, opened)
+
+		val remaining = context.databaseList().toSet()
+		assertThat(remaining).containsAtLeastElementsIn(projectDatabases(opened))
+		assertThat(remaining).containsNoneIn(projectDatabases(projects[1]) + projectDatabases(projects[2]))
+		assertThat(remaining).containsNoneIn(projectDatabases(projects[1]).map { "$it-wal" })
+		for (project in projects.drop(3)) {
+			assertThat(remaining).containsAtLeastElementsIn(projectDatabases(project))
+		}
+		assertThat(remaining).contains("unrelated.db")
+	}
+}
@@ -6,18 +6,25 @@ import com.itsaky.androidide.progress.ICancelChecker
 import io.mockk.mockk
 import kotlinx.coroutines.runBlocking
 import org.appdevforall.codeonthego.indexing.InMemoryIndex
+import org.appdevforall.codeonthego.indexing.jvm.JvmFieldInfo
+import org.appdevforall.codeonthego.indexing.jvm.JvmFunctionInfo
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolDescriptor
 import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolIndex
+import org.appdevforall.codeonthego.indexing.jvm.JvmSymbolKind
+import org.appdevforall.codeonthego.indexing.jvm.KtFileMetadataDescriptor
+import org.appdevforall.codeonthego.indexing.jvm.KtFileMetadataIndex
 import org.appdevforall.codeonthego.indexing.util.BackgroundIndexer
 import org.junit.Test
 import java.io.FileNotFoundException
 import java.nio.file.NoSuchFileException
+import java.time.Instant
 
 class SourceFileIndexerTest : KtLspTest() {
 	private fun buildSymbolIndex(): JvmSymbolIndex {
 		val backing = InMemoryIndex(JvmSymbolDescriptor)
 		return object : JvmSymbolIndex(backing, BackgroundIndexer(backing)) {
 			override fun isActive(sourceId: String): Boolean = true
+			override fun visibleSources(): Set<String>? = null
 		}
 	}
 
@@ -94,6 +101,105 @@ class SourceFileIndexerTest : KtLspTest() {
 			assertThat(names).containsExactly("globalConfig", "compute")
 		}
 
+	@Test
+	fun `syntactic pass publishes names, kinds and declared types without resolving`(): Unit =
+		runBlocking {
+			val file =
+				createSourceFile(
+					"Shapes.kt",
+					"""
+					package com.example.shapes
+
+					class Circle(val radius: Double) {
+						fun area(scale: Int = 1): Double = 0.0
+						private fun hidden() {}
+					}
+					fun String.shout(): String? = null
+					fun local() { val inner = 1 }
+					""".trimIndent(),
+				)
+
+			val symbolsIndex = buildSymbolIndex()
+			val fileIndex = KtFileMetadataIndex(InMemoryIndex(KtFileMetadataDescriptor))
+
+			val result =
+				indexSourceFileSyntactically(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)
+
+			assertThat(result?.needsResolve).isTrue()
+			val symbols = symbolsIndex.findByPrefix("").associateBy { it.shortName }
+			assertThat(symbols.keys).containsExactly("Circle", "radius", "area", "shout", "local")
+			assertThat(symbols.getValue("Circle").kind).isEqualTo(JvmSymbolKind.CLASS)
+			assertThat(symbols.getValue("shout").kind).isEqualTo(JvmSymbolKind.EXTENSION_FUNCTION)
+			assertThat(symbols.getValue("area").packageName).isEqualTo("com.example.shapes")
+
+			val area = symbols.getValue("area").data as JvmFunctionInfo
+			assertThat(area.containingClassName).isEqualTo("com/example/shapes/Circle")
+			assertThat(area.returnTypeDisplayName).isEqualTo("Double")
+			assertThat(area.parameters.single().hasDefaultValue).isTrue()
+
+			val radius = symbols.getValue("radius").data as JvmFieldInfo
+			assertThat(radius.typeDisplayName).isEqualTo("Double")
+			assertThat(radius.typeName).isEmpty()
+
+			assertThat(fileIndex.get(result!!.filePath)?.isResolved).isFalse()
+		}
+
+	@Test
+	fun `resolve pass replaces syntactic symbols and marks the file resolved`(): Unit =
+		runBlocking {
+			val file =
+				createSourceFile(
+					"Resolve.kt",
+					"""
+					fun greet(name: String) = "Hello, " + name
+					""".trimIndent(),
+				)
+
+			val symbolsIndex = buildSymbolIndex()
+			val fileIndex = KtFileMetadataIndex(InMemoryIndex(KtFileMetadataDescriptor))
+
+			val result =
+				indexSourceFileSyntactically(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)!!
+			val syntactic = symbolsIndex.findByPrefix("").single().data as JvmFunctionInfo
+			assertThat(syntactic.returnTypeDisplayName).isEmpty()
+
+			indexSourceFile(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)
+
+			val resolved = symbolsIndex.findByPrefix("").single().data as JvmFunctionInfo
+			assertThat(resolved.returnTypeDisplayName).isEqualTo("String")
+			assertThat(resolved.parameters.single().typeName).isEqualTo("kotlin/String")
+			assertThat(fileIndex.get(result.filePath)?.isResolved).isTrue()
+
+			// Both tiers are now up to date.
+			val again =
+				indexSourceFileSyntactically(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)
+			assertThat(again?.needsResolve).isFalse()
+		}
+
+	@Test
+	fun `file with unchanged content is not re-indexed after a restart`(): Unit =
+		runBlocking {
+			val file = createSourceFile("Persisted.kt", "fun persisted() = 1")
+
+			val symbolsIndex = buildSymbolIndex()
+			val fileIndex = KtFileMetadataIndex(InMemoryIndex(KtFileMetadataDescriptor))
+
+			val first =
+				indexSourceFileSyntactically(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)!!
+			indexSourceFile(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)
+
+			// A new session sees different timestamps and PSI stamps for the same content.
+			val stored = fileIndex.get(first.filePath)!!
+			fileIndex.upsert(stored.copy(lastModified = Instant.EPOCH, modificationStamp = 0L))
+
+			val again =
+				indexSourceFileSyntactically(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)
+			assertThat(again?.symbolCount).isEqualTo(0)
+			assertThat(again?.needsResolve).isFalse()
+			assertThat(indexSourceFile(env.project, file, fileIndex, symbolsIndex, ICancelChecker.NOOP)).isEqualTo(0)
+			assertThat(symbolsIndex.findByPrefix("").map { it.shortName }.toList()).containsExactly("persisted")
+		}
+
 	@Test
 	fun `isMissingClasspathFile detects a direct NoSuchFileException`() {
 		assertThat(NoSuchFileException("/caches/transforms/x/classes.jar").isMissingClasspathFile())
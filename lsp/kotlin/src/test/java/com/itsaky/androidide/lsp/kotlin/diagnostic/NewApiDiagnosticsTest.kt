@@ -0,0 +1,81 @@
+package com.itsaky.androidide.lsp.kotlin.diagnostic
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.lsp.kotlin.fixtures.KtLspTest
+import com.itsaky.androidide.lsp.util.NewApiChecker
+import com.itsaky.androidide.lsp.util.NewApiChecker.SymbolKind
+import com.itsaky.androidide.progress.ICancelChecker
+import com.itsaky.androidide.xml.versions.ApiVersions
+import com.itsaky.androidide.xml.versions.ClassInfo
+import com.itsaky.androidide.xml.versions.FieldInfo
+import com.itsaky.androidide.xml.versions.MethodInfo
+import org.junit.Test
+
+class NewApiDiagnosticsTest : KtLspTest() {
+	private class Member(
+		override val name: String,
+		override val since: Int,
+	) : FieldInfo,
+		MethodInfo {
+		override val simpleName = name
+		override val removed = -1
+		override val deprecated = -1
+	}
+
+	private class Class(
+		override val name: String,
+		private val members: List<Member>,
+	) : ClassInfo {
+		override val since = 1
+		override val removed = -1
+		override val deprecated = -1
+
+		override fun getField(name: String): FieldInfo? = members.find { it.name == name }
+
+		override fun getMethod(
+			name: String,
+			vararg params: String,
+		): MethodInfo? = members.find { it.name == name }
+	}
+
+	// The JDK stands in for the platform here: System.out plays a new field, and Integer.MAX_VALUE
+	// a new constant like Build.VERSION_CODES.TIRAMISU
+	private val versions =
+		object : ApiVersions {
+			private val classes =
+				listOf(
+					Class("java.lang.System", listOf(Member("out", 30))),
+					Class("java.lang.Integer", listOf(Member("MAX_VALUE", 30))),
+				).associateBy { it.name }
+
+			override fun getClass(name: String): ClassInfo? = classes[name]
+		}
+
+	@Test
+	fun `guarded references and constants are not reported`() {
+		val ktFile =
+			createSourceFile(
+				"NewApi.kt",
+				"""
+				package p
+
+				object Build {
+					val SDK_INT: Int = 0
+				}
+
+				fun unguarded(): Any = System.out
+
+				fun guarded(): Any? = if (Build.SDK_INT >= Integer.MAX_VALUE) System.out else null
+				""".trimIndent(),
+			)
+
+		val usages =
+			analyzeMaybeDanglingForTest(ktFile) {
+				collectNewApiUsages(ktFile, NewApiChecker(versions, minSdk = 16), ICancelChecker.NOOP)
+			}
+
+		assertThat(usages.map { Triple(it.kind, it.symbol, it.api) })
+			.containsExactly(Triple(SymbolKind.FIELD, "java.lang.System#out", 30))
+		assertThat(usages.single().range.startOffset).isEqualTo(ktFile.text.indexOf("out"))
+	}
+}
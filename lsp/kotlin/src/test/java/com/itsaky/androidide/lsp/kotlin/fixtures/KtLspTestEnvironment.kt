@@ -210,6 +210,7 @@ internal class KtLspTestEnvironment(
 			object : JvmSymbolIndex(inMemoryJvmBackingIndex, BackgroundIndexer(inMemoryJvmBackingIndex)) {
 				// ensure we're not filtering out anything
 				override fun isActive(sourceId: String) = true
+				override fun visibleSources(): Set<String>? = null
 			}
 
 		val inMemoryFileMetaBackingIndex = InMemoryIndex(KtFileMetadataDescriptor)
@@ -67,7 +67,7 @@ object AdvancedEditProvider {
     }
 
     val content =
-      FileManager.getDocumentContents(event.changedFile).let {
+      FileManager.getDocumentSnapshot(event.changedFile).let {
         if (it.isBlank()) return
         StringBuilder(it)
       }
@@ -17,6 +17,7 @@
 
 package com.itsaky.androidide.projects
 
+import com.itsaky.androidide.eventbus.events.editor.ChangeType
 import com.itsaky.androidide.eventbus.events.editor.DocumentChangeEvent
 import com.itsaky.androidide.eventbus.events.editor.DocumentCloseEvent
 import com.itsaky.androidide.eventbus.events.editor.DocumentOpenEvent
@@ -75,6 +76,19 @@ object FileManager {
 		return getFileContents(file)
 	}
 
+	/**
+	 * Returns the contents of [file] like [getDocumentContents], but without copying the text of an
+	 * active document. The returned sequence does not change when the document is edited.
+	 */
+	fun getDocumentSnapshot(file: Path): CharSequence {
+		val document = getActiveDocument(file)
+		if (document != null) {
+			return document.snapshot()
+		}
+
+		return getFileContents(file)
+	}
+
 	fun getLastModified(file: Path): Instant {
 		val document = getActiveDocument(file)
 		if (document != null) {
@@ -106,24 +120,67 @@ object FileManager {
 		_activeDocuments[event.openedFile.normalize()] = createDocument(event)
 	}
 
-	fun onDocumentContentChange(event: DocumentChangeEvent) {
-		val document = _activeDocuments[event.changedFile.normalize()]
+	/**
+	 * Apply the change described by [event] to its active document.
+	 *
+	 * If the change cannot be applied, e.g. because it is out of range of the document, the document
+	 * is resynced with [currentText], the full text of the editor after the change. Without it, the
+	 * document is dropped, so that readers do not see text which differs from the editor.
+	 *
+	 * @param event The change event.
+	 * @param currentText Provides the current text of the document in the editor, or `null` if it is
+	 * not available.
+	 */
+	fun onDocumentContentChange(event: DocumentChangeEvent, currentText: () -> String? = { null }) {
+		val file = event.changedFile.normalize()
+		val document = _activeDocuments[file]
 
 		if (document == null) {
-			// create document if not already created
 			// this should not happen under normal circumstances
-			_activeDocuments[event.changedFile.normalize()] = createDocument(event)
 			log.warn(
 				"Document change event received before open event for file {}",
 				event.changedFile
 			)
+			createDocument(event, currentText)?.let { _activeDocuments[file] = it }
 			return
 		}
 
+		val newText = event.newText
+		if (newText != null) {
+			document.setContent(newText)
+			event.newText = null
+		} else if (!tryApplyChange(document, event)) {
+			val text = currentText()
+			if (text == null) {
+				_activeDocuments.remove(file, document)
+				return
+			}
+
+			document.setContent(text)
+		}
+
 		document.version = event.version
 		document.modified = Instant.now()
-		document.content = event.newText!!
-		event.newText = null
+	}
+
+	private fun tryApplyChange(document: ActiveDocument, event: DocumentChangeEvent): Boolean {
+		return try {
+			applyChange(document, event)
+			true
+		} catch (err: RuntimeException) {
+			// The change has no indices, or they are out of range of the document
+			log.error("Change {} does not apply to document {}", event.changeRange, event.changedFile, err)
+			false
+		}
+	}
+
+	private fun applyChange(document: ActiveDocument, event: DocumentChangeEvent) {
+		val range = event.changeRange
+		when (event.changeType) {
+			ChangeType.INSERT -> document.insert(range.start.requireIndex(), event.changedText)
+			ChangeType.DELETE -> document.delete(range.start.requireIndex(), range.end.requireIndex())
+			ChangeType.NEW_TEXT -> document.setContent(event.changedText)
+		}
 	}
 
 	fun onDocumentClose(event: DocumentCloseEvent) {
@@ -151,13 +208,29 @@ object FileManager {
 		)
 	}
 
-	private fun createDocument(event: DocumentChangeEvent): ActiveDocument {
-		return ActiveDocument(
+	/**
+	 * Create the document changed by [event], with the text of the editor if available. Otherwise, the
+	 * change is applied to the contents of the file, or `null` is returned if it does not apply.
+	 */
+	private fun createDocument(event: DocumentChangeEvent, currentText: () -> String?): ActiveDocument? {
+		val text = event.newText ?: currentText()
+		if (text != null) {
+			event.newText = null
+			return ActiveDocument(
+				file = event.changedFile,
+				version = event.version,
+				modified = Instant.now(),
+				content = text
+			)
+		}
+
+		val document = ActiveDocument(
 			file = event.changedFile,
 			version = event.version,
 			modified = Instant.now(),
-			content = event.changedText
+			content = getFileContents(event.changedFile)
 		)
+		return document.takeIf { tryApplyChange(it, event) }
 	}
 
 	private fun createFileReader(file: Path): BufferedReader {
@@ -340,6 +340,13 @@ open class AndroidModule(
 		return null
 	}
 
+	/**
+	 * Get the minimum SDK version of the selected build variant of this module.
+	 *
+	 * @return The minimum SDK version, or `-1` if it is not known.
+	 */
+	fun getMinSdkVersion(): Int = getSelectedVariant()?.mainArtifact?.minSdkVersion ?: -1
+
 	/**
 	 * Get the [WidgetTable] instance for this module.
 	 *
@@ -34,14 +34,40 @@ open class ActiveDocument(
 	content: String = ""
 ) {
 
-	var content: String = content
-		internal set
+	// Guarded by this
+	private val buffer = DocumentBuffer(content)
+
+	/**
+	 * The full text of the document. This copies the text once per version; prefer [snapshot] where
+	 * a [CharSequence] is enough.
+	 */
+	val content: String
+		get() = snapshot().toString()
+
+	/** An immutable view of the current text of the document, which does not copy the text. */
+	@Synchronized
+	fun snapshot(): DocumentSnapshot = buffer.snapshot()
+
+	@Synchronized
+	internal fun setContent(content: String) {
+		buffer.setText(content)
+	}
+
+	@Synchronized
+	internal fun insert(offset: Int, text: CharSequence) {
+		buffer.insert(offset, text)
+	}
+
+	@Synchronized
+	internal fun delete(start: Int, end: Int) {
+		buffer.delete(start, end)
+	}
 
 	fun inputStream(): BufferedInputStream {
 		return content.byteInputStream().buffered()
 	}
 
 	fun reader(): BufferedReader {
-		return content.reader().buffered()
+		return snapshot().reader().buffered()
 	}
 }
@@ -0,0 +1,313 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.projects.models
+
+import java.io.Reader
+
+/**
+ * The text of an [ActiveDocument], stored as a piece table so that edits do not copy the whole
+ * document.
+ *
+ * The text is a list of pieces, each a range of an immutable `char` array: the text the buffer was
+ * created with, or an append-only buffer holding every inserted text. An insertion appends to the
+ * latter and splits at most one piece, a deletion drops or trims pieces. Typing at the end of the
+ * previous insertion extends its piece instead of adding one. The pieces are merged into a single
+ * one when there are more than [MAX_PIECES].
+ *
+ * Since no array range referenced by a piece is ever written again, a [snapshot] only copies the
+ * piece list and stays valid after later edits.
+ *
+ * Not thread-safe; callers must synchronize access. Snapshots may be used from any thread.
+ */
+class DocumentBuffer(text: String = "") {
+
+	companion object {
+
+		/** The number of pieces above which they are merged into one. */
+		const val MAX_PIECES = 1024
+
+		private const val MIN_ADD_CAPACITY = 1024
+	}
+
+	private class Piece(val source: CharArray, val start: Int, val length: Int)
+
+	private val pieces = ArrayList<Piece>()
+	private var add = CharArray(MIN_ADD_CAPACITY)
+	private var addLength = 0
+	private var snapshot: DocumentSnapshot? = null
+
+	/** The number of chars in the buffer. */
+	var length = 0
+		private set
+
+	/** The number of pieces the text is split in. */
+	val pieceCount: Int
+		get() = pieces.size
+
+	init {
+		setText(text)
+	}
+
+	/** Replaces the whole text of the buffer. */
+	fun setText(text: String) {
+		pieces.clear()
+		if (text.isNotEmpty()) {
+			pieces.add(Piece(text.toCharArray(), 0, text.length))
+		}
+		length = text.length
+		snapshot = null
+	}
+
+	/** Inserts [text] at [offset]. */
+	fun insert(offset: Int, text: CharSequence) {
+		if (offset < 0 || offset > length) {
+			throw IndexOutOfBoundsException("offset=$offset, length=$length")
+		}
+		if (text.isEmpty()) {
+			return
+		}
+
+		val start = append(text)
+		val located = locate(offset)
+		val index = pieceIndex(located)
+		val inner = innerOffset(located)
+
+		val previous = if (inner == 0 && index > 0) pieces[index - 1] else null
+		if (previous != null && previous.source === add && previous.start + previous.length == start) {
+			// Typing at the end of the previous insertion
+			pieces[index - 1] = Piece(add, previous.start, previous.length + text.length)
+		} else {
+			val piece = Piece(add, start, text.length)
+			if (inner == 0) {
+				pieces.add(index, piece)
+			} else {
+				val split = pieces[index]
+				pieces[index] = Piece(split.source, split.start, inner)
+				pieces.add(index + 1, piece)
+				pieces.add(index + 2, Piece(split.source, split.start + inner, split.length - inner))
+			}
+		}
+
+		length += text.length
+		onChanged()
+	}
+
+	/** Deletes the chars from [start] (inclusive) to [end] (exclusive). */
+	fun delete(start: Int, end: Int) {
+		if (start < 0 || end > length || start > end) {
+			throw IndexOutOfBoundsException("start=$start, end=$end, length=$length")
+		}
+		if (start == end) {
+			return
+		}
+
+		val first = splitAt(start)
+		val last = splitAt(end)
+		pieces.subList(first, last).clear()
+
+		length -= end - start
+		onChanged()
+	}
+
+	/** An immutable view of the current text. Does not copy the text. */
+	fun snapshot(): DocumentSnapshot {
+		snapshot?.let { return it }
+
+		val sources = Array(pieces.size) { pieces[it].source }
+		val starts = IntArray(pieces.size)
+		val offsets = IntArray(pieces.size)
+		var offset = 0
+		for (i in pieces.indices) {
+			val piece = pieces[i]
+			starts[i] = piece.start
+			offsets[i] = offset
+			offset += piece.length
+		}
+
+		return DocumentSnapshot(sources, starts, offsets, length).also {
+			snapshot = it
+		}
+	}
+
+	override fun toString(): String = snapshot().toString()
+
+	/** Appends [text] to the add buffer and returns its start in [add]. */
+	private fun append(text: CharSequence): Int {
+		if (addLength + text.length > add.size) {
+			// Start a new buffer; pieces and snapshots keep referencing the old one
+			add = CharArray(maxOf(MIN_ADD_CAPACITY, add.size * 2, text.length))
+			addLength = 0
+		}
+
+		val start = addLength
+		if (text is String) {
+			text.toCharArray(add, start, 0, text.length)
+		} else {
+			for (i in text.indices) {
+				add[start + i] = text[i]
+			}
+		}
+		addLength += text.length
+		return start
+	}
+
+	/**
+	 * Finds the piece containing [offset], as a value for [pieceIndex] and [innerOffset]. The end
+	 * of the text is at offset 0 of the piece after the last one.
+	 */
+	private fun locate(offset: Int): Long {
+		var pieceStart = 0
+		for (i in pieces.indices) {
+			val length = pieces[i].length
+			if (offset < pieceStart + length) {
+				return (i.toLong() shl 32) or (offset - pieceStart).toLong()
+			}
+			pieceStart += length
+		}
+		return pieces.size.toLong() shl 32
+	}
+
+	private fun pieceIndex(located: Long): Int = (located ushr 32).toInt()
+
+	private fun innerOffset(located: Long): Int = located.toInt()
+
+	/** Makes [offset] the start of a piece and returns the index of that piece. */
+	private fun splitAt(offset: Int): Int {
+		val located = locate(offset)
+		val index = pieceIndex(located)
+		val inner = innerOffset(located)
+		if (inner == 0) {
+			return index
+		}
+
+		val split = pieces[index]
+		pieces[index] = Piece(split.source, split.start, inner)
+		pieces.add(index + 1, Piece(split.source, split.start + inner, split.length - inner))
+		return index + 1
+	}
+
+	private fun onChanged() {
+		snapshot = null
+		if (pieces.size > MAX_PIECES) {
+			val chars = CharArray(length)
+			var offset = 0
+			for (piece in pieces) {
+				System.arraycopy(piece.source, piece.start, chars, offset, piece.length)
+				offset += piece.length
+			}
+			pieces.clear()
+			pieces.add(Piece(chars, 0, length))
+		}
+	}
+}
+
+/**
+ * An immutable view of the text of a [DocumentBuffer] at some point in time.
+ *
+ * Reading chars, ranges or a [reader] does not copy the whole text; [toString] does, once.
+ */
+class DocumentSnapshot internal constructor(
+	private val sources: Array<CharArray>,
+	private val starts: IntArray,
+	private val offsets: IntArray,
+	override val length: Int,
+) : CharSequence {
+
+	@Volatile
+	private var string: String? = null
+
+	override fun get(index: Int): Char {
+		if (index < 0 || index >= length) {
+			throw IndexOutOfBoundsException("index=$index, length=$length")
+		}
+		val piece = pieceAt(index)
+		return sources[piece][starts[piece] + index - offsets[piece]]
+	}
+
+	override fun subSequence(startIndex: Int, endIndex: Int): CharSequence {
+		if (startIndex < 0 || endIndex > length || startIndex > endIndex) {
+			throw IndexOutOfBoundsException("start=$startIndex, end=$endIndex, length=$length")
+		}
+		string?.let { return it.substring(startIndex, endIndex) }
+
+		val chars = CharArray(endIndex - startIndex)
+		copyTo(startIndex, chars, 0, chars.size)
+		return String(chars)
+	}
+
+	/** A reader of the text, which reads the pieces without copying the whole text. */
+	fun reader(): Reader = SnapshotReader()
+
+	override fun toString(): String {
+		string?.let { return it }
+		val chars = CharArray(length)
+		copyTo(0, chars, 0, length)
+		return String(chars).also { string = it }
+	}
+
+	/** Index of the piece containing [index]. */
+	private fun pieceAt(index: Int): Int {
+		var low = 0
+		var high = offsets.size - 1
+		while (low < high) {
+			val mid = (low + high + 1) ushr 1
+			if (offsets[mid] <= index) low = mid else high = mid - 1
+		}
+		return low
+	}
+
+	/** Copies [count] chars, starting at [start], to [dest] at [destStart]. */
+	private fun copyTo(start: Int, dest: CharArray, destStart: Int, count: Int) {
+		if (count == 0) {
+			return
+		}
+
+		var piece = pieceAt(start)
+		var inner = start - offsets[piece]
+		var copied = 0
+		while (copied < count) {
+			val pieceLength = (if (piece + 1 < offsets.size) offsets[piece + 1] else length) - offsets[piece]
+			val n = minOf(pieceLength - inner, count - copied)
+			System.arraycopy(sources[piece], starts[piece] + inner, dest, destStart + copied, n)
+			copied += n
+			piece++
+			inner = 0
+		}
+	}
+
+	private inner class SnapshotReader : Reader() {
+
+		private var position = 0
+
+		override fun read(cbuf: CharArray, off: Int, len: Int): Int {
+			if (off < 0 || len < 0 || off + len > cbuf.size) {
+				throw IndexOutOfBoundsException()
+			}
+			if (position >= length) {
+				return -1
+			}
+
+			val count = minOf(len, length - position)
+			copyTo(position, cbuf, off, count)
+			position += count
+			return count
+		}
+
+		override fun close() {}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.projects
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.eventbus.events.editor.ChangeType
+import com.itsaky.androidide.eventbus.events.editor.DocumentChangeEvent
+import com.itsaky.androidide.eventbus.events.editor.DocumentCloseEvent
+import com.itsaky.androidide.eventbus.events.editor.DocumentOpenEvent
+import com.itsaky.androidide.models.Position
+import com.itsaky.androidide.models.Range
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.nio.file.Path
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class FileManagerTest {
+
+  @get:Rule
+  val tmp = TemporaryFolder()
+
+  private val openedFiles = mutableListOf<Path>()
+
+  @After
+  fun closeDocuments() {
+    openedFiles.forEach { FileManager.onDocumentClose(DocumentCloseEvent(it)) }
+  }
+
+  @Test
+  fun `insertions and deletions are applied to the document`() {
+    val file = open("class Main {}")
+
+    FileManager.onDocumentContentChange(insert(file, 12, " int x; ", version = 2))
+    FileManager.onDocumentContentChange(delete(file, 0, 6, version = 3))
+
+    val document = FileManager.getActiveDocument(file)!!
+    assertThat(document.content).isEqualTo("Main { int x; }")
+    assertThat(document.version).isEqualTo(3)
+  }
+
+  @Test
+  fun `failed change is resynced from the editor`() {
+    val file = open("class Main {}")
+
+    FileManager.onDocumentContentChange(insert(file, 100, "x", version = 2)) { "class Main {}x" }
+
+    val document = FileManager.getActiveDocument(file)!!
+    assertThat(document.content).isEqualTo("class Main {}x")
+    assertThat(document.version).isEqualTo(2)
+  }
+
+  @Test
+  fun `failed change without the editor text drops the document`() {
+    val file = open("class Main {}")
+
+    FileManager.onDocumentContentChange(delete(file, 5, 100, version = 2))
+
+    assertThat(FileManager.isActive(file)).isFalse()
+  }
+
+  @Test
+  fun `change before open is seeded from the editor`() {
+    val file = tmp.newFile("Main.java").toPath()
+    file.toFile().writeText("class Main {}")
+    openedFiles.add(file)
+
+    FileManager.onDocumentContentChange(insert(file, 0, "public ", version = 2)) {
+      "public class Main { int unsaved; }"
+    }
+
+    val document = FileManager.getActiveDocument(file)!!
+    assertThat(document.content).isEqualTo("public class Main { int unsaved; }")
+    assertThat(document.version).isEqualTo(2)
+  }
+
+  @Test
+  fun `change before open without the editor text is applied to the file contents`() {
+    val file = tmp.newFile("Main.java").toPath()
+    file.toFile().writeText("class Main {}")
+    openedFiles.add(file)
+
+    FileManager.onDocumentContentChange(insert(file, 0, "public ", version = 2))
+
+    assertThat(FileManager.getDocumentContents(file)).isEqualTo("public class Main {}")
+  }
+
+  private fun open(text: String): Path {
+    val file = tmp.newFile().toPath()
+    openedFiles.add(file)
+    FileManager.onDocumentOpen(DocumentOpenEvent(file, text, 1))
+    return file
+  }
+
+  private fun insert(file: Path, index: Int, text: String, version: Int) =
+    change(file, ChangeType.INSERT, text, index, index + text.length, version)
+
+  private fun delete(file: Path, start: Int, end: Int, version: Int) =
+    change(file, ChangeType.DELETE, "", start, end, version)
+
+  private fun change(
+    file: Path,
+    type: ChangeType,
+    text: String,
+    start: Int,
+    end: Int,
+    version: Int
+  ) = DocumentChangeEvent(
+    changedFile = file,
+    changedText = text,
+    version = version,
+    changeType = type,
+    changeDelta = if (type == ChangeType.DELETE) start - end else text.length,
+    // Only the indices are used to apply the change
+    changeRange = Range(Position(0, start, start), Position(0, end, end))
+  )
+}
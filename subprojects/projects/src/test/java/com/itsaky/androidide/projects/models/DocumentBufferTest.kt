@@ -0,0 +1,117 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.projects.models
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import kotlin.random.Random
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class DocumentBufferTest {
+
+  @Test
+  fun `inserts and deletes`() {
+    val buffer = DocumentBuffer("class Main {}")
+    buffer.insert(12, "\n  int x;\n")
+    buffer.insert(0, "public ")
+    buffer.delete(0, 7)
+    buffer.insert(buffer.length, "\n")
+    buffer.delete(6, 10)
+
+    assertThat(buffer.toString()).isEqualTo("class  {\n  int x;\n}\n")
+    assertThat(buffer.length).isEqualTo(buffer.toString().length)
+  }
+
+  @Test
+  fun `typing extends the last inserted piece`() {
+    val buffer = DocumentBuffer("class Main {}")
+    "void run() {}".forEachIndexed { i, c -> buffer.insert(12 + i, c.toString()) }
+
+    assertThat(buffer.toString()).isEqualTo("class Main {void run() {}}")
+    assertThat(buffer.pieceCount).isEqualTo(3)
+  }
+
+  @Test
+  fun `snapshots do not change with later edits`() {
+    val buffer = DocumentBuffer("hello world")
+    val before = buffer.snapshot()
+    buffer.insert(5, ",")
+    buffer.delete(0, 1)
+    val after = buffer.snapshot()
+
+    assertThat(before.toString()).isEqualTo("hello world")
+    assertThat(before[0]).isEqualTo('h')
+    assertThat(after.toString()).isEqualTo("ello, world")
+    assertThat(after.subSequence(3, 8).toString()).isEqualTo("o, wo")
+    assertThat(buffer.snapshot()).isSameInstanceAs(after)
+  }
+
+  @Test
+  fun `reader reads the snapshot`() {
+    val buffer = DocumentBuffer("line 1\nline 3\n")
+    buffer.insert(7, "line 2\n")
+
+    assertThat(buffer.snapshot().reader().readLines()).containsExactly("line 1", "line 2", "line 3").inOrder()
+  }
+
+  @Test
+  fun `random edits match a string builder`() {
+    val random = Random(42)
+    val buffer = DocumentBuffer("")
+    val expected = StringBuilder()
+    val snapshots = mutableListOf<Pair<DocumentSnapshot, String>>()
+
+    repeat(5000) { step ->
+      if (expected.isEmpty() || random.nextInt(3) > 0) {
+        val offset = random.nextInt(expected.length + 1)
+        val text = "x".repeat(random.nextInt(1, 5)) + step
+        buffer.insert(offset, text)
+        expected.insert(offset, text)
+      } else {
+        val start = random.nextInt(expected.length)
+        val end = minOf(expected.length, start + random.nextInt(1, 20))
+        buffer.delete(start, end)
+        expected.delete(start, end)
+      }
+
+      if (step % 500 == 0) {
+        snapshots.add(buffer.snapshot() to expected.toString())
+      }
+    }
+
+    assertThat(buffer.toString()).isEqualTo(expected.toString())
+    assertThat(buffer.pieceCount).isAtMost(DocumentBuffer.MAX_PIECES)
+    for ((snapshot, text) in snapshots) {
+      assertThat(snapshot.toString()).isEqualTo(text)
+      assertThat(snapshot.reader().readText()).isEqualTo(text)
+    }
+  }
+
+  @Test
+  fun `out of range edits are rejected`() {
+    val buffer = DocumentBuffer("abc")
+    assertThrows(IndexOutOfBoundsException::class.java) { buffer.insert(4, "d") }
+    assertThrows(IndexOutOfBoundsException::class.java) { buffer.delete(2, 4) }
+    assertThat(buffer.toString()).isEqualTo("abc")
+  }
+}
@@ -45,6 +45,7 @@ import com.itsaky.androidide.tooling.api.messages.result.TaskExecutionResult.Fai
 import com.itsaky.androidide.tooling.api.messages.result.TaskExecutionResult.Failure.UNSUPPORTED_GRADLE_VERSION
 import com.itsaky.androidide.tooling.api.models.ToolingServerMetadata
 import com.itsaky.androidide.tooling.api.sync.ProjectSyncHelper
+import com.itsaky.androidide.tooling.impl.progress.ForwardingProgressListener
 import com.itsaky.androidide.tooling.impl.sync.RootModelBuilder
 import com.itsaky.androidide.tooling.impl.sync.RootProjectModelBuilderParams
 import com.itsaky.androidide.tooling.impl.util.configureFrom
@@ -358,10 +359,13 @@ internal class ToolingApiServerImpl : IToolingApiServer {
 	}
 
 	private fun notifyBuildFailure(result: BuildResult) {
+		// the client must receive the progress events of the build before its result
+		ForwardingProgressListener.flush()
 		client?.onBuildFailed(result)
 	}
 
 	private fun notifyBuildSuccess(result: BuildResult) {
+		ForwardingProgressListener.flush()
 		client?.onBuildSuccessful(result)
 	}
 
@@ -42,10 +42,11 @@ import org.gradle.tooling.events.work.WorkItemProgressEvent
 import org.gradle.tooling.events.work.WorkItemStartEvent
 
 /**
- * A [ProgressListener] which forwards all of its event to [IToolingApiClient].
+ * A [ProgressListener] which forwards all of its event to [IToolingApiClient], in batches.
  * @author Akash Yadav
  */
-class ForwardingProgressListener : ProgressListener {
+class ForwardingProgressListener(private val batcher: ProgressEventBatcher = events) :
+  ProgressListener {
 
   override fun statusChanged(event: ProgressEvent?) {
     if (event == null || Main.client == null) {
@@ -103,6 +104,18 @@ class ForwardingProgressListener : ProgressListener {
           }
       }
 
-    Main.client?.onProgressEvent(ideEvent)
+    batcher.add(event.descriptor, ideEvent)
+  }
+
+  companion object {
+
+    /** Batches the progress events of all builds for [Main.client]. */
+    private val events = ProgressEventBatcher { batch -> Main.client?.onProgressEventBatch(batch) }
+
+    /** Sends the progress events which have not been sent yet. */
+    @JvmStatic
+    fun flush() {
+      events.flush()
+    }
   }
 }
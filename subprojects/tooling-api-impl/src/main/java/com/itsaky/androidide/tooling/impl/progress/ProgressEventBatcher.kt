@@ -0,0 +1,125 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.tooling.impl.progress
+
+import com.itsaky.androidide.tooling.api.messages.ProgressEventBatch
+import com.itsaky.androidide.tooling.api.util.ToolingProps
+import com.itsaky.androidide.tooling.events.FinishEvent
+import com.itsaky.androidide.tooling.events.ProgressEvent
+import com.itsaky.androidide.tooling.events.StartEvent
+import org.slf4j.LoggerFactory
+import java.util.IdentityHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collects progress events and sends them as [ProgressEventBatch]es, instead of sending every
+ * event in its own message.
+ *
+ * Events are collected for at most [windowMs] milliseconds, or until [maxBatchSize] events are
+ * pending. While collecting, the status updates of an operation replace each other, and are
+ * dropped once the operation finishes. Start and finish events are always sent, in order.
+ *
+ * @param send Sends a batch to the client. Batches are sent one at a time, in order.
+ */
+class ProgressEventBatcher
+@JvmOverloads
+constructor(
+  private val windowMs: Long = ToolingProps.progressBatchWindow.inWholeMilliseconds,
+  private val maxBatchSize: Int = ToolingProps.progressBatchMaxSize,
+  private val scheduler: ScheduledExecutorService = flushScheduler,
+  private val send: (ProgressEventBatch) -> Unit
+) {
+
+  private val lock = Any()
+
+  /** The pending events. Superseded status updates leave a `null` behind. */
+  private var pending = ArrayList<ProgressEvent?>()
+
+  /** The index in [pending] of the status update of each operation. */
+  private val pendingUpdates = IdentityHashMap<Any, Int>()
+
+  private var scheduledFlush: ScheduledFuture<*>? = null
+
+  init {
+    require(windowMs >= 0) { "windowMs must not be negative" }
+    require(maxBatchSize > 0) { "maxBatchSize must be positive" }
+  }
+
+  /**
+   * Adds an event to the current batch.
+   *
+   * @param operation The operation the event belongs to. Events of the same operation must use
+   *   the same instance, e.g. the Gradle operation descriptor.
+   */
+  fun add(operation: Any, event: ProgressEvent) {
+    synchronized(lock) {
+      if (event !is StartEvent) {
+        pendingUpdates.remove(operation)?.let { update -> pending[update] = null }
+      }
+
+      if (event !is StartEvent && event !is FinishEvent) {
+        pendingUpdates[operation] = pending.size
+      }
+      pending.add(event)
+
+      if (pending.size >= maxBatchSize || windowMs == 0L) {
+        flushLocked()
+      } else if (scheduledFlush == null) {
+        scheduledFlush = scheduler.schedule(::flush, windowMs, TimeUnit.MILLISECONDS)
+      }
+    }
+  }
+
+  /** Sends the pending events, if any. */
+  fun flush() {
+    synchronized(lock) { flushLocked() }
+  }
+
+  private fun flushLocked() {
+    scheduledFlush?.cancel(false)
+    scheduledFlush = null
+
+    if (pending.isEmpty()) {
+      return
+    }
+
+    val events = pending.filterNotNull()
+    pending = ArrayList(maxBatchSize)
+    pendingUpdates.clear()
+
+    try {
+      send(ProgressEventBatch(events))
+    } catch (err: Throwable) {
+      log.error("Failed to send {} progress events", events.size, err)
+    }
+  }
+
+  companion object {
+
+    private val log = LoggerFactory.getLogger(ProgressEventBatcher::class.java)
+
+    private val flushScheduler: ScheduledExecutorService by lazy {
+      Executors.newSingleThreadScheduledExecutor { runnable ->
+        Thread(runnable, "ProgressEventFlusher").apply { isDaemon = true }
+      }
+    }
+  }
+}
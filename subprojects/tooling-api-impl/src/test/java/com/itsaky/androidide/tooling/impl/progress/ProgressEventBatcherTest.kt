@@ -0,0 +1,166 @@
+package com.itsaky.androidide.tooling.impl.progress
+
+import com.google.common.truth.Truth.assertThat
+import com.google.gson.GsonBuilder
+import com.itsaky.androidide.tooling.api.messages.ProgressEventBatch
+import com.itsaky.androidide.tooling.api.util.ToolingApiLauncher
+import com.itsaky.androidide.tooling.events.ProgressEvent
+import com.itsaky.androidide.tooling.events.StatusEvent
+import com.itsaky.androidide.tooling.events.task.TaskFinishEvent
+import com.itsaky.androidide.tooling.events.task.TaskOperationDescriptor
+import com.itsaky.androidide.tooling.events.task.TaskStartEvent
+import com.itsaky.androidide.tooling.events.task.TaskSuccessResult
+import com.itsaky.androidide.tooling.model.PluginIdentifier
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@RunWith(JUnit4::class)
+class ProgressEventBatcherTest {
+
+	private fun descriptor(taskPath: String) =
+		TaskOperationDescriptor(
+			dependencies = emptySet(),
+			originPlugin = PluginIdentifier("com.android.application"),
+			taskPath = taskPath,
+			name = taskPath,
+			displayName = "Task $taskPath",
+		)
+
+	private fun start(descriptor: TaskOperationDescriptor) = TaskStartEvent(descriptor.displayName, 0, descriptor)
+
+	private fun status(
+		descriptor: TaskOperationDescriptor,
+		progress: Long,
+	) = StatusEvent(progress, 100, "percent", descriptor.displayName, progress, descriptor)
+
+	private fun finish(descriptor: TaskOperationDescriptor) =
+		TaskFinishEvent(
+			descriptor.displayName,
+			100,
+			descriptor,
+			TaskSuccessResult(false, false, 0, 100, false, emptyList()),
+		)
+
+	private fun collectingBatcher(
+		maxBatchSize: Int = 1024,
+		batches: MutableList<List<ProgressEvent>>,
+	) = ProgressEventBatcher(windowMs = TimeUnit.HOURS.toMillis(1), maxBatchSize = maxBatchSize) { batch ->
+		batches.add(batch.events)
+	}
+
+	@Test
+	fun `status updates are coalesced and dropped once the operation finishes`() {
+		val batches = mutableListOf<List<ProgressEvent>>()
+		val batcher = collectingBatcher(batches = batches)
+		val compile = descriptor(":app:compileDebugKotlin")
+		val dex = descriptor(":app:dexBuilderDebug")
+
+		val compileStart = start(compile)
+		val dexStart = start(dex)
+		val latestDexStatus = status(dex, 80)
+		val compileFinish = finish(compile)
+
+		batcher.add(compile, compileStart)
+		batcher.add(compile, status(compile, 10))
+		batcher.add(dex, dexStart)
+		batcher.add(dex, status(dex, 40))
+		batcher.add(compile, status(compile, 50))
+		batcher.add(dex, latestDexStatus)
+		batcher.add(compile, compileFinish)
+		assertThat(batches).isEmpty()
+
+		batcher.flush()
+		assertThat(batches).hasSize(1)
+		assertThat(batches[0])
+			.containsExactly(compileStart, dexStart, latestDexStatus, compileFinish)
+			.inOrder()
+
+		batcher.flush()
+		assertThat(batches).hasSize(1)
+	}
+
+	@Test
+	fun `a full batch is sent right away`() {
+		val batches = mutableListOf<List<ProgressEvent>>()
+		val batcher = collectingBatcher(maxBatchSize = 4, batches = batches)
+
+		val descriptors = (0 until 5).map { descriptor(":task$it") }
+		descriptors.forEach { batcher.add(it, start(it)) }
+
+		assertThat(batches).hasSize(1)
+		assertThat(batches[0].map { it.descriptor }).containsExactlyElementsIn(descriptors.take(4)).inOrder()
+
+		batcher.flush()
+		assertThat(batches[1].map { it.descriptor }).containsExactly(descriptors[4])
+	}
+
+	@Test
+	fun `pending events are sent when the window elapses`() {
+		val sent = CountDownLatch(1)
+		val batches = mutableListOf<List<ProgressEvent>>()
+		val batcher =
+			ProgressEventBatcher(windowMs = 20, maxBatchSize = 1024) { batch ->
+				batches.add(batch.events)
+				sent.countDown()
+			}
+
+		val task = descriptor(":app:assembleDebug")
+		batcher.add(task, start(task))
+
+		assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue()
+		assertThat(batches.single().map { it.descriptor }).containsExactly(task)
+	}
+
+	@Test
+	fun `replaying a recorded build sends far fewer and smaller messages`() {
+		val gson = GsonBuilder().also { ToolingApiLauncher.configureGson(it) }.create()
+
+		// A build with four workers, each running tasks which report their progress
+		val recording = mutableListOf<Pair<TaskOperationDescriptor, ProgressEvent>>()
+		val workers = 4
+		val tasksPerWorker = 400
+		val updatesPerTask = 20
+		for (task in 0 until tasksPerWorker) {
+			val descriptors = (0 until workers).map { worker -> descriptor(":module$worker:task$task") }
+			descriptors.forEach { recording.add(it to start(it)) }
+			for (update in 1..updatesPerTask) {
+				descriptors.forEach { recording.add(it to status(it, update * 100L / updatesPerTask)) }
+			}
+			descriptors.forEach { recording.add(it to finish(it)) }
+		}
+
+		var unbatchedBytes = 0L
+		for ((_, event) in recording) {
+			unbatchedBytes += gson.toJson(event, ProgressEvent::class.java).length
+		}
+
+		var messages = 0
+		var batchedBytes = 0L
+		val received = mutableListOf<ProgressEvent>()
+		val batcher =
+			ProgressEventBatcher(windowMs = TimeUnit.HOURS.toMillis(1), maxBatchSize = 256) { batch ->
+				val json = gson.toJson(batch)
+				messages++
+				batchedBytes += json.length
+				received.addAll(gson.fromJson(json, ProgressEventBatch::class.java).events)
+			}
+
+		recording.forEach { (descriptor, event) -> batcher.add(descriptor, event) }
+		batcher.flush()
+
+		assertThat(messages * 100).isLessThan(recording.size)
+		assertThat(batchedBytes * 3).isLessThan(unbatchedBytes)
+
+		// Every task is still reported as started, then finished, with no update after it finished
+		val byTask = received.groupBy { (it.descriptor as TaskOperationDescriptor).taskPath }
+		assertThat(byTask).hasSize(workers * tasksPerWorker)
+		for (events in byTask.values) {
+			assertThat(events.first()).isInstanceOf(TaskStartEvent::class.java)
+			assertThat(events.last()).isInstanceOf(TaskFinishEvent::class.java)
+			assertThat(events.filterIsInstance<TaskFinishEvent>()).hasSize(1)
+		}
+	}
+}
@@ -19,6 +19,7 @@ package com.itsaky.androidide.tooling.api
 
 import com.itsaky.androidide.tooling.api.messages.ClientGradleBuildConfig
 import com.itsaky.androidide.tooling.api.messages.LogMessageParams
+import com.itsaky.androidide.tooling.api.messages.ProgressEventBatch
 import com.itsaky.androidide.tooling.api.messages.result.BuildInfo
 import com.itsaky.androidide.tooling.api.messages.result.BuildResult
 import com.itsaky.androidide.tooling.api.messages.result.GradleWrapperCheckResult
@@ -57,6 +58,10 @@ class ForwardingToolingApiClient(
 		client?.onProgressEvent(event)
 	}
 
+	override fun onProgressEventBatch(batch: ProgressEventBatch) {
+		client?.onProgressEventBatch(batch)
+	}
+
 	override fun checkGradleWrapperAvailability(): CompletableFuture<GradleWrapperCheckResult> =
 		client?.checkGradleWrapperAvailability()
 			?: CompletableFuture.completedFuture(GradleWrapperCheckResult(false))
@@ -19,6 +19,7 @@ package com.itsaky.androidide.tooling.api
 
 import com.itsaky.androidide.tooling.api.messages.ClientGradleBuildConfig
 import com.itsaky.androidide.tooling.api.messages.LogMessageParams
+import com.itsaky.androidide.tooling.api.messages.ProgressEventBatch
 import com.itsaky.androidide.tooling.api.messages.result.BuildInfo
 import com.itsaky.androidide.tooling.api.messages.result.BuildResult
 import com.itsaky.androidide.tooling.api.messages.result.GradleWrapperCheckResult
@@ -88,6 +89,15 @@ interface IToolingApiClient {
 	@JsonNotification
 	fun onProgressEvent(event: ProgressEvent)
 
+	/**
+	 * Called when progress events are received from Gradle build. The tooling API server sends
+	 * the events of a build in batches rather than one [onProgressEvent] call per event.
+	 *
+	 * @param batch The events received since the previous batch.
+	 */
+	@JsonNotification
+	fun onProgressEventBatch(batch: ProgressEventBatch)
+
 	/**
 	 * Tells the client to check if the Gradle wrapper files are available.
 	 *
@@ -15,22 +15,13 @@
  *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package com.itsaky.androidide.xml.internal.versions
+package com.itsaky.androidide.tooling.api.messages
 
-import com.itsaky.androidide.xml.versions.ApiVersions
-import com.itsaky.androidide.xml.versions.ClassInfo
-import java.util.concurrent.ConcurrentHashMap
+import com.itsaky.androidide.tooling.events.ProgressEvent
 
-/** @author Akash Yadav */
-internal class DefaultApiVersions : ApiVersions {
-
-  val classes = ConcurrentHashMap<String, ClassInfo>()
-
-  override fun getClass(name: String): ClassInfo? {
-    return classes[name.replace('.', '/')]
-  }
-  
-  internal fun putClass(name: String, info: ClassInfo) {
-    classes[name] = info
-  }
-}
+/**
+ * Progress events sent from the tooling API to the IDE in one message.
+ *
+ * @property events The events, in the order in which they occurred.
+ */
+data class ProgressEventBatch(val events: List<ProgressEvent>)
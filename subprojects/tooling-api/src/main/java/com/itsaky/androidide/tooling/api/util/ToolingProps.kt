@@ -60,6 +60,17 @@ object ToolingProps {
 	 */
 	val DESCENDANT_FORCE_KILL_TIMEOUT_MS = propName("daemon", "killTimeoutMs")
 
+	/**
+	 * The time, in milliseconds, for which progress events are collected before they are sent to
+	 * the client in one batch.
+	 */
+	val PROGRESS_BATCH_WINDOW_MS = propName("progress", "batchWindowMs")
+
+	/**
+	 * The maximum number of progress events sent to the client in one batch.
+	 */
+	val PROGRESS_BATCH_MAX_SIZE = propName("progress", "batchMaxSize")
+
 	/**
 	 * Whether the current environment is a test environment.
 	 *
@@ -96,4 +107,16 @@ object ToolingProps {
 	 */
 	val killDescendantTimeout: Duration
 		get() = System.getProperty(DESCENDANT_FORCE_KILL_TIMEOUT_MS, "0").toLong().milliseconds
+
+	/**
+	 * The time for which progress events are collected before they are sent to the client.
+	 */
+	val progressBatchWindow: Duration
+		get() = System.getProperty(PROGRESS_BATCH_WINDOW_MS, "100").toLong().milliseconds
+
+	/**
+	 * The maximum number of progress events sent to the client in one batch.
+	 */
+	val progressBatchMaxSize: Int
+		get() = System.getProperty(PROGRESS_BATCH_MAX_SIZE, "256").toInt()
 }
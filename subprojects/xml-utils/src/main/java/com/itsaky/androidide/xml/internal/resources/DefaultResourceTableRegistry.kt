@@ -35,6 +35,7 @@ import com.android.aaptcompiler.extractPathData
 import com.google.auto.service.AutoService
 import com.itsaky.androidide.aapt.logging.IDELogger
 import com.itsaky.androidide.layoutlib.resources.ResourceVisibility.PUBLIC
+import com.itsaky.androidide.utils.Environment
 import com.itsaky.androidide.xml.internal.resources.DefaultResourceTableRegistry.SingleLineValueEntryType.ACTIVITY_ACTIONS
 import com.itsaky.androidide.xml.internal.resources.DefaultResourceTableRegistry.SingleLineValueEntryType.BROADCAST_ACTIONS
 import com.itsaky.androidide.xml.internal.resources.DefaultResourceTableRegistry.SingleLineValueEntryType.CATEGORIES
@@ -77,8 +78,18 @@ class DefaultResourceTableRegistry : ResourceTableRegistry {
     companion object {
 
         private val log = LoggerFactory.getLogger(DefaultResourceTableRegistry::class.java)
+
+        private const val CACHE_KIND_TABLE = "table"
+        private const val CACHE_KIND_MANIFEST_ATTRS = "manifest-attrs"
     }
 
+    /**
+     * Cache for the compiled platform and library resource tables. `null` if the IDE environment
+     * has not been initialized, in which case the tables are always compiled from the sources.
+     */
+    internal var tableCache: ResourceTableCache? =
+        Environment.ANDROIDIDE_HOME?.let { ResourceTableCache(File(it, "cache/resources")) }
+
     override var isLoggingEnabled: Boolean = true
 
     override fun forPackage(name: String, vararg resDirs: File): ResourceTable? {
@@ -186,12 +197,13 @@ class DefaultResourceTableRegistry : ResourceTableRegistry {
             return null
         }
 
-        val logger = BlameLogger(IDELogger)
-        val table = ResourceTable(logger = logger)
-        val options = getDefaultOptions()
-        extractTable(attrs, table, options, logger)
-
-        return table
+        return withTableCache(CACHE_KIND_MANIFEST_ATTRS, listOf(attrs)) {
+            val logger = BlameLogger(IDELogger)
+            val table = ResourceTable(logger = logger)
+            val options = getDefaultOptions()
+            extractTable(attrs, table, options, logger)
+            table
+        }
     }
 
     private fun platformResourceTable(dir: File): ResourceTable? {
@@ -209,23 +221,34 @@ class DefaultResourceTableRegistry : ResourceTableRegistry {
             return null
         }
 
-        if (isLoggingEnabled) {
-            log.info("Creating resource table for {} resource directories", resDirs.size)
-        }
+        val valuesDirs = resDirs.map { File(it, SdkConstants.FD_RES_VALUES) }
+        return withTableCache(CACHE_KIND_TABLE, valuesDirs) {
+            if (isLoggingEnabled) {
+                log.info("Creating resource table for {} resource directories", resDirs.size)
+            }
 
-        val logger = BlameLogger(IDELogger)
-        val table = ResourceTable()
-        val options = getDefaultOptions()
+            val logger = BlameLogger(IDELogger)
+            val table = ResourceTable()
+            val options = getDefaultOptions()
 
-        for (resDir in resDirs) {
-            val values = File(resDir, "values")
-            if (!values.exists() || !values.isDirectory) {
-                continue
+            for (values in valuesDirs) {
+                if (!values.exists() || !values.isDirectory) {
+                    continue
+                }
+                updateFromDirectory(values, table, options, logger)
             }
-            updateFromDirectory(values, table, options, logger)
+
+            table
         }
+    }
 
-        return table
+    private inline fun withTableCache(
+        kind: String,
+        sources: List<File>,
+        crossinline create: () -> ResourceTable?
+    ): ResourceTable? {
+        val cache = tableCache ?: return create()
+        return cache.getOrCreate(kind, sources) { create() }
     }
 
     private fun addFileReferences(table: ResourceTable, pck: String, resDir: File) {
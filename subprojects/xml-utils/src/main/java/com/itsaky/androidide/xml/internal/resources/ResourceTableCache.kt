@@ -0,0 +1,157 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.xml.internal.resources
+
+import com.android.aapt.Resources
+import com.android.aaptcompiler.ResourceTable
+import com.android.aaptcompiler.proto.deserializeTableFromPb
+import com.android.aaptcompiler.proto.serializeTableToPb
+import com.itsaky.androidide.aapt.logging.IDELogger
+import org.slf4j.LoggerFactory
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.security.MessageDigest
+
+/**
+ * On-disk cache of compiled [ResourceTable]s, stored in the aapt2 protobuf format.
+ *
+ * Each entry is identified by the source files it was compiled from and is only reused while
+ * the fingerprint (path, size and modification time) of every source file still matches.
+ */
+internal class ResourceTableCache(private val cacheDir: File) {
+
+    companion object {
+
+        private val log = LoggerFactory.getLogger(ResourceTableCache::class.java)
+
+        /**
+         * Bump this whenever the serialized form of the tables, or the way they are extracted,
+         * changes in an incompatible way.
+         */
+        private const val FORMAT_VERSION = 1
+    }
+
+    /**
+     * Get the cached table compiled from [sources], or compile it with [create] and cache the
+     * result.
+     *
+     * @param kind The kind of table. Tables of different kinds compiled from the same sources are
+     * cached separately.
+     * @param sources The source files the table is compiled from.
+     * @param create Function to compile the table when it is not cached or the cache is stale.
+     */
+    fun getOrCreate(kind: String, sources: List<File>, create: () -> ResourceTable?): ResourceTable? {
+        val entry = entryFile(kind, sources)
+        val fingerprint = fingerprint(sources)
+
+        read(entry, fingerprint)?.let { return it }
+
+        return create()?.also { table -> write(entry, fingerprint, table) }
+    }
+
+    /** Delete all the cached tables. */
+    fun clear() {
+        cacheDir.listFiles()?.forEach { it.delete() }
+    }
+
+    internal fun entryFile(kind: String, sources: List<File>): File {
+        val identity = sources.joinToString(separator = File.pathSeparator, prefix = "$kind:") {
+            it.absolutePath
+        }
+        return File(cacheDir, "$kind-${sha256(identity).take(16)}.pb")
+    }
+
+    private fun read(entry: File, fingerprint: String): ResourceTable? {
+        if (!entry.isFile) {
+            return null
+        }
+
+        return try {
+            DataInputStream(entry.inputStream().buffered()).use { input ->
+                if (input.readInt() != FORMAT_VERSION || input.readUTF() != fingerprint) {
+                    return null
+                }
+
+                val pbTable = Resources.ResourceTable.parseFrom(input)
+                val table = ResourceTable()
+                if (!deserializeTableFromPb(pbTable, table, IDELogger)) {
+                    log.warn("Unable to deserialize cached resource table {}", entry)
+                    return null
+                }
+
+                table
+            }
+        } catch (err: Exception) {
+            log.warn("Unable to read cached resource table {}", entry, err)
+            entry.delete()
+            null
+        }
+    }
+
+    private fun write(entry: File, fingerprint: String, table: ResourceTable) {
+        try {
+            val pbTable = serializeTableToPb(table, IDELogger)
+            cacheDir.mkdirs()
+
+            val tmp = File(cacheDir, "${entry.name}.tmp")
+            DataOutputStream(tmp.outputStream().buffered()).use { output ->
+                output.writeInt(FORMAT_VERSION)
+                output.writeUTF(fingerprint)
+                pbTable.writeTo(output)
+            }
+
+            if (!tmp.renameTo(entry)) {
+                tmp.delete()
+            }
+        } catch (err: Exception) {
+            log.warn("Unable to cache resource table {}", entry, err)
+        }
+    }
+
+    /**
+     * Fingerprint of the given sources. Directories contribute each of their XML files, so adding
+     * or removing a file also invalidates the entry.
+     */
+    private fun fingerprint(sources: List<File>): String {
+        val builder = StringBuilder()
+        for (source in sources) {
+            val files = if (source.isDirectory) {
+                source.listFiles { file -> file.isFile && file.extension == "xml" }
+                    ?.sortedBy { it.name }
+                    ?: emptyList()
+            } else {
+                listOf(source)
+            }
+
+            for (file in files) {
+                builder.append(file.absolutePath)
+                    .append(':').append(file.length())
+                    .append(':').append(file.lastModified())
+                    .append('\n')
+            }
+        }
+
+        return sha256(builder.toString())
+    }
+
+    private fun sha256(str: String): String {
+        val digest = MessageDigest.getInstance("SHA-256").digest(str.toByteArray())
+        return digest.joinToString(separator = "") { "%02x".format(it) }
+    }
+}
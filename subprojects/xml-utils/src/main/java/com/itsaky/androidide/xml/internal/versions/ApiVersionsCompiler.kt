@@ -0,0 +1,229 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.xml.internal.versions
+
+import com.itsaky.androidide.xml.internal.versions.ApiVersionsDatabase.Companion.CLASS_RECORD_SIZE
+import com.itsaky.androidide.xml.internal.versions.ApiVersionsDatabase.Companion.FORMAT_VERSION
+import com.itsaky.androidide.xml.internal.versions.ApiVersionsDatabase.Companion.HEADER_SIZE
+import com.itsaky.androidide.xml.internal.versions.ApiVersionsDatabase.Companion.MAGIC
+import com.itsaky.androidide.xml.internal.versions.ApiVersionsDatabase.Companion.MEMBER_RECORD_SIZE
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserFactory
+import java.io.File
+import java.io.Reader
+import java.nio.ByteBuffer
+import java.util.TreeMap
+
+/**
+ * Compiles `api-versions.xml` to the binary format read by [ApiVersionsDatabase].
+ */
+internal object ApiVersionsCompiler {
+
+  private class Entry(val name: String, val since: Int, val removed: Int, val deprecated: Int) {
+    val nameBytes = name.toByteArray()
+  }
+
+  private class ClassEntry(val info: Entry) {
+    val fields = mutableListOf<Entry>()
+    val methods = mutableListOf<Entry>()
+  }
+
+  private val byBytes = Comparator<ByteArray> { a, b -> compareBytes(a, b) }
+  private val byName = Comparator<Entry> { a, b -> compareBytes(a.nameBytes, b.nameBytes) }
+
+  /**
+   * Compile the given `api-versions.xml` file.
+   *
+   * @return The compiled database, positioned at `0`.
+   */
+  fun compile(source: File): ByteBuffer {
+    return source.bufferedReader().use { reader ->
+      compile(reader, sourceLength = source.length(), sourceModified = source.lastModified())
+    }
+  }
+
+  /**
+   * Compile the `api-versions.xml` content read from the given reader.
+   *
+   * @param sourceLength The length of the source file, recorded to detect stale databases.
+   * @param sourceModified The modification time of the source file, recorded to detect stale
+   * databases.
+   * @return The compiled database, positioned at `0`.
+   */
+  fun compile(reader: Reader, sourceLength: Long = 0L, sourceModified: Long = 0L): ByteBuffer {
+    val parser =
+      XmlPullParserFactory.newInstance().run {
+        isNamespaceAware = false
+        newPullParser().apply { setInput(reader) }
+      }
+
+    return write(readClasses(parser), sourceLength, sourceModified)
+  }
+
+  private fun write(classes: List<ClassEntry>, sourceLength: Long, sourceModified: Long): ByteBuffer {
+    val sortedClasses = classes.sortedWith { a, b -> byName.compare(a.info, b.info) }
+    sortedClasses.forEach { klass ->
+      klass.fields.sortWith(byName)
+      klass.methods.sortWith(byName)
+    }
+
+    // sorted, de-duplicated string table
+    val stringOffsets = TreeMap<ByteArray, Int>(byBytes)
+    sortedClasses.forEach { klass ->
+      stringOffsets[klass.info.nameBytes] = 0
+      klass.fields.forEach { stringOffsets[it.nameBytes] = 0 }
+      klass.methods.forEach { stringOffsets[it.nameBytes] = 0 }
+    }
+
+    var stringsSize = 0
+    for (string in stringOffsets.keys) {
+      require(string.size <= 0xFFFF) { "Name too long: ${String(string)}" }
+      stringOffsets[string] = stringsSize
+      stringsSize += 2 + string.size
+    }
+
+    val memberCount = sortedClasses.sumOf { it.fields.size + it.methods.size }
+    val classTable = HEADER_SIZE
+    val memberTable = classTable + sortedClasses.size * CLASS_RECORD_SIZE
+    val stringTable = memberTable + memberCount * MEMBER_RECORD_SIZE
+
+    val buffer = ByteBuffer.allocate(stringTable + stringsSize)
+    buffer.putInt(MAGIC)
+    buffer.putInt(FORMAT_VERSION)
+    buffer.putLong(sourceLength)
+    buffer.putLong(sourceModified)
+    buffer.putInt(sortedClasses.size)
+    buffer.putInt(classTable)
+    buffer.putInt(memberCount)
+    buffer.putInt(memberTable)
+    buffer.putInt(stringTable)
+
+    var member = 0
+    for (klass in sortedClasses) {
+      buffer.putEntry(klass.info, stringOffsets)
+      buffer.putInt(member)
+      buffer.putInt(klass.fields.size)
+      buffer.putInt(member + klass.fields.size)
+      buffer.putInt(klass.methods.size)
+      member += klass.fields.size + klass.methods.size
+    }
+
+    for (klass in sortedClasses) {
+      klass.fields.forEach { buffer.putEntry(it, stringOffsets) }
+      klass.methods.forEach { buffer.putEntry(it, stringOffsets) }
+    }
+
+    for (string in stringOffsets.keys) {
+      buffer.putShort(string.size.toShort())
+      buffer.put(string)
+    }
+
+    buffer.flip()
+    return buffer
+  }
+
+  private fun ByteBuffer.putEntry(entry: Entry, stringOffsets: Map<ByteArray, Int>) {
+    putInt(stringOffsets[entry.nameBytes]!!)
+    putInt(entry.since)
+    putInt(entry.removed)
+    putInt(entry.deprecated)
+  }
+
+  private fun readClasses(parser: XmlPullParser): List<ClassEntry> {
+    val classes = mutableListOf<ClassEntry>()
+    var event = parser.eventType
+    var apiEncountered = false
+    while (event != XmlPullParser.END_DOCUMENT) {
+      if (event == XmlPullParser.START_TAG) {
+        val tag = parser.name
+        if (tag == "api") {
+          apiEncountered = true
+          event = parser.next()
+          continue
+        }
+
+        if (!apiEncountered) {
+          throw IllegalStateException("<api> tag not found")
+        }
+
+        if (tag == "class") {
+          classes.add(readClass(parser))
+        }
+      }
+      event = parser.next()
+    }
+    return classes
+  }
+
+  private fun readClass(parser: XmlPullParser): ClassEntry {
+    val klass = ClassEntry(parser.readEntry())
+    val depth = parser.depth
+    var event = parser.next()
+    while (event != XmlPullParser.END_DOCUMENT) {
+      if (event == XmlPullParser.END_TAG && parser.depth == depth) {
+        break
+      }
+
+      if (event == XmlPullParser.START_TAG) {
+        when (parser.name) {
+          "field" -> klass.fields.add(parser.readEntry())
+          "method" -> klass.methods.add(parser.readEntry())
+        }
+      }
+
+      event = parser.next()
+    }
+    return klass
+  }
+
+  private fun XmlPullParser.readEntry(): Entry {
+    return Entry(
+      name = readString("name"),
+      since = readInt("since"),
+      removed = readInt("removed"),
+      deprecated = readInt("deprecated")
+    )
+  }
+
+  private fun XmlPullParser.readInt(name: String, default: Int = -1): Int {
+    val value = getAttributeValue(null, name)
+    if (value.isNullOrBlank()) {
+      return default
+    }
+    return value.toInt()
+  }
+
+  private fun XmlPullParser.readString(name: String, default: String = ""): String {
+    val value = getAttributeValue(null, name)
+    if (value.isNullOrBlank()) {
+      return default
+    }
+    return value
+  }
+
+  private fun compareBytes(a: ByteArray, b: ByteArray): Int {
+    val common = minOf(a.size, b.size)
+    for (i in 0 until common) {
+      val cmp = (a[i].toInt() and 0xFF) - (b[i].toInt() and 0xFF)
+      if (cmp != 0) {
+        return cmp
+      }
+    }
+    return a.size - b.size
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.xml.internal.versions
+
+import com.itsaky.androidide.xml.versions.ApiVersions
+import com.itsaky.androidide.xml.versions.ClassInfo
+import com.itsaky.androidide.xml.versions.FieldInfo
+import com.itsaky.androidide.xml.versions.MethodInfo
+import org.eclipse.jdt.core.Signature
+import java.io.File
+import java.nio.ByteBuffer
+
+/**
+ * [ApiVersions] backed by the compact binary database written by [ApiVersionsCompiler].
+ *
+ * The database is usually memory-mapped, so the API information is never materialized on the
+ * heap. Lookups binary search the sorted class and member records and only allocate the returned
+ * [ClassInfo], [FieldInfo] or [MethodInfo] instances.
+ *
+ * Layout (big-endian) :
+ * - Header : magic, format version, source length, source modification time, class count,
+ *   class table offset, member count, member table offset, string table offset.
+ * - Class table : [CLASS_RECORD_SIZE] bytes per class, sorted by name. Each record contains the
+ *   name, since, removed and deprecated versions and the ranges of its fields and methods in the
+ *   member table.
+ * - Member table : [MEMBER_RECORD_SIZE] bytes per member. The fields and the methods of a class
+ *   are stored in two consecutive runs, each sorted by name.
+ * - String table : Sorted, de-duplicated and length-prefixed UTF-8 strings.
+ *
+ * All strings are compared by their unsigned UTF-8 bytes.
+ */
+internal class ApiVersionsDatabase(private val buffer: ByteBuffer) : ApiVersions {
+
+  companion object {
+
+    const val MAGIC = 0x41504956 // "APIV"
+    const val FORMAT_VERSION = 1
+
+    const val HEADER_SIZE = 44
+    const val CLASS_RECORD_SIZE = 32
+    const val MEMBER_RECORD_SIZE = 16
+
+    private const val OFF_SOURCE_LENGTH = 8
+    private const val OFF_SOURCE_MODIFIED = 16
+    private const val OFF_CLASS_COUNT = 24
+    private const val OFF_CLASS_TABLE = 28
+    private const val OFF_MEMBER_TABLE = 36
+    private const val OFF_STRING_TABLE = 40
+
+    /**
+     * Whether the database in the given buffer is readable by this version of the IDE and was
+     * compiled from the current contents of the [source] file.
+     */
+    fun isUpToDate(buffer: ByteBuffer, source: File): Boolean {
+      return buffer.capacity() >= HEADER_SIZE &&
+          buffer.getInt(0) == MAGIC &&
+          buffer.getInt(4) == FORMAT_VERSION &&
+          buffer.getLong(OFF_SOURCE_LENGTH) == source.length() &&
+          buffer.getLong(OFF_SOURCE_MODIFIED) == source.lastModified()
+    }
+  }
+
+  private val classCount = buffer.getInt(OFF_CLASS_COUNT)
+  private val classTable = buffer.getInt(OFF_CLASS_TABLE)
+  private val memberTable = buffer.getInt(OFF_MEMBER_TABLE)
+  private val stringTable = buffer.getInt(OFF_STRING_TABLE)
+
+  init {
+    require(buffer.getInt(0) == MAGIC) { "Not an API versions database" }
+    require(buffer.getInt(4) == FORMAT_VERSION) {
+      "Unsupported API versions database version: ${buffer.getInt(4)}"
+    }
+  }
+
+  override fun getClass(name: String): ClassInfo? {
+    val key = name.replace('.', '/').toByteArray()
+    val index = binarySearch(classTable, CLASS_RECORD_SIZE, 0, classCount, key)
+    if (index < 0) {
+      return null
+    }
+
+    return MappedClassInfo(classTable + index * CLASS_RECORD_SIZE)
+  }
+
+  /**
+   * Binary search the records in the given table for the name matching the [key].
+   *
+   * @return The index of the matching record, or `-(insertionPoint + 1)` if there is no match.
+   */
+  private fun binarySearch(table: Int, recordSize: Int, from: Int, to: Int, key: ByteArray): Int {
+    var low = from
+    var high = to - 1
+    while (low <= high) {
+      val mid = (low + high) ushr 1
+      val cmp = compareString(buffer.getInt(table + mid * recordSize), key)
+      when {
+        cmp < 0 -> low = mid + 1
+        cmp > 0 -> high = mid - 1
+        else -> return mid
+      }
+    }
+    return -(low + 1)
+  }
+
+  private fun compareString(stringOffset: Int, key: ByteArray): Int {
+    val start = stringTable + stringOffset
+    val length = buffer.getShort(start).toInt() and 0xFFFF
+    val common = minOf(length, key.size)
+    for (i in 0 until common) {
+      val a = buffer.get(start + 2 + i).toInt() and 0xFF
+      val b = key[i].toInt() and 0xFF
+      if (a != b) {
+        return a - b
+      }
+    }
+    return length - key.size
+  }
+
+  private fun startsWith(stringOffset: Int, prefix: ByteArray): Boolean {
+    val start = stringTable + stringOffset
+    val length = buffer.getShort(start).toInt() and 0xFFFF
+    if (length < prefix.size) {
+      return false
+    }
+    for (i in prefix.indices) {
+      if (buffer.get(start + 2 + i) != prefix[i]) {
+        return false
+      }
+    }
+    return true
+  }
+
+  private fun readString(stringOffset: Int): String {
+    val start = stringTable + stringOffset
+    val length = buffer.getShort(start).toInt() and 0xFFFF
+    val bytes = ByteArray(length)
+    for (i in 0 until length) {
+      bytes[i] = buffer.get(start + 2 + i)
+    }
+    return String(bytes)
+  }
+
+  private inner class MappedClassInfo(private val record: Int) :
+    DefaultInfo(
+      name = readString(buffer.getInt(record)),
+      since = buffer.getInt(record + 4),
+      removed = buffer.getInt(record + 8),
+      deprecated = buffer.getInt(record + 12)
+    ),
+    ClassInfo {
+
+    private val fieldStart get() = buffer.getInt(record + 16)
+    private val fieldCount get() = buffer.getInt(record + 20)
+    private val methodStart get() = buffer.getInt(record + 24)
+    private val methodCount get() = buffer.getInt(record + 28)
+
+    override fun getField(name: String): FieldInfo? {
+      val from = fieldStart
+      val index =
+        binarySearch(memberTable, MEMBER_RECORD_SIZE, from, from + fieldCount, name.toByteArray())
+      if (index < 0) {
+        return null
+      }
+
+      val member = memberTable + index * MEMBER_RECORD_SIZE
+      return DefaultFieldInfo(
+        name = name,
+        since = buffer.getInt(member + 4),
+        removed = buffer.getInt(member + 8),
+        deprecated = buffer.getInt(member + 12)
+      )
+    }
+
+    override fun getMethod(name: String, vararg params: String): MethodInfo? {
+      // method names are stored with their descriptors, e.g. 'setAlpha(F)V'
+      // find the first method whose descriptor starts with the name and the parameter types
+      val prefix = buildString {
+        append(name)
+        append('(')
+        params.forEach { append(Signature.createTypeSignature(it.replace('.', '/'), true)) }
+        append(')')
+      }.toByteArray()
+
+      val from = methodStart
+      val to = from + methodCount
+      var index = binarySearch(memberTable, MEMBER_RECORD_SIZE, from, to, prefix)
+      if (index < 0) {
+        index = -(index + 1)
+      }
+
+      if (index >= to) {
+        return null
+      }
+
+      val member = memberTable + index * MEMBER_RECORD_SIZE
+      val nameOffset = buffer.getInt(member)
+      if (!startsWith(nameOffset, prefix)) {
+        return null
+      }
+
+      return DefaultMethodInfo(
+        simpleName = name,
+        name = readString(nameOffset),
+        since = buffer.getInt(member + 4),
+        removed = buffer.getInt(member + 8),
+        deprecated = buffer.getInt(member + 12)
+      )
+    }
+  }
+}
@@ -18,21 +18,23 @@
 package com.itsaky.androidide.xml.internal.versions
 
 import com.google.auto.service.AutoService
+import com.itsaky.androidide.utils.Environment
 import com.itsaky.androidide.xml.versions.ApiVersions
 import com.itsaky.androidide.xml.versions.ApiVersionsRegistry
-import com.itsaky.androidide.xml.versions.ClassInfo
-import com.itsaky.androidide.xml.versions.FieldInfo
-import com.itsaky.androidide.xml.versions.Info
-import com.itsaky.androidide.xml.versions.MethodInfo
 import org.slf4j.LoggerFactory
-import org.xmlpull.v1.XmlPullParser
-import org.xmlpull.v1.XmlPullParserFactory
 import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
 import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Default implementation of [ApiVersionsRegistry].
  *
+ * The `api-versions.xml` file of each platform is compiled once to the binary format of
+ * [ApiVersionsDatabase], which is then memory-mapped on subsequent reads.
+ *
  * @author Akash Yadav
  */
 @AutoService(ApiVersionsRegistry::class)
@@ -40,6 +42,12 @@ class DefaultApiVersionsRegistry : ApiVersionsRegistry {
 
   private val versions = ConcurrentHashMap<String, ApiVersions>()
 
+  /**
+   * Directory where the compiled databases are stored. `null` if the IDE environment has not been
+   * initialized, in which case the databases are compiled in memory.
+   */
+  internal var cacheDir: File? = Environment.ANDROIDIDE_HOME?.let { File(it, "cache/api-versions") }
+
   companion object {
     private val log = LoggerFactory.getLogger(DefaultApiVersionsRegistry::class.java)
   }
@@ -63,193 +71,66 @@ class DefaultApiVersionsRegistry : ApiVersionsRegistry {
       return null
     }
 
+    val database = cacheDir?.let { File(it, "${platformKey(platform)}.db") }
+    if (database != null) {
+      mapDatabase(database, versionsFile)?.let { return ApiVersionsDatabase(it) }
+    }
+
     if (isLoggingEnabled) {
       log.info("Creating API versions table for platform dir: $platform")
     }
 
-    return versionsFile.bufferedReader().use {
-      val parser =
-        XmlPullParserFactory.newInstance().run {
-          isNamespaceAware = false
-          return@run newPullParser().run {
-            setInput(it)
-            this
-          }
-        }
-      readApiVersions(parser)
+    val compiled = ApiVersionsCompiler.compile(versionsFile)
+    if (database != null && writeDatabase(database, compiled)) {
+      mapDatabase(database, versionsFile)?.let { return ApiVersionsDatabase(it) }
     }
-  }
-
-  private fun readApiVersions(parser: XmlPullParser): ApiVersions {
-    val versions = DefaultApiVersions()
-    var event = parser.eventType
-    var apiEncountered = false
-    while (event != XmlPullParser.END_DOCUMENT) {
-      if (event == XmlPullParser.START_TAG) {
-        val tag = parser.name
-        if (tag == "api") {
-          apiEncountered = true
-          event = parser.next()
-          continue
-        }
-
-        if (!apiEncountered) {
-          throw IllegalStateException("<api> tag not found")
-        }
 
-        val info = readTag(parser)
-        if (info != null && info is ClassInfo) {
-          versions.putClass(info.name, info)
-        }
-      }
-      event = parser.next()
-    }
-    return versions
+    return ApiVersionsDatabase(compiled)
   }
 
-  private fun readTag(parser: XmlPullParser): Info? {
-    return when (parser.name) {
-      "class" -> readClassInfo(parser)
-      "method" -> readMethodInfo(parser)
-      "field" -> readFieldInfo(parser)
-      else -> null
+  private fun mapDatabase(database: File, source: File): ByteBuffer? {
+    if (!database.isFile) {
+      return null
     }
-  }
-
-  private fun readMethodInfo(parser: XmlPullParser): Info {
-    val name = parser.readName()
-    return DefaultMethodInfo(
-      name = name,
-      since = parser.readSince(),
-      removed = parser.readRemoved(),
-      deprecated = parser.readDeprecated(),
-      simpleName = name.substringBefore('(')
-    )
-  }
-
-  private fun readFieldInfo(parser: XmlPullParser): Info {
-    return DefaultFieldInfo(
-      name = parser.readName(),
-      since = parser.readSince(),
-      removed = parser.readRemoved(),
-      deprecated = parser.readDeprecated()
-    )
-  }
-
-  private fun readClassInfo(parser: XmlPullParser): ClassInfo {
-    return DefaultClassInfo(
-      name = parser.readName(),
-      since = parser.readSince(),
-      removed = parser.readRemoved(),
-      deprecated = parser.readDeprecated()
-    )
-      .apply {
-        val depth = parser.depth
-        var event = parser.next()
-        while (event != XmlPullParser.END_DOCUMENT) {
-          if (event == XmlPullParser.END_TAG && parser.depth == depth) {
-            break
-          }
-
-          if (event != XmlPullParser.START_TAG) {
-            event = parser.next()
-            continue
-          }
-
-          val info = readTag(parser)
-          if (info == null) {
-            event = parser.next()
-            continue
-          }
-
-          when (info) {
-            is FieldInfo -> this.fields[info.name] = info
-            is MethodInfo -> {
-              var methods = this.methods[info.simpleName]
-              if (methods == null) {
-                methods = mutableListOf()
-              }
-              methods.add(info)
-
-              this.methods[info.simpleName] = methods
-            }
-          }
-
-          event = parser.next()
-        }
-      }
-  }
-
-  private fun XmlPullParser.readName(): String {
-    return readString("name")
-  }
-
-  private fun XmlPullParser.readSince(): Int {
-    return readInt("since")
-  }
-
-  private fun XmlPullParser.readRemoved(): Int {
-    return readInt("removed")
-  }
-
-  private fun XmlPullParser.readDeprecated(): Int {
-    return readInt("deprecated")
-  }
 
-  private fun XmlPullParser.readInt(name: String, default: Int = -1): Int {
-    return read(this, name) {
-      if (it.isNullOrBlank()) {
-        return@read default
-      }
-
-      return@read it.toInt()
+    return try {
+      FileChannel.open(database.toPath(), StandardOpenOption.READ).use { channel ->
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+      }.takeIf { ApiVersionsDatabase.isUpToDate(it, source) }
+    } catch (err: Exception) {
+      log.warn("Unable to read API versions database {}", database, err)
+      null
     }
   }
 
-  private fun XmlPullParser.readString(name: String, default: String = ""): String {
-    return read(this, name) {
-      if (it.isNullOrBlank()) {
-        return@read default
+  private fun writeDatabase(database: File, compiled: ByteBuffer): Boolean {
+    return try {
+      database.parentFile?.mkdirs()
+      val tmp = File(database.parentFile, "${database.name}.tmp")
+      FileChannel.open(
+        tmp.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING
+      ).use { channel ->
+        val buffer = compiled.duplicate()
+        while (buffer.hasRemaining()) {
+          channel.write(buffer)
+        }
       }
-
-      return@read it
+      tmp.renameTo(database)
+    } catch (err: Exception) {
+      log.warn("Unable to write API versions database {}", database, err)
+      false
     }
   }
 
-  private fun <T> read(parser: XmlPullParser, name: String, convert: (String?) -> T): T {
-    val index = parser.attrIndex(name)
-    if (index != -1) {
-      return convert(parser.value(index))
-    }
-    return convert("")
+  private fun platformKey(platform: File): String {
+    val digest = MessageDigest.getInstance("SHA-256").digest(platform.absolutePath.toByteArray())
+    return digest.take(8).joinToString(separator = "") { "%02x".format(it) }
   }
 
   override fun clear() {
     versions.clear()
   }
-
-  /**
-   * Find the index of the attribute with the given name.
-   *
-   * @param name The name of the attribute to look for.
-   * @return The index of the attribute or `-1`.
-   */
-  private fun XmlPullParser.attrIndex(name: String): Int {
-    for (i in 0 until this.attributeCount) {
-      if (this.getAttributeName(i) == name) {
-        return i
-      }
-    }
-    return -1
-  }
-
-  /**
-   * Get the value of the attribute at the given index.
-   *
-   * @param index The index of the attribute.
-   * @return The value of the attribute.
-   */
-  private fun XmlPullParser.value(index: Int): String? {
-    return getAttributeValue(index)
-  }
 }
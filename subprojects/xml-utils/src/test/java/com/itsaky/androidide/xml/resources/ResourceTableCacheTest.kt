@@ -0,0 +1,309 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.xml.resources
+
+import com.android.aaptcompiler.AaptResourceType
+import com.android.aaptcompiler.AaptResourceType.ARRAY
+import com.android.aaptcompiler.AaptResourceType.ATTR
+import com.android.aaptcompiler.AaptResourceType.BOOL
+import com.android.aaptcompiler.AaptResourceType.COLOR
+import com.android.aaptcompiler.AaptResourceType.DIMEN
+import com.android.aaptcompiler.AaptResourceType.INTEGER
+import com.android.aaptcompiler.AaptResourceType.PLURALS
+import com.android.aaptcompiler.AaptResourceType.STRING
+import com.android.aaptcompiler.AaptResourceType.STYLE
+import com.android.aaptcompiler.AaptResourceType.STYLEABLE
+import com.android.aaptcompiler.ArrayResource
+import com.android.aaptcompiler.AttributeResource
+import com.android.aaptcompiler.BinaryPrimitive
+import com.android.aaptcompiler.Plural
+import com.android.aaptcompiler.Reference
+import com.android.aaptcompiler.ResourceName
+import com.android.aaptcompiler.ResourceTable
+import com.android.aaptcompiler.Style
+import com.android.aaptcompiler.Styleable
+import com.android.aaptcompiler.Value
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.xml.internal.resources.DefaultResourceTableRegistry
+import com.itsaky.androidide.xml.internal.resources.ResourceTableCache
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+
+@RunWith(RobolectricTestRunner::class)
+class ResourceTableCacheTest {
+
+  @get:Rule
+  val tmp = TemporaryFolder()
+
+  @Test
+  fun `test table is reused from cache`() {
+    val resDir = createResDir("Hello")
+    val cache = ResourceTableCache(tmp.newFolder("cache"))
+
+    val first = registry(cache).forPackage("com.example", resDir)
+    assertThat(first).isNotNull()
+
+    val entry = cache.entryFile("table", listOf(File(resDir, "values")))
+    assertThat(entry.isFile).isTrue()
+
+    val second = registry(cache).forPackage("com.example", resDir)
+    assertThat(second).isNotNull()
+    assertThat(second).isNotSameInstanceAs(first)
+    assertThat(second!!.packages.first().name).isEqualTo("com.example")
+    assertThat(stringValue(second, "app_name")).isEqualTo("Hello")
+  }
+
+  @Test
+  fun `test stale cache entry is recompiled`() {
+    val resDir = createResDir("Hello")
+    val cache = ResourceTableCache(tmp.newFolder("cache"))
+
+    assertThat(registry(cache).forPackage("com.example", resDir)).isNotNull()
+
+    val strings = File(resDir, "values/strings.xml")
+    strings.writeText(stringsXml("Hello, World"))
+    strings.setLastModified(strings.lastModified() + 2000)
+
+    val table = registry(cache).forPackage("com.example", resDir)
+    assertThat(stringValue(table!!, "app_name")).isEqualTo("Hello, World")
+  }
+
+  @Test
+  fun `test corrupt cache entry is recompiled`() {
+    val resDir = createResDir("Hello")
+    val cache = ResourceTableCache(tmp.newFolder("cache"))
+
+    assertThat(registry(cache).forPackage("com.example", resDir)).isNotNull()
+
+    val entry = cache.entryFile("table", listOf(File(resDir, "values")))
+    entry.writeBytes(byteArrayOf(0, 0, 0, 1, 0, 3, 'a'.code.toByte()))
+
+    val table = registry(cache).forPackage("com.example", resDir)
+    assertThat(stringValue(table!!, "app_name")).isEqualTo("Hello")
+  }
+
+  @Test
+  fun `test values of all resource types survive the cache`() {
+    val resDir = createResDir("Hello")
+    writeValues(
+      resDir,
+      "attrs.xml",
+      """
+        <resources>
+          <attr name="customColor" format="color" />
+          <attr name="mode">
+            <enum name="light" value="0" />
+            <enum name="dark" value="1" />
+          </attr>
+          <declare-styleable name="CustomView">
+            <attr name="mode" />
+            <attr name="size" format="dimension" />
+          </declare-styleable>
+        </resources>
+      """.trimIndent()
+    )
+    writeValues(
+      resDir,
+      "styles.xml",
+      """
+        <resources>
+          <style name="Widget.Base" />
+          <style name="Widget.Custom" parent="Widget.Base">
+            <item name="customColor">@color/primary</item>
+            <item name="size">12dp</item>
+          </style>
+        </resources>
+      """.trimIndent()
+    )
+    writeValues(
+      resDir,
+      "values.xml",
+      """
+        <resources>
+          <color name="primary">#FF112233</color>
+          <dimen name="margin">16dp</dimen>
+          <integer name="columns">3</integer>
+          <bool name="enabled">true</bool>
+          <plurals name="files">
+            <item quantity="one">%d file</item>
+            <item quantity="other">%d files</item>
+          </plurals>
+          <string-array name="planets">
+            <item>Mercury</item>
+            <item>Venus</item>
+          </string-array>
+        </resources>
+      """.trimIndent()
+    )
+
+    val cache = ResourceTableCache(tmp.newFolder("cache"))
+    val compiled = registry(cache).forPackage("com.example", resDir)!!
+    val cached = registry(cache).forPackage("com.example", resDir)!!
+    assertThat(cached).isNotSameInstanceAs(compiled)
+
+    val resources = listOf(
+      ATTR to "customColor",
+      ATTR to "mode",
+      ATTR to "size",
+      STYLEABLE to "CustomView",
+      STYLE to "Widget.Base",
+      STYLE to "Widget.Custom",
+      COLOR to "primary",
+      DIMEN to "margin",
+      INTEGER to "columns",
+      BOOL to "enabled",
+      PLURALS to "files",
+      ARRAY to "planets",
+      STRING to "app_name",
+    )
+    for ((type, name) in resources) {
+      val expected = describe(value(compiled, type, name))
+      assertThat(expected).isNotNull()
+      assertThat(describe(value(cached, type, name))).isEqualTo(expected)
+    }
+
+    val style = value(cached, STYLE, "Widget.Custom") as Style
+    assertThat(style.parent?.name?.entry).isEqualTo("Widget.Base")
+    assertThat(style.entries.map { it.key.name.entry }).containsExactly("customColor", "size")
+    assertThat(describe(style.entries.first().value)).isEqualTo("@color/primary")
+
+    val mode = value(cached, ATTR, "mode") as AttributeResource
+    assertThat(mode.symbols.map { it.symbol.name.entry to it.value })
+      .containsExactly("light" to 0, "dark" to 1)
+
+    val styleable = value(cached, STYLEABLE, "CustomView") as Styleable
+    assertThat(styleable.entries.map { it.name.entry }).containsExactly("mode", "size")
+
+    val planets = value(cached, ARRAY, "planets") as ArrayResource
+    assertThat(planets.elements.map { it.toString() }).containsExactly("Mercury", "Venus")
+  }
+
+  @Test
+  fun `test cache entry is invalidated when values files are added or removed`() {
+    val resDir = createResDir("Hello")
+    val cache = ResourceTableCache(tmp.newFolder("cache"))
+
+    assertThat(registry(cache).forPackage("com.example", resDir)).isNotNull()
+
+    val colors = writeValues(
+      resDir,
+      "colors.xml",
+      """
+        <resources>
+          <color name="primary">#FF112233</color>
+        </resources>
+      """.trimIndent()
+    )
+
+    var table = registry(cache).forPackage("com.example", resDir)
+    assertThat(value(table!!, COLOR, "primary")).isNotNull()
+
+    assertThat(colors.delete()).isTrue()
+
+    table = registry(cache).forPackage("com.example", resDir)
+    assertThat(value(table!!, COLOR, "primary")).isNull()
+    assertThat(stringValue(table, "app_name")).isEqualTo("Hello")
+  }
+
+  @Test
+  fun `test cleared cache is recompiled`() {
+    val resDir = createResDir("Hello")
+    val cache = ResourceTableCache(tmp.newFolder("cache"))
+
+    assertThat(registry(cache).forPackage("com.example", resDir)).isNotNull()
+    val entry = cache.entryFile("table", listOf(File(resDir, "values")))
+    assertThat(entry.isFile).isTrue()
+
+    cache.clear()
+    assertThat(entry.exists()).isFalse()
+
+    val table = registry(cache).forPackage("com.example", resDir)
+    assertThat(stringValue(table!!, "app_name")).isEqualTo("Hello")
+    assertThat(entry.isFile).isTrue()
+  }
+
+  @Test
+  fun `test tables of different resource directories are cached separately`() {
+    val first = createResDir("First")
+    val second = createResDir("Second")
+    val cache = ResourceTableCache(tmp.newFolder("cache"))
+
+    assertThat(stringValue(registry(cache).forPackage("com.example", first)!!, "app_name"))
+      .isEqualTo("First")
+    assertThat(stringValue(registry(cache).forPackage("com.example", second)!!, "app_name"))
+      .isEqualTo("Second")
+    assertThat(stringValue(registry(cache).forPackage("com.example", first)!!, "app_name"))
+      .isEqualTo("First")
+  }
+
+  private fun registry(cache: ResourceTableCache) =
+    DefaultResourceTableRegistry().apply {
+      isLoggingEnabled = false
+      tableCache = cache
+    }
+
+  private fun createResDir(appName: String): File {
+    val resDir = tmp.newFolder()
+    File(resDir, "values").apply {
+      mkdirs()
+      File(this, "strings.xml").writeText(stringsXml(appName))
+    }
+    return resDir
+  }
+
+  private fun writeValues(resDir: File, name: String, content: String): File {
+    return File(resDir, "values/$name").apply { writeText(content) }
+  }
+
+  private fun stringsXml(appName: String) =
+    """
+      <resources>
+        <string name="app_name">$appName</string>
+      </resources>
+    """.trimIndent()
+
+  private fun stringValue(table: ResourceTable, name: String): String? {
+    return value(table, STRING, name)?.toString()
+  }
+
+  private fun value(table: ResourceTable, type: AaptResourceType, name: String): Value? {
+    val resource = table.findResource(ResourceName(pck = "com.example", type = type, entry = name))
+    return resource?.entry?.values?.firstOrNull()?.value
+  }
+
+  /** Describes the parts of [value] which must be kept by the cache. */
+  private fun describe(value: Value?): String? {
+    return when (value) {
+      null -> null
+      is Reference -> "@${value.name.type.tagName}/${value.name.entry}"
+      is BinaryPrimitive -> "${value.resValue.dataType}:${value.resValue.data}"
+      is Style -> "parent=${describe(value.parent)} " +
+          value.entries.joinToString { "${describe(it.key)}=${describe(it.value)}" }
+      is AttributeResource -> "format=${value.typeMask} " +
+          value.symbols.joinToString { "${describe(it.symbol)}=${it.value}" }
+      is Styleable -> value.entries.joinToString { describe(it).toString() }
+      is Plural -> value.values.joinToString { describe(it).toString() }
+      is ArrayResource -> value.elements.joinToString { describe(it).toString() }
+      else -> value.toString()
+    }
+  }
+}
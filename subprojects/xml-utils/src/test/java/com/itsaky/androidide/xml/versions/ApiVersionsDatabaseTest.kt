@@ -0,0 +1,106 @@
+/*
+ *  This file is part of AndroidIDE.
+ *
+ *  AndroidIDE is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  AndroidIDE is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *   along with AndroidIDE.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.itsaky.androidide.xml.versions
+
+import com.google.common.truth.Truth.assertThat
+import com.itsaky.androidide.xml.internal.versions.ApiVersionsCompiler
+import com.itsaky.androidide.xml.internal.versions.ApiVersionsDatabase
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.StringReader
+
+@RunWith(RobolectricTestRunner::class)
+class ApiVersionsDatabaseTest {
+
+  private val xml =
+    """
+      <api version="3">
+        <class name="android/view/View" since="1">
+          <method name="&lt;init>(Landroid/content/Context;)V"/>
+          <method name="setAlpha(F)V" since="11"/>
+          <method name="setAlpha(I)V" since="1" deprecated="16" removed="21"/>
+          <method name="setZ(F)V" since="21"/>
+          <field name="SYSTEM_UI_FLAG_FULLSCREEN" since="16" deprecated="30"/>
+          <field name="VISIBLE"/>
+        </class>
+        <class name="android/app/Activity" since="1">
+          <method name="requestPermissions([Ljava/lang/String;I)V" since="23"/>
+        </class>
+        <class name="android/view/View${'$'}OnApplyWindowInsetsListener" since="20"/>
+      </api>
+    """.trimIndent()
+
+  private fun database() = ApiVersionsDatabase(ApiVersionsCompiler.compile(StringReader(xml)))
+
+  @Test
+  fun `test class lookup`() {
+    val versions = database()
+    versions.getClass("android.view.View").apply {
+      assertThat(this).isNotNull()
+      assertThat(this!!.name).isEqualTo("android/view/View")
+      assertThat(this.since).isEqualTo(1)
+      assertThat(this.removed).isEqualTo(-1)
+    }
+
+    assertThat(versions.getClass("android.view.View\$OnApplyWindowInsetsListener")!!.since)
+      .isEqualTo(20)
+    assertThat(versions.getClass("android.view.ViewGroup")).isNull()
+    assertThat(versions.getClass("a")).isNull()
+    assertThat(versions.getClass("z")).isNull()
+  }
+
+  @Test
+  fun `test field lookup`() {
+    val view = database().getClass("android/view/View")!!
+    view.getField("SYSTEM_UI_FLAG_FULLSCREEN").apply {
+      assertThat(this).isNotNull()
+      assertThat(this!!.since).isEqualTo(16)
+      assertThat(this.deprecated).isEqualTo(30)
+    }
+
+    assertThat(view.getField("VISIBLE")!!.since).isEqualTo(-1)
+    assertThat(view.getField("GONE")).isNull()
+  }
+
+  @Test
+  fun `test method lookup`() {
+    val view = database().getClass("android.view.View")!!
+    view.getMethod("setAlpha", "float").apply {
+      assertThat(this).isNotNull()
+      assertThat(this!!.name).isEqualTo("setAlpha(F)V")
+      assertThat(this.simpleName).isEqualTo("setAlpha")
+      assertThat(this.since).isEqualTo(11)
+    }
+
+    view.getMethod("setAlpha", "int").apply {
+      assertThat(this).isNotNull()
+      assertThat(this!!.deprecated).isEqualTo(16)
+      assertThat(this.removed).isEqualTo(21)
+    }
+
+    assertThat(view.getMethod("<init>", "android.content.Context")).isNotNull()
+    assertThat(view.getMethod("setAlpha")).isNull()
+    assertThat(view.getMethod("setAlpha", "double")).isNull()
+    assertThat(view.getMethod("setZ", "float")!!.since).isEqualTo(21)
+
+    val activity = database().getClass("android.app.Activity")!!
+    assertThat(activity.getMethod("requestPermissions", "java.lang.String[]", "int")!!.since)
+      .isEqualTo(23)
+  }
+}
@@ -24,6 +24,7 @@ import com.termux.shared.termux.shell.command.runner.terminal.TermuxSession;
 import com.termux.shared.termux.terminal.TermuxTerminalSessionClientBase;
 import com.termux.shared.termux.terminal.io.BellHandler;
 import com.termux.terminal.TerminalColors;
+import com.termux.terminal.TerminalEmulator;
 import com.termux.terminal.TerminalSession;
 import com.termux.terminal.TerminalSessionClient;
 import com.termux.terminal.TextStyle;
@@ -511,8 +512,11 @@ public class TermuxTerminalSessionActivityClient extends TermuxTerminalSessionCl
                     if (mActivity == null || mActivity.isFinishing()) return;
                     TerminalColors.COLOR_SCHEME.updateWith(props);
                     TerminalSession session = mActivity.getCurrentSession();
-                    if (session != null && session.getEmulator() != null) {
-                        session.getEmulator().mColors.reset();
+                    TerminalEmulator emulator = session == null ? null : session.getEmulator();
+                    if (emulator != null) {
+                        synchronized (emulator) {
+                            emulator.mColors.reset();
+                        }
                     }
                     updateBackgroundColor();
                     mActivity.getTerminalView().setTypeface(newTypeface);
@@ -1,16 +1,49 @@
 package com.termux.terminal;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * A circular buffer of {@link TerminalRow}:s which keeps notes about what is visible on a logical screen and the scroll
  * history.
  * <p>
  * See {@link #externalToInternalRow(int)} for how to map from logical screen rows to array indices.
+ * <p>
+ * Only the screen and the most recent {@link #mUnpackedTranscriptRows} rows of the transcript are kept as
+ * {@link TerminalRow}:s. Older transcript rows are packed by {@link TerminalRow#pack()} into
+ * {@link #mPackedLines}, at the same index as their (then null) entry in {@link #mLines}. Use {@link #getRow(int)} to
+ * read rows anywhere in the transcript. Reading packed rows updates a cache, so readers on other threads than the one
+ * emulating the output must hold the monitor of the {@link TerminalEmulator}, like any writer.
  */
 public final class TerminalBuffer {
 
+    /** The default number of transcript rows closest to the screen which are not packed. */
+    static final int DEFAULT_UNPACKED_TRANSCRIPT_ROWS = 100;
+    /** The number of unpacked rows kept around for reading the packed part of the transcript, e.g. while scrolling. */
+    private static final int UNPACKED_ROW_CACHE_SIZE = 256;
+    /** The number of longs in the signature of a packed row. */
+    private static final int SIGNATURE_WORDS = 4;
+
     TerminalRow[] mLines;
+    /** Transcript rows packed by {@link TerminalRow#pack()}, at the same indices as in {@link #mLines}. */
+    byte[][] mPackedLines;
+    /**
+     * A bloom filter of the character pairs in the text of each packed row, {@link #SIGNATURE_WORDS} longs per row.
+     * Used by {@link #findRows(String, boolean)} to skip rows without unpacking them.
+     */
+    private long[] mPackedSignatures;
+    /** The number of transcript rows closest to the screen which are not packed. */
+    int mUnpackedTranscriptRows = DEFAULT_UNPACKED_TRANSCRIPT_ROWS;
+    /** Recently unpacked copies of packed rows, by their index in {@link #mLines}. */
+    private final Map<Integer, TerminalRow> mUnpackedRowCache = new LinkedHashMap<Integer, TerminalRow>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TerminalRow> eldest) {
+            return size() > UNPACKED_ROW_CACHE_SIZE;
+        }
+    };
+    /** The last row removed from {@link #mLines} when it was packed, reused for the next blank row. */
+    private TerminalRow mSpareRow;
     /** The length of {@link #mLines}. */
     int mTotalRows;
     /** The number of rows and columns visible on the screen. */
@@ -33,6 +66,8 @@ public final class TerminalBuffer {
         mTotalRows = totalRows;
         mScreenRows = screenRows;
         mLines = new TerminalRow[totalRows];
+        mPackedLines = new byte[totalRows][];
+        mPackedSignatures = new long[totalRows * SIGNATURE_WORDS];
 
         blockSet(0, 0, columns, screenRows, ' ', TextStyle.NORMAL);
     }
@@ -73,7 +108,7 @@ public final class TerminalBuffer {
             } else {
                 x2 = columns;
             }
-            TerminalRow lineObject = mLines[externalToInternalRow(row)];
+            TerminalRow lineObject = getRow(row);
             int x1Index = lineObject.findStartOfColumn(x1);
             int x2Index = (x2 < mColumns) ? lineObject.findStartOfColumn(x2) : lineObject.getSpaceUsed();
             if (x2Index == x1Index) {
@@ -185,7 +220,113 @@ public final class TerminalBuffer {
     }
 
     public boolean getLineWrap(int row) {
-        return mLines[externalToInternalRow(row)].mLineWrap;
+        return getRow(row).mLineWrap;
+    }
+
+    /**
+     * Get a row for reading. A row in the packed part of the transcript is returned as a temporary unpacked copy, so
+     * the returned row must not be modified. Rows there are never allocated in {@link #mLines}, as nothing would pack
+     * them again.
+     *
+     * @param externalRow a row in the external coordinate system.
+     */
+    public TerminalRow getRow(int externalRow) {
+        int internalRow = externalToInternalRow(externalRow);
+        TerminalRow row = mLines[internalRow];
+        if (row != null) return row;
+        if (externalRow >= -mUnpackedTranscriptRows) return allocateFullLineIfNecessary(internalRow);
+
+        row = mUnpackedRowCache.get(internalRow);
+        if (row == null) {
+            byte[] packed = mPackedLines[internalRow];
+            row = (packed == null) ? new TerminalRow(mColumns, 0) : TerminalRow.unpack(packed, mColumns);
+            mUnpackedRowCache.put(internalRow, row);
+        }
+        return row;
+    }
+
+    /**
+     * Find the rows containing the given text, from the oldest transcript row to the last screen row. Rows are
+     * searched one by one, so text continuing on a wrapped line is not found. Packed rows which cannot contain the text
+     * according to their signature are skipped without unpacking them.
+     *
+     * @param text       the text to find.
+     * @param ignoreCase whether to ignore case when comparing characters.
+     * @return The matching rows, in the external coordinate system.
+     */
+    public int[] findRows(String text, boolean ignoreCase) {
+        long[] signature = new long[SIGNATURE_WORDS];
+        addToSignature(text, signature, 0);
+
+        int[] matches = new int[16];
+        int matchCount = 0;
+        for (int row = -mActiveTranscriptRows; row < mScreenRows; row++) {
+            int internalRow = externalToInternalRow(row);
+            if (mLines[internalRow] == null && mPackedLines[internalRow] != null
+                && !signatureContains(mPackedSignatures, internalRow * SIGNATURE_WORDS, signature)) continue;
+
+            String rowText = getRow(row).getText();
+            if (!containsText(rowText, text, ignoreCase)) continue;
+
+            if (matchCount == matches.length) matches = Arrays.copyOf(matches, matchCount * 2);
+            matches[matchCount++] = row;
+        }
+        return Arrays.copyOf(matches, matchCount);
+    }
+
+    private static boolean containsText(String haystack, String needle, boolean ignoreCase) {
+        if (!ignoreCase) return haystack.contains(needle);
+        for (int i = 0, last = haystack.length() - needle.length(); i <= last; i++)
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) return true;
+        return false;
+    }
+
+    /**
+     * Add the character pairs of the text to a signature. Characters are folded the same way as by
+     * {@link String#regionMatches(boolean, int, String, int, int)}, so a signature can rule out case-insensitive matches.
+     */
+    private static void addToSignature(CharSequence text, long[] signature, int offset) {
+        for (int i = 1; i < text.length(); i++) {
+            int hash = fold(text.charAt(i - 1)) * 31 + fold(text.charAt(i));
+            int bit = (hash ^ (hash >>> 8)) & (SIGNATURE_WORDS * 64 - 1);
+            signature[offset + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean signatureContains(long[] signatures, int offset, long[] signature) {
+        for (int i = 0; i < SIGNATURE_WORDS; i++)
+            if ((signatures[offset + i] & signature[i]) != signature[i]) return false;
+        return true;
+    }
+
+    /** Pack the row at the given index, if it is not already packed. */
+    private void packRow(int internalRow) {
+        TerminalRow row = mLines[internalRow];
+        if (row == null) return;
+
+        mPackedLines[internalRow] = row.pack();
+        int offset = internalRow * SIGNATURE_WORDS;
+        Arrays.fill(mPackedSignatures, offset, offset + SIGNATURE_WORDS, 0);
+        addToSignature(row.getText(), mPackedSignatures, offset);
+        mUnpackedRowCache.remove(internalRow);
+        mLines[internalRow] = null;
+        mSpareRow = row;
+    }
+
+    /** Pack all the transcript rows which are further from the screen than {@link #mUnpackedTranscriptRows}. */
+    private void packOldTranscriptRows() {
+        for (int row = -mActiveTranscriptRows; row < -mUnpackedTranscriptRows; row++)
+            packRow(externalToInternalRow(row));
+    }
+
+    private void discardPackedRow(int internalRow) {
+        // A blank row may be cached for a row which was never packed.
+        mUnpackedRowCache.remove(internalRow);
+        mPackedLines[internalRow] = null;
     }
 
     public void clearLineWrap(int row) {
@@ -230,11 +371,25 @@ public final class TerminalBuffer {
             mActiveTranscriptRows = altScreen ? 0 : Math.max(0, mActiveTranscriptRows + shiftDownOfTopRow);
             cursor[1] -= shiftDownOfTopRow;
             mScreenRows = newRows;
+
+            // Rows moving between the screen and the transcript. The screen is never packed.
+            for (int i = 0; i < mScreenRows; i++) {
+                int internalRow = externalToInternalRow(i);
+                if (mLines[internalRow] == null && mPackedLines[internalRow] != null) allocateFullLineIfNecessary(internalRow);
+            }
+            packOldTranscriptRows();
         } else {
             // Copy away old state and update new:
             TerminalRow[] oldLines = mLines;
+            byte[][] oldPackedLines = mPackedLines;
+            final int oldColumns = mColumns;
             mLines = new TerminalRow[newTotalRows];
-            for (int i = 0; i < newTotalRows; i++)
+            mPackedLines = new byte[newTotalRows][];
+            mPackedSignatures = new long[newTotalRows * SIGNATURE_WORDS];
+            mUnpackedRowCache.clear();
+            mSpareRow = null;
+            // Rows below the screen are created blank with the current style as they are scrolled into view:
+            for (int i = 0; i < newRows; i++)
                 mLines[i] = new TerminalRow(newColumns, currentStyle);
 
             final int oldActiveTranscriptRows = mActiveTranscriptRows;
@@ -265,6 +420,8 @@ public final class TerminalBuffer {
                 internalOldRow = (internalOldRow < 0) ? (oldTotalRows + internalOldRow) : (internalOldRow % oldTotalRows);
 
                 TerminalRow oldLine = oldLines[internalOldRow];
+                if (oldLine == null && oldPackedLines[internalOldRow] != null)
+                    oldLine = TerminalRow.unpack(oldPackedLines[internalOldRow], oldColumns);
                 boolean cursorAtThisRow = externalOldRow == oldCursorRow;
                 // The cursor may only be on a non-null line, which we should not skip:
                 if (oldLine == null || (!(!newCursorPlaced && cursorAtThisRow)) && oldLine.isBlank()) {
@@ -365,7 +522,8 @@ public final class TerminalBuffer {
         int totalRows = mTotalRows;
 
         int start = len - 1;
-        // Save away line to be overwritten:
+        // Save away line to be overwritten. It becomes a blank line, so any packed contents are dropped:
+        discardPackedRow((srcInternal + start + 1) % totalRows);
         TerminalRow lineToBeOverWritten = mLines[(srcInternal + start + 1) % totalRows];
         // Do the copy from bottom to top.
         for (int i = start; i >= 0; --i)
@@ -396,10 +554,21 @@ public final class TerminalBuffer {
         // Note that the history has grown if not already full:
         if (mActiveTranscriptRows < mTotalRows - mScreenRows) mActiveTranscriptRows++;
 
+        // Pack the row which just moved out of the unpacked part of the transcript:
+        if (mActiveTranscriptRows > mUnpackedTranscriptRows)
+            packRow(externalToInternalRow(-mUnpackedTranscriptRows - 1));
+
         // Blank the newly revealed line above the bottom margin:
         int blankRow = externalToInternalRow(bottomMargin - 1);
+        byte[] packedBlankRow = mPackedLines[blankRow];
+        discardPackedRow(blankRow);
         if (mLines[blankRow] == null) {
-            mLines[blankRow] = new TerminalRow(mColumns, style);
+            TerminalRow row = (mSpareRow == null) ? new TerminalRow(mColumns, style) : mSpareRow;
+            mSpareRow = null;
+            // Keep the line wrap flag of an overwritten packed row, as clearing an unpacked row below does:
+            row.mLineWrap = packedBlankRow != null && TerminalRow.isPackedLineWrap(packedBlankRow);
+            row.clear(style);
+            mLines[blankRow] = row;
         } else {
             mLines[blankRow].clear(style);
         }
@@ -444,8 +613,19 @@ public final class TerminalBuffer {
                 setChar(sx + x, sy + y, val, style);
     }
 
+    /**
+     * Get a row for writing, unpacking it if necessary. Rows in the packed part of the transcript are not packed again,
+     * so use {@link #getRow(int)} for reading.
+     *
+     * @param row a row in the internal coordinate system.
+     */
     public TerminalRow allocateFullLineIfNecessary(int row) {
-        return (mLines[row] == null) ? (mLines[row] = new TerminalRow(mColumns, 0)) : mLines[row];
+        if (mLines[row] == null) {
+            byte[] packed = mPackedLines[row];
+            mLines[row] = (packed == null) ? new TerminalRow(mColumns, 0) : TerminalRow.unpack(packed, mColumns);
+            discardPackedRow(row);
+        }
+        return mLines[row];
     }
 
     public void setChar(int column, int row, int codePoint, long style) {
@@ -488,9 +668,13 @@ public final class TerminalBuffer {
         if (mScreenFirstRow < mActiveTranscriptRows) {
             Arrays.fill(mLines, mTotalRows + mScreenFirstRow - mActiveTranscriptRows, mTotalRows, null);
             Arrays.fill(mLines, 0, mScreenFirstRow, null);
+            Arrays.fill(mPackedLines, mTotalRows + mScreenFirstRow - mActiveTranscriptRows, mTotalRows, null);
+            Arrays.fill(mPackedLines, 0, mScreenFirstRow, null);
         } else {
             Arrays.fill(mLines, mScreenFirstRow - mActiveTranscriptRows, mScreenFirstRow, null);
+            Arrays.fill(mPackedLines, mScreenFirstRow - mActiveTranscriptRows, mScreenFirstRow, null);
         }
+        mUnpackedRowCache.clear();
         mActiveTranscriptRows = 0;
     }
 
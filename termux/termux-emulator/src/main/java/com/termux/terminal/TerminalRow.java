@@ -1,5 +1,7 @@
 package com.termux.terminal;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 /**
@@ -247,4 +249,73 @@ public final class TerminalRow {
         return mStyle[column];
     }
 
+    /** The text of this row, including trailing spaces. */
+    String getText() {
+        return new String(mText, 0, mSpaceUsed);
+    }
+
+    /**
+     * Pack this row into the compact form used for old transcript rows: the line wrap flag, the text as UTF-8 without
+     * its trailing spaces, and the styles as runs of cells sharing the same style. See {@link #unpack(byte[], int)}.
+     */
+    byte[] pack() {
+        int textEnd = mSpaceUsed;
+        while (textEnd > 0 && mText[textEnd - 1] == ' ') textEnd--;
+        byte[] text = new String(mText, 0, textEnd).getBytes(StandardCharsets.UTF_8);
+
+        int runs = 1;
+        for (int i = 1; i < mColumns; i++)
+            if (mStyle[i] != mStyle[i - 1]) runs++;
+
+        ByteBuffer packed = ByteBuffer.allocate(1 + 2 + 4 + text.length + 2 + runs * (2 + 8));
+        packed.put((byte) ((mLineWrap ? 1 : 0) | (mHasNonOneWidthOrSurrogateChars ? 2 : 0)));
+        packed.putShort((short) (mSpaceUsed - textEnd));
+        packed.putInt(text.length);
+        packed.put(text);
+        packed.putShort((short) runs);
+        int runStart = 0;
+        for (int i = 1; i <= mColumns; i++) {
+            if (i == mColumns || mStyle[i] != mStyle[runStart]) {
+                packed.putShort((short) (i - runStart));
+                packed.putLong(mStyle[runStart]);
+                runStart = i;
+            }
+        }
+        return packed.array();
+    }
+
+    /** Whether the line wrap flag is set in a row packed by {@link #pack()}. */
+    static boolean isPackedLineWrap(byte[] packedRow) {
+        return (packedRow[0] & 1) != 0;
+    }
+
+    /** Recreate a row packed by {@link #pack()}. */
+    static TerminalRow unpack(byte[] packedRow, int columns) {
+        ByteBuffer packed = ByteBuffer.wrap(packedRow);
+        TerminalRow row = new TerminalRow(columns, 0);
+
+        int flags = packed.get();
+        row.mLineWrap = (flags & 1) != 0;
+        row.mHasNonOneWidthOrSurrogateChars = (flags & 2) != 0;
+
+        int trailingSpaces = packed.getShort();
+        byte[] textBytes = new byte[packed.getInt()];
+        packed.get(textBytes);
+        char[] text = new String(textBytes, StandardCharsets.UTF_8).toCharArray();
+        int spaceUsed = text.length + trailingSpaces;
+        if (spaceUsed > row.mText.length) row.mText = new char[spaceUsed];
+        System.arraycopy(text, 0, row.mText, 0, text.length);
+        Arrays.fill(row.mText, text.length, spaceUsed, ' ');
+        row.mSpaceUsed = (short) spaceUsed;
+
+        int runs = packed.getShort();
+        for (int run = 0, column = 0; run < runs; run++) {
+            int length = packed.getShort();
+            long style = packed.getLong();
+            Arrays.fill(row.mStyle, column, column + length, style);
+            column += length;
+        }
+        return row;
+    }
+
 }
@@ -2,11 +2,17 @@ package com.termux.terminal;
 
 import android.annotation.SuppressLint;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.system.ErrnoException;
 import android.system.Os;
 import android.system.OsConstants;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
@@ -16,13 +22,17 @@ import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A terminal session, consisting of a process coupled to a terminal interface.
  * <p>
  * The subprocess will be executed by the constructor, and when the size is made known by a call to
  * {@link #updateSize(int, int)} terminal emulation will begin and threads will be spawned to handle the subprocess I/O.
- * All terminal emulation and callback methods will be performed on the main thread.
+ * All callback methods will be performed on the main thread. Terminal emulation is performed on the main thread as
+ * well, unless the session was created to emulate off the main thread. In that case the output of the process is
+ * parsed on a dedicated thread, and the client is told about screen changes at most once per frame. The emulator is
+ * then only consistent while holding its monitor, see {@link #getEmulator()}.
  * <p>
  * The child process may be exited forcefully by using the {@link #finishIfRunning()} method.
  * <p>
@@ -32,6 +42,11 @@ public final class TerminalSession extends TerminalOutput {
 
     private static final int MSG_NEW_INPUT = 1;
     private static final int MSG_PROCESS_EXITED = 4;
+    private static final int MSG_SCREEN_UPDATED = 5;
+    private static final int MSG_SESSION_FINISHED = 6;
+
+    /** The minimum time between two screen updates when emulating off the main thread. */
+    private static final long SCREEN_UPDATE_INTERVAL_MS = 16;
 
     public final String mHandle = UUID.randomUUID().toString();
 
@@ -70,6 +85,17 @@ public final class TerminalSession extends TerminalOutput {
 
     final Handler mMainThreadHandler = new MainThreadHandler(android.os.Looper.getMainLooper());
 
+    /** Whether the process output is fed to the emulator on {@link #mEmulatorThread} instead of the main thread. */
+    private final boolean mEmulateOffMainThread;
+    private HandlerThread mEmulatorThread;
+    Handler mEmulatorHandler;
+    /** The handler the process output is fed to the emulator on, {@link #mEmulatorHandler} or the main thread one. */
+    private Handler mInputHandler;
+
+    /** Whether a {@link #MSG_SCREEN_UPDATED} message is waiting to be handled by the main thread. */
+    private final AtomicBoolean mScreenUpdatePending = new AtomicBoolean();
+    private volatile long mLastScreenUpdateTime;
+
     private final String mShellPath;
     private final String mCwd;
     private final String[] mArgs;
@@ -80,12 +106,22 @@ public final class TerminalSession extends TerminalOutput {
     private static final String LOG_TAG = "TerminalSession";
 
     public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows, TerminalSessionClient client) {
+        this(shellPath, cwd, args, env, transcriptRows, client, false);
+    }
+
+    /**
+     * @param emulateOffMainThread Whether to feed the process output to the emulator on a dedicated thread, so that
+     *                             large amounts of output do not block the main thread.
+     */
+    public TerminalSession(String shellPath, String cwd, String[] args, String[] env, Integer transcriptRows, TerminalSessionClient client,
+                           boolean emulateOffMainThread) {
         this.mShellPath = shellPath;
         this.mCwd = cwd;
         this.mArgs = args;
         this.mEnv = env;
         this.mTranscriptRows = transcriptRows;
         this.mClient = client;
+        this.mEmulateOffMainThread = emulateOffMainThread;
     }
 
     /**
@@ -96,7 +132,15 @@ public final class TerminalSession extends TerminalOutput {
         mClient = client;
 
         if (mEmulator != null)
-            mEmulator.updateTerminalSessionClient(client);
+            mEmulator.updateTerminalSessionClient(getEmulatorClient());
+    }
+
+    /**
+     * The client given to the emulator. When emulating off the main thread, the emulator's calls to the client are
+     * moved to the main thread where needed.
+     */
+    private TerminalSessionClient getEmulatorClient() {
+        return mEmulateOffMainThread ? new MainThreadSessionClient() : mClient;
     }
 
     /** Inform the attached pty of the new size and reflow or initialize the emulator. */
@@ -105,7 +149,9 @@ public final class TerminalSession extends TerminalOutput {
             initializeEmulator(columns, rows);
         } else {
             JNI.setPtyWindowSize(mTerminalFileDescriptor, rows, columns);
-            mEmulator.resize(columns, rows);
+            synchronized (mEmulator) {
+                mEmulator.resize(columns, rows);
+            }
         }
     }
 
@@ -121,7 +167,7 @@ public final class TerminalSession extends TerminalOutput {
      * @param rows    The number of rows in the terminal window.
      */
     public void initializeEmulator(int columns, int rows) {
-        mEmulator = new TerminalEmulator(this, columns, rows, mTranscriptRows, mClient);
+        mEmulator = new TerminalEmulator(this, columns, rows, mTranscriptRows, getEmulatorClient());
 
         int[] processId = new int[1];
         mTerminalFileDescriptor = JNI.createSubprocess(mShellPath, mCwd, mArgs, mEnv, processId, rows, columns);
@@ -130,6 +176,8 @@ public final class TerminalSession extends TerminalOutput {
 
         final FileDescriptor terminalFileDescriptorWrapped = wrapFileDescriptor(mTerminalFileDescriptor, mClient);
 
+        startInputHandler();
+
         new Thread("TermSessionInputReader[pid=" + mShellPid + "]") {
             @Override
             public void run() {
@@ -138,8 +186,7 @@ public final class TerminalSession extends TerminalOutput {
                     while (true) {
                         int read = termIn.read(buffer);
                         if (read == -1) return;
-                        if (!mProcessToTerminalIOQueue.write(buffer, 0, read)) return;
-                        mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
+                        if (!onProcessOutput(buffer, read)) return;
                     }
                 } catch (Exception e) {
                     // Ignore, just shutting down.
@@ -167,12 +214,42 @@ public final class TerminalSession extends TerminalOutput {
             @Override
             public void run() {
                 int processExitCode = JNI.waitFor(mShellPid);
-                mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_PROCESS_EXITED, processExitCode));
+                mInputHandler.sendMessage(mInputHandler.obtainMessage(MSG_PROCESS_EXITED, processExitCode));
             }
         }.start();
 
     }
 
+    /**
+     * Start emulating without a process, for tests. The output of the process is then given to
+     * {@link #onProcessOutput(byte[], int)}.
+     */
+    void initializeEmulatorWithoutProcess(int columns, int rows) {
+        mEmulator = new TerminalEmulator(this, columns, rows, mTranscriptRows, getEmulatorClient());
+        startInputHandler();
+    }
+
+    /** Start the thread the process output is fed to the emulator on, if emulating off the main thread. */
+    private void startInputHandler() {
+        if (mEmulateOffMainThread) {
+            mEmulatorThread = new HandlerThread("TermSessionEmulator[pid=" + mShellPid + "]");
+            mEmulatorThread.start();
+            mEmulatorHandler = new EmulatorThreadHandler(mEmulatorThread.getLooper());
+        }
+        mInputHandler = mEmulateOffMainThread ? mEmulatorHandler : mMainThreadHandler;
+    }
+
+    /**
+     * Queue output read from the process for the emulator.
+     *
+     * @return false if the session has finished, so that the output could not be queued.
+     */
+    boolean onProcessOutput(byte[] buffer, int count) {
+        if (!mProcessToTerminalIOQueue.write(buffer, 0, count)) return false;
+        mInputHandler.sendEmptyMessage(MSG_NEW_INPUT);
+        return true;
+    }
+
     /** Write data to the shell process. */
     @Override
     public void write(byte[] data, int offset, int count) {
@@ -216,6 +293,10 @@ public final class TerminalSession extends TerminalOutput {
         write(mUtf8InputBuffer, 0, bufferPosition);
     }
 
+    /**
+     * The terminal emulator, or null if emulation has not started yet. When emulating off the main thread, the
+     * emulator must only be accessed while holding its monitor.
+     */
     public TerminalEmulator getEmulator() {
         return mEmulator;
     }
@@ -227,7 +308,9 @@ public final class TerminalSession extends TerminalOutput {
 
     /** Reset state for terminal emulator state. */
     public void reset() {
-        mEmulator.reset();
+        synchronized (mEmulator) {
+            mEmulator.reset();
+        }
         notifyScreenUpdate();
     }
 
@@ -255,9 +338,18 @@ public final class TerminalSession extends TerminalOutput {
         JNI.close(mTerminalFileDescriptor);
     }
 
+    /** Run the given action on the main thread, immediately if already on it. */
+    private void runOnMainThread(Runnable action) {
+        if (Looper.myLooper() == mMainThreadHandler.getLooper()) {
+            action.run();
+        } else {
+            mMainThreadHandler.post(action);
+        }
+    }
+
     @Override
     public void titleChanged(String oldTitle, String newTitle) {
-        mClient.onTitleChanged(this);
+        runOnMainThread(() -> mClient.onTitleChanged(this));
     }
 
     public synchronized boolean isRunning() {
@@ -271,22 +363,22 @@ public final class TerminalSession extends TerminalOutput {
 
     @Override
     public void onCopyTextToClipboard(String text) {
-        mClient.onCopyTextToClipboard(this, text);
+        runOnMainThread(() -> mClient.onCopyTextToClipboard(this, text));
     }
 
     @Override
     public void onPasteTextFromClipboard() {
-        mClient.onPasteTextFromClipboard(this);
+        runOnMainThread(() -> mClient.onPasteTextFromClipboard(this));
     }
 
     @Override
     public void onBell() {
-        mClient.onBell(this);
+        runOnMainThread(() -> mClient.onBell(this));
     }
 
     @Override
     public void onColorsChanged() {
-        mClient.onColorsChanged(this);
+        runOnMainThread(() -> mClient.onColorsChanged(this));
     }
 
     public int getPid() {
@@ -333,6 +425,24 @@ public final class TerminalSession extends TerminalOutput {
         return result;
     }
 
+    /** Append the "[Process completed ...]" message shown when the shell exits. */
+    private void appendExitDescription(int exitCode) {
+        String exitDescription = "\r\n[Process completed";
+        if (exitCode > 0) {
+            // Non-zero process exit.
+            exitDescription += " (code " + exitCode + ")";
+        } else if (exitCode < 0) {
+            // Negated signal.
+            exitDescription += " (signal " + (-exitCode) + ")";
+        }
+        exitDescription += " - press Enter]";
+
+        byte[] bytesToWrite = exitDescription.getBytes(StandardCharsets.UTF_8);
+        synchronized (mEmulator) {
+            mEmulator.append(bytesToWrite, bytesToWrite.length);
+        }
+    }
+
     @SuppressLint("HandlerLeak")
     class MainThreadHandler extends Handler {
 
@@ -344,6 +454,22 @@ public final class TerminalSession extends TerminalOutput {
 
         @Override
         public void handleMessage(Message msg) {
+            if (msg.what == MSG_SCREEN_UPDATED) {
+                mLastScreenUpdateTime = SystemClock.uptimeMillis();
+                mScreenUpdatePending.set(false);
+                notifyScreenUpdate();
+                return;
+            }
+
+            if (msg.what == MSG_SESSION_FINISHED) {
+                // The emulator thread has already appended the remaining output and the exit description.
+                cleanupResources((Integer) msg.obj);
+                mEmulatorThread.quitSafely();
+                notifyScreenUpdate();
+                mClient.onSessionFinished(TerminalSession.this);
+                return;
+            }
+
             int bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false);
             if (bytesRead > 0) {
                 mEmulator.append(mReceiveBuffer, bytesRead);
@@ -354,18 +480,7 @@ public final class TerminalSession extends TerminalOutput {
                 int exitCode = (Integer) msg.obj;
                 cleanupResources(exitCode);
 
-                String exitDescription = "\r\n[Process completed";
-                if (exitCode > 0) {
-                    // Non-zero process exit.
-                    exitDescription += " (code " + exitCode + ")";
-                } else if (exitCode < 0) {
-                    // Negated signal.
-                    exitDescription += " (signal " + (-exitCode) + ")";
-                }
-                exitDescription += " - press Enter]";
-
-                byte[] bytesToWrite = exitDescription.getBytes(StandardCharsets.UTF_8);
-                mEmulator.append(bytesToWrite, bytesToWrite.length);
+                appendExitDescription(exitCode);
                 notifyScreenUpdate();
 
                 mClient.onSessionFinished(TerminalSession.this);
@@ -374,4 +489,140 @@ public final class TerminalSession extends TerminalOutput {
 
     }
 
+    /**
+     * Feeds the process output to the emulator when emulating off the main thread. All the output which is available
+     * is parsed in one go, after which the main thread is asked to update the screen. Such requests are coalesced, so
+     * that the screen is updated at most once per {@link #SCREEN_UPDATE_INTERVAL_MS}, however fast the output arrives.
+     */
+    @SuppressLint("HandlerLeak")
+    class EmulatorThreadHandler extends Handler {
+
+        public EmulatorThreadHandler(android.os.Looper looper) {
+            super(looper);
+        }
+
+        final byte[] mReceiveBuffer = new byte[4 * 1024];
+
+        @Override
+        public void handleMessage(Message msg) {
+            boolean appended = false;
+            int bytesRead;
+            while ((bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false)) > 0) {
+                // Release the monitor after every chunk so that the main thread can draw in between.
+                synchronized (mEmulator) {
+                    mEmulator.append(mReceiveBuffer, bytesRead);
+                }
+                appended = true;
+            }
+
+            if (msg.what == MSG_PROCESS_EXITED) {
+                appendExitDescription((Integer) msg.obj);
+                mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_SESSION_FINISHED, msg.obj));
+            } else if (appended) {
+                requestScreenUpdate();
+            }
+        }
+
+        private void requestScreenUpdate() {
+            if (!mScreenUpdatePending.compareAndSet(false, true)) return;
+
+            long updateTime = Math.max(SystemClock.uptimeMillis(), mLastScreenUpdateTime + SCREEN_UPDATE_INTERVAL_MS);
+            mMainThreadHandler.sendEmptyMessageAtTime(MSG_SCREEN_UPDATED, updateTime);
+        }
+
+    }
+
+    /**
+     * Client given to the emulator when emulating off the main thread. Cursor state changes are moved to the main
+     * thread, everything else goes straight to the current {@link #mClient}.
+     */
+    private class MainThreadSessionClient implements TerminalSessionClient {
+
+        @Override
+        public void onTextChanged(@NonNull TerminalSession changedSession) {
+            mClient.onTextChanged(changedSession);
+        }
+
+        @Override
+        public void onTitleChanged(@NonNull TerminalSession changedSession) {
+            mClient.onTitleChanged(changedSession);
+        }
+
+        @Override
+        public void onSessionFinished(@NonNull TerminalSession finishedSession) {
+            mClient.onSessionFinished(finishedSession);
+        }
+
+        @Override
+        public void onCopyTextToClipboard(@NonNull TerminalSession session, String text) {
+            mClient.onCopyTextToClipboard(session, text);
+        }
+
+        @Override
+        public void onPasteTextFromClipboard(@Nullable TerminalSession session) {
+            mClient.onPasteTextFromClipboard(session);
+        }
+
+        @Override
+        public void onBell(@NonNull TerminalSession session) {
+            mClient.onBell(session);
+        }
+
+        @Override
+        public void onColorsChanged(@NonNull TerminalSession session) {
+            mClient.onColorsChanged(session);
+        }
+
+        @Override
+        public void onTerminalCursorStateChange(boolean state) {
+            runOnMainThread(() -> mClient.onTerminalCursorStateChange(state));
+        }
+
+        @Override
+        public void setTerminalShellPid(@NonNull TerminalSession session, int pid) {
+            mClient.setTerminalShellPid(session, pid);
+        }
+
+        @Override
+        public Integer getTerminalCursorStyle() {
+            return mClient.getTerminalCursorStyle();
+        }
+
+        @Override
+        public void logError(String tag, String message) {
+            mClient.logError(tag, message);
+        }
+
+        @Override
+        public void logWarn(String tag, String message) {
+            mClient.logWarn(tag, message);
+        }
+
+        @Override
+        public void logInfo(String tag, String message) {
+            mClient.logInfo(tag, message);
+        }
+
+        @Override
+        public void logDebug(String tag, String message) {
+            mClient.logDebug(tag, message);
+        }
+
+        @Override
+        public void logVerbose(String tag, String message) {
+            mClient.logVerbose(tag, message);
+        }
+
+        @Override
+        public void logStackTraceWithMessage(String tag, String message, Exception e) {
+            mClient.logStackTraceWithMessage(tag, message, e);
+        }
+
+        @Override
+        public void logStackTrace(String tag, Exception e) {
+            mClient.logStackTrace(tag, e);
+        }
+
+    }
+
 }
@@ -0,0 +1,149 @@
+package com.termux.terminal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks that feeding output to the emulator in batches, as {@link TerminalSession} does when emulating off the main
+ * thread, gives the same screen as feeding it in the 4 KB chunks read from the process.
+ * <p>
+ * Set the TERMINAL_BENCHMARK environment variable to also print the throughput of both ways of feeding the emulator.
+ */
+public class EmulationThroughputTest {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+	private static final int TRANSCRIPT_ROWS = 2000;
+	private static final int CHUNK_SIZE = 4 * 1024;
+
+	private final TerminalTestCase.MockTerminalOutput mOutput = new TerminalTestCase.MockTerminalOutput();
+
+	/** Output resembling a colored build log: SGR attributes, wide and multi-byte characters and cursor movement. */
+	static byte[] generateStream(int approximateSize) {
+		Random random = new Random(42);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(approximateSize + 256);
+		int line = 0;
+		while (out.size() < approximateSize) {
+			StringBuilder builder = new StringBuilder();
+			builder.append("\033[").append(30 + random.nextInt(8)).append('m');
+			builder.append(String.format(Locale.US, "%6d ", line++));
+			builder.append("\033[0m> Task :module").append(random.nextInt(20)).append(":compileKotlin ");
+			switch (random.nextInt(6)) {
+				case 0:
+					builder.append("\033[1;31mFAILED\033[0m");
+					break;
+				case 1:
+					builder.append("日本語のテキスト ünïcödé");
+					break;
+				case 2:
+					// progress style output which rewrites the line
+					builder.append("\033[2K\r").append(random.nextInt(100)).append("% EXECUTING\033[K");
+					break;
+				case 3:
+					builder.append("\033[s\033[1;1H\033[7mstatus\033[0m\033[u");
+					break;
+				default:
+					for (int i = random.nextInt(60); i > 0; i--) builder.append((char) ('a' + random.nextInt(26)));
+			}
+			builder.append("\r\n");
+			byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+			out.write(bytes, 0, bytes.length);
+		}
+		return out.toByteArray();
+	}
+
+	private TerminalEmulator newEmulator() {
+		return new TerminalEmulator(mOutput, COLUMNS, ROWS, TRANSCRIPT_ROWS, null);
+	}
+
+	/** Feed the stream in chunks of the given size, splitting multi-byte characters and escape sequences. */
+	private static void feed(TerminalEmulator emulator, byte[] stream, int chunkSize) {
+		byte[] chunk = new byte[chunkSize];
+		for (int offset = 0; offset < stream.length; offset += chunkSize) {
+			int length = Math.min(chunkSize, stream.length - offset);
+			System.arraycopy(stream, offset, chunk, 0, length);
+			emulator.append(chunk, length);
+		}
+	}
+
+	private static void assertSameScreen(TerminalEmulator expected, TerminalEmulator actual) {
+		assertEquals(expected.getScreen().getTranscriptText(), actual.getScreen().getTranscriptText());
+		assertEquals(expected.getCursorRow(), actual.getCursorRow());
+		assertEquals(expected.getCursorCol(), actual.getCursorCol());
+		for (int row = 0; row < ROWS; row++) {
+			for (int column = 0; column < COLUMNS; column++) {
+				assertEquals("Style at " + row + "," + column,
+					expected.getScreen().getStyleAt(row, column), actual.getScreen().getStyleAt(row, column));
+			}
+		}
+	}
+
+	@Test
+	public void testBatchedFeedGivesSameScreen() {
+		byte[] stream = generateStream(256 * 1024);
+
+		TerminalEmulator chunked = newEmulator();
+		feed(chunked, stream, CHUNK_SIZE);
+
+		TerminalEmulator batched = newEmulator();
+		batched.append(stream, stream.length);
+		assertSameScreen(chunked, batched);
+
+		TerminalEmulator oddChunks = newEmulator();
+		feed(oddChunks, stream, 7);
+		assertSameScreen(chunked, oddChunks);
+	}
+
+	@Test
+	public void testThroughput() {
+		Assume.assumeTrue(System.getenv("TERMINAL_BENCHMARK") != null);
+
+		byte[] stream = generateStream(32 * 1024 * 1024);
+		double megabytes = stream.length / (1024.0 * 1024.0);
+
+		// Warm up.
+		feed(newEmulator(), stream, CHUNK_SIZE);
+
+		// Main thread emulation: every 4 KB chunk is parsed and then redrawn, which reads the visible screen.
+		TerminalEmulator perChunk = newEmulator();
+		byte[] chunk = new byte[CHUNK_SIZE];
+		long start = System.nanoTime();
+		for (int offset = 0; offset < stream.length; offset += CHUNK_SIZE) {
+			int length = Math.min(CHUNK_SIZE, stream.length - offset);
+			System.arraycopy(stream, offset, chunk, 0, length);
+			perChunk.append(chunk, length);
+			perChunk.getScreen().getSelectedText(0, 0, COLUMNS, ROWS);
+		}
+		double perChunkSeconds = (System.nanoTime() - start) / 1e9;
+
+		// Off main thread emulation: chunks are parsed as they come and the screen is read at most once per frame.
+		TerminalEmulator perFrame = newEmulator();
+		long frameNanos = 16_000_000L;
+		long lastFrame = System.nanoTime();
+		start = lastFrame;
+		for (int offset = 0; offset < stream.length; offset += CHUNK_SIZE) {
+			int length = Math.min(CHUNK_SIZE, stream.length - offset);
+			System.arraycopy(stream, offset, chunk, 0, length);
+			perFrame.append(chunk, length);
+			long now = System.nanoTime();
+			if (now - lastFrame >= frameNanos) {
+				perFrame.getScreen().getSelectedText(0, 0, COLUMNS, ROWS);
+				lastFrame = now;
+			}
+		}
+		perFrame.getScreen().getSelectedText(0, 0, COLUMNS, ROWS);
+		double perFrameSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf(Locale.US, "Redraw per chunk: %.1f MB/s, redraw per frame: %.1f MB/s (%.1f MB of output)%n",
+			megabytes / perChunkSeconds, megabytes / perFrameSeconds, megabytes);
+		assertSameScreen(perChunk, perFrame);
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.termux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class PackedTranscriptTest extends TerminalTestCase {
+
+	private static final int COLUMNS = 20;
+	private static final int ROWS = 5;
+	private static final int TRANSCRIPT_ROWS = 400;
+
+	private TerminalEmulator newEmulator(int unpackedTranscriptRows) {
+		TerminalEmulator emulator = new TerminalEmulator(mOutput, COLUMNS, ROWS, TRANSCRIPT_ROWS, null);
+		emulator.getScreen().mUnpackedTranscriptRows = unpackedTranscriptRows;
+		return emulator;
+	}
+
+	private static void append(TerminalEmulator emulator, byte[] bytes) {
+		emulator.append(bytes, bytes.length);
+	}
+
+	private static int packedRows(TerminalBuffer buffer) {
+		int packed = 0;
+		for (byte[] row : buffer.mPackedLines)
+			if (row != null) packed++;
+		return packed;
+	}
+
+	private static void assertSameContents(TerminalEmulator expected, TerminalEmulator actual) {
+		TerminalBuffer expectedScreen = expected.getScreen();
+		TerminalBuffer actualScreen = actual.getScreen();
+		assertEquals(expectedScreen.getActiveTranscriptRows(), actualScreen.getActiveTranscriptRows());
+		assertEquals(expectedScreen.getTranscriptText(), actualScreen.getTranscriptText());
+		for (int row = -expectedScreen.getActiveTranscriptRows(); row < expected.mRows; row++) {
+			assertEquals("Line wrap of row " + row, expectedScreen.getLineWrap(row), actualScreen.getLineWrap(row));
+			for (int column = 0; column < expected.mColumns; column++) {
+				assertEquals("Style at " + row + "," + column,
+					expectedScreen.getRow(row).getStyle(column), actualScreen.getRow(row).getStyle(column));
+			}
+		}
+		assertEquals(expected.getCursorRow(), actual.getCursorRow());
+		assertEquals(expected.getCursorCol(), actual.getCursorCol());
+	}
+
+	public void testRowSurvivesPacking() {
+		withTerminalSized(10, 2).enterString("\033[31mâ日本\033[44m😀x \033[0mwrapp").enterString("ed");
+		TerminalRow row = mTerminal.getScreen().getRow(0);
+
+		TerminalRow unpacked = TerminalRow.unpack(row.pack(), 10);
+		assertEquals(row.getText(), unpacked.getText());
+		assertEquals(row.getSpaceUsed(), unpacked.getSpaceUsed());
+		assertEquals(row.mLineWrap, unpacked.mLineWrap);
+		assertTrue(unpacked.mHasNonOneWidthOrSurrogateChars);
+		for (int column = 0; column < 10; column++)
+			assertEquals(row.getStyle(column), unpacked.getStyle(column));
+	}
+
+	public void testPackedTranscriptReadsAsUnpacked() {
+		byte[] stream = EmulationThroughputTest.generateStream(64 * 1024);
+
+		TerminalEmulator unpacked = newEmulator(Integer.MAX_VALUE);
+		append(unpacked, stream);
+		TerminalEmulator packed = newEmulator(10);
+		append(packed, stream);
+
+		assertEquals(0, packedRows(unpacked.getScreen()));
+		assertTrue(packedRows(packed.getScreen()) > 0);
+		assertSameContents(unpacked, packed);
+	}
+
+	public void testResizeWithPackedTranscript() {
+		byte[] stream = EmulationThroughputTest.generateStream(32 * 1024);
+
+		TerminalEmulator unpacked = newEmulator(Integer.MAX_VALUE);
+		append(unpacked, stream);
+		TerminalEmulator packed = newEmulator(10);
+		append(packed, stream);
+
+		// Only the rows change.
+		unpacked.resize(COLUMNS, ROWS + 3);
+		packed.resize(COLUMNS, ROWS + 3);
+		assertSameContents(unpacked, packed);
+
+		// The columns change, so the whole transcript is reflowed.
+		unpacked.resize(COLUMNS - 7, ROWS);
+		packed.resize(COLUMNS - 7, ROWS);
+		assertSameContents(unpacked, packed);
+		assertTrue(packedRows(packed.getScreen()) > 0);
+
+		// Output after resizing still packs the transcript correctly.
+		append(unpacked, stream);
+		append(packed, stream);
+		assertSameContents(unpacked, packed);
+	}
+
+	public void testReadingKeepsTranscriptPacked() {
+		TerminalEmulator emulator = newEmulator(10);
+		append(emulator, EmulationThroughputTest.generateStream(16 * 1024));
+		TerminalBuffer screen = emulator.getScreen();
+		int packed = packedRows(screen);
+		assertTrue(packed > 0);
+
+		screen.getTranscriptText();
+		for (int row = -screen.getActiveTranscriptRows(); row < ROWS; row++)
+			screen.getRow(row);
+
+		assertEquals(packed, packedRows(screen));
+		for (int row = -screen.getActiveTranscriptRows(); row < -screen.mUnpackedTranscriptRows; row++)
+			assertNull("Row " + row, screen.mLines[screen.externalToInternalRow(row)]);
+	}
+
+	public void testClearTranscriptDropsPackedRows() {
+		TerminalEmulator emulator = newEmulator(10);
+		append(emulator, EmulationThroughputTest.generateStream(16 * 1024));
+		assertTrue(packedRows(emulator.getScreen()) > 0);
+
+		append(emulator, "\033[3J".getBytes(StandardCharsets.UTF_8));
+		assertEquals(0, emulator.getScreen().getActiveTranscriptRows());
+		assertEquals(0, packedRows(emulator.getScreen()));
+	}
+
+	public void testFindRows() {
+		TerminalEmulator emulator = newEmulator(10);
+		StringBuilder output = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			output.append(i % 50 == 7 ? "Task " + i + " ERROR" : "Task " + i + " ok");
+			if (i < 199) output.append("\r\n");
+		}
+		append(emulator, output.toString().getBytes(StandardCharsets.UTF_8));
+		TerminalBuffer screen = emulator.getScreen();
+		assertTrue(packedRows(screen) > 0);
+
+		int[] rows = screen.findRows("error", true);
+		assertEquals(4, rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			assertEquals("Task " + (50 * i + 7) + " ERROR", screen.getSelectedText(0, rows[i], COLUMNS, rows[i]).trim());
+		}
+
+		assertEquals(0, screen.findRows("error", false).length);
+		assertTrue(Arrays.equals(rows, screen.findRows("ERROR", false)));
+		assertEquals(1, screen.findRows("Task 199 ok", false).length);
+	}
+
+}
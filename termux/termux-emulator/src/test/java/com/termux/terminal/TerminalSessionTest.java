@@ -0,0 +1,225 @@
+package com.termux.terminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks a {@link TerminalSession} which emulates off the main thread: output is parsed on the emulator thread, the
+ * client is told about screen changes at most once per frame, and the screen read on the main thread while holding
+ * the emulator's monitor never shows half of a chunk of output.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TerminalSessionTest {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+	private static final int TRANSCRIPT_ROWS = 2000;
+
+	/** A divisor of the 4 KB read by the emulator thread at once, so that every chunk parsed ends with a line. */
+	private static final int LINE_LENGTH = 64;
+
+	private final FakeSessionClient mClient = new FakeSessionClient();
+	private TerminalSession mSession;
+
+	@Before
+	public void setUp() {
+		mSession = new TerminalSession("/system/bin/sh", "/", new String[0], new String[0], TRANSCRIPT_ROWS, mClient, true);
+		mSession.initializeEmulatorWithoutProcess(COLUMNS, ROWS);
+	}
+
+	@After
+	public void tearDown() {
+		mSession.mEmulatorHandler.getLooper().quitSafely();
+	}
+
+	/** The text of a numbered line, so that torn or missing lines can be told apart. */
+	private static String lineText(int number) {
+		StringBuilder builder = new StringBuilder(String.format(Locale.US, "%05d ", number));
+		while (builder.length() < LINE_LENGTH - 2) builder.append((char) ('a' + number % 26));
+		return builder.toString();
+	}
+
+	/** Give the lines in [from, to) to the session, as the thread reading from the process does. */
+	private boolean output(int from, int to) {
+		for (int i = from; i < to; i++) {
+			byte[] line = (lineText(i) + "\r\n").getBytes(StandardCharsets.UTF_8);
+			if (!mSession.onProcessOutput(line, line.length)) return false;
+		}
+		return true;
+	}
+
+	/** Wait until the emulator thread has parsed all the output given so far. */
+	private void awaitEmulation() {
+		shadowOf(mSession.mEmulatorHandler.getLooper()).idle();
+	}
+
+	private static String expectedTranscript(int lines) {
+		TerminalEmulator expected = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), COLUMNS, ROWS, TRANSCRIPT_ROWS, null);
+		for (int i = 0; i < lines; i++) {
+			byte[] line = (lineText(i) + "\r\n").getBytes(StandardCharsets.UTF_8);
+			expected.append(line, line.length);
+		}
+		return expected.getScreen().getTranscriptText();
+	}
+
+	/** Assert that the screen holds consecutive whole lines, with the cursor at the start of the line after them. */
+	private static void assertConsistentScreen(TerminalEmulator emulator) {
+		assertEquals(0, emulator.getCursorCol());
+
+		List<String> rows = new ArrayList<>();
+		for (int row = 0; row < ROWS; row++) {
+			String text = emulator.getScreen().getSelectedText(0, row, COLUMNS, row).trim();
+			if (!text.isEmpty()) rows.add(text);
+		}
+		if (rows.isEmpty()) return;
+
+		int first = Integer.parseInt(rows.get(0).substring(0, 5));
+		for (int i = 0; i < rows.size(); i++) {
+			assertEquals(lineText(first + i), rows.get(i));
+		}
+		assertEquals(rows.size(), emulator.getCursorRow());
+	}
+
+	@Test
+	public void screenUpdatesAreCoalescedToOnePerFrame() {
+		assertTrue(output(0, 1000));
+		awaitEmulation();
+		shadowOf(Looper.getMainLooper()).idle();
+		assertEquals(1, mClient.mTextChanges);
+		assertEquals(expectedTranscript(1000), mClient.mLastTranscript);
+
+		// However much output arrives, the next update waits for the next frame
+		assertTrue(output(1000, 2000));
+		awaitEmulation();
+		shadowOf(Looper.getMainLooper()).idle();
+		assertEquals(1, mClient.mTextChanges);
+
+		shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(16));
+		assertEquals(2, mClient.mTextChanges);
+		assertEquals(expectedTranscript(2000), mClient.mLastTranscript);
+	}
+
+	@Test
+	public void screenReadWhileHoldingTheEmulatorIsConsistent() throws InterruptedException {
+		int lines = 20_000;
+		Thread processReader = new Thread(() -> output(0, lines));
+		processReader.start();
+
+		TerminalEmulator emulator = mSession.getEmulator();
+		do {
+			synchronized (emulator) {
+				assertConsistentScreen(emulator);
+			}
+		} while (processReader.isAlive());
+		processReader.join();
+
+		awaitEmulation();
+		synchronized (emulator) {
+			assertConsistentScreen(emulator);
+			assertEquals(expectedTranscript(lines), emulator.getScreen().getTranscriptText());
+		}
+	}
+
+	/** Records the screen changes the session reports, reading the screen as a view drawing it would. */
+	private final class FakeSessionClient implements TerminalSessionClient {
+
+		int mTextChanges;
+		String mLastTranscript;
+
+		@Override
+		public void onTextChanged(@NonNull TerminalSession changedSession) {
+			assertEquals(Looper.getMainLooper(), Looper.myLooper());
+			mTextChanges++;
+			TerminalEmulator emulator = changedSession.getEmulator();
+			synchronized (emulator) {
+				assertConsistentScreen(emulator);
+				mLastTranscript = emulator.getScreen().getTranscriptText();
+			}
+		}
+
+		@Override
+		public void onTitleChanged(@NonNull TerminalSession changedSession) {
+		}
+
+		@Override
+		public void onSessionFinished(@NonNull TerminalSession finishedSession) {
+		}
+
+		@Override
+		public void onCopyTextToClipboard(@NonNull TerminalSession session, String text) {
+		}
+
+		@Override
+		public void onPasteTextFromClipboard(@Nullable TerminalSession session) {
+		}
+
+		@Override
+		public void onBell(@NonNull TerminalSession session) {
+		}
+
+		@Override
+		public void onColorsChanged(@NonNull TerminalSession session) {
+		}
+
+		@Override
+		public void onTerminalCursorStateChange(boolean state) {
+		}
+
+		@Override
+		public void setTerminalShellPid(@NonNull TerminalSession session, int pid) {
+		}
+
+		@Override
+		public Integer getTerminalCursorStyle() {
+			return null;
+		}
+
+		@Override
+		public void logError(String tag, String message) {
+		}
+
+		@Override
+		public void logWarn(String tag, String message) {
+		}
+
+		@Override
+		public void logInfo(String tag, String message) {
+		}
+
+		@Override
+		public void logDebug(String tag, String message) {
+		}
+
+		@Override
+		public void logVerbose(String tag, String message) {
+		}
+
+		@Override
+		public void logStackTraceWithMessage(String tag, String message, Exception e) {
+		}
+
+		@Override
+		public void logStackTrace(String tag, Exception e) {
+		}
+	}
+}
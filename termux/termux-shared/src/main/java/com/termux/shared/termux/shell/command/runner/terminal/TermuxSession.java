@@ -155,7 +155,7 @@ public class TermuxSession {
         Logger.logDebug(LOG_TAG, "Running \"" + executionCommand.getCommandIdAndLabelLogString() + "\" TermuxSession");
         TerminalSession terminalSession = new TerminalSession(executionCommand.executable,
             executionCommand.workingDirectory, executionCommand.arguments, environmentArray,
-            executionCommand.terminalTranscriptRows, terminalSessionClient);
+            executionCommand.terminalTranscriptRows, terminalSessionClient, true);
 
         if (executionCommand.shellName != null) {
             terminalSession.mSessionName = executionCommand.shellName;
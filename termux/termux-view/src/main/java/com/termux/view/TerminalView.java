@@ -166,7 +166,7 @@ public final class TerminalView extends View {
                 if (mouseTrackingAtStartOfFling) {
                     mScroller.fling(0, 0, 0, -(int) (velocityY * SCALE), 0, 0, -mEmulator.mRows / 2, mEmulator.mRows / 2);
                 } else {
-                    mScroller.fling(0, mTopRow, 0, -(int) (velocityY * SCALE), 0, 0, -mEmulator.getScreen().getActiveTranscriptRows(), 0);
+                    mScroller.fling(0, mTopRow, 0, -(int) (velocityY * SCALE), 0, 0, -getActiveTranscriptRows(), 0);
                 }
 
                 post(new Runnable() {
@@ -399,7 +399,7 @@ public final class TerminalView extends View {
 
     @Override
     protected int computeVerticalScrollRange() {
-        return mEmulator == null ? 1 : mEmulator.getScreen().getActiveRows();
+        return mEmulator == null ? 1 : getActiveRows();
     }
 
     @Override
@@ -409,7 +409,20 @@ public final class TerminalView extends View {
 
     @Override
     protected int computeVerticalScrollOffset() {
-        return mEmulator == null ? 1 : mEmulator.getScreen().getActiveRows() + mTopRow - mEmulator.mRows;
+        return mEmulator == null ? 1 : getActiveRows() + mTopRow - mEmulator.mRows;
+    }
+
+    // The session may be feeding output to the emulator on another thread.
+    private int getActiveRows() {
+        synchronized (mEmulator) {
+            return mEmulator.getScreen().getActiveRows();
+        }
+    }
+
+    private int getActiveTranscriptRows() {
+        synchronized (mEmulator) {
+            return mEmulator.getScreen().getActiveTranscriptRows();
+        }
     }
 
     public void onScreenUpdated() {
@@ -419,6 +432,18 @@ public final class TerminalView extends View {
     public void onScreenUpdated(boolean skipScrolling) {
         if (mEmulator == null) return;
 
+        // The session may be feeding output to the emulator on another thread.
+        CharSequence text = null;
+        synchronized (mEmulator) {
+            updateTopRow(skipScrolling);
+            if (mAccessibilityEnabled) text = getText();
+        }
+
+        invalidate();
+        if (text != null) setContentDescription(text);
+    }
+
+    private void updateTopRow(boolean skipScrolling) {
         int rowsInHistory = mEmulator.getScreen().getActiveTranscriptRows();
         if (mTopRow < -rowsInHistory) mTopRow = -rowsInHistory;
 
@@ -455,9 +480,6 @@ public final class TerminalView extends View {
         }
 
         mEmulator.clearScrollCounter();
-
-        invalidate();
-        if (mAccessibilityEnabled) setContentDescription(getText());
     }
 
     /** This must be called by the hosting activity in {@link Activity#onContextMenuClosed(Menu)}
@@ -544,7 +566,7 @@ public final class TerminalView extends View {
                 // e.g. less, which shifts to the alt screen without mouse handling.
                 handleKeyCode(up ? KeyEvent.KEYCODE_DPAD_UP : KeyEvent.KEYCODE_DPAD_DOWN, 0);
             } else {
-                mTopRow = Math.min(0, Math.max(-(mEmulator.getScreen().getActiveTranscriptRows()), mTopRow + (up ? -1 : 1)));
+                mTopRow = Math.min(0, Math.max(-getActiveTranscriptRows(), mTopRow + (up ? -1 : 1)));
                 if (!awakenScrollBars()) invalidate();
             }
         }
@@ -975,7 +997,9 @@ public final class TerminalView extends View {
                 mTextSelectionCursorController.getSelectors(sel);
             }
 
-            mRenderer.render(mEmulator, canvas, mTopRow, sel[0], sel[1], sel[2], sel[3]);
+            synchronized (mEmulator) {
+                mRenderer.render(mEmulator, canvas, mTopRow, sel[0], sel[1], sel[2], sel[3]);
+            }
 
             // render the text selection handles
             renderTextSelection();
@@ -986,6 +1010,7 @@ public final class TerminalView extends View {
         return mTermSession;
     }
 
+    /** Must be called while holding the monitor of {@link #mEmulator}. */
     private CharSequence getText() {
         return mEmulator.getScreen().getSelectedText(0, mTopRow, mEmulator.mColumns, mTopRow + mEmulator.mRows);
     }
@@ -0,0 +1,17 @@
+package com.itsaky.androidide.test;
+
+import android.os.Build;
+import android.view.View;
+
+public class NewApiTest {
+    float unguarded(View view) {
+        return view.getZ();
+    }
+
+    float guarded(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return view.getZ();
+        }
+        return 0;
+    }
+}
@@ -28,6 +28,7 @@ import com.itsaky.androidide.tooling.api.messages.GradleBuildParams
 import com.itsaky.androidide.tooling.api.messages.GradleDistributionParams
 import com.itsaky.androidide.tooling.api.messages.InitializeProjectParams
 import com.itsaky.androidide.tooling.api.messages.LogMessageParams
+import com.itsaky.androidide.tooling.api.messages.ProgressEventBatch
 import com.itsaky.androidide.tooling.api.messages.result.BuildInfo
 import com.itsaky.androidide.tooling.api.messages.result.BuildResult
 import com.itsaky.androidide.tooling.api.messages.result.GradleWrapperCheckResult
@@ -369,6 +370,8 @@ object ToolingApiTestLauncher {
 
 		override fun onProgressEvent(event: ProgressEvent) {}
 
+		override fun onProgressEventBatch(batch: ProgressEventBatch) {}
+
 		override fun checkGradleWrapperAvailability(): CompletableFuture<GradleWrapperCheckResult> =
 			CompletableFuture.completedFuture(GradleWrapperCheckResult(true))
 